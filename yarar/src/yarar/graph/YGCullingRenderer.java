@@ -0,0 +1,358 @@
+package yarar.graph;
+
+import java.awt.Color;
+import java.awt.Paint;
+import java.awt.Rectangle;
+import java.awt.Shape;
+import java.awt.Stroke;
+import java.awt.geom.Line2D;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.swing.JComponent;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+
+import org.apache.commons.collections15.Transformer;
+
+import edu.uci.ics.jung.algorithms.layout.Layout;
+import edu.uci.ics.jung.graph.Graph;
+import edu.uci.ics.jung.graph.util.Pair;
+import edu.uci.ics.jung.visualization.Layer;
+import edu.uci.ics.jung.visualization.MultiLayerTransformer;
+import edu.uci.ics.jung.visualization.RenderContext;
+import edu.uci.ics.jung.visualization.renderers.BasicRenderer;
+import edu.uci.ics.jung.visualization.transform.shape.GraphicsDecorator;
+
+/**
+ * Renderer for large {@link YGGraph}s. Compared to the default JUNG renderer it:
+ * <ul>
+ * <li>draws only the elements within the visible area. The elements are looked up in a
+ * {@link YGQuadTree} built over the layout positions, which is rebuilt only when the layout
+ * changes (the renderer must be registered as {@link ChangeListener} of the visualisation
+ * model);</li>
+ * <li>lowers the level of detail when zoomed out, see {@link YGDetailLevel}. For the stroke and
+ * shape rules to take effect, the relevant transformers need to be decorated by
+ * {@link #decorateStroke(Transformer)} and {@link #decorateVertexShape(Transformer)}.</li>
+ * </ul>
+ * Graphs with less than {@link #CULLING_THRESHOLD} elements are not indexed.
+ * <p>
+ * Once the index is built, several threads may render through the same instance (e.g. image tiles
+ * of one graph), as long as all of them use the same scale.
+ * </p>
+ * 
+ * @author Dimo Vanchev
+ */
+public class YGCullingRenderer extends BasicRenderer<YGVertex, YGEdge> implements ChangeListener {
+
+    /** Graphs with fewer elements (vertices and edges) than this are drawn without culling. */
+    public static final int CULLING_THRESHOLD = 1000;
+
+    /** Below this scale labels and dashed strokes are dropped. */
+    private static final double REDUCED_SCALE = 0.6;
+    /** Below this scale vertex shapes are simplified. */
+    private static final double SIMPLIFIED_SCALE = 0.3;
+    /** Below this scale edges are aggregated. */
+    private static final double AGGREGATED_SCALE = 0.12;
+    /** Margin (in pixels) around the visible area, so that shapes and labels are not cut off. */
+    private static final double MARGIN = 80;
+    /** Size (in pixels) of the cells used for edge aggregation. */
+    private static final double CELL_SIZE = 8;
+    /** Shape drawn instead of the display shape, when vertices are simplified. */
+    private static final Shape SIMPLE_SHAPE = new Rectangle(-3, -3, 6, 6);
+    /** Colour of the aggregated edges. */
+    private static final Color AGGREGATED_EDGE_COLOR = Color.GRAY;
+
+    /** Spatial index over vertex positions. */
+    private YGQuadTree<YGVertex> vertexIndex;
+    /** Spatial index over edge bounding boxes. */
+    private YGQuadTree<YGEdge> edgeIndex;
+    /** Set when the layout changes, so that the indices get rebuilt on next rendering. */
+    private volatile boolean dirty = true;
+    /** The level of detail of the current rendering. */
+    private volatile YGDetailLevel detailLevel = YGDetailLevel.FULL;
+
+    /**
+     * Marks the spatial index as outdated.
+     * 
+     * @param e The change event (ignored).
+     */
+    @Override
+    public void stateChanged(final ChangeEvent e) {
+        dirty = true;
+    }
+
+    @Override
+    public void render(final RenderContext<YGVertex, YGEdge> rc,
+            final Layout<YGVertex, YGEdge> layout) {
+        final Graph<YGVertex, YGEdge> g = layout.getGraph();
+        final double scale = YGCullingRenderer.getScale(rc);
+        detailLevel = YGCullingRenderer.getDetailLevel(scale);
+
+        try {
+            Collection<YGEdge> edges;
+            Collection<YGVertex> vertices;
+            if ((g.getVertexCount() + g.getEdgeCount()) < YGCullingRenderer.CULLING_THRESHOLD) {
+                edges = g.getEdges();
+                vertices = g.getVertices();
+            } else {
+                final Rectangle2D area = YGCullingRenderer.getVisibleArea(rc, scale);
+                edges = new ArrayList<YGEdge>();
+                vertices = new ArrayList<YGVertex>();
+                queryIndex(layout, area, edges, vertices);
+            }
+
+            // paint the edges
+            if (detailLevel == YGDetailLevel.AGGREGATED) {
+                renderAggregatedEdges(rc, layout, edges);
+            } else {
+                for (final YGEdge e : edges) {
+                    renderEdge(rc, layout, e);
+                    if (detailLevel == YGDetailLevel.FULL) {
+                        renderEdgeLabel(rc, layout, e);
+                    }
+                }
+            }
+
+            // paint the vertices
+            for (final YGVertex v : vertices) {
+                renderVertex(rc, layout, v);
+                if (detailLevel == YGDetailLevel.FULL) {
+                    renderVertexLabel(rc, layout, v);
+                }
+            }
+        } catch (final ConcurrentModificationException cme) {
+            rc.getScreenDevice().repaint();
+        }
+    }
+
+    /**
+     * Decorates a stroke transformer, so that no stroke (i.e. the default solid one) is returned
+     * when the level of detail is lower than {@link YGDetailLevel#FULL}.
+     * 
+     * @param <T> The graph element type.
+     * @param delegate The original transformer.
+     * @return the decorated transformer
+     */
+    public <T> Transformer<T, Stroke> decorateStroke(final Transformer<T, Stroke> delegate) {
+        return new Transformer<T, Stroke>() {
+            @Override
+            public Stroke transform(final T element) {
+                if (detailLevel != YGDetailLevel.FULL) {
+                    return null;
+                }
+                return delegate.transform(element);
+            }
+        };
+    }
+
+    /**
+     * Decorates a vertex shape transformer, so that a small square is returned when the level of
+     * detail is {@link YGDetailLevel#SIMPLIFIED} or lower.
+     * 
+     * @param delegate The original transformer.
+     * @return the decorated transformer
+     */
+    public Transformer<YGVertex, Shape> decorateVertexShape(
+            final Transformer<YGVertex, Shape> delegate) {
+        return new Transformer<YGVertex, Shape>() {
+            @Override
+            public Shape transform(final YGVertex v) {
+                if (detailLevel.compareTo(YGDetailLevel.SIMPLIFIED) >= 0) {
+                    return YGCullingRenderer.SIMPLE_SHAPE;
+                }
+                return delegate.transform(v);
+            }
+        };
+    }
+
+    /**
+     * Looks up the elements within an area, rebuilding the spatial indices first if needed.
+     * 
+     * @param layout The layout.
+     * @param area The area, in layout coordinates.
+     * @param edges Where the found edges go.
+     * @param vertices Where the found vertices go.
+     */
+    private synchronized void queryIndex(final Layout<YGVertex, YGEdge> layout,
+            final Rectangle2D area, final Collection<YGEdge> edges,
+            final Collection<YGVertex> vertices) {
+        updateIndex(layout);
+        edgeIndex.query(area, edges);
+        vertexIndex.query(area, vertices);
+    }
+
+    /**
+     * Rebuilds the spatial indices, if the layout has changed since they were built.
+     * 
+     * @param layout The layout.
+     */
+    private void updateIndex(final Layout<YGVertex, YGEdge> layout) {
+        final Graph<YGVertex, YGEdge> g = layout.getGraph();
+        if (!dirty && (vertexIndex != null) && (vertexIndex.size() == g.getVertexCount())
+                && (edgeIndex.size() == g.getEdgeCount())) {
+            return;
+        }
+        dirty = false;
+
+        // the bounds of the whole layout
+        double minX = Double.MAX_VALUE;
+        double minY = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE;
+        double maxY = -Double.MAX_VALUE;
+        for (final YGVertex v : g.getVertices()) {
+            final Point2D p = layout.transform(v);
+            minX = Math.min(minX, p.getX());
+            minY = Math.min(minY, p.getY());
+            maxX = Math.max(maxX, p.getX());
+            maxY = Math.max(maxY, p.getY());
+        }
+        final Rectangle2D bounds = new Rectangle2D.Double(minX, minY, Math.max(maxX - minX, 1),
+                Math.max(maxY - minY, 1));
+
+        vertexIndex = new YGQuadTree<YGVertex>(bounds);
+        for (final YGVertex v : g.getVertices()) {
+            final Point2D p = layout.transform(v);
+            vertexIndex.insert(v, new Rectangle2D.Double(p.getX(), p.getY(), 0, 0));
+        }
+
+        edgeIndex = new YGQuadTree<YGEdge>(bounds);
+        for (final YGEdge e : g.getEdges()) {
+            final Pair<YGVertex> ends = g.getEndpoints(e);
+            final Point2D p1 = layout.transform(ends.getFirst());
+            final Point2D p2 = layout.transform(ends.getSecond());
+            final Rectangle2D box = new Rectangle2D.Double(p1.getX(), p1.getY(), 0, 0);
+            box.add(p2);
+            edgeIndex.insert(e, box);
+        }
+    }
+
+    /**
+     * Draws the edges aggregated: the area is split in cells of {@link #CELL_SIZE} pixels and only
+     * one line is drawn for all edges connecting the same two cells. Edges within a single cell
+     * are not drawn at all.
+     * 
+     * @param rc The render context.
+     * @param layout The layout.
+     * @param edges The edges to draw.
+     */
+    private void renderAggregatedEdges(final RenderContext<YGVertex, YGEdge> rc,
+            final Layout<YGVertex, YGEdge> layout, final Collection<YGEdge> edges) {
+        final MultiLayerTransformer mlt = rc.getMultiLayerTransformer();
+        final Graph<YGVertex, YGEdge> g = layout.getGraph();
+        // the graphics context has the view transformation applied, so cells are scaled back
+        final double cell = YGCullingRenderer.CELL_SIZE / mlt.getTransformer(Layer.VIEW).getScale();
+        final Set<Long> drawn = new HashSet<Long>();
+        final List<Shape> lines = new ArrayList<Shape>();
+
+        for (final YGEdge e : edges) {
+            final Pair<YGVertex> ends = g.getEndpoints(e);
+            final int c1 = YGCullingRenderer.getCell(
+                    mlt.transform(Layer.LAYOUT, layout.transform(ends.getFirst())), cell);
+            final int c2 = YGCullingRenderer.getCell(
+                    mlt.transform(Layer.LAYOUT, layout.transform(ends.getSecond())), cell);
+            if (c1 == c2) {
+                continue;
+            }
+            final long key = (c1 < c2) ? (((long) c1 << 32) | (c2 & 0xffffffffL))
+                    : (((long) c2 << 32) | (c1 & 0xffffffffL));
+            if (drawn.add(key)) {
+                lines.add(new Line2D.Double(((c1 >> 16) + 0.5) * cell, ((short) c1 + 0.5) * cell,
+                        ((c2 >> 16) + 0.5) * cell, ((short) c2 + 0.5) * cell));
+            }
+        }
+
+        final GraphicsDecorator gd = rc.getGraphicsContext();
+        final Paint oldPaint = gd.getPaint();
+        gd.setPaint(YGCullingRenderer.AGGREGATED_EDGE_COLOR);
+        for (final Shape line : lines) {
+            gd.draw(line);
+        }
+        gd.setPaint(oldPaint);
+    }
+
+    /**
+     * Gets the aggregation cell of a point. Cell coordinates are packed in 16 bits each.
+     * 
+     * @param p The point.
+     * @param cell The cell size.
+     * @return the packed cell coordinates
+     */
+    private static int getCell(final Point2D p, final double cell) {
+        final int cx = YGCullingRenderer.clamp((int) Math.floor(p.getX() / cell));
+        final int cy = YGCullingRenderer.clamp((int) Math.floor(p.getY() / cell));
+        return (cx << 16) | (cy & 0xffff);
+    }
+
+    /**
+     * Clamps a value to the range of <code>short</code>.
+     * 
+     * @param i The value.
+     * @return the clamped value
+     */
+    private static int clamp(final int i) {
+        return Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, i));
+    }
+
+    /**
+     * Gets the overall scale of the view and layout transformations.
+     * 
+     * @param rc The render context.
+     * @return the scale
+     */
+    private static double getScale(final RenderContext<YGVertex, YGEdge> rc) {
+        final MultiLayerTransformer mlt = rc.getMultiLayerTransformer();
+        return mlt.getTransformer(Layer.VIEW).getScale()
+                * mlt.getTransformer(Layer.LAYOUT).getScale();
+    }
+
+    /**
+     * Determines the level of detail for a scale.
+     * 
+     * @param scale The overall scale.
+     * @return the level of detail
+     */
+    private static YGDetailLevel getDetailLevel(final double scale) {
+        if (scale < YGCullingRenderer.AGGREGATED_SCALE) {
+            return YGDetailLevel.AGGREGATED;
+        } else if (scale < YGCullingRenderer.SIMPLIFIED_SCALE) {
+            return YGDetailLevel.SIMPLIFIED;
+        } else if (scale < YGCullingRenderer.REDUCED_SCALE) {
+            return YGDetailLevel.REDUCED;
+        }
+        return YGDetailLevel.FULL;
+    }
+
+    /**
+     * Gets the visible area in layout coordinates, extended by {@link #MARGIN}. If the graphics
+     * context has a clip (e.g. when rendering tiles), only the clip is considered visible.
+     * 
+     * @param rc The render context.
+     * @param scale The overall scale.
+     * @return the visible area
+     */
+    private static Rectangle2D getVisibleArea(final RenderContext<YGVertex, YGEdge> rc,
+            final double scale) {
+        final MultiLayerTransformer mlt = rc.getMultiLayerTransformer();
+        final Rectangle clip = rc.getGraphicsContext().getClipBounds();
+        Shape area;
+        if (clip != null) {
+            // the clip is already in view coordinates
+            area = mlt.inverseTransform(Layer.LAYOUT, clip);
+        } else {
+            final JComponent device = rc.getScreenDevice();
+            area = mlt.inverseTransform(new Rectangle(0, 0, device.getWidth(), device.getHeight()));
+        }
+        final Rectangle2D bounds = area.getBounds2D();
+        final double m = YGCullingRenderer.MARGIN / scale;
+        bounds.setRect(bounds.getX() - m, bounds.getY() - m, bounds.getWidth() + (2 * m),
+                bounds.getHeight() + (2 * m));
+        return bounds;
+    }
+}
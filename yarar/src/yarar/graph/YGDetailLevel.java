@@ -0,0 +1,16 @@
+package yarar.graph;
+
+/**
+ * Levels of detail used by {@link YGCullingRenderer}. The levels are ordered from the most to the
+ * least detailed one; each level drops everything dropped by the previous levels.
+ */
+enum YGDetailLevel {
+    /** Everything is drawn as defined by the graph elements. */
+    FULL,
+    /** Labels are skipped and dashed strokes are drawn as solid. */
+    REDUCED,
+    /** Additionally, vertices are drawn as small squares instead of their display shapes. */
+    SIMPLIFIED,
+    /** Additionally, edges are aggregated - at most one line is drawn between two screen cells. */
+    AGGREGATED
+}
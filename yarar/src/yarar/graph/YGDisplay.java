@@ -1,393 +1,669 @@
-package yarar.graph;
-
-import java.awt.BorderLayout;
-import java.awt.Color;
-import java.awt.Container;
-import java.awt.Dimension;
-import java.awt.Graphics;
-import java.awt.Graphics2D;
-import java.awt.GridLayout;
-import java.awt.Paint;
-import java.awt.Shape;
-import java.awt.Stroke;
-import java.awt.event.ActionEvent;
-import java.awt.event.ActionListener;
-import java.awt.event.ItemEvent;
-import java.awt.event.ItemListener;
-import java.awt.geom.Ellipse2D;
-import java.awt.geom.Point2D;
-import java.util.Collection;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
-
-import javax.swing.BorderFactory;
-import javax.swing.JButton;
-import javax.swing.JFrame;
-import javax.swing.JPanel;
-import javax.swing.JToggleButton;
-
-import org.apache.commons.collections15.Transformer;
-
-import edu.uci.ics.jung.algorithms.layout.FRLayout;
-import edu.uci.ics.jung.algorithms.layout.FRLayout2;
-import edu.uci.ics.jung.algorithms.layout.Layout;
-import edu.uci.ics.jung.algorithms.layout.PolarPoint;
-import edu.uci.ics.jung.algorithms.layout.RadialTreeLayout;
-import edu.uci.ics.jung.algorithms.layout.TreeLayout;
-import edu.uci.ics.jung.graph.Forest;
-import edu.uci.ics.jung.visualization.GraphZoomScrollPane;
-import edu.uci.ics.jung.visualization.Layer;
-import edu.uci.ics.jung.visualization.VisualizationServer;
-import edu.uci.ics.jung.visualization.VisualizationViewer;
-import edu.uci.ics.jung.visualization.control.CrossoverScalingControl;
-import edu.uci.ics.jung.visualization.control.DefaultModalGraphMouse;
-import edu.uci.ics.jung.visualization.control.ScalingControl;
-import edu.uci.ics.jung.visualization.decorators.ToStringLabeller;
-import edu.uci.ics.jung.visualization.layout.LayoutTransition;
-import edu.uci.ics.jung.visualization.renderers.Renderer.VertexLabel.Position;
-import edu.uci.ics.jung.visualization.util.Animator;
-
-/**
- * This class serves to display graphical representation of a {@link YGGraph}. The graphics open in
- * a <code>JFrame</code> with a closing button.
- * 
- * @author Dimo Vanchev
- */
-public class YGDisplay {
-    /** Radial layout used when displaying {@link Forest}s */
-    private RadialTreeLayout<YGVertex, YGEdge> radialLayout;
-    /** Classical tree layout used when displaying {@link Forest}s */
-    private TreeLayout<YGVertex, YGEdge> treeLayout;
-    /** The graph that we want to display. */
-    private final YGGraph graph;
-    /** The main visualisation viewer object. */
-    private VisualizationViewer<YGVertex, YGEdge> vv;
-    /** The rings used in background when RadialTreeLayout needs to be displayed. */
-    private VisualizationServer.Paintable rings;
-
-    /**
-     * This constructor is used internally upon calling the static
-     * {@link #display(YGGraph, int, int, YGVisualisationLayouts)} method and has solely internal
-     * use.
-     * 
-     * @param graph The graph object.
-     */
-    private YGDisplay(final YGGraph graph) {
-	this.graph = graph;
-    }
-
-    /**
-     * Provides graphical representation of a {@link YGGraph} within a {@link JFrame}.
-     * 
-     * @param g The graph to be displayed.
-     * @param width Windows width.
-     * @param height Windows height.
-     * @param l The desired layout type.
-     */
-    public static void display(final YGGraph g, final int width, final int height,
-	    final YGVisualisationLayouts l) {
-	Layout<YGVertex, YGEdge> layout;
-	final YGDisplay ygd = new YGDisplay(g);
-
-	switch (l) {
-	    case RADIAL_TREE:
-		ygd.radialLayout = new RadialTreeLayout<YGVertex, YGEdge>(g);
-		ygd.radialLayout.setSize(new Dimension(width, height));
-		ygd.rings = ygd.new Rings();
-		// layout = ygd.radialLayout;
-		ygd.treeLayout = new TreeLayout<YGVertex, YGEdge>(g, 100, 100);
-		layout = ygd.treeLayout;
-		break;
-	    case FR:
-		layout = new FRLayout<YGVertex, YGEdge>(g);
-		break;
-	    default:
-		layout = new FRLayout2<YGVertex, YGEdge>(g);
-		break;
-	}
-
-	if (l != YGVisualisationLayouts.RADIAL_TREE) {
-	    layout.setSize(new Dimension(width, height));
-	}
-
-	ygd.vv = new VisualizationViewer<YGVertex, YGEdge>(
-		layout, new Dimension(width, height));
-	final VisualizationViewer<YGVertex, YGEdge> vv = ygd.vv;
-	vv.getRenderContext().setVertexFillPaintTransformer(YGDisplay.getVertexPaint());
-	vv.getRenderContext().setVertexStrokeTransformer(YGDisplay.getVertexStrokeTransformer());
-	vv.getRenderContext().setVertexShapeTransformer(YGDisplay.getVertexShapeTransformer());
-	vv.getRenderContext().setEdgeStrokeTransformer(YGDisplay.getEdgeStrokeTransformer());
-	vv.getRenderContext().setEdgeDrawPaintTransformer(YGDisplay.getEdgeDrawPaintTransformer());
-	vv.getRenderContext().setVertexLabelTransformer(new ToStringLabeller<YGVertex>());
-	vv.getRenderContext().setEdgeLabelTransformer(new ToStringLabeller<YGEdge>());
-	vv.getRenderer().getVertexLabelRenderer().setPosition(Position.CNTR);
-	vv.setBackground(Color.WHITE);
-
-	final JFrame frame = new JFrame("YGGraph: " + g.toString());
-	frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-	final GraphZoomScrollPane panel = new GraphZoomScrollPane(vv);
-	final Container content = frame.getContentPane();
-	content.add(panel);
-
-	@SuppressWarnings("rawtypes")
-	final DefaultModalGraphMouse graphMouse = new DefaultModalGraphMouse();
-	vv.setGraphMouse(graphMouse);
-
-	if (l == YGVisualisationLayouts.RADIAL_TREE) {
-	    YGDisplay.addControls(ygd, content);
-	}
-
-	frame.pack();
-	frame.setVisible(true);
-
-    }
-
-    /**
-     * Invokes the in-class defined colour for edge visualisation.
-     * 
-     * @return the transformer object
-     */
-    private static Transformer<YGEdge, Paint> getEdgeDrawPaintTransformer() {
-	return new Transformer<YGEdge, Paint>() {
-	    @Override
-	    public Paint transform(final YGEdge i) {
-		return i.getDisplayColor();
-	    }
-	};
-    }
-
-    /**
-     * Invokes the in-class defined stroke for edge visualisation.
-     * 
-     * @return the transformer object
-     */
-    private static Transformer<YGEdge, Stroke> getEdgeStrokeTransformer() {
-	return new Transformer<YGEdge, Stroke>() {
-	    @Override
-	    public Stroke transform(final YGEdge s) {
-		return s.getDisplayStroke();
-	    }
-	};
-    }
-
-    /**
-     * Invokes the in-class defined Shape for vertex visualisation.
-     * 
-     * @return the transformer object
-     */
-    private static Transformer<YGVertex, Shape> getVertexShapeTransformer() {
-	return new Transformer<YGVertex, Shape>() {
-	    @Override
-	    public Shape transform(final YGVertex s) {
-		return s.getDisplayShape();
-	    }
-	};
-    }
-
-    /**
-     * Invokes the in-class defined Stroke for vertex visualisation.
-     * 
-     * @return the transformer object
-     */
-    private static Transformer<YGVertex, Stroke> getVertexStrokeTransformer() {
-	return new Transformer<YGVertex, Stroke>() {
-	    @Override
-	    public Stroke transform(final YGVertex s) {
-		return s.getDisplayStroke();
-	    }
-	};
-    }
-
-    /**
-     * Invokes the in-class defined colour for vertex visualisation.
-     * 
-     * @return the transformer object
-     */
-    private static Transformer<YGVertex, Paint> getVertexPaint() {
-	// Setup up a new vertex to paint transformer...
-	return new Transformer<YGVertex, Paint>() {
-	    @Override
-	    public Paint transform(final YGVertex i) {
-		return i.getDisplayColor();
-	    }
-	};
-    }
-
-    /**
-     * Creates and returns a listener for the layout toggeling button.
-     * 
-     * @param ygd The YGDisplay instance
-     * @return the layout item listener
-     */
-    private static ItemListener getLayoutItemListener(final YGDisplay ygd) {
-	return new ItemListener() {
-	    @Override
-	    public void itemStateChanged(final ItemEvent e) {
-		if (e.getStateChange() == ItemEvent.SELECTED) {
-
-		    final LayoutTransition<YGVertex, YGEdge> lt =
-			    new LayoutTransition<YGVertex, YGEdge>(ygd.vv, ygd.treeLayout,
-				    ygd.radialLayout);
-		    final Animator animator = new Animator(lt);
-		    animator.start();
-		    ygd.vv.getRenderContext().getMultiLayerTransformer().setToIdentity();
-		    ygd.vv.addPreRenderPaintable(ygd.rings);
-		} else {
-		    final LayoutTransition<YGVertex, YGEdge> lt =
-			    new LayoutTransition<YGVertex, YGEdge>(ygd.vv, ygd.radialLayout,
-				    ygd.treeLayout);
-		    final Animator animator = new Animator(lt);
-		    animator.start();
-		    ygd.vv.getRenderContext().getMultiLayerTransformer().setToIdentity();
-		    ygd.vv.removePreRenderPaintable(ygd.rings);
-		}
-		ygd.vv.repaint();
-	    }
-	};
-    }
-
-    /**
-     * Adds display controls (zoom-in, zoom-out, etc.) at the bottom of the container.
-     * 
-     * @param ygd The YGDisplay instance
-     * @param content The container
-     */
-    private static void addControls(final YGDisplay ygd, final Container content) {
-
-	final ScalingControl scaler = new CrossoverScalingControl();
-	final JButton plus = new JButton("+");
-	plus.addActionListener(new ActionListener() {
-	    @Override
-	    public void actionPerformed(final ActionEvent e) {
-		scaler.scale(ygd.vv, 1.1f, ygd.vv.getCenter());
-	    }
-	});
-	final JButton minus = new JButton("-");
-	minus.addActionListener(new ActionListener() {
-	    @Override
-	    public void actionPerformed(final ActionEvent e) {
-		scaler.scale(ygd.vv, 1 / 1.1f, ygd.vv.getCenter());
-	    }
-	});
-
-	final JToggleButton radial = new JToggleButton("Radial");
-	radial.addItemListener(YGDisplay.getLayoutItemListener(ygd));
-
-	final JPanel controls = new JPanel();
-	final JPanel scaleGrid = new JPanel(new GridLayout(1, 0));
-	scaleGrid.setBorder(BorderFactory.createTitledBorder("Zoom"));
-	scaleGrid.add(plus);
-	scaleGrid.add(minus);
-	controls.add(radial);
-	controls.add(scaleGrid);
-	content.add(controls, BorderLayout.SOUTH);
-    }
-
-    /**
-     * Displays sample graph. Use it for quick testing.
-     */
-    public static void testDisplay() {
-	// Graph<V, E> where V is the type of the vertices and E is the type of the edges
-	final YGGraph ygg = new YGGraph(YGGraphTypes.FOREST);// SPARSE_DIRECTED
-
-	final YGVertex a = new YGVertex("az");
-	final YGVertex b = new YGVertex("sam");
-	final YGVertex c = new YGVertex("mnogo");
-	final YGVertex d = new YGVertex("silno");
-	final YGVertex e = new YGVertex("dobiche");
-	final YGVertex f = new YGVertex("rogato");
-	final YGVertex g = new YGVertex("zabato");
-
-	ygg.addVertex(a);
-	ygg.addVertex(b);
-	ygg.addVertex(c);
-	ygg.addVertex(d);
-	ygg.addVertex(e);
-	ygg.addVertex(f);
-	ygg.addVertex(g);
-
-	ygg.addEdge(new YGEdge("podlog"), b, a);
-	ygg.addEdge(new YGEdge("sastoianie"), b, e);
-	ygg.addEdge(new YGEdge("poiasnenie"), d, e);
-	ygg.addEdge(new YGEdge("kolichesto"), c, d);
-	ygg.addEdge(new YGEdge("poiasnenie"), f, e);
-	ygg.addEdge(new YGEdge("poiasnenie"), g, e);
-	ygg.addEdge(new YGEdge("vrashtane"), e, g);
-	// ygg.addEdge(new YGEdge("podlog"), b, a, EdgeType.DIRECTED);
-	// ygg.addEdge(new YGEdge("sastoianie"), b, e, EdgeType.DIRECTED);
-	// ygg.addEdge(new YGEdge("poiasnenie"), d, e, EdgeType.DIRECTED);
-	// ygg.addEdge(new YGEdge("kolichesto"), c, d, EdgeType.DIRECTED);
-	// ygg.addEdge(new YGEdge("poiasnenie"), f, e, EdgeType.DIRECTED);
-	// ygg.addEdge(new YGEdge("poiasnenie"), g, e, EdgeType.DIRECTED);
-	// ygg.addEdge(new YGEdge("vrashtane"), e, g, EdgeType.DIRECTED);
-
-	YGDisplay.display(ygg, 400, 400, YGVisualisationLayouts.FR);
-    }
-
-    /**
-     * A main() for testing purposes. Calls {@link YGDisplay#testDisplay()} method.
-     * 
-     * @param args All args will be ignored.
-     */
-    public static void main(final String[] args) {
-	YGDisplay.testDisplay();
-    }
-
-    /**
-     * Rings are circles displayed in background when <code>RadialTreeLayout</code> is used.
-     * 
-     * @author Dimo Vanchev
-     */
-    private class Rings implements VisualizationServer.Paintable {
-
-	/** internally used PollarPoint coordinates for the rings */
-	private final Collection<Double> depths;
-
-	/**
-	 * Default and only constructor.
-	 */
-	protected Rings() {
-	    depths = getDepths();
-	}
-
-	/**
-	 * Depths are internally used PollarPoint coordinates for the rings
-	 * 
-	 * @return the depths
-	 */
-	private Collection<Double> getDepths() {
-	    final Set<Double> depths = new HashSet<Double>();
-	    final Map<YGVertex, PolarPoint> polarLocations = radialLayout.getPolarLocations();
-	    final Collection<YGVertex> c = graph.getVertices();
-	    for (final YGVertex v : c) {
-		final PolarPoint pp = polarLocations.get(v);
-		depths.add(pp.getRadius());
-	    }
-	    return depths;
-	}
-
-	@Override
-	public void paint(final Graphics g) {
-	    g.setColor(Color.lightGray);
-
-	    final Graphics2D g2d = (Graphics2D) g;
-	    final Point2D center = radialLayout.getCenter();
-
-	    final Ellipse2D ellipse = new Ellipse2D.Double();
-	    for (final double d : depths) {
-		ellipse.setFrameFromDiagonal(center.getX() - d, center.getY() - d,
-			center.getX() + d, center.getY() + d);
-		final Shape shape = vv.getRenderContext().getMultiLayerTransformer()
-			.getTransformer(Layer.LAYOUT).transform(ellipse);
-		g2d.draw(shape);
-	    }
-	}
-
-	@Override
-	public boolean useTransform() {
-	    return true;
-	}
-    }
-
-}
+package yarar.graph;
+
+import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.Container;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GridLayout;
+import java.awt.Paint;
+import java.awt.Shape;
+import java.awt.Stroke;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.ItemEvent;
+import java.awt.event.ItemListener;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Point2D;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import javax.swing.BorderFactory;
+import javax.swing.JButton;
+import javax.swing.JFrame;
+import javax.swing.JPanel;
+import javax.swing.JToggleButton;
+import javax.swing.SwingUtilities;
+
+import org.apache.commons.collections15.Transformer;
+
+import edu.uci.ics.jung.algorithms.layout.FRLayout;
+import edu.uci.ics.jung.algorithms.layout.FRLayout2;
+import edu.uci.ics.jung.algorithms.layout.Layout;
+import edu.uci.ics.jung.algorithms.layout.PolarPoint;
+import edu.uci.ics.jung.algorithms.layout.RadialTreeLayout;
+import edu.uci.ics.jung.algorithms.layout.StaticLayout;
+import edu.uci.ics.jung.algorithms.layout.TreeLayout;
+import edu.uci.ics.jung.algorithms.util.IterativeContext;
+import edu.uci.ics.jung.graph.Forest;
+import edu.uci.ics.jung.visualization.BasicVisualizationServer;
+import edu.uci.ics.jung.visualization.GraphZoomScrollPane;
+import edu.uci.ics.jung.visualization.Layer;
+import edu.uci.ics.jung.visualization.VisualizationServer;
+import edu.uci.ics.jung.visualization.VisualizationViewer;
+import edu.uci.ics.jung.visualization.control.CrossoverScalingControl;
+import edu.uci.ics.jung.visualization.control.DefaultModalGraphMouse;
+import edu.uci.ics.jung.visualization.control.ScalingControl;
+import edu.uci.ics.jung.visualization.decorators.ToStringLabeller;
+import edu.uci.ics.jung.visualization.layout.LayoutTransition;
+import edu.uci.ics.jung.visualization.renderers.Renderer.VertexLabel.Position;
+import edu.uci.ics.jung.visualization.util.Animator;
+import edu.uci.ics.jung.visualization.util.ChangeEventSupport;
+
+/**
+ * This class serves to display graphical representation of a {@link YGGraph}. The graphics open in
+ * a <code>JFrame</code> with a closing button.
+ * 
+ * @author Dimo Vanchev
+ */
+public class YGDisplay {
+    /** Radial layout used when displaying {@link Forest}s */
+    private RadialTreeLayout<YGVertex, YGEdge> radialLayout;
+    /** Classical tree layout used when displaying {@link Forest}s */
+    private TreeLayout<YGVertex, YGEdge> treeLayout;
+    /** The graph that we want to display. */
+    private final YGGraph graph;
+    /** The main visualisation viewer object. */
+    private VisualizationViewer<YGVertex, YGEdge> vv;
+    /** The rings used in background when RadialTreeLayout needs to be displayed. */
+    private Rings rings;
+    /** Computes iterative layouts in background; <code>null</code> for non-iterative ones. */
+    private YGLayoutWorker layoutWorker;
+    /** The "Good enough" button, disabled once {@link #layoutWorker} finishes. */
+    private JButton stopButton;
+    /** The layout type. */
+    private YGVisualisationLayouts layoutType;
+    /** The layout size. */
+    private Dimension layoutSize;
+    /** Vertices which already have a position; all others get placed by {@link #updateLayout()}. */
+    private final Set<YGVertex> placed = new HashSet<YGVertex>();
+    /** <code>true</code> while the radial layout is shown instead of the tree layout. */
+    private boolean radialShown = false;
+
+    /**
+     * This constructor is used internally upon calling the static
+     * {@link #display(YGGraph, int, int, YGVisualisationLayouts)} method and has solely internal
+     * use.
+     * 
+     * @param graph The graph object.
+     */
+    private YGDisplay(final YGGraph graph) {
+        this.graph = graph;
+    }
+
+    /**
+     * Provides graphical representation of a {@link YGGraph} within a {@link JFrame}.
+     * <p>
+     * Iterative layouts (e.g. {@link YGVisualisationLayouts#FR}) are computed by a
+     * {@link YGLayoutWorker} on a background thread. The window is shown immediately and the
+     * vertices move to their places as the layout progresses. The computation can be stopped at any
+     * time by the "Good enough" button.
+     * </p>
+     * <p>
+     * The graph is drawn by a {@link YGCullingRenderer}, which skips elements outside of the
+     * visible area and lowers the level of detail when zoomed out.
+     * </p>
+     * <p>
+     * Vertices added to the graph later on can be placed by calling {@link #updateLayout()} on the
+     * returned instance.
+     * </p>
+     * 
+     * @param g The graph to be displayed.
+     * @param width Windows width.
+     * @param height Windows height.
+     * @param l The desired layout type.
+     * @return the display, for later {@link #updateLayout()} calls
+     */
+    public static YGDisplay display(final YGGraph g, final int width, final int height,
+            final YGVisualisationLayouts l) {
+        Layout<YGVertex, YGEdge> layout = null;
+        final YGDisplay ygd = new YGDisplay(g);
+        final Dimension size = new Dimension(width, height);
+        ygd.layoutType = l;
+        ygd.layoutSize = size;
+        ygd.placed.addAll(g.getVertices());
+
+        if (l != YGVisualisationLayouts.RADIAL_TREE) {
+            layout = YGLayoutCache.getInstance().lookup(g, l, size);
+        }
+        // the cache gives either the final positions or a layout seeded from them
+        if (layout == null) {
+            switch (l) {
+                case RADIAL_TREE:
+                    ygd.radialLayout = new RadialTreeLayout<YGVertex, YGEdge>(g);
+                    ygd.radialLayout.setSize(new Dimension(width, height));
+                    ygd.rings = ygd.new Rings();
+                    // layout = ygd.radialLayout;
+                    ygd.treeLayout = new TreeLayout<YGVertex, YGEdge>(g, 100, 100);
+                    layout = ygd.treeLayout;
+                    break;
+                case FR:
+                    layout = new FRLayout<YGVertex, YGEdge>(g);
+                    break;
+                default:
+                    layout = new FRLayout2<YGVertex, YGEdge>(g);
+                    break;
+            }
+        }
+
+        if ((l != YGVisualisationLayouts.RADIAL_TREE) && !size.equals(layout.getSize())) {
+            layout.setSize(size);
+        }
+
+        Layout<YGVertex, YGEdge> shownLayout = layout;
+        if (layout instanceof IterativeContext) {
+            // the viewer shows snapshots, while the real layout is computed in background
+            final StaticLayout<YGVertex, YGEdge> snapshotLayout =
+                    new StaticLayout<YGVertex, YGEdge>(g, new Dimension(width, height));
+            for (final YGVertex v : g.getVertices()) {
+                snapshotLayout.setLocation(v, layout.transform(v));
+            }
+            shownLayout = snapshotLayout;
+        }
+
+        ygd.vv = new VisualizationViewer<YGVertex, YGEdge>(
+                shownLayout, new Dimension(width, height));
+        final VisualizationViewer<YGVertex, YGEdge> vv = ygd.vv;
+        final YGCullingRenderer renderer = new YGCullingRenderer();
+        YGDisplay.configure(vv, renderer);
+        vv.getModel().addChangeListener(renderer);
+
+        if (shownLayout != layout) {
+            ygd.layoutWorker = new YGLayoutWorker(layout,
+                    (StaticLayout<YGVertex, YGEdge>) shownLayout, vv,
+                    YGLayoutWorker.DEFAULT_FRAME_INTERVAL);
+            final Layout<YGVertex, YGEdge> computed = shownLayout;
+            final YGLayoutWorker worker = ygd.layoutWorker;
+            ygd.layoutWorker.setOnFinish(new Runnable() {
+                @Override
+                public void run() {
+                    // a cancelled layout is only "good enough", so it must not become a cache hit
+                    if (!worker.wasCancelled()) {
+                        YGLayoutCache.getInstance().store(g, l, size, computed);
+                    }
+                    if (ygd.stopButton != null) {
+                        ygd.stopButton.setEnabled(false);
+                    }
+                }
+            });
+        }
+
+        // Swing components should be created and shown on the Event Dispatch Thread
+        SwingUtilities.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                YGDisplay.showFrame(ygd, l);
+            }
+        });
+        return ygd;
+    }
+
+    /**
+     * Places the vertices which were added to the graph since it was displayed (or last updated),
+     * relaxing a region of {@link YGIncrementalLayout#DEFAULT_HOPS} hops around them.
+     * 
+     * @see #updateLayout(int)
+     */
+    public void updateLayout() {
+        updateLayout(YGIncrementalLayout.DEFAULT_HOPS);
+    }
+
+    /**
+     * Places the vertices which were added to the graph since it was displayed (or last updated)
+     * and animates them into place, instead of computing the whole layout again.
+     * <p>
+     * For iterative layouts, the already placed vertices keep their positions. The new ones start
+     * next to their neighbours and force iterations run on a background thread, only on the region
+     * of <code>hops</code> hops around them (see {@link YGIncrementalLayout}). Tree layouts are
+     * cheap to compute, so they are simply rebuilt and the change is animated.
+     * </p>
+     * <p>
+     * The graph must not be modified until the animation starts.
+     * </p>
+     * 
+     * @param hops Size of the relaxed region, in hops from the new vertices.
+     */
+    public void updateLayout(final int hops) {
+        SwingUtilities.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                if (layoutType == YGVisualisationLayouts.RADIAL_TREE) {
+                    updateTreeLayout();
+                } else {
+                    updateIterativeLayout(hops);
+                }
+            }
+        });
+    }
+
+    /**
+     * Starts the incremental layout of new vertices. Must be called on the Event Dispatch Thread.
+     * 
+     * @param hops Size of the relaxed region.
+     */
+    private void updateIterativeLayout(final int hops) {
+        if (layoutWorker != null) {
+            // a full layout still running would fight with the incremental one
+            layoutWorker.cancel();
+        }
+        final Layout<YGVertex, YGEdge> current = vv.getGraphLayout();
+        final Map<YGVertex, Point2D> known = new HashMap<YGVertex, Point2D>();
+        for (final YGVertex v : graph.getVertices()) {
+            if (placed.contains(v)) {
+                final Point2D p = current.transform(v);
+                known.put(v, new Point2D.Double(p.getX(), p.getY()));
+            }
+        }
+        placed.retainAll(known.keySet());
+        final YGIncrementalLayout incremental =
+                new YGIncrementalLayout(graph, known, layoutSize, hops);
+        if (!incremental.hasAdded()) {
+            return;
+        }
+        placed.addAll(graph.getVertices());
+
+        final Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                incremental.compute();
+                SwingUtilities.invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        animate(incremental.getStartLayout(), incremental.getEndLayout());
+                        YGLayoutCache.getInstance().store(graph, layoutType, layoutSize,
+                                incremental.getEndLayout());
+                    }
+                });
+            }
+        }, "YGIncrementalLayout");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    /**
+     * Rebuilds the tree and radial layouts and animates the shown one. Must be called on the Event
+     * Dispatch Thread.
+     */
+    private void updateTreeLayout() {
+        final Layout<YGVertex, YGEdge> current = vv.getGraphLayout();
+        final StaticLayout<YGVertex, YGEdge> start =
+                new StaticLayout<YGVertex, YGEdge>(graph, layoutSize);
+        for (final YGVertex v : graph.getVertices()) {
+            start.setLocation(v, current.transform(v));
+        }
+        radialLayout = new RadialTreeLayout<YGVertex, YGEdge>(graph);
+        radialLayout.setSize(layoutSize);
+        rings.update();
+        treeLayout = new TreeLayout<YGVertex, YGEdge>(graph, 100, 100);
+        placed.addAll(graph.getVertices());
+        if (radialShown) {
+            animate(start, radialLayout);
+        } else {
+            animate(start, treeLayout);
+        }
+    }
+
+    /**
+     * Animates the viewer from one layout to another.
+     * 
+     * @param start The starting layout.
+     * @param end The final layout.
+     */
+    private void animate(final Layout<YGVertex, YGEdge> start, final Layout<YGVertex, YGEdge> end) {
+        final LayoutTransition<YGVertex, YGEdge> lt =
+                new LayoutTransition<YGVertex, YGEdge>(vv, start, end) {
+                    @Override
+                    public void step() {
+                        super.step();
+                        // let the spatial index of YGCullingRenderer follow the moving vertices
+                        final Layout<YGVertex, YGEdge> displayed = vv.getGraphLayout();
+                        if (displayed instanceof ChangeEventSupport) {
+                            ((ChangeEventSupport) displayed).fireStateChanged();
+                        }
+                    }
+                };
+        final Animator animator = new Animator(lt);
+        animator.start();
+    }
+
+    /**
+     * Sets up the renderer and the colour, stroke, shape and label transformers of a visualisation
+     * server, so that a {@link YGGraph} gets drawn the same way on the screen and in images.
+     * 
+     * @param vs The visualisation server (a viewer or an image server).
+     * @param renderer The renderer to use.
+     */
+    static void configure(final BasicVisualizationServer<YGVertex, YGEdge> vs,
+            final YGCullingRenderer renderer) {
+        vs.setRenderer(renderer);
+        vs.getRenderContext().setVertexFillPaintTransformer(YGDisplay.getVertexPaint());
+        vs.getRenderContext().setVertexStrokeTransformer(
+                renderer.decorateStroke(YGDisplay.getVertexStrokeTransformer()));
+        vs.getRenderContext().setVertexShapeTransformer(
+                renderer.decorateVertexShape(YGDisplay.getVertexShapeTransformer()));
+        vs.getRenderContext().setEdgeStrokeTransformer(
+                renderer.decorateStroke(YGDisplay.getEdgeStrokeTransformer()));
+        vs.getRenderContext().setEdgeDrawPaintTransformer(YGDisplay.getEdgeDrawPaintTransformer());
+        vs.getRenderContext().setVertexLabelTransformer(new ToStringLabeller<YGVertex>());
+        vs.getRenderContext().setEdgeLabelTransformer(new ToStringLabeller<YGEdge>());
+        vs.getRenderer().getVertexLabelRenderer().setPosition(Position.CNTR);
+        vs.setBackground(Color.WHITE);
+    }
+
+    /**
+     * Creates and shows the {@link JFrame} holding the viewer, then starts the background layout
+     * computation (if any). Must be called on the Event Dispatch Thread.
+     * 
+     * @param ygd The YGDisplay instance
+     * @param l The layout type.
+     */
+    private static void showFrame(final YGDisplay ygd, final YGVisualisationLayouts l) {
+        final VisualizationViewer<YGVertex, YGEdge> vv = ygd.vv;
+        final JFrame frame = new JFrame("YGGraph: " + ygd.graph.toString());
+        frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        final GraphZoomScrollPane panel = new GraphZoomScrollPane(vv);
+        final Container content = frame.getContentPane();
+        content.add(panel);
+
+        @SuppressWarnings("rawtypes")
+        final DefaultModalGraphMouse graphMouse = new DefaultModalGraphMouse();
+        vv.setGraphMouse(graphMouse);
+
+        if (l == YGVisualisationLayouts.RADIAL_TREE) {
+            YGDisplay.addControls(ygd, content);
+        } else if (ygd.layoutWorker != null) {
+            YGDisplay.addLayoutControls(ygd, content);
+        }
+
+        frame.pack();
+        frame.setVisible(true);
+
+        if (ygd.layoutWorker != null) {
+            ygd.layoutWorker.start();
+        }
+    }
+
+    /**
+     * Invokes the in-class defined colour for edge visualisation.
+     * 
+     * @return the transformer object
+     */
+    private static Transformer<YGEdge, Paint> getEdgeDrawPaintTransformer() {
+        return new Transformer<YGEdge, Paint>() {
+            @Override
+            public Paint transform(final YGEdge i) {
+                return i.getDisplayColor();
+            }
+        };
+    }
+
+    /**
+     * Invokes the in-class defined stroke for edge visualisation.
+     * 
+     * @return the transformer object
+     */
+    private static Transformer<YGEdge, Stroke> getEdgeStrokeTransformer() {
+        return new Transformer<YGEdge, Stroke>() {
+            @Override
+            public Stroke transform(final YGEdge s) {
+                return s.getDisplayStroke();
+            }
+        };
+    }
+
+    /**
+     * Invokes the in-class defined Shape for vertex visualisation.
+     * 
+     * @return the transformer object
+     */
+    private static Transformer<YGVertex, Shape> getVertexShapeTransformer() {
+        return new Transformer<YGVertex, Shape>() {
+            @Override
+            public Shape transform(final YGVertex s) {
+                return s.getDisplayShape();
+            }
+        };
+    }
+
+    /**
+     * Invokes the in-class defined Stroke for vertex visualisation.
+     * 
+     * @return the transformer object
+     */
+    private static Transformer<YGVertex, Stroke> getVertexStrokeTransformer() {
+        return new Transformer<YGVertex, Stroke>() {
+            @Override
+            public Stroke transform(final YGVertex s) {
+                return s.getDisplayStroke();
+            }
+        };
+    }
+
+    /**
+     * Invokes the in-class defined colour for vertex visualisation.
+     * 
+     * @return the transformer object
+     */
+    private static Transformer<YGVertex, Paint> getVertexPaint() {
+        // Setup up a new vertex to paint transformer...
+        return new Transformer<YGVertex, Paint>() {
+            @Override
+            public Paint transform(final YGVertex i) {
+                return i.getDisplayColor();
+            }
+        };
+    }
+
+    /**
+     * Creates and returns a listener for the layout toggeling button.
+     * 
+     * @param ygd The YGDisplay instance
+     * @return the layout item listener
+     */
+    private static ItemListener getLayoutItemListener(final YGDisplay ygd) {
+        return new ItemListener() {
+            @Override
+            public void itemStateChanged(final ItemEvent e) {
+                ygd.radialShown = (e.getStateChange() == ItemEvent.SELECTED);
+                if (ygd.radialShown) {
+
+                    final LayoutTransition<YGVertex, YGEdge> lt =
+                            new LayoutTransition<YGVertex, YGEdge>(ygd.vv, ygd.treeLayout,
+                                    ygd.radialLayout);
+                    final Animator animator = new Animator(lt);
+                    animator.start();
+                    ygd.vv.getRenderContext().getMultiLayerTransformer().setToIdentity();
+                    ygd.vv.addPreRenderPaintable(ygd.rings);
+                } else {
+                    final LayoutTransition<YGVertex, YGEdge> lt =
+                            new LayoutTransition<YGVertex, YGEdge>(ygd.vv, ygd.radialLayout,
+                                    ygd.treeLayout);
+                    final Animator animator = new Animator(lt);
+                    animator.start();
+                    ygd.vv.getRenderContext().getMultiLayerTransformer().setToIdentity();
+                    ygd.vv.removePreRenderPaintable(ygd.rings);
+                }
+                ygd.vv.repaint();
+            }
+        };
+    }
+
+    /**
+     * Adds display controls (zoom-in, zoom-out, etc.) at the bottom of the container.
+     * 
+     * @param ygd The YGDisplay instance
+     * @param content The container
+     */
+    private static void addControls(final YGDisplay ygd, final Container content) {
+
+        final ScalingControl scaler = new CrossoverScalingControl();
+        final JButton plus = new JButton("+");
+        plus.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(final ActionEvent e) {
+                scaler.scale(ygd.vv, 1.1f, ygd.vv.getCenter());
+            }
+        });
+        final JButton minus = new JButton("-");
+        minus.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(final ActionEvent e) {
+                scaler.scale(ygd.vv, 1 / 1.1f, ygd.vv.getCenter());
+            }
+        });
+
+        final JToggleButton radial = new JToggleButton("Radial");
+        radial.addItemListener(YGDisplay.getLayoutItemListener(ygd));
+
+        final JPanel controls = new JPanel();
+        final JPanel scaleGrid = new JPanel(new GridLayout(1, 0));
+        scaleGrid.setBorder(BorderFactory.createTitledBorder("Zoom"));
+        scaleGrid.add(plus);
+        scaleGrid.add(minus);
+        controls.add(radial);
+        controls.add(scaleGrid);
+        content.add(controls, BorderLayout.SOUTH);
+    }
+
+    /**
+     * Adds a "Good enough" button at the bottom of the container, which stops the background
+     * layout computation and keeps the current vertex positions.
+     * 
+     * @param ygd The YGDisplay instance
+     * @param content The container
+     */
+    private static void addLayoutControls(final YGDisplay ygd, final Container content) {
+        final JButton stop = new JButton("Good enough");
+        stop.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(final ActionEvent e) {
+                ygd.layoutWorker.cancel();
+                stop.setEnabled(false);
+            }
+        });
+        ygd.stopButton = stop;
+
+        final JPanel controls = new JPanel();
+        controls.add(stop);
+        content.add(controls, BorderLayout.SOUTH);
+    }
+
+    /**
+     * Displays sample graph. Use it for quick testing.
+     */
+    public static void testDisplay() {
+        // Graph<V, E> where V is the type of the vertices and E is the type of the edges
+        final YGGraph ygg = new YGGraph(YGGraphTypes.FOREST);// SPARSE_DIRECTED
+
+        final YGVertex a = new YGVertex("az");
+        final YGVertex b = new YGVertex("sam");
+        final YGVertex c = new YGVertex("mnogo");
+        final YGVertex d = new YGVertex("silno");
+        final YGVertex e = new YGVertex("dobiche");
+        final YGVertex f = new YGVertex("rogato");
+        final YGVertex g = new YGVertex("zabato");
+
+        ygg.addVertex(a);
+        ygg.addVertex(b);
+        ygg.addVertex(c);
+        ygg.addVertex(d);
+        ygg.addVertex(e);
+        ygg.addVertex(f);
+        ygg.addVertex(g);
+
+        ygg.addEdge(new YGEdge("podlog"), b, a);
+        ygg.addEdge(new YGEdge("sastoianie"), b, e);
+        ygg.addEdge(new YGEdge("poiasnenie"), d, e);
+        ygg.addEdge(new YGEdge("kolichesto"), c, d);
+        ygg.addEdge(new YGEdge("poiasnenie"), f, e);
+        ygg.addEdge(new YGEdge("poiasnenie"), g, e);
+        ygg.addEdge(new YGEdge("vrashtane"), e, g);
+        // ygg.addEdge(new YGEdge("podlog"), b, a, EdgeType.DIRECTED);
+        // ygg.addEdge(new YGEdge("sastoianie"), b, e, EdgeType.DIRECTED);
+        // ygg.addEdge(new YGEdge("poiasnenie"), d, e, EdgeType.DIRECTED);
+        // ygg.addEdge(new YGEdge("kolichesto"), c, d, EdgeType.DIRECTED);
+        // ygg.addEdge(new YGEdge("poiasnenie"), f, e, EdgeType.DIRECTED);
+        // ygg.addEdge(new YGEdge("poiasnenie"), g, e, EdgeType.DIRECTED);
+        // ygg.addEdge(new YGEdge("vrashtane"), e, g, EdgeType.DIRECTED);
+
+        YGDisplay.display(ygg, 400, 400, YGVisualisationLayouts.FR);
+    }
+
+    /**
+     * A main() for testing purposes. Calls {@link YGDisplay#testDisplay()} method.
+     * 
+     * @param args All args will be ignored.
+     */
+    public static void main(final String[] args) {
+        YGDisplay.testDisplay();
+    }
+
+    /**
+     * Rings are circles displayed in background when <code>RadialTreeLayout</code> is used.
+     * 
+     * @author Dimo Vanchev
+     */
+    private class Rings implements VisualizationServer.Paintable {
+
+        /** internally used PollarPoint coordinates for the rings */
+        private Collection<Double> depths;
+
+        /**
+         * Default and only constructor.
+         */
+        protected Rings() {
+            depths = getDepths();
+        }
+
+        /**
+         * Recomputes the depths after the radial layout was replaced.
+         */
+        protected void update() {
+            depths = getDepths();
+        }
+
+        /**
+         * Depths are internally used PollarPoint coordinates for the rings
+         * 
+         * @return the depths
+         */
+        private Collection<Double> getDepths() {
+            final Set<Double> depths = new HashSet<Double>();
+            final Map<YGVertex, PolarPoint> polarLocations = radialLayout.getPolarLocations();
+            final Collection<YGVertex> c = graph.getVertices();
+            for (final YGVertex v : c) {
+                final PolarPoint pp = polarLocations.get(v);
+                depths.add(pp.getRadius());
+            }
+            return depths;
+        }
+
+        @Override
+        public void paint(final Graphics g) {
+            g.setColor(Color.lightGray);
+
+            final Graphics2D g2d = (Graphics2D) g;
+            final Point2D center = radialLayout.getCenter();
+
+            final Ellipse2D ellipse = new Ellipse2D.Double();
+            for (final double d : depths) {
+                ellipse.setFrameFromDiagonal(center.getX() - d, center.getY() - d,
+                        center.getX() + d, center.getY() + d);
+                final Shape shape = vv.getRenderContext().getMultiLayerTransformer()
+                        .getTransformer(Layer.LAYOUT).transform(ellipse);
+                g2d.draw(shape);
+            }
+        }
+
+        @Override
+        public boolean useTransform() {
+            return true;
+        }
+    }
+
+}
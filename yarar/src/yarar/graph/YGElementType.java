@@ -1,9 +1,9 @@
-package yarar.graph;
-
-/** Graph element types - i.e. vertex or edge. */
-enum YGElementType {
-    /** Vertex */
-    V,
-    /** Edge */
-    E
+package yarar.graph;
+
+/** Graph element types - i.e. vertex or edge. */
+enum YGElementType {
+    /** Vertex */
+    V,
+    /** Edge */
+    E
 }
\ No newline at end of file
@@ -0,0 +1,413 @@
+package yarar.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.uci.ics.jung.graph.util.EdgeType;
+import edu.uci.ics.jung.graph.util.Pair;
+
+import yarar.rikai.ClassLogger;
+import yarar.rikai.Logger;
+import yarar.rikai.RikaiLevel;
+import yarar.tietokanta.Feldtyp;
+import yarar.tietokanta.KopioMuoto;
+import yarar.tietokanta.Kysely;
+import yarar.tietokanta.Tietokanta;
+import yarar.tietokanta.TypeValuePair;
+
+/**
+ * Saves {@link YGGraph}s to the database and loads them back.
+ * <p>
+ * Graphs are stored by name in two tables, by default:
+ * </p>
+ * 
+ * <pre>
+ * CREATE TABLE yg_vertex (graph VARCHAR(100), id VARCHAR(200), parent VARCHAR(200),
+ *         parent_edge VARCHAR(200), PRIMARY KEY (graph, id));
+ * CREATE INDEX yg_vertex_parent ON yg_vertex (graph, parent);
+ * CREATE TABLE yg_edge (graph VARCHAR(100), id VARCHAR(200), source VARCHAR(200),
+ *         dest VARCHAR(200), directed SMALLINT, PRIMARY KEY (graph, id));
+ * </pre>
+ * <p>
+ * Elements are identified by the text of their internal IDs, which must therefore be unique
+ * within a graph. In a {@link YGGraphTypes#FOREST} graph, each vertex row also holds the IDs of
+ * its parent vertex and parent edge, so that a whole subtree is loaded by a single recursive query
+ * ({@link #loadSubtree(String, String)}). Loaded elements are plain {@link YGVertex} and
+ * {@link YGEdge} objects.
+ * </p>
+ * <p>
+ * The store remembers the rows of each graph it saved or loaded. The next {@link #save(String,
+ * YGGraph)} of that graph only deletes the rows of removed or changed elements and inserts those of
+ * added or changed ones; the rest is not touched. Inserts are sent in batches, or by
+ * <code>COPY</code> when the dialect supports it and there are many rows. Each save is a single
+ * transaction. The store is not thread-safe.
+ * </p>
+ * 
+ * @author Dimo Vanchev
+ */
+public final class YGGraphStore {
+
+    /** Leveled logger of this class. */
+    private static final ClassLogger LOG = Logger.getLogger(YGGraphStore.class);
+    /** Number of inserted rows from which <code>COPY</code> is used, if supported. */
+    private static final int COPY_ROWS = 10000;
+    /** Columns of the vertex table. */
+    private static final String[] VERTEX_COLUMNS = { "graph", "id", "parent", "parent_edge" };
+    /** Columns of the edge table. */
+    private static final String[] EDGE_COLUMNS = { "graph", "id", "source", "dest", "directed" };
+
+    /** The database. */
+    private final Tietokanta db;
+    /** Name of the vertex table. */
+    private final String vertexTable;
+    /** Name of the edge table. */
+    private final String edgeTable;
+    /** The vertex rows of each graph, by vertex ID, as last saved or loaded. */
+    private final Map<String, Map<String, Object[]>> savedVertices =
+            new HashMap<String, Map<String, Object[]>>();
+    /** The edge rows of each graph, by edge ID, as last saved or loaded. */
+    private final Map<String, Map<String, Object[]>> savedEdges =
+            new HashMap<String, Map<String, Object[]>>();
+
+    /**
+     * Creates a new store using the tables <code>yg_vertex</code> and <code>yg_edge</code>.
+     * 
+     * @param db The database.
+     */
+    public YGGraphStore(final Tietokanta db) {
+        this(db, "yg_vertex", "yg_edge");
+    }
+
+    /**
+     * Creates a new store.
+     * 
+     * @param db The database.
+     * @param vertexTable Name of the vertex table.
+     * @param edgeTable Name of the edge table.
+     */
+    public YGGraphStore(final Tietokanta db, final String vertexTable, final String edgeTable) {
+        this.db = db;
+        this.vertexTable = vertexTable;
+        this.edgeTable = edgeTable;
+    }
+
+    /**
+     * Saves a graph. The first save of a graph by this store replaces all its rows; later ones
+     * only write the elements changed since the last save or load.
+     * 
+     * @param name The name the graph is stored under.
+     * @param g The graph.
+     * @return the number of deleted and inserted rows, or -1 on errors, in which case nothing is
+     *         changed.
+     */
+    public int save(final String name, final YGGraph g) {
+        final Map<String, Object[]> vertices = getVertexRows(name, g);
+        final Map<String, Object[]> edges = getEdgeRows(name, g);
+        if ((vertices == null) || (edges == null)) {
+            return -1;
+        }
+
+        db.beginTransaction();
+        final int vertexCount = write(name, vertexTable, YGGraphStore.VERTEX_COLUMNS,
+                savedVertices.get(name), vertices);
+        final int edgeCount = (vertexCount < 0) ? -1 : write(name, edgeTable,
+                YGGraphStore.EDGE_COLUMNS, savedEdges.get(name), edges);
+        if (edgeCount < 0) {
+            db.rollback();
+            return -1;
+        }
+        db.commit();
+
+        savedVertices.put(name, vertices);
+        savedEdges.put(name, edges);
+        YGGraphStore.LOG.debug("Saved graph {}: {} rows written", name, vertexCount + edgeCount);
+        return vertexCount + edgeCount;
+    }
+
+    /**
+     * Loads a whole graph. A {@link YGGraphTypes#FOREST} is loaded by a single recursive query
+     * from its roots; other graphs by one query for the vertices and one for the edges.
+     * 
+     * @param name The name the graph is stored under.
+     * @param type The type of the created graph.
+     * @return the graph (empty if there is no such graph), or <code>null</code> on errors.
+     */
+    public YGGraph load(final String name, final YGGraphTypes type) {
+        if (type == YGGraphTypes.FOREST) {
+            return loadForest(name, "parent IS NULL", new TypeValuePair[] {
+                    new TypeValuePair(Feldtyp.STRING, name),
+                    new TypeValuePair(Feldtyp.STRING, name) });
+        }
+
+        final YGGraph g = new YGGraph(type);
+        final Map<String, YGVertex> vertices = new HashMap<String, YGVertex>();
+        final Map<String, Object[]> vertexRows = new LinkedHashMap<String, Object[]>();
+        final Map<String, Object[]> edgeRows = new LinkedHashMap<String, Object[]>();
+        final TypeValuePair[] values = { new TypeValuePair(Feldtyp.STRING, name) };
+
+        try (final Kysely kysely = new Kysely("SELECT id FROM " + vertexTable
+                + " WHERE graph = ?")) {
+            if (!execute(kysely, values)) {
+                return null;
+            }
+            while (kysely.goNext()) {
+                final String id = (String) kysely.getFieldAs(1, Feldtyp.STRING);
+                final YGVertex v = new YGVertex(id);
+                vertices.put(id, v);
+                g.addVertex(v);
+                vertexRows.put(id, new Object[] { name, id, null, null });
+            }
+        }
+
+        try (final Kysely kysely = new Kysely("SELECT id, source, dest, directed FROM " + edgeTable
+                + " WHERE graph = ?")) {
+            if (!execute(kysely, values)) {
+                return null;
+            }
+            while (kysely.goNext()) {
+                final String id = (String) kysely.getFieldAs(1, Feldtyp.STRING);
+                final String source = (String) kysely.getFieldAs(2, Feldtyp.STRING);
+                final String dest = (String) kysely.getFieldAs(3, Feldtyp.STRING);
+                final Integer flag = (Integer) kysely.getFieldAs(4, Feldtyp.INTEGER);
+                final int directed = (flag != null) ? flag : 0;
+                g.addEdge(new YGEdge(id), vertices.get(source), vertices.get(dest),
+                        (directed != 0) ? YGGraph.EDGE_DIRECTED : YGGraph.EDGE_UNDIRECTED);
+                edgeRows.put(id, new Object[] { name, id, source, dest, directed });
+            }
+        }
+
+        savedVertices.put(name, vertexRows);
+        savedEdges.put(name, edgeRows);
+        return g;
+    }
+
+    /**
+     * Loads the subtree of a stored {@link YGGraphTypes#FOREST} graph below a vertex, by a single
+     * recursive query. The store does not remember the loaded rows, as they are only a part of the
+     * graph.
+     * 
+     * @param name The name the graph is stored under.
+     * @param rootID The ID of the subtree's root vertex.
+     * @return the subtree (empty if there is no such vertex), or <code>null</code> on errors.
+     */
+    public YGGraph loadSubtree(final String name, final String rootID) {
+        return loadForest(null, "id = ?", new TypeValuePair[] {
+                new TypeValuePair(Feldtyp.STRING, name),
+                new TypeValuePair(Feldtyp.STRING, rootID),
+                new TypeValuePair(Feldtyp.STRING, name) });
+    }
+
+    /**
+     * Forgets the rows of a graph, so that its next save replaces all of them.
+     * 
+     * @param name The name the graph is stored under.
+     */
+    public void forget(final String name) {
+        savedVertices.remove(name);
+        savedEdges.remove(name);
+    }
+
+    /**
+     * Loads forest vertices by a recursive query, parents before their children.
+     * 
+     * @param name The name whose rows are remembered, or <code>null</code> to remember nothing.
+     * @param start The condition of the starting vertices.
+     * @param values The parameters: graph name, those of <code>start</code>, graph name.
+     * @return the forest, or <code>null</code> on errors.
+     */
+    private YGGraph loadForest(final String name, final String start,
+            final TypeValuePair[] values) {
+        final String sql = db.getMurre().getRecursiveWith()
+                + "sub (id, parent, parent_edge, depth) AS (SELECT id, parent, parent_edge, 0 FROM "
+                + vertexTable + " WHERE graph = ? AND " + start
+                + " UNION ALL SELECT v.id, v.parent, v.parent_edge, s.depth + 1 FROM " + vertexTable
+                + " v JOIN sub s ON v.parent = s.id WHERE v.graph = ?)"
+                + " SELECT id, parent, parent_edge FROM sub ORDER BY depth";
+
+        final YGGraph g = new YGGraph(YGGraphTypes.FOREST);
+        final Map<String, YGVertex> vertices = new HashMap<String, YGVertex>();
+        final Map<String, Object[]> vertexRows = new LinkedHashMap<String, Object[]>();
+        final Map<String, Object[]> edgeRows = new LinkedHashMap<String, Object[]>();
+        try (final Kysely kysely = new Kysely(sql)) {
+            kysely.setReadOnly(true);
+            if (!execute(kysely, values)) {
+                return null;
+            }
+            while (kysely.goNext()) {
+                final String id = (String) kysely.getFieldAs(1, Feldtyp.STRING);
+                final String parentID = (String) kysely.getFieldAs(2, Feldtyp.STRING);
+                final String edgeID = (String) kysely.getFieldAs(3, Feldtyp.STRING);
+                final YGVertex v = new YGVertex(id);
+                final YGVertex parent = (parentID != null) ? vertices.get(parentID) : null;
+                if (parent == null) {
+                    // a root, or the root of the subtree
+                    g.addVertex(v);
+                } else {
+                    g.addEdge(new YGEdge(edgeID), parent, v, YGGraph.EDGE_DIRECTED);
+                    edgeRows.put(edgeID, new Object[] { name, edgeID, parentID, id, 1 });
+                }
+                vertices.put(id, v);
+                vertexRows.put(id, new Object[] { name, id, parentID, edgeID });
+            }
+        }
+
+        if (name != null) {
+            savedVertices.put(name, vertexRows);
+            savedEdges.put(name, edgeRows);
+        }
+        return g;
+    }
+
+    /**
+     * Prepares and executes a query.
+     * 
+     * @param kysely The query.
+     * @param values Its parameters.
+     * @return <code>true</code> if it returned a result.
+     */
+    private boolean execute(final Kysely kysely, final TypeValuePair[] values) {
+        db.prepareQuery(kysely);
+        if (!kysely.hasPreparedStatement()) {
+            return false;
+        }
+        db.doPreparedQuery(kysely, values);
+        return kysely.hasResult();
+    }
+
+    /**
+     * Writes the difference between the saved and the current rows of a table: deletes the rows
+     * which are gone or changed, then inserts the new and changed ones.
+     * 
+     * @param name The graph name.
+     * @param table The table.
+     * @param columns The columns; the first two are the graph name and the element ID.
+     * @param saved The saved rows, or <code>null</code> if unknown; all rows of the graph are then
+     *        replaced.
+     * @param current The current rows.
+     * @return the number of deleted and inserted rows, or -1 on errors.
+     */
+    private int write(final String name, final String table, final String[] columns,
+            final Map<String, Object[]> saved, final Map<String, Object[]> current) {
+        int count = 0;
+        final List<Object[]> inserts = new ArrayList<Object[]>();
+        if (saved == null) {
+            final List<Object[]> all = new ArrayList<Object[]>(1);
+            all.add(new Object[] { name });
+            count = db.executeBatch("DELETE FROM " + table + " WHERE graph = ?", all);
+            inserts.addAll(current.values());
+        } else {
+            final List<Object[]> deletes = new ArrayList<Object[]>();
+            for (final Map.Entry<String, Object[]> e : saved.entrySet()) {
+                final Object[] row = current.get(e.getKey());
+                if ((row == null) || !Arrays.equals(row, e.getValue())) {
+                    deletes.add(new Object[] { name, e.getKey() });
+                }
+            }
+            for (final Map.Entry<String, Object[]> e : current.entrySet()) {
+                if (!Arrays.equals(e.getValue(), saved.get(e.getKey()))) {
+                    inserts.add(e.getValue());
+                }
+            }
+            if (!deletes.isEmpty()) {
+                count = db.executeBatch("DELETE FROM " + table + " WHERE graph = ? AND id = ?",
+                        deletes);
+            }
+        }
+        if ((count < 0) || inserts.isEmpty()) {
+            return count;
+        }
+
+        long inserted;
+        if (db.getMurre().isCopySupported() && (inserts.size() >= YGGraphStore.COPY_ROWS)) {
+            inserted = db.copyIn(table, columns, KopioMuoto.CSV, YGGraphStore.toPairs(inserts));
+        } else {
+            inserted = db.insertBatch(table, columns, inserts);
+        }
+        return (inserted < 0) ? -1 : (int) (count + inserted);
+    }
+
+    /**
+     * Builds the vertex rows of a graph.
+     * 
+     * @param name The graph name.
+     * @param g The graph.
+     * @return the rows by vertex ID, or <code>null</code> if an ID is not unique.
+     */
+    private static Map<String, Object[]> getVertexRows(final String name, final YGGraph g) {
+        final boolean forest = (g.getGraphType() == YGGraphTypes.FOREST);
+        final Map<String, Object[]> rows = new LinkedHashMap<String, Object[]>();
+        for (final YGVertex v : g.getVertices()) {
+            final String id = YGLayoutCache.getID(v);
+            final YGEdge parentEdge = forest ? g.getParentEdge(v) : null;
+            final Object[] row = { name, id,
+                    (parentEdge != null) ? YGLayoutCache.getID(g.getParent(v)) : null,
+                    (parentEdge != null) ? YGLayoutCache.getID(parentEdge) : null };
+            if (rows.put(id, row) != null) {
+                YGGraphStore.LOG.log(RikaiLevel.ERROR,
+                        "Graph {} has more than one vertex with ID {}", name, id);
+                return null;
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Builds the edge rows of a graph.
+     * 
+     * @param name The graph name.
+     * @param g The graph.
+     * @return the rows by edge ID, or <code>null</code> if an ID is not unique.
+     */
+    private static Map<String, Object[]> getEdgeRows(final String name, final YGGraph g) {
+        final Map<String, Object[]> rows = new LinkedHashMap<String, Object[]>();
+        for (final YGEdge e : g.getEdges()) {
+            final String id = YGLayoutCache.getID(e);
+            final Pair<YGVertex> ends = g.getEndpoints(e);
+            final Object[] row = { name, id, YGLayoutCache.getID(ends.getFirst()),
+                    YGLayoutCache.getID(ends.getSecond()),
+                    (g.getEdgeType(e) == EdgeType.DIRECTED) ? 1 : 0 };
+            if (rows.put(id, row) != null) {
+                YGGraphStore.LOG.log(RikaiLevel.ERROR, "Graph {} has more than one edge with ID {}",
+                        name, id);
+                return null;
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Adapts rows of values to rows of {@link TypeValuePair}s, as they are iterated.
+     * 
+     * @param rows The rows.
+     * @return the iterator
+     */
+    private static Iterator<TypeValuePair[]> toPairs(final List<Object[]> rows) {
+        final Iterator<Object[]> it = rows.iterator();
+        return new Iterator<TypeValuePair[]>() {
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public TypeValuePair[] next() {
+                final Object[] row = it.next();
+                final TypeValuePair[] pairs = new TypeValuePair[row.length];
+                for (int i = 0; i < row.length; i++) {
+                    pairs[i] = new TypeValuePair(Feldtyp.OBJECT, row[i]);
+                }
+                return pairs;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+}
@@ -0,0 +1,9 @@
+package yarar.graph;
+
+/** Image formats supported by {@link YGImageRenderer}. */
+public enum YGImageFormat {
+    /** Portable Network Graphics - a raster image, rendered in tiles. */
+    PNG,
+    /** Scalable Vector Graphics - streamed element by element. */
+    SVG
+}
@@ -0,0 +1,584 @@
+package yarar.graph;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.Paint;
+import java.awt.Shape;
+import java.awt.Stroke;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.ImageIO;
+
+import edu.uci.ics.jung.algorithms.layout.FRLayout;
+import edu.uci.ics.jung.algorithms.layout.FRLayout2;
+import edu.uci.ics.jung.algorithms.layout.Layout;
+import edu.uci.ics.jung.algorithms.layout.StaticLayout;
+import edu.uci.ics.jung.algorithms.layout.TreeLayout;
+import edu.uci.ics.jung.algorithms.util.IterativeContext;
+import edu.uci.ics.jung.graph.util.Pair;
+import edu.uci.ics.jung.visualization.RenderContext;
+import edu.uci.ics.jung.visualization.VisualizationImageServer;
+
+/**
+ * Renders {@link YGGraph}s to images without opening any window, so it can be used on servers
+ * running with <code>java.awt.headless=true</code>. The graphs are drawn with the same colours,
+ * strokes and shapes as in {@link YGDisplay}.
+ * <p>
+ * PNG images are split in tiles of {@link #TILE_SIZE} pixels, which are rendered in parallel. SVG
+ * images are streamed element by element, without building a document in memory. Many graphs can
+ * be rendered concurrently by {@link #submit(YGGraph, int, int, YGVisualisationLayouts, YGImageFormat, File)}.
+ * </p>
+ * Typical usage:<br>
+ * <code>
+ * 	YGImageRenderer renderer = new YGImageRenderer(4);<br>
+ * 	Future&lt;File&gt; f = renderer.submit(graph, 2000, 2000, YGVisualisationLayouts.FR, YGImageFormat.PNG, file);<br>
+ * 	...<br>
+ * 	renderer.shutdown();<br>
+ * </code>
+ * 
+ * @author Dimo Vanchev
+ */
+public final class YGImageRenderer {
+
+    /** Width and height (in pixels) of the tiles PNG images are split in. */
+    public static final int TILE_SIZE = 1024;
+
+    /** Executes whole graph renderings. */
+    private final ExecutorService graphExecutor;
+    /** Executes tile renderings. Kept apart, so that graph tasks never wait for their own pool. */
+    private final ExecutorService tileExecutor;
+
+    /**
+     * Creates a new renderer. The tiles are rendered by a pool with one thread per available
+     * processor.
+     * 
+     * @param threads Number of graphs that can be rendered concurrently.
+     */
+    public YGImageRenderer(final int threads) {
+        graphExecutor = Executors.newFixedThreadPool(threads, new DaemonThreadFactory("YGImageRenderer"));
+        tileExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+                new DaemonThreadFactory("YGImageRenderer-tile"));
+    }
+
+    /**
+     * Schedules a graph to be rendered to a file.
+     * 
+     * @param g The graph.
+     * @param width Image width.
+     * @param height Image height.
+     * @param l The desired layout type.
+     * @param format The image format.
+     * @param file The file where the image is written.
+     * @return a {@link Future} returning the file once it is written.
+     */
+    public Future<File> submit(final YGGraph g, final int width, final int height,
+            final YGVisualisationLayouts l, final YGImageFormat format, final File file) {
+        return graphExecutor.submit(new Callable<File>() {
+            @Override
+            public File call() throws IOException {
+                write(g, width, height, l, format, file);
+                return file;
+            }
+        });
+    }
+
+    /**
+     * Renders a graph to a file on the calling thread (the tiles are still rendered in parallel).
+     * 
+     * @param g The graph.
+     * @param width Image width.
+     * @param height Image height.
+     * @param l The desired layout type.
+     * @param format The image format.
+     * @param file The file where the image is written.
+     * @throws IOException if an I/O error occurs.
+     */
+    public void write(final YGGraph g, final int width, final int height,
+            final YGVisualisationLayouts l, final YGImageFormat format, final File file)
+            throws IOException {
+        final OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+        try {
+            write(g, width, height, l, format, out);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Renders a graph to a stream on the calling thread (the tiles are still rendered in
+     * parallel). The stream is not closed.
+     * 
+     * @param g The graph.
+     * @param width Image width.
+     * @param height Image height.
+     * @param l The desired layout type.
+     * @param format The image format.
+     * @param out The stream where the image is written.
+     * @throws IOException if an I/O error occurs.
+     */
+    public void write(final YGGraph g, final int width, final int height,
+            final YGVisualisationLayouts l, final YGImageFormat format, final OutputStream out)
+            throws IOException {
+        switch (format) {
+            case SVG:
+                final Writer writer = new BufferedWriter(new OutputStreamWriter(out, "UTF-8"));
+                writeSVG(g, width, height, l, writer);
+                writer.flush();
+                break;
+            case PNG:
+            default:
+                ImageIO.write(renderImage(g, width, height, l), "png", out);
+                break;
+        }
+    }
+
+    /**
+     * Renders a graph to a raster image. The image is split in tiles, rendered in parallel.
+     * 
+     * @param g The graph.
+     * @param width Image width.
+     * @param height Image height.
+     * @param l The desired layout type.
+     * @return the image
+     * @throws IOException if the rendering of a tile fails or the thread is interrupted.
+     */
+    public BufferedImage renderImage(final YGGraph g, final int width, final int height,
+            final YGVisualisationLayouts l) throws IOException {
+        final Layout<YGVertex, YGEdge> layout = YGImageRenderer.computeLayout(g, width, height, l);
+        final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        // the spatial index is built once and then shared by all tiles
+        final YGCullingRenderer renderer = new YGCullingRenderer();
+
+        final List<Callable<Void>> tiles = new ArrayList<Callable<Void>>();
+        for (int y = 0; y < height; y += YGImageRenderer.TILE_SIZE) {
+            for (int x = 0; x < width; x += YGImageRenderer.TILE_SIZE) {
+                tiles.add(new Tile(layout, renderer, image, x, y,
+                        Math.min(YGImageRenderer.TILE_SIZE, width - x),
+                        Math.min(YGImageRenderer.TILE_SIZE, height - y)));
+            }
+        }
+
+        try {
+            for (final Future<Void> f : tileExecutor.invokeAll(tiles)) {
+                f.get();
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while rendering " + g);
+        } catch (final ExecutionException e) {
+            throw new IOException("Rendering of a tile failed", e.getCause());
+        }
+        return image;
+    }
+
+    /**
+     * Writes a graph as an SVG document. Elements are written one by one as they are visited, so
+     * the memory needed does not depend on the graph size. Edges are written as straight lines.
+     * 
+     * @param g The graph.
+     * @param width Image width.
+     * @param height Image height.
+     * @param l The desired layout type.
+     * @param out Where the document is written. Not closed by this method.
+     * @throws IOException if an I/O error occurs.
+     */
+    public void writeSVG(final YGGraph g, final int width, final int height,
+            final YGVisualisationLayouts l, final Writer out) throws IOException {
+        final Layout<YGVertex, YGEdge> layout = YGImageRenderer.computeLayout(g, width, height, l);
+        // only used for its (configured) render context
+        final VisualizationImageServer<YGVertex, YGEdge> server =
+                new VisualizationImageServer<YGVertex, YGEdge>(layout, new Dimension(width, height));
+        YGDisplay.configure(server, new YGCullingRenderer());
+        final RenderContext<YGVertex, YGEdge> rc = server.getRenderContext();
+
+        out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        out.write("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"" + width + "\" height=\""
+                + height + "\" font-family=\"sans-serif\" font-size=\"12\">\n");
+        out.write("<rect width=\"100%\" height=\"100%\" fill=\"#ffffff\"/>\n");
+
+        for (final YGEdge e : g.getEdges()) {
+            final Pair<YGVertex> ends = g.getEndpoints(e);
+            final Point2D p1 = layout.transform(ends.getFirst());
+            final Point2D p2 = layout.transform(ends.getSecond());
+            out.write("<line x1=\"" + YGImageRenderer.format(p1.getX()) + "\" y1=\""
+                    + YGImageRenderer.format(p1.getY()) + "\" x2=\""
+                    + YGImageRenderer.format(p2.getX()) + "\" y2=\""
+                    + YGImageRenderer.format(p2.getY()) + "\" fill=\"none\""
+                    + YGImageRenderer.strokeAttributes(
+                            rc.getEdgeDrawPaintTransformer().transform(e),
+                            rc.getEdgeStrokeTransformer().transform(e)) + "/>\n");
+            YGImageRenderer.writeLabel(out, rc.getEdgeLabelTransformer().transform(e),
+                    (p1.getX() + p2.getX()) / 2, (p1.getY() + p2.getY()) / 2);
+        }
+
+        for (final YGVertex v : g.getVertices()) {
+            final Point2D p = layout.transform(v);
+            final Shape shape = AffineTransform.getTranslateInstance(p.getX(), p.getY())
+                    .createTransformedShape(rc.getVertexShapeTransformer().transform(v));
+            out.write("<path d=\"" + YGImageRenderer.pathData(shape) + "\" fill=\""
+                    + YGImageRenderer.color(rc.getVertexFillPaintTransformer().transform(v)) + "\""
+                    + YGImageRenderer.strokeAttributes(
+                            rc.getVertexDrawPaintTransformer().transform(v),
+                            rc.getVertexStrokeTransformer().transform(v)) + "/>\n");
+            YGImageRenderer.writeLabel(out, rc.getVertexLabelTransformer().transform(v), p.getX(),
+                    p.getY());
+        }
+
+        out.write("</svg>\n");
+    }
+
+    /**
+     * Stops accepting new graphs. Already submitted ones are still rendered.
+     */
+    public void shutdown() {
+        graphExecutor.shutdown();
+        tileExecutor.shutdown();
+    }
+
+    /**
+     * Computes the layout of a graph in the calling thread and freezes the result, so that
+     * concurrent renderings only read it.
+     * 
+     * @param g The graph.
+     * @param width Layout width.
+     * @param height Layout height.
+     * @param l The desired layout type.
+     * @return a static layout holding the computed positions
+     */
+    static Layout<YGVertex, YGEdge> computeLayout(final YGGraph g, final int width,
+            final int height, final YGVisualisationLayouts l) {
+        final Dimension size = new Dimension(width, height);
+        Layout<YGVertex, YGEdge> layout = null;
+        if (l != YGVisualisationLayouts.RADIAL_TREE) {
+            layout = YGLayoutCache.getInstance().lookup(g, l, size);
+            if (layout instanceof StaticLayout) {
+                // exact cache hit, already frozen
+                return layout;
+            }
+        }
+        if (layout == null) {
+            switch (l) {
+                case RADIAL_TREE:
+                    layout = new TreeLayout<YGVertex, YGEdge>(g, 100, 100);
+                    break;
+                case FR:
+                    layout = new FRLayout<YGVertex, YGEdge>(g);
+                    break;
+                default:
+                    layout = new FRLayout2<YGVertex, YGEdge>(g);
+                    break;
+            }
+        }
+
+        if ((l != YGVisualisationLayouts.RADIAL_TREE) && !size.equals(layout.getSize())) {
+            layout.setSize(size);
+        }
+
+        if (layout instanceof IterativeContext) {
+            final IterativeContext process = (IterativeContext) layout;
+            while (!process.done()) {
+                process.step();
+            }
+        }
+
+        final StaticLayout<YGVertex, YGEdge> frozen = new StaticLayout<YGVertex, YGEdge>(g, size);
+        for (final YGVertex v : g.getVertices()) {
+            frozen.setLocation(v, layout.transform(v));
+        }
+        if (l != YGVisualisationLayouts.RADIAL_TREE) {
+            YGLayoutCache.getInstance().store(g, l, size, frozen);
+        }
+        return frozen;
+    }
+
+    /**
+     * Writes a text label centered at the specified point. Empty labels are skipped.
+     * 
+     * @param out The writer.
+     * @param label The label text.
+     * @param x The x coordinate.
+     * @param y The y coordinate.
+     * @throws IOException if an I/O error occurs.
+     */
+    private static void writeLabel(final Writer out, final String label, final double x,
+            final double y) throws IOException {
+        if ((label == null) || (label.length() == 0)) {
+            return;
+        }
+        out.write("<text x=\"" + YGImageRenderer.format(x) + "\" y=\"" + YGImageRenderer.format(y)
+                + "\" text-anchor=\"middle\" dominant-baseline=\"central\">"
+                + YGImageRenderer.escape(label) + "</text>\n");
+    }
+
+    /**
+     * Converts a stroke and its paint to SVG attributes.
+     * 
+     * @param paint The stroke paint.
+     * @param stroke The stroke, or <code>null</code> for the default solid one.
+     * @return the attributes, starting with a space
+     */
+    private static String strokeAttributes(final Paint paint, final Stroke stroke) {
+        final StringBuilder sb = new StringBuilder();
+        sb.append(" stroke=\"").append(YGImageRenderer.color(paint)).append('"');
+        if (stroke instanceof BasicStroke) {
+            final BasicStroke bs = (BasicStroke) stroke;
+            sb.append(" stroke-width=\"").append(YGImageRenderer.format(bs.getLineWidth()))
+                    .append('"');
+            final float[] dash = bs.getDashArray();
+            if (dash != null) {
+                sb.append(" stroke-dasharray=\"");
+                for (int i = 0; i < dash.length; i++) {
+                    if (i > 0) {
+                        sb.append(',');
+                    }
+                    sb.append(YGImageRenderer.format(dash[i]));
+                }
+                sb.append('"');
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Converts a shape to SVG path data.
+     * 
+     * @param shape The shape.
+     * @return the path data
+     */
+    private static String pathData(final Shape shape) {
+        final StringBuilder sb = new StringBuilder();
+        final double[] c = new double[6];
+        for (final PathIterator pi = shape.getPathIterator(null); !pi.isDone(); pi.next()) {
+            switch (pi.currentSegment(c)) {
+                case PathIterator.SEG_MOVETO:
+                    YGImageRenderer.appendSegment(sb, 'M', c, 2);
+                    break;
+                case PathIterator.SEG_LINETO:
+                    YGImageRenderer.appendSegment(sb, 'L', c, 2);
+                    break;
+                case PathIterator.SEG_QUADTO:
+                    YGImageRenderer.appendSegment(sb, 'Q', c, 4);
+                    break;
+                case PathIterator.SEG_CUBICTO:
+                    YGImageRenderer.appendSegment(sb, 'C', c, 6);
+                    break;
+                case PathIterator.SEG_CLOSE:
+                default:
+                    sb.append('Z');
+                    break;
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Appends a path segment.
+     * 
+     * @param sb Where the segment is appended.
+     * @param command The SVG path command.
+     * @param coords The coordinates.
+     * @param count How many of the coordinates are used.
+     */
+    private static void appendSegment(final StringBuilder sb, final char command,
+            final double[] coords, final int count) {
+        sb.append(command);
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                sb.append(' ');
+            }
+            sb.append(YGImageRenderer.format(coords[i]));
+        }
+    }
+
+    /**
+     * Converts a paint to an SVG colour. Only plain colours are supported, other paints become
+     * black.
+     * 
+     * @param paint The paint.
+     * @return the colour, e.g. <code>#ffff00</code>, or <code>none</code> for no paint.
+     */
+    private static String color(final Paint paint) {
+        if (paint == null) {
+            return "none";
+        }
+        final Color c = (paint instanceof Color) ? (Color) paint : Color.BLACK;
+        return String.format("#%02x%02x%02x", c.getRed(), c.getGreen(), c.getBlue());
+    }
+
+    /**
+     * Formats a coordinate with two decimal places at most.
+     * 
+     * @param d The coordinate.
+     * @return the formatted value
+     */
+    private static String format(final double d) {
+        final long l = Math.round(d * 100);
+        return ((l % 100) == 0) ? Long.toString(l / 100) : Double.toString(l / 100.0);
+    }
+
+    /**
+     * Escapes XML special characters.
+     * 
+     * @param s The text.
+     * @return the escaped text
+     */
+    private static String escape(final String s) {
+        final StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            final char ch = s.charAt(i);
+            switch (ch) {
+                case '&':
+                    sb.append("&amp;");
+                    break;
+                case '<':
+                    sb.append("&lt;");
+                    break;
+                case '>':
+                    sb.append("&gt;");
+                    break;
+                case '"':
+                    sb.append("&quot;");
+                    break;
+                default:
+                    sb.append(ch);
+                    break;
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Renders one tile of an image.
+     * 
+     * @author Dimo Vanchev
+     */
+    private static final class Tile implements Callable<Void> {
+        /** The frozen layout. */
+        private final Layout<YGVertex, YGEdge> layout;
+        /** The renderer shared by all tiles. */
+        private final YGCullingRenderer renderer;
+        /** The whole image. */
+        private final BufferedImage image;
+        /** Tile bounds within the image. */
+        private final int x, y, width, height;
+
+        /**
+         * Creates a new tile task.
+         * 
+         * @param layout The frozen layout.
+         * @param renderer The shared renderer.
+         * @param image The whole image.
+         * @param x Left edge of the tile.
+         * @param y Top edge of the tile.
+         * @param width Tile width.
+         * @param height Tile height.
+         */
+        private Tile(final Layout<YGVertex, YGEdge> layout, final YGCullingRenderer renderer,
+                final BufferedImage image, final int x, final int y, final int width,
+                final int height) {
+            this.layout = layout;
+            this.renderer = renderer;
+            this.image = image;
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+        }
+
+        @Override
+        public Void call() {
+            // each tile has its own server, as render contexts are not thread-safe
+            final TileServer server = new TileServer(layout,
+                    new Dimension(image.getWidth(), image.getHeight()));
+            YGDisplay.configure(server, renderer);
+            // tiles write to disjoint parts of the same raster
+            final Graphics2D g2d = image.getSubimage(x, y, width, height).createGraphics();
+            try {
+                g2d.translate(-x, -y);
+                g2d.clipRect(x, y, width, height);
+                server.renderTile(g2d);
+            } finally {
+                g2d.dispose();
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Image server exposing the rendering into a given graphics context.
+     * 
+     * @author Dimo Vanchev
+     */
+    @SuppressWarnings("serial")
+    private static final class TileServer extends VisualizationImageServer<YGVertex, YGEdge> {
+        /**
+         * Creates a new server.
+         * 
+         * @param layout The layout.
+         * @param size The size of the whole image.
+         */
+        private TileServer(final Layout<YGVertex, YGEdge> layout, final Dimension size) {
+            super(layout, size);
+        }
+
+        /**
+         * Renders the graph into the given graphics context, respecting its clip.
+         * 
+         * @param g2d The graphics context.
+         */
+        private void renderTile(final Graphics2D g2d) {
+            renderGraph(g2d);
+        }
+    }
+
+    /**
+     * Creates named daemon threads, so that idle renderers never keep the application alive.
+     * 
+     * @author Dimo Vanchev
+     */
+    private static final class DaemonThreadFactory implements ThreadFactory {
+        /** Prefix of the thread names. */
+        private final String name;
+        /** Number of created threads. */
+        private final AtomicInteger count = new AtomicInteger();
+
+        /**
+         * Creates a new factory.
+         * 
+         * @param name Prefix of the thread names.
+         */
+        private DaemonThreadFactory(final String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(final Runnable r) {
+            final Thread t = new Thread(r, name + "-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package yarar.graph;
+
+import java.awt.Dimension;
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.collections15.Transformer;
+
+import edu.uci.ics.jung.algorithms.layout.FRLayout;
+import edu.uci.ics.jung.algorithms.layout.StaticLayout;
+import edu.uci.ics.jung.graph.Graph;
+import edu.uci.ics.jung.graph.SparseMultigraph;
+import edu.uci.ics.jung.graph.util.Pair;
+
+/**
+ * Places vertices which were added to an already laid out graph, without touching the rest of the
+ * layout.
+ * <p>
+ * Each new vertex starts at the centre of its placed neighbours, and force iterations are then run
+ * only on the sub-graph formed by the new vertices and everything within {@link #hops} hops of
+ * them. The placed vertices inside that region are free to make room for the new ones; only the
+ * boundary of the region, the placed vertices with a neighbour outside it, is pinned, so the region
+ * stays attached to the rest of the layout, which is not touched at all. The cost is therefore
+ * proportional to the size of the change, not to the size of the graph.
+ * </p>
+ * <p>
+ * The result is given as a pair of layouts: {@link #getStartLayout()} holds the new vertices at
+ * their starting positions and {@link #getEndLayout()} the relaxed ones, so the change can be
+ * animated with a <code>LayoutTransition</code>.
+ * </p>
+ * 
+ * @author Dimo Vanchev
+ */
+final class YGIncrementalLayout {
+
+    /** Default size of the relaxed region, in hops from the new vertices. */
+    static final int DEFAULT_HOPS = 2;
+    /** Force iterations run on the relaxed region. */
+    private static final int ITERATIONS = 100;
+
+    /** The graph. */
+    private final YGGraph graph;
+    /** Positions of the already placed vertices. */
+    private final Map<YGVertex, Point2D> known;
+    /** The layout size. */
+    private final Dimension size;
+    /** Size of the relaxed region, in hops from the new vertices. */
+    private final int hops;
+    /** The vertices which have no position yet, in placing order. */
+    private final List<YGVertex> added = new ArrayList<YGVertex>();
+    /** Starting positions of the new vertices. */
+    private final Map<YGVertex, Point2D> start = new HashMap<YGVertex, Point2D>();
+    /** Gives the known or starting position of a vertex, see {@link #getPosition(YGVertex)}. */
+    private final Transformer<YGVertex, Point2D> positions = new Transformer<YGVertex, Point2D>() {
+        @Override
+        public Point2D transform(final YGVertex v) {
+            return getPosition(v);
+        }
+    };
+    /** The relaxed layout, set by {@link #compute()}. */
+    private StaticLayout<YGVertex, YGEdge> endLayout;
+
+    /**
+     * Creates a new incremental layout. The graph must not be modified until {@link #compute()}
+     * returns.
+     * 
+     * @param graph The graph.
+     * @param known Positions of the vertices which are already placed. All other vertices of the
+     *        graph are considered new.
+     * @param size The layout size.
+     * @param hops Size of the relaxed region, in hops from the new vertices.
+     */
+    YGIncrementalLayout(final YGGraph graph, final Map<YGVertex, Point2D> known,
+            final Dimension size, final int hops) {
+        this.graph = graph;
+        this.known = known;
+        this.size = size;
+        this.hops = hops;
+        for (final YGVertex v : graph.getVertices()) {
+            if (!known.containsKey(v)) {
+                added.add(v);
+            }
+        }
+        placeAdded();
+    }
+
+    /**
+     * Checks if there is anything to lay out.
+     * 
+     * @return <code>true</code> if the graph has vertices with no position.
+     */
+    boolean hasAdded() {
+        return !added.isEmpty();
+    }
+
+    /**
+     * Runs the force iterations on the region around the new vertices. Runs in the calling thread.
+     */
+    void compute() {
+        final Set<YGVertex> region = getRegion();
+        final Graph<YGVertex, YGEdge> sub = new SparseMultigraph<YGVertex, YGEdge>();
+        for (final YGVertex v : region) {
+            sub.addVertex(v);
+        }
+        for (final YGVertex v : region) {
+            for (final YGEdge e : graph.getIncidentEdges(v)) {
+                final Pair<YGVertex> ends = graph.getEndpoints(e);
+                if (!sub.containsEdge(e) && region.contains(ends.getFirst())
+                        && region.contains(ends.getSecond())) {
+                    sub.addEdge(e, ends.getFirst(), ends.getSecond());
+                }
+            }
+        }
+
+        final FRLayout<YGVertex, YGEdge> fr = new FRLayout<YGVertex, YGEdge>(sub);
+        fr.setMaxIterations(YGIncrementalLayout.ITERATIONS);
+        fr.setSize(size);
+        fr.setInitializer(positions);
+        for (final YGVertex v : getBoundary(region)) {
+            fr.lock(v, true);
+        }
+        while (!fr.done()) {
+            fr.step();
+        }
+
+        final StaticLayout<YGVertex, YGEdge> end = new StaticLayout<YGVertex, YGEdge>(graph, size);
+        for (final YGVertex v : graph.getVertices()) {
+            end.setLocation(v, region.contains(v) ? fr.transform(v) : getPosition(v));
+        }
+        endLayout = end;
+    }
+
+    /**
+     * Gets a layout with the already placed vertices at their positions and the new ones at their
+     * starting positions, next to their neighbours.
+     * 
+     * @return the starting layout
+     */
+    StaticLayout<YGVertex, YGEdge> getStartLayout() {
+        final StaticLayout<YGVertex, YGEdge> layout =
+                new StaticLayout<YGVertex, YGEdge>(graph, size);
+        for (final YGVertex v : graph.getVertices()) {
+            layout.setLocation(v, getPosition(v));
+        }
+        return layout;
+    }
+
+    /**
+     * Gets the relaxed layout.
+     * 
+     * @return the layout computed by {@link #compute()}, or <code>null</code> before that.
+     */
+    StaticLayout<YGVertex, YGEdge> getEndLayout() {
+        return endLayout;
+    }
+
+    /**
+     * Gets the known or starting position of a vertex.
+     * 
+     * @param v The vertex.
+     * @return its position
+     */
+    private Point2D getPosition(final YGVertex v) {
+        final Point2D p = known.get(v);
+        return (p != null) ? p : start.get(v);
+    }
+
+    /**
+     * Computes the starting positions of the new vertices. A new vertex starts at the centre of its
+     * placed neighbours; chains of new vertices are therefore placed outwards from the existing
+     * graph. Vertices with no placed neighbour at all start around the layout centre.
+     */
+    private void placeAdded() {
+        final List<YGVertex> pending = new ArrayList<YGVertex>(added);
+        final List<YGVertex> order = new ArrayList<YGVertex>(added.size());
+        boolean progress = true;
+        while (!pending.isEmpty() && progress) {
+            progress = false;
+            for (int i = 0; i < pending.size(); i++) {
+                final YGVertex v = pending.get(i);
+                final Point2D p = YGLayoutCache.getNeighbourCentre(graph, v, positions);
+                if (p != null) {
+                    start.put(v, YGLayoutCache.jitter(p));
+                    order.add(pending.remove(i--));
+                    progress = true;
+                }
+            }
+        }
+        for (final YGVertex v : pending) {
+            start.put(v, YGLayoutCache.jitter(new Point2D.Double(size.getWidth() / 2,
+                    size.getHeight() / 2)));
+            order.add(v);
+        }
+        added.clear();
+        added.addAll(order);
+    }
+
+    /**
+     * Collects the new vertices and all vertices within {@link #hops} hops of them.
+     * 
+     * @return the region
+     */
+    private Set<YGVertex> getRegion() {
+        final Set<YGVertex> region = new LinkedHashSet<YGVertex>(added);
+        Set<YGVertex> frontier = new HashSet<YGVertex>(added);
+        for (int i = 0; (i < hops) && !frontier.isEmpty(); i++) {
+            final Set<YGVertex> next = new HashSet<YGVertex>();
+            for (final YGVertex v : frontier) {
+                for (final YGVertex n : graph.getNeighbors(v)) {
+                    if (region.add(n)) {
+                        next.add(n);
+                    }
+                }
+            }
+            frontier = next;
+        }
+        return region;
+    }
+
+    /**
+     * Collects the placed vertices of the region which have a neighbour outside of it. When the
+     * region covers whole components there is no such vertex, and all placed vertices of the region
+     * are returned instead, so the components do not drift away from where they were.
+     * 
+     * @param region The region.
+     * @return the vertices to pin
+     */
+    private Set<YGVertex> getBoundary(final Set<YGVertex> region) {
+        final Set<YGVertex> boundary = new HashSet<YGVertex>();
+        final Set<YGVertex> placed = new HashSet<YGVertex>();
+        for (final YGVertex v : region) {
+            if (known.containsKey(v)) {
+                placed.add(v);
+                if (!region.containsAll(graph.getNeighbors(v))) {
+                    boundary.add(v);
+                }
+            }
+        }
+        return boundary.isEmpty() ? placed : boundary;
+    }
+}
@@ -0,0 +1,487 @@
+package yarar.graph;
+
+import java.awt.Dimension;
+import java.awt.geom.Point2D;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.commons.collections15.Transformer;
+
+import edu.uci.ics.jung.algorithms.layout.AbstractLayout;
+import edu.uci.ics.jung.algorithms.layout.FRLayout;
+import edu.uci.ics.jung.algorithms.layout.FRLayout2;
+import edu.uci.ics.jung.algorithms.layout.Layout;
+import edu.uci.ics.jung.algorithms.layout.StaticLayout;
+import edu.uci.ics.jung.graph.util.Pair;
+
+/**
+ * Cache of computed vertex positions, so that displaying a graph that was already displayed does
+ * not require computing its layout again.
+ * <p>
+ * Positions are stored per graph structure, layout type and size. The graph structure is
+ * identified by a fingerprint of the internal IDs of its vertices and edges, so equal graphs built
+ * from new vertex objects still hit the cache. The most recently used {@link #DEFAULT_CAPACITY}
+ * entries are kept in memory; optionally, entries are also written to a directory (see
+ * {@link #setDirectory(File)}).
+ * </p>
+ * <p>
+ * When there is no entry for the exact structure, but a cached entry contains almost all vertices
+ * (see {@link #NEAR_HIT_RATIO}), the layout is seeded from it: the known vertices are locked at
+ * their cached positions and only the new ones are relaxed, for {@link #SEEDED_ITERATIONS}
+ * iterations.
+ * </p>
+ * 
+ * @author Dimo Vanchev
+ */
+public final class YGLayoutCache {
+
+    /** Default number of entries kept in memory. */
+    public static final int DEFAULT_CAPACITY = 32;
+    /** Minimal ratio of known vertices for seeding a layout from a cached entry. */
+    public static final double NEAR_HIT_RATIO = 0.9;
+    /** Iterations run by seeded layouts. */
+    public static final int SEEDED_ITERATIONS = 50;
+    /** Suffix of the cache files. */
+    private static final String FILE_SUFFIX = ".ygl";
+    /** Maximal random offset of a starting position, so new vertices do not overlap. */
+    private static final double JITTER = 20;
+
+    /** The single instance of this class. */
+    private static YGLayoutCache selfInstance;
+
+    /** The in-memory entries, in access order. */
+    private final LinkedHashMap<String, Map<String, Point2D>> entries;
+    /** Maximal number of in-memory entries. */
+    private volatile int capacity = YGLayoutCache.DEFAULT_CAPACITY;
+    /** Directory for the cache files, or <code>null</code> if entries are kept only in memory. */
+    private volatile File directory;
+    /** Writes the cache files in background, so that displaying is never delayed by disk I/O. */
+    private final ExecutorService diskWriter;
+
+    /** Singleton private constructor. */
+    private YGLayoutCache() {
+        entries = new LinkedHashMap<String, Map<String, Point2D>>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Map<String, Point2D>> e) {
+                return size() > capacity;
+            }
+        };
+        diskWriter = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable r) {
+                final Thread t = new Thread(r, "YGLayoutCache");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * Singleton instance getter.
+     * 
+     * @return The single instance of this class.
+     */
+    public static synchronized YGLayoutCache getInstance() {
+        if (YGLayoutCache.selfInstance == null) {
+            YGLayoutCache.selfInstance = new YGLayoutCache();
+        }
+        return YGLayoutCache.selfInstance;
+    }
+
+    /**
+     * Sets the maximal number of entries kept in memory.
+     * 
+     * @param capacity The capacity.
+     */
+    public void setCapacity(final int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Sets a directory where entries are stored, so they survive restarts.
+     * 
+     * @param directory The directory, or <code>null</code> to keep entries only in memory.
+     */
+    public void setDirectory(final File directory) {
+        if ((directory != null) && !directory.isDirectory() && !directory.mkdirs()) {
+            throw new IllegalArgumentException("Cannot create cache directory: " + directory);
+        }
+        this.directory = directory;
+    }
+
+    /**
+     * Removes all in-memory entries. Cache files are kept.
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Looks up a layout for a graph.
+     * 
+     * @param g The graph.
+     * @param l The layout type.
+     * @param size The layout size.
+     * @return <ul>
+     *         <li>a {@link StaticLayout} with the cached positions, if the graph structure is
+     *         cached;</li>
+     *         <li>a seeded iterative layout, which still needs to be run, if a cached entry
+     *         contains almost all vertices;</li>
+     *         <li><code>null</code> otherwise.</li>
+     *         </ul>
+     */
+    public Layout<YGVertex, YGEdge> lookup(final YGGraph g, final YGVisualisationLayouts l,
+            final Dimension size) {
+        final String key = YGLayoutCache.getKey(g, l, size);
+        Map<String, Point2D> positions;
+        synchronized (this) {
+            positions = entries.get(key);
+        }
+        if (positions == null) {
+            positions = readFile(key);
+            if (positions != null) {
+                synchronized (this) {
+                    entries.put(key, positions);
+                }
+            }
+        }
+        if (positions != null) {
+            final StaticLayout<YGVertex, YGEdge> layout = new StaticLayout<YGVertex, YGEdge>(g, size);
+            for (final YGVertex v : g.getVertices()) {
+                final Point2D p = positions.get(YGLayoutCache.getID(v));
+                // a file written for another graph with the same key may lack a vertex
+                layout.setLocation(v, (p != null) ? p
+                        : YGLayoutCache.getNeighbourCentre(g, v, positions, size));
+            }
+            return layout;
+        }
+
+        positions = findNearHit(g, YGLayoutCache.getKeyPrefix(l, size));
+        if (positions == null) {
+            return null;
+        }
+        return YGLayoutCache.seed(g, l, size, positions);
+    }
+
+    /**
+     * Stores the positions of a computed layout. Nothing is stored for a graph whose vertices do
+     * not all have distinct IDs.
+     * 
+     * @param g The graph.
+     * @param l The layout type.
+     * @param size The layout size.
+     * @param layout The computed layout.
+     */
+    public void store(final YGGraph g, final YGVisualisationLayouts l, final Dimension size,
+            final Layout<YGVertex, YGEdge> layout) {
+        final String key = YGLayoutCache.getKey(g, l, size);
+        final Map<String, Point2D> positions =
+                new HashMap<String, Point2D>(g.getVertexCount() * 2);
+        for (final YGVertex v : g.getVertices()) {
+            final Point2D p = layout.transform(v);
+            positions.put(YGLayoutCache.getID(v), new Point2D.Double(p.getX(), p.getY()));
+        }
+        if (positions.size() != g.getVertexCount()) {
+            // vertices sharing an ID cannot be told apart, so their positions cannot be restored
+            return;
+        }
+        final Map<String, Point2D> entry = Collections.unmodifiableMap(positions);
+        synchronized (this) {
+            entries.put(key, entry);
+        }
+        if (directory != null) {
+            diskWriter.execute(new Runnable() {
+                @Override
+                public void run() {
+                    writeFile(key, entry);
+                }
+            });
+        }
+    }
+
+    /**
+     * Finds the in-memory entry containing most of the graph's vertices.
+     * 
+     * @param g The graph.
+     * @param prefix Key prefix identifying the layout type and size.
+     * @return the positions, or <code>null</code> if no entry has at least {@link #NEAR_HIT_RATIO}
+     *         of the vertices.
+     */
+    private synchronized Map<String, Point2D> findNearHit(final YGGraph g, final String prefix) {
+        final int needed = (int) Math.ceil(g.getVertexCount() * YGLayoutCache.NEAR_HIT_RATIO);
+        Map<String, Point2D> best = null;
+        int bestCount = needed - 1;
+        for (final Map.Entry<String, Map<String, Point2D>> e : entries.entrySet()) {
+            if (!e.getKey().startsWith(prefix)) {
+                continue;
+            }
+            int count = 0;
+            for (final YGVertex v : g.getVertices()) {
+                if (e.getValue().containsKey(YGLayoutCache.getID(v))) {
+                    count++;
+                }
+            }
+            if (count > bestCount) {
+                best = e.getValue();
+                bestCount = count;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Creates an iterative layout seeded from cached positions. Known vertices are locked; new ones
+     * start at the centre of their known neighbours (or at the layout centre if there are none).
+     * 
+     * @param g The graph.
+     * @param l The layout type.
+     * @param size The layout size.
+     * @param positions The cached positions.
+     * @return the seeded layout
+     */
+    private static Layout<YGVertex, YGEdge> seed(final YGGraph g, final YGVisualisationLayouts l,
+            final Dimension size, final Map<String, Point2D> positions) {
+        AbstractLayout<YGVertex, YGEdge> layout;
+        if (l == YGVisualisationLayouts.FR) {
+            final FRLayout<YGVertex, YGEdge> fr = new FRLayout<YGVertex, YGEdge>(g);
+            fr.setMaxIterations(YGLayoutCache.SEEDED_ITERATIONS);
+            layout = fr;
+        } else {
+            final FRLayout2<YGVertex, YGEdge> fr = new FRLayout2<YGVertex, YGEdge>(g);
+            fr.setMaxIterations(YGLayoutCache.SEEDED_ITERATIONS);
+            layout = fr;
+        }
+        layout.setSize(size);
+        layout.setInitializer(new Transformer<YGVertex, Point2D>() {
+            @Override
+            public Point2D transform(final YGVertex v) {
+                final Point2D p = positions.get(YGLayoutCache.getID(v));
+                if (p != null) {
+                    return p;
+                }
+                return YGLayoutCache.getNeighbourCentre(g, v, positions, size);
+            }
+        });
+        for (final YGVertex v : g.getVertices()) {
+            if (positions.containsKey(YGLayoutCache.getID(v))) {
+                layout.lock(v, true);
+            }
+        }
+        return layout;
+    }
+
+    /**
+     * Gets the centre of the known neighbours of a vertex, slightly jittered so that several new
+     * vertices do not end up on the same spot.
+     * 
+     * @param g The graph.
+     * @param v The vertex.
+     * @param positions The known positions.
+     * @param size The layout size, its centre is used if no neighbour is known.
+     * @return the starting position
+     */
+    static Point2D getNeighbourCentre(final YGGraph g, final YGVertex v,
+            final Map<String, Point2D> positions, final Dimension size) {
+        final Point2D centre = YGLayoutCache.getNeighbourCentre(g, v,
+                new Transformer<YGVertex, Point2D>() {
+                    @Override
+                    public Point2D transform(final YGVertex n) {
+                        return positions.get(YGLayoutCache.getID(n));
+                    }
+                });
+        return YGLayoutCache.jitter((centre != null) ? centre
+                : new Point2D.Double(size.getWidth() / 2, size.getHeight() / 2));
+    }
+
+    /**
+     * Gets the centre of the positioned neighbours of a vertex.
+     * 
+     * @param g The graph.
+     * @param v The vertex.
+     * @param positions Gives the position of a vertex, or <code>null</code> if it has none.
+     * @return the centre, or <code>null</code> if no neighbour has a position.
+     */
+    static Point2D getNeighbourCentre(final YGGraph g, final YGVertex v,
+            final Transformer<YGVertex, Point2D> positions) {
+        double x = 0;
+        double y = 0;
+        int count = 0;
+        for (final YGVertex n : g.getNeighbors(v)) {
+            final Point2D p = positions.transform(n);
+            if (p != null) {
+                x += p.getX();
+                y += p.getY();
+                count++;
+            }
+        }
+        return (count == 0) ? null : new Point2D.Double(x / count, y / count);
+    }
+
+    /**
+     * Moves a point by a small random offset.
+     * 
+     * @param p The point.
+     * @return the moved point
+     */
+    static Point2D jitter(final Point2D p) {
+        return new Point2D.Double(p.getX() + ((Math.random() - 0.5) * YGLayoutCache.JITTER),
+                p.getY() + ((Math.random() - 0.5) * YGLayoutCache.JITTER));
+    }
+
+    /**
+     * Gets the cache key of a graph.
+     * 
+     * @param g The graph.
+     * @param l The layout type.
+     * @param size The layout size.
+     * @return the key
+     */
+    private static String getKey(final YGGraph g, final YGVisualisationLayouts l,
+            final Dimension size) {
+        return YGLayoutCache.getKeyPrefix(l, size) + Long.toHexString(YGLayoutCache.getFingerprint(g))
+                + "_" + g.getVertexCount() + "_" + g.getEdgeCount();
+    }
+
+    /**
+     * Gets the part of the cache key identifying the layout type and size.
+     * 
+     * @param l The layout type.
+     * @param size The layout size.
+     * @return the key prefix
+     */
+    private static String getKeyPrefix(final YGVisualisationLayouts l, final Dimension size) {
+        return l.name() + "_" + size.width + "x" + size.height + "_";
+    }
+
+    /**
+     * Computes an order-independent fingerprint of the graph structure.
+     * 
+     * @param g The graph.
+     * @return the fingerprint
+     */
+    private static long getFingerprint(final YGGraph g) {
+        long fp = 0;
+        for (final YGVertex v : g.getVertices()) {
+            fp += YGLayoutCache.mix(YGLayoutCache.getID(v).hashCode());
+        }
+        for (final YGEdge e : g.getEdges()) {
+            final Pair<YGVertex> ends = g.getEndpoints(e);
+            long h = YGLayoutCache.mix(YGLayoutCache.getID(e).hashCode());
+            h = YGLayoutCache.mix(h ^ YGLayoutCache.getID(ends.getFirst()).hashCode());
+            h = YGLayoutCache.mix(h + (31L * YGLayoutCache.getID(ends.getSecond()).hashCode()));
+            fp += h;
+        }
+        return fp;
+    }
+
+    /**
+     * Spreads the bits of a hash (the finalisation step of MurmurHash3).
+     * 
+     * @param h The hash.
+     * @return the mixed hash
+     */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Gets the identifier of a graph element used by the cache.
+     * 
+     * @param element The element.
+     * @return its internal ID as string
+     */
+    static String getID(final YGAbstractElement element) {
+        return String.valueOf(element.internalID);
+    }
+
+    /**
+     * Reads cached positions from the cache directory.
+     * 
+     * @param key The cache key.
+     * @return the positions, or <code>null</code> if there is no directory or no such file.
+     */
+    private Map<String, Point2D> readFile(final String key) {
+        final File dir = directory;
+        if (dir == null) {
+            return null;
+        }
+        final File file = new File(dir, key + YGLayoutCache.FILE_SUFFIX);
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            final DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    new FileInputStream(file)));
+            try {
+                final int count = in.readInt();
+                final Map<String, Point2D> positions = new HashMap<String, Point2D>(count * 2);
+                for (int i = 0; i < count; i++) {
+                    positions.put(in.readUTF(), new Point2D.Double(in.readDouble(), in.readDouble()));
+                }
+                return Collections.unmodifiableMap(positions);
+            } finally {
+                in.close();
+            }
+        } catch (final IOException e) {
+            // a broken file is as good as a missing one
+            return null;
+        }
+    }
+
+    /**
+     * Writes positions to the cache directory. The file is written under a temporary name and
+     * then renamed, so readers never see partial files.
+     * 
+     * @param key The cache key.
+     * @param positions The positions.
+     */
+    private void writeFile(final String key, final Map<String, Point2D> positions) {
+        final File dir = directory;
+        if (dir == null) {
+            return;
+        }
+        final File tmp = new File(dir, key + YGLayoutCache.FILE_SUFFIX + ".tmp");
+        try {
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(tmp)));
+            try {
+                out.writeInt(positions.size());
+                for (final Map.Entry<String, Point2D> e : positions.entrySet()) {
+                    out.writeUTF(e.getKey());
+                    out.writeDouble(e.getValue().getX());
+                    out.writeDouble(e.getValue().getY());
+                }
+            } finally {
+                out.close();
+            }
+            final File file = new File(dir, key + YGLayoutCache.FILE_SUFFIX);
+            if (!tmp.renameTo(file)) {
+                file.delete();
+                tmp.renameTo(file);
+            }
+        } catch (final IOException e) {
+            // the cache is an optimisation only
+            tmp.delete();
+        }
+    }
+}
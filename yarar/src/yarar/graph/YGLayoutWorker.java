@@ -0,0 +1,192 @@
+package yarar.graph;
+
+import java.awt.geom.Point2D;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.swing.SwingUtilities;
+
+import edu.uci.ics.jung.algorithms.layout.AbstractLayout;
+import edu.uci.ics.jung.algorithms.layout.Layout;
+import edu.uci.ics.jung.algorithms.util.IterativeContext;
+import edu.uci.ics.jung.visualization.VisualizationViewer;
+import edu.uci.ics.jung.visualization.util.Caching;
+import edu.uci.ics.jung.visualization.util.ChangeEventSupport;
+
+/**
+ * Runs the iterations of an iterative layout (e.g. <code>FRLayout</code>) on a background thread,
+ * so that the window displaying the graph stays responsive while the layout is being computed.
+ * <p>
+ * The worker never lets the viewer read the layout it is stepping. Instead, at most once per
+ * {@link #frameInterval} milliseconds it copies the vertex positions into a snapshot, which is then
+ * applied on the Event Dispatch Thread to the layout the viewer actually displays. If the EDT has
+ * not yet consumed the previous snapshot, the newer one simply replaces it.
+ * </p>
+ * 
+ * @author Dimo Vanchev
+ */
+final class YGLayoutWorker implements Runnable {
+
+    /** Default minimal time (in milliseconds) between two snapshots - i.e. ~25 frames per second. */
+    static final long DEFAULT_FRAME_INTERVAL = 40L;
+
+    /** The layout which is being computed. */
+    private final Layout<YGVertex, YGEdge> source;
+    /** The iterative view of {@link #source}. */
+    private final IterativeContext process;
+    /** The layout displayed by the viewer; receives the snapshots. */
+    private final AbstractLayout<YGVertex, YGEdge> target;
+    /** The viewer that needs repainting after each applied snapshot. */
+    private final VisualizationViewer<YGVertex, YGEdge> vv;
+    /** Minimal time (in milliseconds) between two snapshots. */
+    private final long frameInterval;
+    /** Snapshot waiting to be applied on the EDT, or <code>null</code> if there is none. */
+    private final AtomicReference<Map<YGVertex, Point2D>> pending =
+            new AtomicReference<Map<YGVertex, Point2D>>();
+    /** Called on the EDT once the worker has finished (or was cancelled). May be <code>null</code>. */
+    private volatile Runnable onFinish;
+    /** Set by {@link #cancel()} when the current layout is "good enough". */
+    private volatile boolean cancelled = false;
+    /** The background thread. */
+    private Thread thread;
+
+    /**
+     * Creates a new layout worker.
+     * 
+     * @param source The iterative layout that needs computing. Must implement
+     *        {@link IterativeContext}.
+     * @param target The layout displayed by <code>vv</code>.
+     * @param vv The viewer.
+     * @param frameInterval Minimal time (in milliseconds) between two snapshots.
+     */
+    YGLayoutWorker(final Layout<YGVertex, YGEdge> source,
+            final AbstractLayout<YGVertex, YGEdge> target,
+            final VisualizationViewer<YGVertex, YGEdge> vv, final long frameInterval) {
+        if (!(source instanceof IterativeContext)) {
+            throw new IllegalArgumentException("Layout is not iterative: " + source);
+        }
+        this.source = source;
+        process = (IterativeContext) source;
+        this.target = target;
+        this.vv = vv;
+        this.frameInterval = frameInterval;
+    }
+
+    /**
+     * Sets a callback invoked on the EDT when the worker stops, either because the layout is done
+     * or because it was cancelled.
+     * 
+     * @param onFinish The callback. May be <code>null</code>.
+     */
+    void setOnFinish(final Runnable onFinish) {
+        this.onFinish = onFinish;
+    }
+
+    /**
+     * Starts the background computation. The thread is a daemon one, so it never keeps the
+     * application alive on its own.
+     */
+    synchronized void start() {
+        if (thread != null) {
+            return;
+        }
+        thread = new Thread(this, "YGLayoutWorker");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    /**
+     * Stops the computation after the current iteration. The last computed positions are pushed to
+     * the viewer, i.e. the current layout is accepted as "good enough".
+     */
+    void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Checks if the computation was cancelled, i.e. the layout may not be fully relaxed.
+     * 
+     * @return <code>true</code> once {@link #cancel()} has been called.
+     */
+    boolean wasCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Checks if the worker is still computing.
+     * 
+     * @return <code>true</code> while iterations are still running.
+     */
+    synchronized boolean isRunning() {
+        return (thread != null) && thread.isAlive();
+    }
+
+    @Override
+    public void run() {
+        long lastPush = System.currentTimeMillis();
+        while (!cancelled && !process.done()) {
+            process.step();
+            final long now = System.currentTimeMillis();
+            if ((now - lastPush) >= frameInterval) {
+                push();
+                lastPush = now;
+            }
+        }
+        push();
+        final Runnable callback = onFinish;
+        if (callback != null) {
+            SwingUtilities.invokeLater(callback);
+        }
+    }
+
+    /**
+     * Takes a snapshot of the current positions and schedules its application on the EDT, unless
+     * an earlier snapshot is still waiting there.
+     */
+    private void push() {
+        final Collection<YGVertex> vertices = source.getGraph().getVertices();
+        final Map<YGVertex, Point2D> snapshot = new HashMap<YGVertex, Point2D>(vertices.size() * 2);
+        // iterative JUNG layouts synchronise step() on themselves
+        synchronized (source) {
+            for (final YGVertex v : vertices) {
+                final Point2D p = source.transform(v);
+                snapshot.put(v, new Point2D.Double(p.getX(), p.getY()));
+            }
+        }
+        if (pending.getAndSet(snapshot) == null) {
+            SwingUtilities.invokeLater(new Runnable() {
+                @Override
+                public void run() {
+                    apply(pending.getAndSet(null));
+                }
+            });
+        }
+    }
+
+    /**
+     * Applies a snapshot to the displayed layout. Must be called on the EDT.
+     * 
+     * @param snapshot The positions to apply.
+     */
+    private void apply(final Map<YGVertex, Point2D> snapshot) {
+        if (snapshot == null) {
+            return;
+        }
+        for (final Map.Entry<YGVertex, Point2D> entry : snapshot.entrySet()) {
+            target.setLocation(entry.getKey(), entry.getValue());
+        }
+        // the viewer caches positions, so the cache must be dropped to see the new ones
+        final Layout<YGVertex, YGEdge> displayed = vv.getGraphLayout();
+        if (displayed instanceof Caching) {
+            ((Caching) displayed).clear();
+        }
+        // let listeners (e.g. the spatial index of YGCullingRenderer) know about the change
+        if (displayed instanceof ChangeEventSupport) {
+            ((ChangeEventSupport) displayed).fireStateChanged();
+        }
+        vv.repaint();
+    }
+}
@@ -0,0 +1,206 @@
+package yarar.graph;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A simple region quadtree, used as spatial index over graph element positions. Each item is
+ * stored together with its bounding box in the deepest node that fully contains the box, so both
+ * points (vertices) and rectangles (edges) can be indexed.
+ * <p>
+ * The tree is not thread-safe. It is meant to be built once per layout change and then queried on
+ * every repaint.
+ * </p>
+ * 
+ * @author Dimo Vanchev
+ * @param <T> The type of the indexed items.
+ */
+final class YGQuadTree<T> {
+
+    /** A node is split once it holds more than this number of items. */
+    private static final int MAX_ITEMS = 16;
+    /** Nodes at this depth are never split. */
+    private static final int MAX_DEPTH = 12;
+
+    /** The root node, covering the whole indexed area. */
+    private final Node root;
+    /** Number of indexed items. */
+    private int size = 0;
+
+    /**
+     * Creates a new empty quadtree.
+     * 
+     * @param bounds The area covered by the tree. Items outside of it are still accepted and kept
+     *        in the root node.
+     */
+    YGQuadTree(final Rectangle2D bounds) {
+        root = new Node(bounds, 0);
+    }
+
+    /**
+     * Adds an item to the tree.
+     * 
+     * @param item The item.
+     * @param box The bounding box of the item. For points, use a rectangle with zero width and
+     *        height.
+     */
+    void insert(final T item, final Rectangle2D box) {
+        root.insert(item, box);
+        size++;
+    }
+
+    /**
+     * Collects all items whose bounding boxes intersect the specified area.
+     * 
+     * @param area The searched area.
+     * @param result Collection where the found items will be added.
+     */
+    void query(final Rectangle2D area, final Collection<T> result) {
+        root.query(area, result);
+    }
+
+    /**
+     * Gets the number of indexed items.
+     * 
+     * @return The item count.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Checks whether two rectangles intersect. Unlike {@link Rectangle2D#intersects(Rectangle2D)},
+     * empty rectangles (i.e. points) are taken into account.
+     * 
+     * @param a The first rectangle.
+     * @param b The second rectangle.
+     * @return <code>true</code> if the rectangles have at least one common point.
+     */
+    private static boolean overlaps(final Rectangle2D a, final Rectangle2D b) {
+        return (a.getMinX() <= b.getMaxX()) && (b.getMinX() <= a.getMaxX())
+                && (a.getMinY() <= b.getMaxY()) && (b.getMinY() <= a.getMaxY());
+    }
+
+    /**
+     * Checks whether <code>outer</code> fully contains <code>inner</code>, borders included.
+     * 
+     * @param outer The outer rectangle.
+     * @param inner The inner rectangle.
+     * @return <code>true</code> if <code>inner</code> lies within <code>outer</code>.
+     */
+    private static boolean encloses(final Rectangle2D outer, final Rectangle2D inner) {
+        return (outer.getMinX() <= inner.getMinX()) && (inner.getMaxX() <= outer.getMaxX())
+                && (outer.getMinY() <= inner.getMinY()) && (inner.getMaxY() <= outer.getMaxY());
+    }
+
+    /**
+     * A quadtree node.
+     * 
+     * @author Dimo Vanchev
+     */
+    private final class Node {
+        /** The area covered by this node. */
+        private final Rectangle2D bounds;
+        /** Depth of the node, the root has depth 0. */
+        private final int depth;
+        /** Items held by this very node. */
+        private final List<T> items = new ArrayList<T>();
+        /** Bounding boxes of {@link #items}, at the same positions. */
+        private final List<Rectangle2D> boxes = new ArrayList<Rectangle2D>();
+        /** The four sub-nodes, or <code>null</code> while the node is a leaf. */
+        private List<Node> children;
+
+        /**
+         * Creates a new leaf node.
+         * 
+         * @param bounds The covered area.
+         * @param depth The depth of the node.
+         */
+        private Node(final Rectangle2D bounds, final int depth) {
+            this.bounds = bounds;
+            this.depth = depth;
+        }
+
+        /**
+         * Adds an item to this node or to one of its descendants.
+         * 
+         * @param item The item.
+         * @param box The item's bounding box.
+         */
+        private void insert(final T item, final Rectangle2D box) {
+            if (children != null) {
+                final Node child = childFor(box);
+                if (child != null) {
+                    child.insert(item, box);
+                    return;
+                }
+            }
+            items.add(item);
+            boxes.add(box);
+            if ((children == null) && (items.size() > MAX_ITEMS) && (depth < MAX_DEPTH)) {
+                split();
+            }
+        }
+
+        /**
+         * Collects all matching items of this node and its descendants.
+         * 
+         * @param area The searched area.
+         * @param result Where the found items go.
+         */
+        private void query(final Rectangle2D area, final Collection<T> result) {
+            for (int i = 0; i < items.size(); i++) {
+                if (overlaps(area, boxes.get(i))) {
+                    result.add(items.get(i));
+                }
+            }
+            if (children != null) {
+                for (final Node child : children) {
+                    if (overlaps(area, child.bounds)) {
+                        child.query(area, result);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Creates the four sub-nodes and moves down all items that fit in one of them.
+         */
+        private void split() {
+            final double w = bounds.getWidth() / 2;
+            final double h = bounds.getHeight() / 2;
+            final double x = bounds.getX();
+            final double y = bounds.getY();
+            children = new ArrayList<Node>(4);
+            children.add(new Node(new Rectangle2D.Double(x, y, w, h), depth + 1));
+            children.add(new Node(new Rectangle2D.Double(x + w, y, w, h), depth + 1));
+            children.add(new Node(new Rectangle2D.Double(x, y + h, w, h), depth + 1));
+            children.add(new Node(new Rectangle2D.Double(x + w, y + h, w, h), depth + 1));
+
+            final List<T> oldItems = new ArrayList<T>(items);
+            final List<Rectangle2D> oldBoxes = new ArrayList<Rectangle2D>(boxes);
+            items.clear();
+            boxes.clear();
+            for (int i = 0; i < oldItems.size(); i++) {
+                insert(oldItems.get(i), oldBoxes.get(i));
+            }
+        }
+
+        /**
+         * Finds the sub-node which fully contains a box.
+         * 
+         * @param box The bounding box.
+         * @return The sub-node, or <code>null</code> if the box does not fit in any of them.
+         */
+        private Node childFor(final Rectangle2D box) {
+            for (final Node child : children) {
+                if (encloses(child.bounds, box)) {
+                    return child;
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -1,9 +1,9 @@
-package yarar.graph;
-
-/** Supported stroke types. */
-enum YGStrokeType {
-    /** Solid Stroke type for <code>displayStroke</code>. */
-    SOLID,
-    /** Dashed Stroke type for <code>displayStroke</code>. */
-    DASHED
+package yarar.graph;
+
+/** Supported stroke types. */
+enum YGStrokeType {
+    /** Solid Stroke type for <code>displayStroke</code>. */
+    SOLID,
+    /** Dashed Stroke type for <code>displayStroke</code>. */
+    DASHED
 }
\ No newline at end of file
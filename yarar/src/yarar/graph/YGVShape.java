@@ -1,15 +1,15 @@
-package yarar.graph;
-
-/** The supported Shape types for vertex visualisation */
-public enum YGVShape {
-    /** display shape as a circle */
-    CIRCLE,
-    /** display shape as an ellipse */
-    ELLIPSE,
-    /** display shape as a triangle */
-    TRIANGLE,
-    /** display shape as a rectangle */
-    RECTANGLE,
-    /** default shape (currently set to ELLIPSE) */
-    DEFAULT
+package yarar.graph;
+
+/** The supported Shape types for vertex visualisation */
+public enum YGVShape {
+    /** display shape as a circle */
+    CIRCLE,
+    /** display shape as an ellipse */
+    ELLIPSE,
+    /** display shape as a triangle */
+    TRIANGLE,
+    /** display shape as a rectangle */
+    RECTANGLE,
+    /** default shape (currently set to ELLIPSE) */
+    DEFAULT
 }
\ No newline at end of file
@@ -1,11 +1,11 @@
-/**
- * The package contains utility classes for Graph manipulations.<br>
- * <b>Yarar</b> is a <a href="http://en.wikipedia.org/wiki/Turkish_language"
- * target="_blank">Turkish</a> word for <i>utility</i>.<br>
- * <b>Graph</b> is is an abstract representation of a set of objects where 
- * some pairs of the objects are connected by links. The interconnected 
- * objects are represented by mathematical abstractions called vertices, 
- * and the links that connect some pairs of vertices are called edges.<br>
- * All classes and interfaces within the package are prefixed with <b>YG</b>. 
- */
+/**
+ * The package contains utility classes for Graph manipulations.<br>
+ * <b>Yarar</b> is a <a href="http://en.wikipedia.org/wiki/Turkish_language"
+ * target="_blank">Turkish</a> word for <i>utility</i>.<br>
+ * <b>Graph</b> is is an abstract representation of a set of objects where 
+ * some pairs of the objects are connected by links. The interconnected 
+ * objects are represented by mathematical abstractions called vertices, 
+ * and the links that connect some pairs of vertices are called edges.<br>
+ * All classes and interfaces within the package are prefixed with <b>YG</b>. 
+ */
 package yarar.graph;
\ No newline at end of file
@@ -0,0 +1,208 @@
+package yarar.rikai;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hands log records over to a single background thread, which writes them to an appender. Logging
+ * threads only put a record in a {@link RikaiRingBuffer}, so they never wait for console or file
+ * I/O.
+ * <p>
+ * The writer thread drains up to {@link #BATCH_SIZE} records at a time and flushes the appender
+ * once per batch. When the buffer is empty it parks until a logging thread queues a record and
+ * unparks it; logging threads pay for the unpark only while the writer sleeps. When the buffer is
+ * full, records are handled according to the {@link RikaiOverflowPolicy}; every dropped record is
+ * counted (see {@link #getDroppedCount()}) and the writer reports the number of drops in the
+ * output. Once the writer thread is gone, records are dropped whatever the policy.
+ * </p>
+ * 
+ * @author Dimo Vanchev
+ */
+final class AsyncLogWriter implements Runnable {
+
+    /** Maximal number of records written between two flushes. */
+    private static final int BATCH_SIZE = 256;
+    /** How long a blocked logging thread waits before trying again. */
+    private static final long BLOCKED_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    /** How long {@link #close()} waits for the queued records to be written. */
+    private static final long CLOSE_TIMEOUT = 5000L;
+
+    /** The queued records. */
+    private final RikaiRingBuffer<RikaiRecord> buffer;
+    /** Where the records go. */
+    private final RikaiAppender appender;
+    /** What to do when {@link #buffer} is full. */
+    private final RikaiOverflowPolicy policy;
+    /** With {@link RikaiOverflowPolicy#SAMPLE}, one of this many records is kept on overflow. */
+    private final int sampleRate;
+    /** Number of dropped records. */
+    private final AtomicLong dropped = new AtomicLong();
+    /** Number of records which found the buffer full; used for sampling. */
+    private final AtomicLong overflows = new AtomicLong();
+    /** The writer thread. */
+    private final Thread thread;
+    /** Cleared by {@link #close()}, and when the writer thread ends. */
+    private volatile boolean running = true;
+    /** Set while the writer thread is parked, or about to park, on an empty buffer. */
+    private volatile boolean sleeping;
+
+    /**
+     * Creates and starts a new writer.
+     * 
+     * @param appender Where the records go.
+     * @param capacity The buffer capacity.
+     * @param policy What to do when the buffer is full.
+     * @param sampleRate With {@link RikaiOverflowPolicy#SAMPLE}, one of this many records is kept
+     *        on overflow.
+     */
+    AsyncLogWriter(final RikaiAppender appender, final int capacity,
+            final RikaiOverflowPolicy policy, final int sampleRate) {
+        buffer = new RikaiRingBuffer<RikaiRecord>(capacity);
+        this.appender = appender;
+        this.policy = policy;
+        this.sampleRate = Math.max(1, sampleRate);
+        thread = new Thread(this, "RikaiLogWriter");
+        thread.setDaemon(true);
+        thread.start();
+        // whatever is still queued at exit should not be lost
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                close();
+            }
+        }, "RikaiLogWriterShutdown"));
+    }
+
+    /**
+     * Queues a record. Returns immediately unless the buffer is full and the policy says to wait.
+     * 
+     * @param r The record.
+     */
+    void write(final RikaiRecord r) {
+        if (buffer.offer(r)) {
+            if (sleeping) {
+                LockSupport.unpark(thread);
+            }
+            return;
+        }
+        switch (policy) {
+            case DROP:
+                dropped.incrementAndGet();
+                return;
+            case SAMPLE:
+                if ((overflows.getAndIncrement() % sampleRate) != 0) {
+                    dropped.incrementAndGet();
+                    return;
+                }
+                break;
+            case BLOCK:
+            default:
+                break;
+        }
+        while (!buffer.offer(r)) {
+            if (!running) {
+                dropped.incrementAndGet();
+                return;
+            }
+            LockSupport.parkNanos(AsyncLogWriter.BLOCKED_NANOS);
+        }
+    }
+
+    /**
+     * Gets the number of records dropped because the buffer was full.
+     * 
+     * @return the drop count
+     */
+    long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Writes out all queued records and stops the writer thread.
+     */
+    void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join(AsyncLogWriter.CLOSE_TIMEOUT);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            drain();
+        } finally {
+            // blocked logging threads must not wait for a writer which is gone
+            running = false;
+            try {
+                appender.close();
+            } catch (final Throwable e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Writes the queued records until {@link #close()} is called and the buffer is empty.
+     */
+    private void drain() {
+        long reportedDrops = 0;
+        while (running || !buffer.isEmpty()) {
+            int count = 0;
+            RikaiRecord r;
+            while ((count < AsyncLogWriter.BATCH_SIZE) && ((r = buffer.poll()) != null)) {
+                append(r);
+                count++;
+            }
+            final long drops = dropped.get();
+            if (drops != reportedDrops) {
+                append(new RikaiRecord(RikaiLevel.WARN, Logger.class.getName(),
+                        (drops - reportedDrops) + " messages dropped, the log buffer was full",
+                        null));
+                reportedDrops = drops;
+                count++;
+            }
+            if (count > 0) {
+                flush();
+            } else if (running) {
+                sleeping = true;
+                // a record queued before the flag was visible is seen here
+                if (running && buffer.isEmpty()) {
+                    LockSupport.park(this);
+                }
+                sleeping = false;
+            }
+        }
+    }
+
+    /**
+     * Passes a record to the appender. A failing appender must not kill the writer thread.
+     * 
+     * @param r The record.
+     */
+    private void append(final RikaiRecord r) {
+        try {
+            appender.append(r);
+        } catch (final Throwable e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Flushes the appender. A failing appender must not kill the writer thread.
+     */
+    private void flush() {
+        try {
+            appender.flush();
+        } catch (final Throwable e) {
+            e.printStackTrace();
+        }
+    }
+}
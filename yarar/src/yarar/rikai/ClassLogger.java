@@ -0,0 +1,372 @@
+package yarar.rikai;
+
+/**
+ * Leveled logging on behalf of a class. Obtained by {@link Logger#getLogger(Class)} and meant to be
+ * kept in a static field:
+ * 
+ * <pre>
+ * private static final ClassLogger LOG = Logger.getLogger(Kysely.class);
+ * ...
+ * LOG.debug(&quot;Fetched {} rows in {} ms&quot;, rows, time);
+ * </pre>
+ * <p>
+ * The threshold of the class is resolved once, from the most specific
+ * <code>logging.level.&lt;package or class name&gt;</code> key of <code>config.properties</code>
+ * (<code>logging.level</code> for the default, which is <code>INFO</code>). A disabled call
+ * therefore costs a single comparison: the message is neither formatted nor built. The
+ * parameterized methods replace each <code>{}</code> in the pattern by the next argument; use the
+ * {@link MessageSupplier} variants for messages which need more work.
+ * </p>
+ * 
+ * @author Dimo Vanchev
+ */
+public final class ClassLogger {
+
+    /** Marks {@link #threshold} as not yet resolved. */
+    private static final int UNRESOLVED = -1;
+
+    /** The fully qualified name of the class. */
+    private final String name;
+    /**
+     * Ordinal of the lowest enabled {@link RikaiLevel}. Resolved on first use, so that loggers can
+     * be created in static initialisers before {@link Logger#getInstance()} is called. A racy
+     * resolution only computes the same value twice.
+     */
+    private int threshold = ClassLogger.UNRESOLVED;
+    /**
+     * The logger, resolved on first use like {@link #threshold}, so that enabled calls do not
+     * contend on the lock of {@link Logger#getInstance()}.
+     */
+    private volatile Logger logger;
+
+    /**
+     * Creates a new class logger.
+     * 
+     * @param name The fully qualified class name.
+     */
+    ClassLogger(final String name) {
+        this.name = name;
+    }
+
+    /**
+     * Checks if messages of a level are logged.
+     * 
+     * @param level The level.
+     * @return <code>true</code> if the level is enabled for this class.
+     */
+    public boolean isEnabled(final RikaiLevel level) {
+        int t = threshold;
+        if (t == ClassLogger.UNRESOLVED) {
+            t = getLogger().getThreshold(name).ordinal();
+            threshold = t;
+        }
+        return level.ordinal() >= t;
+    }
+
+    /**
+     * Gets the logger the messages go to.
+     * 
+     * @return the logger
+     */
+    private Logger getLogger() {
+        Logger l = logger;
+        if (l == null) {
+            l = Logger.getInstance();
+            logger = l;
+        }
+        return l;
+    }
+
+    /**
+     * @return <code>true</code> if {@link RikaiLevel#TRACE} messages are logged.
+     */
+    public boolean isTraceEnabled() {
+        return isEnabled(RikaiLevel.TRACE);
+    }
+
+    /**
+     * @return <code>true</code> if {@link RikaiLevel#DEBUG} messages are logged.
+     */
+    public boolean isDebugEnabled() {
+        return isEnabled(RikaiLevel.DEBUG);
+    }
+
+    /**
+     * Logs a message.
+     * 
+     * @param level The level.
+     * @param message The message.
+     */
+    public void log(final RikaiLevel level, final String message) {
+        if (isEnabled(level)) {
+            getLogger().log(level, name, message, null);
+        }
+    }
+
+    /**
+     * Logs a message with an exception.
+     * 
+     * @param level The level.
+     * @param message The message.
+     * @param e The exception.
+     */
+    public void log(final RikaiLevel level, final String message, final Throwable e) {
+        if (isEnabled(level)) {
+            getLogger().log(level, name, message, e);
+        }
+    }
+
+    /**
+     * Logs a message built on demand.
+     * 
+     * @param level The level.
+     * @param message Builds the message, only if the level is enabled.
+     */
+    public void log(final RikaiLevel level, final MessageSupplier message) {
+        if (isEnabled(level)) {
+            getLogger().log(level, name, message.get(), null);
+        }
+    }
+
+    /**
+     * Logs a parameterized message.
+     * 
+     * @param level The level.
+     * @param pattern The message pattern.
+     * @param arg Replaces the first <code>{}</code>.
+     */
+    public void log(final RikaiLevel level, final String pattern, final Object arg) {
+        if (isEnabled(level)) {
+            getLogger().log(level, name, ClassLogger.format(pattern, arg, null, null, 1), null);
+        }
+    }
+
+    /**
+     * Logs a parameterized message.
+     * 
+     * @param level The level.
+     * @param pattern The message pattern.
+     * @param arg1 Replaces the first <code>{}</code>.
+     * @param arg2 Replaces the second <code>{}</code>.
+     */
+    public void log(final RikaiLevel level, final String pattern, final Object arg1,
+            final Object arg2) {
+        if (isEnabled(level)) {
+            getLogger().log(level, name,
+                    ClassLogger.format(pattern, arg1, arg2, null, 2), null);
+        }
+    }
+
+    /**
+     * Logs a parameterized message. Unlike the one and two arguments variants, this one allocates
+     * an array on every call, even a disabled one.
+     * 
+     * @param level The level.
+     * @param pattern The message pattern.
+     * @param args Replace the <code>{}</code>s in order.
+     */
+    public void log(final RikaiLevel level, final String pattern, final Object... args) {
+        if (isEnabled(level)) {
+            getLogger().log(level, name,
+                    ClassLogger.format(pattern, null, null, args, args.length), null);
+        }
+    }
+
+    /**
+     * Logs a {@link RikaiLevel#TRACE} message.
+     * 
+     * @param message The message.
+     */
+    public void trace(final String message) {
+        log(RikaiLevel.TRACE, message);
+    }
+
+    /**
+     * Logs a {@link RikaiLevel#TRACE} message built on demand.
+     * 
+     * @param message Builds the message.
+     */
+    public void trace(final MessageSupplier message) {
+        log(RikaiLevel.TRACE, message);
+    }
+
+    /**
+     * Logs a parameterized {@link RikaiLevel#TRACE} message.
+     * 
+     * @param pattern The message pattern.
+     * @param arg Replaces the first <code>{}</code>.
+     */
+    public void trace(final String pattern, final Object arg) {
+        log(RikaiLevel.TRACE, pattern, arg);
+    }
+
+    /**
+     * Logs a parameterized {@link RikaiLevel#TRACE} message.
+     * 
+     * @param pattern The message pattern.
+     * @param arg1 Replaces the first <code>{}</code>.
+     * @param arg2 Replaces the second <code>{}</code>.
+     */
+    public void trace(final String pattern, final Object arg1, final Object arg2) {
+        log(RikaiLevel.TRACE, pattern, arg1, arg2);
+    }
+
+    /**
+     * Logs a {@link RikaiLevel#DEBUG} message.
+     * 
+     * @param message The message.
+     */
+    public void debug(final String message) {
+        log(RikaiLevel.DEBUG, message);
+    }
+
+    /**
+     * Logs a {@link RikaiLevel#DEBUG} message built on demand.
+     * 
+     * @param message Builds the message.
+     */
+    public void debug(final MessageSupplier message) {
+        log(RikaiLevel.DEBUG, message);
+    }
+
+    /**
+     * Logs a parameterized {@link RikaiLevel#DEBUG} message.
+     * 
+     * @param pattern The message pattern.
+     * @param arg Replaces the first <code>{}</code>.
+     */
+    public void debug(final String pattern, final Object arg) {
+        log(RikaiLevel.DEBUG, pattern, arg);
+    }
+
+    /**
+     * Logs a parameterized {@link RikaiLevel#DEBUG} message.
+     * 
+     * @param pattern The message pattern.
+     * @param arg1 Replaces the first <code>{}</code>.
+     * @param arg2 Replaces the second <code>{}</code>.
+     */
+    public void debug(final String pattern, final Object arg1, final Object arg2) {
+        log(RikaiLevel.DEBUG, pattern, arg1, arg2);
+    }
+
+    /**
+     * Logs an {@link RikaiLevel#INFO} message.
+     * 
+     * @param message The message.
+     */
+    public void info(final String message) {
+        log(RikaiLevel.INFO, message);
+    }
+
+    /**
+     * Logs a parameterized {@link RikaiLevel#INFO} message.
+     * 
+     * @param pattern The message pattern.
+     * @param arg Replaces the first <code>{}</code>.
+     */
+    public void info(final String pattern, final Object arg) {
+        log(RikaiLevel.INFO, pattern, arg);
+    }
+
+    /**
+     * Logs a parameterized {@link RikaiLevel#INFO} message.
+     * 
+     * @param pattern The message pattern.
+     * @param arg1 Replaces the first <code>{}</code>.
+     * @param arg2 Replaces the second <code>{}</code>.
+     */
+    public void info(final String pattern, final Object arg1, final Object arg2) {
+        log(RikaiLevel.INFO, pattern, arg1, arg2);
+    }
+
+    /**
+     * Logs a {@link RikaiLevel#WARN} message.
+     * 
+     * @param message The message.
+     */
+    public void warn(final String message) {
+        log(RikaiLevel.WARN, message);
+    }
+
+    /**
+     * Logs a {@link RikaiLevel#WARN} message with an exception.
+     * 
+     * @param message The message.
+     * @param e The exception.
+     */
+    public void warn(final String message, final Throwable e) {
+        log(RikaiLevel.WARN, message, e);
+    }
+
+    /**
+     * Logs a parameterized {@link RikaiLevel#WARN} message.
+     * 
+     * @param pattern The message pattern.
+     * @param arg Replaces the first <code>{}</code>.
+     */
+    public void warn(final String pattern, final Object arg) {
+        log(RikaiLevel.WARN, pattern, arg);
+    }
+
+    /**
+     * Logs a parameterized {@link RikaiLevel#WARN} message.
+     * 
+     * @param pattern The message pattern.
+     * @param arg1 Replaces the first <code>{}</code>.
+     * @param arg2 Replaces the second <code>{}</code>.
+     */
+    public void warn(final String pattern, final Object arg1, final Object arg2) {
+        log(RikaiLevel.WARN, pattern, arg1, arg2);
+    }
+
+    /**
+     * Logs an {@link RikaiLevel#ERROR} message.
+     * 
+     * @param message The message.
+     */
+    public void error(final String message) {
+        log(RikaiLevel.ERROR, message);
+    }
+
+    /**
+     * Logs an {@link RikaiLevel#ERROR} message with an exception.
+     * 
+     * @param message The message.
+     * @param e The exception.
+     */
+    public void error(final String message, final Throwable e) {
+        log(RikaiLevel.ERROR, message, e);
+    }
+
+    /**
+     * Replaces the <code>{}</code> placeholders of a pattern by arguments. Surplus placeholders are
+     * left as they are, surplus arguments are ignored.
+     * 
+     * @param pattern The pattern.
+     * @param arg1 The first argument, used if <code>args</code> is <code>null</code>.
+     * @param arg2 The second argument, used if <code>args</code> is <code>null</code>.
+     * @param args All arguments, or <code>null</code>.
+     * @param count Number of arguments.
+     * @return the message
+     */
+    static String format(final String pattern, final Object arg1, final Object arg2,
+            final Object[] args, final int count) {
+        final StringBuilder sb = new StringBuilder(pattern.length() + (16 * count));
+        int from = 0;
+        for (int i = 0; i < count; i++) {
+            final int at = pattern.indexOf("{}", from);
+            if (at < 0) {
+                break;
+            }
+            sb.append(pattern, from, at);
+            if (args != null) {
+                sb.append(args[i]);
+            } else {
+                sb.append((i == 0) ? arg1 : arg2);
+            }
+            from = at + 2;
+        }
+        return sb.append(pattern, from, pattern.length()).toString();
+    }
+}
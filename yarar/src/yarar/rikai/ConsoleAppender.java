@@ -0,0 +1,55 @@
+package yarar.rikai;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+/**
+ * Writes messages to the standard output and exception stack traces to the standard error stream,
+ * just like {@link System#out}.<code>println</code> and {@link Throwable#printStackTrace()} do.
+ * Messages of {@link ClassLogger}s are prefixed by their level and class.
+ * Records are collected until {@link #flush()}, so a whole batch costs a single write per stream.
+ * 
+ * @author Dimo Vanchev
+ */
+final class ConsoleAppender implements RikaiAppender {
+
+    /** Pending standard output. */
+    private final StringBuilder out = new StringBuilder();
+    /** Pending standard error output. */
+    private final StringWriter err = new StringWriter();
+    /** Writes stack traces into {@link #err}. */
+    private final PrintWriter errWriter = new PrintWriter(err);
+
+    @Override
+    public void append(final RikaiRecord r) {
+        if (r.getSource() != null) {
+            out.append('[').append(r.getLevel()).append("] ").append(r.getSource()).append(": ")
+                    .append(r.getMessage()).append(System.getProperty("line.separator"));
+        } else if (r.getMessage() != null) {
+            out.append(r.getMessage()).append(System.getProperty("line.separator"));
+        }
+        if (r.getError() != null) {
+            r.getError().printStackTrace(errWriter);
+        }
+    }
+
+    @Override
+    public void flush() {
+        if (out.length() > 0) {
+            System.out.print(out);
+            System.out.flush();
+            out.setLength(0);
+        }
+        errWriter.flush();
+        if (err.getBuffer().length() > 0) {
+            System.err.print(err.getBuffer());
+            System.err.flush();
+            err.getBuffer().setLength(0);
+        }
+    }
+
+    @Override
+    public void close() {
+        flush();
+    }
+}
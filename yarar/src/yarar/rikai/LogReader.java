@@ -0,0 +1,133 @@
+package yarar.rikai;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * Prints log files written by the file appender of {@link Logger} in readable form. The encoding
+ * of each file is recognised by its suffix; binary records are printed like the text encoding,
+ * text and JSON lines as they are. The unused end of segments which were not closed properly is
+ * skipped.
+ * <p>
+ * Usage: <code>java yarar.rikai.LogReader &lt;file&gt;...</code> - the files are printed in the
+ * order of their names, which is the order they were written in.
+ * </p>
+ * 
+ * @author Dimo Vanchev
+ */
+public final class LogReader {
+
+    /** Where the output goes. */
+    private final PrintStream out;
+    /** Formats the record times of binary files. */
+    private final SimpleDateFormat timeFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+
+    /**
+     * Creates a new reader.
+     * 
+     * @param out Where the output goes.
+     */
+    public LogReader(final PrintStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Prints the log files given as arguments to the standard output.
+     * 
+     * @param args The file names.
+     * @throws IOException if a file cannot be read.
+     */
+    public static void main(final String[] args) throws IOException {
+        final String[] files = args.clone();
+        Arrays.sort(files);
+        final LogReader reader = new LogReader(System.out);
+        for (final String f : files) {
+            reader.print(f);
+        }
+        System.out.flush();
+    }
+
+    /**
+     * Prints a log file.
+     * 
+     * @param fileName The file name.
+     * @throws IOException if the file cannot be read.
+     */
+    public void print(final String fileName) throws IOException {
+        final RandomAccessFile file = new RandomAccessFile(fileName, "r");
+        try {
+            final ByteBuffer data = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0,
+                    file.length());
+            if (RikaiEncoding.forFile(fileName) == RikaiEncoding.BINARY) {
+                printBinary(data);
+            } else {
+                printText(data);
+            }
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Prints text or JSON lines, up to the padding.
+     * 
+     * @param data The file content.
+     */
+    private void printText(final ByteBuffer data) {
+        int end = data.limit();
+        while ((end > 0) && (data.get(end - 1) == 0)) {
+            end--;
+        }
+        final byte[] b = new byte[end];
+        data.get(b);
+        out.print(new String(b, MappedFileAppender.UTF8));
+    }
+
+    /**
+     * Prints binary records, up to the padding.
+     * 
+     * @param data The file content.
+     */
+    private void printBinary(final ByteBuffer data) {
+        final RikaiLevel[] levels = RikaiLevel.values();
+        final StringBuilder sb = new StringBuilder(256);
+        while (data.remaining() >= 4) {
+            final int length = data.getInt();
+            if ((length <= 0) || (length > data.remaining())) {
+                break;
+            }
+            final long time = data.getLong();
+            final RikaiLevel level = levels[data.get()];
+            final String thread = LogReader.readString(data);
+            final String source = LogReader.readString(data);
+            final String message = LogReader.readString(data);
+            final String error = LogReader.readString(data);
+            sb.setLength(0);
+            MappedFileAppender.appendText(sb, timeFormat.format(new Date(time)), thread, level,
+                    source, message, error);
+            out.print(sb);
+        }
+    }
+
+    /**
+     * Reads a string of the binary encoding.
+     * 
+     * @param data The file content, positioned at the string.
+     * @return the string, may be <code>null</code>.
+     */
+    private static String readString(final ByteBuffer data) {
+        final int length = data.getInt();
+        if (length < 0) {
+            return null;
+        }
+        final byte[] b = new byte[length];
+        data.get(b);
+        return new String(b, MappedFileAppender.UTF8);
+    }
+}
@@ -1,110 +1,318 @@
-package yarar.rikai;
-
-/**
- * The class provides logging facilities.
- * 
- * @author Dimo Vanchev
- */
-public final class Logger {
-
-    /** The single instance of this class. */
-    private static Logger selfInstance;
-
-    /** Parser of application-level settings. */
-    private final ConfigParser cf;
-    /** Logging level, as defined in the application-level settings. */
-    private final String configLogging;
-    /** The logging level, see {@link RikaiLoggingLevel} enum. */
-    private final RikaiLoggingLevel rikaiLoggingLevel;
-
-    /**
-     * Singleton private constructor.
-     */
-    private Logger() {
-	Logger.selfInstance = this;
-	// loading properties from the the relevant properties file
-	cf = new ConfigParser("config.properties");
-	configLogging = cf.getValue("logging");
-
-	// determine logging level
-	if (configLogging.equals("console")) {
-	    rikaiLoggingLevel = RikaiLoggingLevel.CONSOLE;
-	} else {
-	    rikaiLoggingLevel = RikaiLoggingLevel.NONE;
-	}
-    }
-
-    /**
-     * Singleton instance getter.
-     * 
-     * @return The single instance of this class.
-     */
-    public static final Logger getInstance() {
-	if (Logger.selfInstance == null) {
-	    new Logger();
-	}
-
-	return Logger.selfInstance;
-    }
-
-    /**
-     * Logs a string.
-     * 
-     * @param str The String
-     */
-    public static void print(final String str) {
-	switch (Logger.selfInstance.rikaiLoggingLevel) {
-	    case CONSOLE:
-		System.out.println(str);
-		break;
-	    case NONE:
-	    default:
-		// do nothing
-		break;
-	}
-    }
-
-    /**
-     * Logs exception's stack trace.
-     * 
-     * @param e The Exception
-     */
-    public static void print(final Exception e) {
-	switch (Logger.selfInstance.rikaiLoggingLevel) {
-	    case CONSOLE:
-		e.printStackTrace();
-		break;
-	    case NONE:
-	    default:
-		// do nothing
-		break;
-	}
-    }
-
-    /**
-     * Logs a Object, by calling {@link Object#toString()} method.
-     * 
-     * @param o The Object
-     */
-    public static void print(final Object o) {
-	Logger.print(o.toString());
-    }
-
-    public static void treeBranchPrint(int deep, final String str) {
-	String d = "";
-	while (deep > 0) {
-	    d += "+ ";
-	    deep--;
-	}
-	d += str;
-	switch (Logger.selfInstance.rikaiLoggingLevel) {
-	    case CONSOLE:
-		System.out.println(d);
-		break;
-	    case NONE:
-	    default:
-		// do nothing
-		break;
-	}
-    }
-}
+package yarar.rikai;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The class provides logging facilities.
+ * <p>
+ * By default, messages are written asynchronously: the logging thread only queues them and a
+ * background {@link AsyncLogWriter} does the actual output, so logging adds no I/O latency to the
+ * caller. The following keys of <code>config.properties</code> control the logging:
+ * </p>
+ * <ul>
+ * <li><code>logging</code> - <code>console</code> to log to the console, <code>file</code> to log
+ * to files (see {@link MappedFileAppender}), anything else to disable logging;</li>
+ * <li><code>logging.file</code> - path and name prefix of the log files (default
+ * <code>{@value #DEFAULT_FILE}</code>);</li>
+ * <li><code>logging.file.size</code> - size of a log file in bytes, a new file is started when it
+ * is full (default 16 MB);</li>
+ * <li><code>logging.file.rotate</code> - maximal age of a log file in minutes (default 0, i.e.
+ * unlimited);</li>
+ * <li><code>logging.file.encoding</code> - <code>text</code> (default), <code>json</code> for JSON
+ * lines or <code>binary</code> for compact records, see {@link LogReader};</li>
+ * <li><code>logging.async</code> - <code>false</code> to write messages in the calling thread
+ * (default <code>true</code>);</li>
+ * <li><code>logging.buffer</code> - number of messages which can be queued (default
+ * {@value #DEFAULT_BUFFER});</li>
+ * <li><code>logging.overflow</code> - what to do when the queue is full: <code>block</code> the
+ * logging thread (default), <code>drop</code> the message or <code>sample</code>, i.e. keep one
+ * message out of <code>logging.sample</code> (default {@value #DEFAULT_SAMPLE}) and drop the
+ * others.</li>
+ * <li><code>logging.errors.limit</code> - how many exceptions with the same stack trace are logged
+ * per period (default {@value #DEFAULT_ERROR_LIMIT}, 0 for no limit); the others are counted and
+ * summarized at the end of the period, see {@link RikaiErrorLimiter};</li>
+ * <li><code>logging.errors.period</code> - the period in seconds, at least 1 (default
+ * {@value #DEFAULT_ERROR_PERIOD});</li>
+ * <li><code>logging.level</code> - the lowest logged {@link RikaiLevel} (default <code>INFO</code>);
+ * </li>
+ * <li><code>logging.level.&lt;package or class&gt;</code> - the lowest logged level for a package
+ * or class, e.g. <code>logging.level.yarar.tietokanta=DEBUG</code>. The most specific key wins.</li>
+ * </ul>
+ * <p>
+ * Leveled logging is done through {@link ClassLogger}s (see {@link #getLogger(Class)}). The static
+ * <code>print</code> methods log at {@link RikaiLevel#INFO}, exceptions at
+ * {@link RikaiLevel#ERROR}, against the default level.
+ * </p>
+ * 
+ * @author Dimo Vanchev
+ */
+public final class Logger {
+
+    /** Default number of messages which can be queued. */
+    private static final int DEFAULT_BUFFER = 8192;
+    /** Default sampling rate for the <code>sample</code> overflow policy. */
+    private static final int DEFAULT_SAMPLE = 100;
+    /** Default number of exceptions with the same stack trace logged per period. */
+    private static final int DEFAULT_ERROR_LIMIT = 10;
+    /** Default period of the exception limit, in seconds. */
+    private static final int DEFAULT_ERROR_PERIOD = 60;
+    /** Default path and name prefix of the log files. */
+    private static final String DEFAULT_FILE = "logs/yarar";
+    /** Prefix of the level settings. */
+    private static final String LEVEL_KEY = "logging.level";
+
+    /** The single instance of this class. */
+    private static Logger selfInstance;
+
+    /** Parser of application-level settings. */
+    private final ConfigParser cf;
+    /** Logging level, as defined in the application-level settings. */
+    private final String configLogging;
+    /** The logging level, see {@link RikaiLoggingLevel} enum. */
+    private final RikaiLoggingLevel rikaiLoggingLevel;
+    /** Where the log records go. */
+    private final RikaiAppender appender;
+    /** Writes the records in background, or <code>null</code> when logging synchronously. */
+    private final AsyncLogWriter writer;
+    /** Limits repeated exceptions, or <code>null</code> if they are not limited. */
+    private final RikaiErrorLimiter errorLimiter;
+    /** The default level threshold. */
+    private final RikaiLevel defaultLevel;
+    /** Level thresholds per package or class name. */
+    private final Map<String, RikaiLevel> levels = new HashMap<String, RikaiLevel>();
+
+    /**
+     * Singleton private constructor.
+     */
+    private Logger() {
+        Logger.selfInstance = this;
+        // loading properties from the the relevant properties file
+        cf = new ConfigParser("config.properties");
+        configLogging = cf.getValue("logging");
+
+        // determine logging level
+        if (configLogging.equals("console")) {
+            rikaiLoggingLevel = RikaiLoggingLevel.CONSOLE;
+        } else if (configLogging.equals("file")) {
+            rikaiLoggingLevel = RikaiLoggingLevel.FILE;
+        } else {
+            rikaiLoggingLevel = RikaiLoggingLevel.NONE;
+        }
+
+        final String level = cf.getValue(Logger.LEVEL_KEY);
+        defaultLevel = (level == null) ? RikaiLevel.INFO : Logger.parseLevel(level);
+        for (final Object key : cf.getAllKeys()) {
+            final String k = key.toString();
+            if (k.startsWith(Logger.LEVEL_KEY + ".")) {
+                levels.put(k.substring(Logger.LEVEL_KEY.length() + 1),
+                        Logger.parseLevel(cf.getValue(k)));
+            }
+        }
+
+        if (rikaiLoggingLevel == RikaiLoggingLevel.FILE) {
+            final String file = cf.getValue("logging.file");
+            final String size = cf.getValue("logging.file.size");
+            final String encoding = cf.getValue("logging.file.encoding");
+            appender = new MappedFileAppender((file == null) ? Logger.DEFAULT_FILE : file,
+                    (size == null) ? MappedFileAppender.DEFAULT_SEGMENT_SIZE : Long.parseLong(size
+                            .trim()), getIntValue("logging.file.rotate", 0) * 60000L,
+                    (encoding == null) ? RikaiEncoding.TEXT : RikaiEncoding.valueOf(encoding
+                            .trim().toUpperCase()));
+        } else {
+            appender = new ConsoleAppender();
+        }
+        if ((rikaiLoggingLevel != RikaiLoggingLevel.NONE)
+                && !"false".equals(cf.getValue("logging.async"))) {
+            final String overflow = cf.getValue("logging.overflow");
+            final RikaiOverflowPolicy policy = (overflow == null) ? RikaiOverflowPolicy.BLOCK
+                    : RikaiOverflowPolicy.valueOf(overflow.trim().toUpperCase());
+            writer = new AsyncLogWriter(appender, getIntValue("logging.buffer",
+                    Logger.DEFAULT_BUFFER), policy, getIntValue("logging.sample",
+                    Logger.DEFAULT_SAMPLE));
+        } else {
+            writer = null;
+        }
+        final int errorLimit = getIntValue("logging.errors.limit", Logger.DEFAULT_ERROR_LIMIT);
+        // the timer of the limiter needs a positive period
+        final int errorPeriod =
+                Math.max(1, getIntValue("logging.errors.period", Logger.DEFAULT_ERROR_PERIOD));
+        errorLimiter = ((rikaiLoggingLevel != RikaiLoggingLevel.NONE) && (errorLimit > 0))
+                ? new RikaiErrorLimiter(this, errorLimit, 1000L * errorPeriod) : null;
+    }
+
+    /**
+     * Parses a level name.
+     * 
+     * @param value The level name, case insensitive.
+     * @return the level
+     */
+    private static RikaiLevel parseLevel(final String value) {
+        return RikaiLevel.valueOf(value.trim().toUpperCase());
+    }
+
+    /**
+     * Reads an integer setting.
+     * 
+     * @param key The setting key.
+     * @param defaultValue Value used if the setting is missing.
+     * @return the setting value
+     */
+    private int getIntValue(final String key, final int defaultValue) {
+        final String value = cf.getValue(key);
+        return (value == null) ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    /**
+     * Singleton instance getter.
+     * 
+     * @return The single instance of this class.
+     */
+    public static final synchronized Logger getInstance() {
+        if (Logger.selfInstance == null) {
+            new Logger();
+        }
+
+        return Logger.selfInstance;
+    }
+
+    /**
+     * Logs a string.
+     * 
+     * @param str The String
+     */
+    public static void print(final String str) {
+        Logger.selfInstance.log(RikaiLevel.INFO, null, str, null);
+    }
+
+    /**
+     * Logs exception's stack trace.
+     * 
+     * @param e The Exception
+     */
+    public static void print(final Exception e) {
+        Logger.selfInstance.log(RikaiLevel.ERROR, null, null, e);
+    }
+
+    /**
+     * Logs a Object, by calling {@link Object#toString()} method.
+     * 
+     * @param o The Object
+     */
+    public static void print(final Object o) {
+        Logger.print(o.toString());
+    }
+
+    /**
+     * Logs a string indented as a tree branch, i.e. prefixed by one <code>"+ "</code> per level.
+     * 
+     * @param deep The depth of the branch.
+     * @param str The String
+     */
+    public static void treeBranchPrint(final int deep, final String str) {
+        if ((Logger.selfInstance.rikaiLoggingLevel == RikaiLoggingLevel.NONE)
+                || (Logger.selfInstance.defaultLevel.compareTo(RikaiLevel.INFO) > 0)) {
+            return;
+        }
+        final StringBuilder d = new StringBuilder((2 * deep) + str.length());
+        for (int i = 0; i < deep; i++) {
+            d.append("+ ");
+        }
+        d.append(str);
+        Logger.selfInstance.log(RikaiLevel.INFO, null, d.toString(), null);
+    }
+
+    /**
+     * Gets a leveled logger for a class.
+     * 
+     * @param c The class on whose behalf messages are logged.
+     * @return the logger
+     */
+    public static ClassLogger getLogger(final Class<?> c) {
+        return new ClassLogger(c.getName());
+    }
+
+    /**
+     * Gets the level threshold of a class, from the most specific setting of its name or packages.
+     * 
+     * @param name The fully qualified class name.
+     * @return the threshold, {@link RikaiLevel#OFF} if logging is disabled.
+     */
+    RikaiLevel getThreshold(final String name) {
+        if (rikaiLoggingLevel == RikaiLoggingLevel.NONE) {
+            return RikaiLevel.OFF;
+        }
+        String prefix = name;
+        while (true) {
+            final RikaiLevel level = levels.get(prefix);
+            if (level != null) {
+                return level;
+            }
+            final int dot = prefix.lastIndexOf('.');
+            if (dot < 0) {
+                return defaultLevel;
+            }
+            prefix = prefix.substring(0, dot);
+        }
+    }
+
+    /**
+     * Gets the number of messages dropped because the queue of the asynchronous writer was full.
+     * 
+     * @return the drop count, always 0 when logging synchronously
+     */
+    public static long getDroppedCount() {
+        final AsyncLogWriter w = Logger.selfInstance.writer;
+        return (w == null) ? 0 : w.getDroppedCount();
+    }
+
+    /**
+     * Gets the number of exceptions which were not logged because the same one was logged too
+     * often, see the <code>logging.errors.limit</code> setting.
+     * 
+     * @return the suppression count, always 0 if exceptions are not limited
+     */
+    public static long getSuppressedCount() {
+        final RikaiErrorLimiter l = Logger.selfInstance.errorLimiter;
+        return (l == null) ? 0 : l.getSuppressedCount();
+    }
+
+    /**
+     * Sends a record to the output, according to the logging level. Messages of
+     * {@link ClassLogger}s are already checked against their threshold; the others are checked
+     * against the default one. Exceptions beyond the limit of their stack trace are dropped
+     * before their record is created.
+     * 
+     * @param level The severity.
+     * @param source Name of the logging class, or <code>null</code>.
+     * @param message The message, or <code>null</code>.
+     * @param error The exception, or <code>null</code>.
+     */
+    void log(final RikaiLevel level, final String source, final String message,
+            final Throwable error) {
+        if ((source == null) && (level.compareTo(defaultLevel) < 0)) {
+            return;
+        }
+        switch (rikaiLoggingLevel) {
+            case CONSOLE:
+            case FILE:
+                if ((error != null) && (errorLimiter != null) && !errorLimiter.admit(error)) {
+                    return;
+                }
+                final RikaiRecord r = new RikaiRecord(level, source, message, error);
+                if (writer != null) {
+                    writer.write(r);
+                } else {
+                    synchronized (appender) {
+                        appender.append(r);
+                        appender.flush();
+                    }
+                }
+                break;
+            case NONE:
+            default:
+                // do nothing
+                break;
+        }
+    }
+}
@@ -0,0 +1,334 @@
+package yarar.rikai;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.io.StringWriter;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * Writes log records to files through memory-mapped segments.
+ * <p>
+ * Each segment is a file of {@link #segmentSize} bytes which is pre-allocated and mapped into
+ * memory when opened. Appending a record is then just a memory copy; the operating system writes
+ * the pages to disk in background, so there is no system call per record. A new segment is
+ * started when the record does not fit in the current one, or when the segment is older than the
+ * rotation period. Closed segments are truncated to their used length.
+ * </p>
+ * <p>
+ * Segments are named <code>&lt;base&gt;-&lt;yyyyMMdd-HHmmss&gt;-&lt;nnnnn&gt;&lt;suffix&gt;</code>,
+ * so that sorting the names gives the writing order. The suffix depends on the
+ * {@link RikaiEncoding}. {@link LogReader} prints them in readable
+ * form.
+ * </p>
+ * 
+ * @author Dimo Vanchev
+ */
+final class MappedFileAppender implements RikaiAppender {
+
+    /** Default segment size: 16 MB. */
+    static final long DEFAULT_SEGMENT_SIZE = 16L << 20;
+    /** The charset of the files. */
+    static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /** Path and name prefix of the segments. */
+    private final String base;
+    /** Size of a segment, in bytes. */
+    private final long segmentSize;
+    /** Maximal age of a segment, in milliseconds; 0 means unlimited. */
+    private final long rotationPeriod;
+    /** The encoding. */
+    private final RikaiEncoding encoding;
+    /** Formats the segment names. */
+    private final SimpleDateFormat nameFormat = new SimpleDateFormat("yyyyMMdd-HHmmss");
+    /** Formats the record times in text files. */
+    private final SimpleDateFormat timeFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+    /** The encoded record, reused for all records. */
+    private final RecordBuffer record = new RecordBuffer();
+    /** Writes the binary encoding into {@link #record}. */
+    private final DataOutputStream data = new DataOutputStream(record);
+    /** Reused for text encodings. */
+    private final StringBuilder text = new StringBuilder(256);
+
+    /** File of the current segment, or <code>null</code> before the first record. */
+    private RandomAccessFile file;
+    /** Mapped memory of the current segment. */
+    private MappedByteBuffer buffer;
+    /** Opening time of the current segment. */
+    private long segmentStart;
+    /** Sequence number of the next segment. */
+    private int sequence = 0;
+
+    /**
+     * Creates a new appender. The first segment is opened on the first record.
+     * 
+     * @param base Path and name prefix of the segments. Missing directories are created.
+     * @param segmentSize Size of a segment, in bytes.
+     * @param rotationPeriod Maximal age of a segment, in milliseconds; 0 means unlimited.
+     * @param encoding The encoding.
+     */
+    MappedFileAppender(final String base, final long segmentSize, final long rotationPeriod,
+            final RikaiEncoding encoding) {
+        this.base = base;
+        this.segmentSize = segmentSize;
+        this.rotationPeriod = rotationPeriod;
+        this.encoding = encoding;
+        final File dir = new File(base).getAbsoluteFile().getParentFile();
+        if ((dir != null) && !dir.isDirectory() && !dir.mkdirs()) {
+            throw new IllegalArgumentException("Cannot create log directory: " + dir);
+        }
+    }
+
+    @Override
+    public void append(final RikaiRecord r) {
+        try {
+            encode(r);
+            final int length = record.size();
+            if ((buffer == null)
+                    || (length > buffer.remaining())
+                    || ((rotationPeriod > 0)
+                        && ((r.getTime() - segmentStart) >= rotationPeriod))) {
+                rotate(length);
+            }
+            buffer.put(record.getBytes(), 0, length);
+        } catch (final IOException e) {
+            throw new IllegalStateException("Cannot write log file " + base, e);
+        }
+    }
+
+    /**
+     * Does nothing: mapped pages reach the disk without help, even if the application crashes.
+     */
+    @Override
+    public void flush() {
+        // nothing to do
+    }
+
+    @Override
+    public void close() {
+        try {
+            closeSegment();
+        } catch (final IOException e) {
+            throw new IllegalStateException("Cannot close log file " + base, e);
+        }
+    }
+
+    /**
+     * Closes the current segment and opens a new one.
+     * 
+     * @param needed Bytes needed for the next record; a segment is never smaller.
+     * @throws IOException if an I/O error occurs.
+     */
+    private void rotate(final int needed) throws IOException {
+        closeSegment();
+        segmentStart = System.currentTimeMillis();
+        File f;
+        do {
+            f = new File(base + "-" + nameFormat.format(new Date(segmentStart))
+                    + String.format("-%05d", Integer.valueOf(sequence++)) + encoding.getSuffix());
+        } while (f.exists());
+        file = new RandomAccessFile(f, "rw");
+        buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0,
+                Math.max(segmentSize, needed));
+    }
+
+    /**
+     * Writes out and truncates the current segment, if any.
+     * 
+     * @throws IOException if an I/O error occurs.
+     */
+    private void closeSegment() throws IOException {
+        if (file == null) {
+            return;
+        }
+        buffer.force();
+        try {
+            file.getChannel().truncate(buffer.position());
+        } catch (final IOException e) {
+            // some systems refuse to truncate mapped files; the reader skips the padding
+        }
+        file.close();
+        file = null;
+        buffer = null;
+    }
+
+    /**
+     * Encodes a record into {@link #record}.
+     * 
+     * @param r The record.
+     * @throws IOException never, {@link #record} is in memory.
+     */
+    private void encode(final RikaiRecord r) throws IOException {
+        record.reset();
+        final String error = MappedFileAppender.getStackTrace(r.getError());
+        switch (encoding) {
+            case BINARY:
+                data.writeInt(0);
+                data.writeLong(r.getTime());
+                data.writeByte(r.getLevel().ordinal());
+                writeString(r.getThread());
+                writeString(r.getSource());
+                writeString(r.getMessage());
+                writeString(error);
+                record.setLength(record.size() - 4);
+                break;
+            case JSON:
+                text.setLength(0);
+                text.append("{\"time\":").append(r.getTime());
+                MappedFileAppender.appendJSON(text, "thread", r.getThread());
+                MappedFileAppender.appendJSON(text, "level", r.getLevel().name());
+                MappedFileAppender.appendJSON(text, "source", r.getSource());
+                MappedFileAppender.appendJSON(text, "message", r.getMessage());
+                MappedFileAppender.appendJSON(text, "error", error);
+                text.append("}\n");
+                record.write(text.toString().getBytes(MappedFileAppender.UTF8));
+                break;
+            case TEXT:
+            default:
+                text.setLength(0);
+                MappedFileAppender.appendText(text, timeFormat.format(new Date(r.getTime())),
+                        r.getThread(), r.getLevel(), r.getSource(), r.getMessage(), error);
+                record.write(text.toString().getBytes(MappedFileAppender.UTF8));
+                break;
+        }
+    }
+
+    /**
+     * Writes a string in the binary encoding.
+     * 
+     * @param s The string, may be <code>null</code>.
+     * @throws IOException never, {@link #record} is in memory.
+     */
+    private void writeString(final String s) throws IOException {
+        if (s == null) {
+            data.writeInt(-1);
+        } else {
+            final byte[] b = s.getBytes(MappedFileAppender.UTF8);
+            data.writeInt(b.length);
+            data.write(b);
+        }
+    }
+
+    /**
+     * Formats a record in the text encoding.
+     * 
+     * @param sb Where the text goes.
+     * @param time The formatted time.
+     * @param thread The thread name.
+     * @param level The level.
+     * @param source The logging class, may be <code>null</code>.
+     * @param message The message, may be <code>null</code>.
+     * @param error The stack trace, may be <code>null</code>.
+     */
+    static void appendText(final StringBuilder sb, final String time, final String thread,
+            final RikaiLevel level, final String source, final String message, final String error) {
+        sb.append(time).append(" [").append(thread).append("] ").append(level);
+        if (source != null) {
+            sb.append(' ').append(source);
+        }
+        sb.append(" - ");
+        if (message != null) {
+            sb.append(message);
+        }
+        sb.append('\n');
+        if (error != null) {
+            sb.append(error);
+        }
+    }
+
+    /**
+     * Appends a JSON string field, unless the value is <code>null</code>.
+     * 
+     * @param sb Where the field goes.
+     * @param name The field name.
+     * @param value The value.
+     */
+    private static void appendJSON(final StringBuilder sb, final String name, final String value) {
+        if (value == null) {
+            return;
+        }
+        sb.append(",\"").append(name).append("\":\"");
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+                    break;
+            }
+        }
+        sb.append('"');
+    }
+
+    /**
+     * Gets the stack trace of an exception.
+     * 
+     * @param e The exception, may be <code>null</code>.
+     * @return the stack trace, or <code>null</code>.
+     */
+    private static String getStackTrace(final Throwable e) {
+        if (e == null) {
+            return null;
+        }
+        final StringWriter sw = new StringWriter();
+        e.printStackTrace(new PrintWriter(sw));
+        return sw.toString();
+    }
+
+    /**
+     * Byte buffer giving access to its content without copying.
+     * 
+     * @author Dimo Vanchev
+     */
+    private static final class RecordBuffer extends ByteArrayOutputStream {
+
+        /** Creates a new buffer. */
+        private RecordBuffer() {
+            super(256);
+        }
+
+        /**
+         * @return the internal array; only the first {@link #size()} bytes are valid.
+         */
+        private byte[] getBytes() {
+            return buf;
+        }
+
+        /**
+         * Stores a payload length at the start of the buffer.
+         * 
+         * @param length The length.
+         */
+        private void setLength(final int length) {
+            buf[0] = (byte) (length >>> 24);
+            buf[1] = (byte) (length >>> 16);
+            buf[2] = (byte) (length >>> 8);
+            buf[3] = (byte) length;
+        }
+    }
+}
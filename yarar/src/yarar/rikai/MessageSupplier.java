@@ -0,0 +1,17 @@
+package yarar.rikai;
+
+/**
+ * Builds a log message on demand. Used for messages which are expensive to build, so that nothing
+ * is built when the message is not going to be logged.
+ * 
+ * @author Dimo Vanchev
+ */
+public interface MessageSupplier {
+
+    /**
+     * Builds the message. Called only if the message is going to be logged.
+     * 
+     * @return the message
+     */
+    String get();
+}
@@ -0,0 +1,27 @@
+package yarar.rikai;
+
+/**
+ * Destination of log records. Appenders are called by one thread at a time, so they need no
+ * synchronisation of their own.
+ * 
+ * @author Dimo Vanchev
+ */
+interface RikaiAppender {
+
+    /**
+     * Adds a record to the output. The record may be buffered until {@link #flush()}.
+     * 
+     * @param r The record.
+     */
+    void append(RikaiRecord r);
+
+    /**
+     * Writes out all buffered records.
+     */
+    void flush();
+
+    /**
+     * Flushes and releases the output.
+     */
+    void close();
+}
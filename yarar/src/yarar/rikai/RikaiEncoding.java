@@ -0,0 +1,58 @@
+package yarar.rikai;
+
+/**
+ * Encodings of the log files written by {@link MappedFileAppender}.
+ * 
+ * @author Dimo Vanchev
+ */
+enum RikaiEncoding {
+    /** Human-readable lines: time, thread, level, source and message, then the stack trace. */
+    TEXT(".log"),
+    /**
+     * One JSON object per line, with the fields <code>time</code> (milliseconds since the epoch),
+     * <code>thread</code>, <code>level</code>, <code>source</code>, <code>message</code> and
+     * <code>error</code> (the stack trace). Absent values are left out.
+     */
+    JSON(".jsonl"),
+    /**
+     * Length-prefixed binary records: <code>int</code> payload length, then <code>long</code>
+     * time, <code>byte</code> level ordinal and the thread, source, message and stack trace as
+     * strings. A string is an <code>int</code> byte count (-1 for <code>null</code>) followed by
+     * its UTF-8 bytes. A zero length marks the unused end of a segment.
+     */
+    BINARY(".bin");
+
+    /** Suffix of the files. */
+    private final String suffix;
+
+    /**
+     * Constructor.
+     * 
+     * @param suffix Suffix of the files.
+     */
+    private RikaiEncoding(final String suffix) {
+        this.suffix = suffix;
+    }
+
+    /**
+     * @return the file suffix, including the dot.
+     */
+    String getSuffix() {
+        return suffix;
+    }
+
+    /**
+     * Guesses the encoding of a log file from its name.
+     * 
+     * @param fileName The file name.
+     * @return the encoding, {@link #TEXT} if the suffix is not known.
+     */
+    static RikaiEncoding forFile(final String fileName) {
+        for (final RikaiEncoding e : RikaiEncoding.values()) {
+            if (fileName.endsWith(e.suffix)) {
+                return e;
+            }
+        }
+        return TEXT;
+    }
+}
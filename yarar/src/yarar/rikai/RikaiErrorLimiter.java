@@ -0,0 +1,189 @@
+package yarar.rikai;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits how many times the same exception is logged, so that an outage which makes every thread
+ * fail the same way does not flood the log and block the loggers.
+ * <p>
+ * An exception is identified by a fingerprint of its class, the top {@link #FRAMES} frames of its
+ * stack trace and the same of its causes; the message is left out, as it often holds varying
+ * values. Up to <code>limit</code> exceptions per fingerprint are logged in each period, the
+ * others are only counted: they never become records, so their stack traces are not formatted and
+ * they take no place in the buffer of the {@link AsyncLogWriter}. At the end of each period, a
+ * warning tells how many exceptions of each fingerprint were suppressed.
+ * </p>
+ * 
+ * @author Dimo Vanchev
+ */
+final class RikaiErrorLimiter {
+
+    /** Number of stack frames of each exception in the fingerprint. */
+    private static final int FRAMES = 8;
+    /** Number of causes of an exception in the fingerprint, the exception included. */
+    private static final int CAUSES = 8;
+    /** Maximal number of fingerprints tracked; exceptions beyond are always logged. */
+    private static final int MAX_FINGERPRINTS = 1024;
+    /** Marks a counter which is being removed; counting on it starts a new one instead. */
+    private static final int RETIRED = Integer.MIN_VALUE;
+
+    /** Where the summaries go. */
+    private final Logger logger;
+    /** Number of exceptions per fingerprint logged in a period. */
+    private final int limit;
+    /** The period, in milliseconds. */
+    private final long periodMillis;
+    /** The counters of each fingerprint seen in the current or the previous period. */
+    private final ConcurrentHashMap<Long, Counter> counters =
+            new ConcurrentHashMap<Long, Counter>();
+    /** Number of suppressed exceptions. */
+    private final AtomicLong suppressed = new AtomicLong();
+
+    /**
+     * Creates a limiter and starts its periodic summaries.
+     * 
+     * @param logger Where the summaries go.
+     * @param limit Number of exceptions per fingerprint logged in a period.
+     * @param periodMillis The period, in milliseconds.
+     */
+    RikaiErrorLimiter(final Logger logger, final int limit, final long periodMillis) {
+        this.logger = logger;
+        this.limit = limit;
+        this.periodMillis = periodMillis;
+        final ScheduledExecutorService timer =
+                Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                    @Override
+                    public Thread newThread(final Runnable r) {
+                        final Thread t = new Thread(r, "RikaiErrorLimiter");
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+        timer.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                summarize();
+            }
+        }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Decides whether an exception is logged, counting it.
+     * 
+     * @param e The exception.
+     * @return <code>false</code> if the limit of its fingerprint is reached in this period.
+     */
+    boolean admit(final Throwable e) {
+        final Long fingerprint = RikaiErrorLimiter.getFingerprint(e);
+        while (true) {
+            Counter c = counters.get(fingerprint);
+            if (c == null) {
+                if (counters.size() >= RikaiErrorLimiter.MAX_FINGERPRINTS) {
+                    return true;
+                }
+                final Counter created = new Counter(e);
+                c = counters.putIfAbsent(fingerprint, created);
+                if (c == null) {
+                    c = created;
+                }
+            }
+            final int seen = c.seen.incrementAndGet();
+            if (seen < 0) {
+                // retired by summarize(), which may not have removed it yet
+                counters.remove(fingerprint, c);
+                continue;
+            }
+            if (seen <= limit) {
+                return true;
+            }
+            c.suppressed.incrementAndGet();
+            suppressed.incrementAndGet();
+            return false;
+        }
+    }
+
+    /**
+     * Gets the number of exceptions suppressed so far.
+     * 
+     * @return the count
+     */
+    long getSuppressedCount() {
+        return suppressed.get();
+    }
+
+    /**
+     * Ends a period: logs a summary for each fingerprint with suppressed exceptions, starts
+     * counting anew, and forgets the fingerprints which were not seen during the period.
+     */
+    private void summarize() {
+        for (final Map.Entry<Long, Counter> e : counters.entrySet()) {
+            final Counter c = e.getValue();
+            final long n = c.suppressed.getAndSet(0L);
+            // retired only if still idle, so an exception counted meanwhile is not lost
+            if ((c.seen.getAndSet(0) == 0)
+                    && c.seen.compareAndSet(0, RikaiErrorLimiter.RETIRED)) {
+                counters.remove(e.getKey(), c);
+            }
+            if (n > 0) {
+                logger.log(RikaiLevel.WARN, Logger.class.getName(), n + " more suppressed in the "
+                        + "last " + (periodMillis / 1000L) + " s: " + c.description, null);
+            }
+        }
+    }
+
+    /**
+     * Computes the fingerprint of an exception.
+     * 
+     * @param e The exception.
+     * @return the fingerprint
+     */
+    private static Long getFingerprint(final Throwable e) {
+        long h = 17L;
+        Throwable t = e;
+        for (int depth = 0; (t != null) && (depth < RikaiErrorLimiter.CAUSES); depth++) {
+            h = (31L * h) + t.getClass().getName().hashCode();
+            final StackTraceElement[] frames = t.getStackTrace();
+            for (int i = 0; (i < frames.length) && (i < RikaiErrorLimiter.FRAMES); i++) {
+                h = (31L * h) + frames[i].getClassName().hashCode();
+                h = (31L * h) + frames[i].getMethodName().hashCode();
+                h = (31L * h) + frames[i].getLineNumber();
+            }
+            t = t.getCause();
+        }
+        return h;
+    }
+
+    /**
+     * The counters of a fingerprint.
+     * 
+     * @author Dimo Vanchev
+     */
+    private static final class Counter {
+        /**
+         * Number of exceptions seen in this period, logged or not; negative once the counter is
+         * retired.
+         */
+        final AtomicInteger seen = new AtomicInteger();
+        /** Number of exceptions suppressed in this period. */
+        final AtomicLong suppressed = new AtomicLong();
+        /** Describes the exceptions in the summaries: the first one and where it was thrown. */
+        final String description;
+
+        /**
+         * Constructor.
+         * 
+         * @param e The first exception of the fingerprint.
+         */
+        Counter(final Throwable e) {
+            final StackTraceElement[] frames = e.getStackTrace();
+            description = (frames.length > 0) ? e + " at " + frames[0] : e.toString();
+        }
+    }
+}
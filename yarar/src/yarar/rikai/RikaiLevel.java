@@ -0,0 +1,22 @@
+package yarar.rikai;
+
+/**
+ * Severity of a log message. A message is logged if its level is not below the threshold
+ * configured for its class (see {@link ClassLogger}).
+ * 
+ * @author Dimo Vanchev
+ */
+public enum RikaiLevel {
+    /** Very detailed tracing, e.g. every fetched row. */
+    TRACE,
+    /** Information useful while debugging. */
+    DEBUG,
+    /** Normal operation messages. */
+    INFO,
+    /** Something unexpected, the application goes on. */
+    WARN,
+    /** Something failed. */
+    ERROR,
+    /** Threshold only - nothing is logged. */
+    OFF
+}
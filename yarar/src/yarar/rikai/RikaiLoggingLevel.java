@@ -1,9 +1,11 @@
-package yarar.rikai;
-
-/** The logging level types */
-enum RikaiLoggingLevel {
-    /** Silent mode - no logging, no console output */
-    NONE,
-    /** Console mode - no logging, only console output. */
-    CONSOLE
+package yarar.rikai;
+
+/** The logging level types */
+enum RikaiLoggingLevel {
+    /** Silent mode - no logging, no console output */
+    NONE,
+    /** Console mode - no logging, only console output. */
+    CONSOLE,
+    /** File mode - logging to memory-mapped files, no console output. */
+    FILE
 }
\ No newline at end of file
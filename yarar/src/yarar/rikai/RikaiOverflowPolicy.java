@@ -0,0 +1,11 @@
+package yarar.rikai;
+
+/** What the asynchronous logger does when its buffer is full. */
+enum RikaiOverflowPolicy {
+    /** The logging thread waits until there is space - nothing gets lost. */
+    BLOCK,
+    /** The record is dropped and counted. */
+    DROP,
+    /** Only every n-th record waits for space, the others are dropped and counted. */
+    SAMPLE
+}
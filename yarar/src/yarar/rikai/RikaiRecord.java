@@ -0,0 +1,82 @@
+package yarar.rikai;
+
+/**
+ * A single log record, as it travels from the logging thread to the appenders.
+ * 
+ * @author Dimo Vanchev
+ */
+final class RikaiRecord {
+
+    /** Creation time, in milliseconds since the epoch. */
+    private final long time;
+    /** Name of the thread which created the record. */
+    private final String thread;
+    /** The severity. */
+    private final RikaiLevel level;
+    /** Name of the logging class, or <code>null</code> for messages logged by {@link Logger#print}. */
+    private final String source;
+    /** The message. May be <code>null</code> for records holding only an exception. */
+    private final String message;
+    /** The logged exception, or <code>null</code>. */
+    private final Throwable error;
+
+    /**
+     * Creates a new record, stamped with the current time and thread.
+     * 
+     * @param level The severity.
+     * @param source Name of the logging class, or <code>null</code>.
+     * @param message The message.
+     * @param error The logged exception, or <code>null</code>.
+     */
+    RikaiRecord(final RikaiLevel level, final String source, final String message,
+            final Throwable error) {
+        time = System.currentTimeMillis();
+        thread = Thread.currentThread().getName();
+        this.level = level;
+        this.source = source;
+        this.message = message;
+        this.error = error;
+    }
+
+    /**
+     * @return the creation time, in milliseconds since the epoch.
+     */
+    long getTime() {
+        return time;
+    }
+
+    /**
+     * @return the name of the thread which created the record.
+     */
+    String getThread() {
+        return thread;
+    }
+
+    /**
+     * @return the severity.
+     */
+    RikaiLevel getLevel() {
+        return level;
+    }
+
+    /**
+     * @return the name of the logging class, or <code>null</code>.
+     */
+    String getSource() {
+        return source;
+    }
+
+    /**
+     * @return the message, or <code>null</code>.
+     */
+    String getMessage() {
+        return message;
+    }
+
+    /**
+     * @return the logged exception, or <code>null</code>.
+     */
+    Throwable getError() {
+        return error;
+    }
+}
@@ -0,0 +1,103 @@
+package yarar.rikai;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded lock-free queue with many producers and a single consumer.
+ * <p>
+ * Each slot carries a sequence number telling whether it is free for the producer of a given
+ * position or filled for the consumer. Producers claim positions with a single CAS on
+ * {@link #tail}; the consumer needs no atomic operation at all. A full buffer is reported to the
+ * producer instead of waiting, so the caller decides what to do about it.
+ * </p>
+ * 
+ * @author Dimo Vanchev
+ * @param <T> The type of the queued items.
+ */
+final class RikaiRingBuffer<T> {
+
+    /** The slots. */
+    private final Object[] items;
+    /** Sequence numbers of the slots. */
+    private final AtomicLongArray sequences;
+    /** Position mask; the capacity is a power of two. */
+    private final int mask;
+    /** Next position to be claimed by a producer. */
+    private final AtomicLong tail = new AtomicLong();
+    /** Next position to be read by the consumer. Only touched by the consumer thread. */
+    private long head = 0;
+
+    /**
+     * Creates a new ring buffer.
+     * 
+     * @param capacity The minimal capacity. It is rounded up to a power of two.
+     */
+    RikaiRingBuffer(final int capacity) {
+        final int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        items = new Object[size];
+        sequences = new AtomicLongArray(size);
+        mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Adds an item, if there is space. May be called by any thread.
+     * 
+     * @param item The item.
+     * @return <code>false</code> if the buffer is full.
+     */
+    boolean offer(final T item) {
+        long pos = tail.get();
+        while (true) {
+            final int index = (int) (pos & mask);
+            final long diff = sequences.get(index) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    items[index] = item;
+                    // publishes the item to the consumer
+                    sequences.lazySet(index, pos + 1);
+                    return true;
+                }
+                pos = tail.get();
+            } else if (diff < 0) {
+                return false;
+            } else {
+                pos = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Takes the oldest item. Must only be called by the consumer thread.
+     * 
+     * @return the item, or <code>null</code> if the buffer is empty.
+     */
+    @SuppressWarnings("unchecked")
+    T poll() {
+        final int index = (int) (head & mask);
+        if (sequences.get(index) != (head + 1)) {
+            return null;
+        }
+        final T item = (T) items[index];
+        items[index] = null;
+        // frees the slot for the producer one round later
+        sequences.lazySet(index, head + items.length);
+        head++;
+        return item;
+    }
+
+    /**
+     * Checks if there are no items. Exact only when called by the consumer thread. An item whose
+     * position is claimed, but which is not published yet, counts, so a consumer which found the
+     * buffer empty after announcing that it goes to sleep cannot miss an item whose producer did not
+     * see the announcement: the producer's CAS on {@link #tail} orders the two.
+     * 
+     * @return <code>true</code> if the buffer is empty.
+     */
+    boolean isEmpty() {
+        return tail.get() == head;
+    }
+}
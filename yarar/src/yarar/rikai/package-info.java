@@ -1,9 +1,9 @@
-/**
- * The package contains utility classes for logging, configuration parsing, etc.<br>
- * <b>Yarar</b> is a <a href="http://en.wikipedia.org/wiki/Turkish_language"
- * target="_blank">Turkish</a> word for <i>utility</i>.<br>
- * <b>Rikai</b> is the latin-phonetical spelling of the <a
- * href="http://en.wikipedia.org/wiki/Japanese_language" target="_blank">Japanese</a> 
- * word 理解  meaning <i>understand</i>
- */
+/**
+ * The package contains utility classes for logging, configuration parsing, etc.<br>
+ * <b>Yarar</b> is a <a href="http://en.wikipedia.org/wiki/Turkish_language"
+ * target="_blank">Turkish</a> word for <i>utility</i>.<br>
+ * <b>Rikai</b> is the latin-phonetical spelling of the <a
+ * href="http://en.wikipedia.org/wiki/Japanese_language" target="_blank">Japanese</a> 
+ * word 理解  meaning <i>understand</i>
+ */
 package yarar.rikai;
\ No newline at end of file
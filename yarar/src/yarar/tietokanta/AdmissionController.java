@@ -0,0 +1,434 @@
+package yarar.tietokanta;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limits the number of queries executed at once, so that a traffic spike queues up in the
+ * application instead of overloading the database.
+ * <p>
+ * A query is admitted at once while fewer than the limit are running and no query of the same or
+ * a higher {@link KyselyPriority} waits. Otherwise it waits in the bounded queue of its priority
+ * until a running query finishes; queries of higher priority are admitted first. A query is
+ * rejected at once when its queue is full, and gives up when it waits longer than its deadline.
+ * </p>
+ * <p>
+ * The limit is fixed or adapts to the observed latency, see {@link AdmissionLimit}. Counters of
+ * admitted, rejected and timed out queries and of the queueing delay are kept for monitoring.
+ * </p>
+ * 
+ * @author Dimo Vanchev
+ */
+public final class AdmissionController {
+
+    /** Latency, relative to the shortest one, from which the database counts as overloaded. */
+    private static final double TOLERANCE = 2.0;
+    /** Weight of a new gradient limit against the current one. */
+    private static final double SMOOTHING = 0.2;
+    /** Number of latency samples after which the shortest latency is measured anew. */
+    private static final int WINDOW = 1000;
+
+    /** How the limit is set. */
+    private final AdmissionLimit mode;
+    /** The lowest limit. */
+    private final int minLimit;
+    /** The highest limit. */
+    private final int maxLimit;
+    /** Capacity of each priority's queue. */
+    private final int queueCapacity;
+    /** The default deadline, in milliseconds. */
+    private final long timeout;
+    /** Guards all state below. */
+    private final ReentrantLock lock = new ReentrantLock();
+    /** The waiting queries, by priority. */
+    private final ArrayDeque<Waiter>[] queues;
+    /** The current limit; fractional, so that it can grow slowly. */
+    private double limit;
+    /** Number of queries being executed. */
+    private int inFlight;
+    /** The shortest latency of the previous window, in nanoseconds. */
+    private long minLatency = Long.MAX_VALUE;
+    /** The shortest latency of the current window, in nanoseconds. */
+    private long windowMinLatency = Long.MAX_VALUE;
+    /** Number of samples in the current window. */
+    private int samples;
+    /** Number of admitted queries. */
+    private long admitted;
+    /** Number of queries rejected because their queue was full. */
+    private long rejected;
+    /** Number of queries which waited longer than their deadline. */
+    private long timedOut;
+    /** Total time admitted queries waited, in nanoseconds. */
+    private long queueNanos;
+    /** The longest time an admitted query waited, in nanoseconds. */
+    private long maxQueueNanos;
+    /** Number of queries not admitted, for any reason. Read without the lock. */
+    private final AtomicLong shed = new AtomicLong();
+
+    /**
+     * Creates a new controller.
+     * 
+     * @param mode How the limit is set.
+     * @param initialLimit The starting limit; the only one for {@link AdmissionLimit#STATIC}.
+     * @param minLimit The lowest limit.
+     * @param maxLimit The highest limit.
+     * @param queueCapacity Capacity of each priority's queue.
+     * @param timeout The default deadline, in milliseconds.
+     */
+    public AdmissionController(final AdmissionLimit mode, final int initialLimit,
+            final int minLimit, final int maxLimit, final int queueCapacity, final long timeout) {
+        this.mode = mode;
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.queueCapacity = queueCapacity;
+        this.timeout = timeout;
+        limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        final ArrayDeque<Waiter>[] q = new ArrayDeque[KyselyPriority.values().length];
+        queues = q;
+        for (int i = 0; i < queues.length; i++) {
+            queues[i] = new ArrayDeque<Waiter>();
+        }
+    }
+
+    /**
+     * Admits a query, waiting up to the default deadline.
+     * 
+     * @param priority The priority of the query.
+     * @return the permit, to be passed to {@link #release(Permit)} after the execution, or
+     *         <code>null</code> if the query is rejected or its deadline passes.
+     */
+    public Permit acquire(final KyselyPriority priority) {
+        return acquire(priority, timeout);
+    }
+
+    /**
+     * Admits a query.
+     * 
+     * @param priority The priority of the query.
+     * @param deadline The longest wait, in milliseconds; 0 to reject at once if the query cannot
+     *        run at once.
+     * @return the permit, to be passed to {@link #release(Permit)} after the execution, or
+     *         <code>null</code> if the query is rejected or its deadline passes.
+     */
+    public Permit acquire(final KyselyPriority priority, final long deadline) {
+        final long start = System.nanoTime();
+        lock.lock();
+        try {
+            if ((inFlight < (int) limit) && !isWaiting(priority)) {
+                inFlight++;
+                admitted++;
+                return new Permit();
+            }
+            final ArrayDeque<Waiter> queue = queues[priority.ordinal()];
+            if ((deadline <= 0) || (queue.size() >= queueCapacity)) {
+                rejected++;
+                shed.incrementAndGet();
+                return null;
+            }
+
+            final Waiter w = new Waiter(lock.newCondition());
+            queue.add(w);
+            long remaining = TimeUnit.MILLISECONDS.toNanos(deadline);
+            try {
+                while (!w.granted && (remaining > 0)) {
+                    remaining = w.condition.awaitNanos(remaining);
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                if (w.granted) {
+                    inFlight--;
+                    grant();
+                }
+                queue.remove(w);
+                shed.incrementAndGet();
+                return null;
+            }
+            if (!w.granted) {
+                queue.remove(w);
+                timedOut++;
+                shed.incrementAndGet();
+                return null;
+            }
+            final long waited = System.nanoTime() - start;
+            admitted++;
+            queueNanos += waited;
+            maxQueueNanos = Math.max(maxQueueNanos, waited);
+            return new Permit();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Ends an execution admitted by {@link #acquire(KyselyPriority, long)}: takes its latency into
+     * account and admits waiting queries.
+     * 
+     * @param permit The permit; <code>null</code> and released permits are ignored.
+     */
+    public void release(final Permit permit) {
+        if ((permit == null) || permit.released) {
+            return;
+        }
+        permit.released = true;
+        final long latency = System.nanoTime() - permit.admittedAt;
+        lock.lock();
+        try {
+            adapt(latency, inFlight >= (int) limit);
+            inFlight--;
+            grant();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the current limit.
+     * 
+     * @return the number of queries which may run at once
+     */
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of running queries.
+     * 
+     * @return the count
+     */
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of waiting queries.
+     * 
+     * @return the count
+     */
+    public int getQueued() {
+        lock.lock();
+        try {
+            int queued = 0;
+            for (final ArrayDeque<Waiter> queue : queues) {
+                queued += queue.size();
+            }
+            return queued;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of admitted queries.
+     * 
+     * @return the count
+     */
+    public long getAdmittedCount() {
+        lock.lock();
+        try {
+            return admitted;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of queries shed without waiting, because their queue was full.
+     * 
+     * @return the count
+     */
+    public long getRejectedCount() {
+        lock.lock();
+        try {
+            return rejected;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of queries shed because they waited longer than their deadline.
+     * 
+     * @return the count
+     */
+    public long getTimedOutCount() {
+        lock.lock();
+        try {
+            return timedOut;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of queries not admitted: rejected, timed out or interrupted while waiting.
+     * Unlike the other counters, it is read without the lock, so it is cheap to poll under
+     * overload.
+     * 
+     * @return the count
+     */
+    public long getShedCount() {
+        return shed.get();
+    }
+
+    /**
+     * Gets the average time admitted queries waited.
+     * 
+     * @return the time in milliseconds
+     */
+    public double getAverageQueueMillis() {
+        lock.lock();
+        try {
+            return (admitted == 0) ? 0 : (queueNanos / 1e6) / admitted;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the longest time an admitted query waited.
+     * 
+     * @return the time in milliseconds
+     */
+    public double getMaxQueueMillis() {
+        lock.lock();
+        try {
+            return maxQueueNanos / 1e6;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        lock.lock();
+        try {
+            return mode + " limit " + (int) limit + ", " + inFlight + " running, " + getQueued()
+                    + " queued, " + admitted + " admitted, " + rejected + " rejected, "
+                    + timedOut + " timed out, max wait " + (maxQueueNanos / 1000000) + " ms";
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Checks if a query of the same or a higher priority waits. Called with the lock held.
+     * 
+     * @param priority The priority.
+     * @return <code>true</code> if one does
+     */
+    private boolean isWaiting(final KyselyPriority priority) {
+        for (int i = 0; i <= priority.ordinal(); i++) {
+            if (!queues[i].isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Admits waiting queries, highest priority first, while below the limit. Called with the lock
+     * held.
+     */
+    private void grant() {
+        for (final ArrayDeque<Waiter> queue : queues) {
+            while ((inFlight < (int) limit) && !queue.isEmpty()) {
+                final Waiter w = queue.poll();
+                w.granted = true;
+                inFlight++;
+                w.condition.signal();
+            }
+        }
+    }
+
+    /**
+     * Adapts the limit to the latency of a finished query. Called with the lock held.
+     * 
+     * @param latency The latency, in nanoseconds.
+     * @param saturated Whether the limit was fully used.
+     */
+    private void adapt(final long latency, final boolean saturated) {
+        windowMinLatency = Math.min(windowMinLatency, latency);
+        minLatency = Math.min(minLatency, latency);
+        if (++samples >= AdmissionController.WINDOW) {
+            // measure the shortest latency anew, so the limit follows lasting changes
+            minLatency = windowMinLatency;
+            windowMinLatency = Long.MAX_VALUE;
+            samples = 0;
+        }
+
+        switch (mode) {
+            case AIMD:
+                if (latency > (AdmissionController.TOLERANCE * minLatency)) {
+                    limit = limit * 0.9;
+                } else if (saturated) {
+                    limit = limit + (1 / limit);
+                }
+                break;
+            case GRADIENT:
+                final double gradient = Math.max(0.5, Math.min(1.0,
+                        (AdmissionController.TOLERANCE * minLatency) / latency));
+                final double target = (limit * gradient) + Math.sqrt(limit);
+                limit = (limit * (1 - AdmissionController.SMOOTHING))
+                        + (target * AdmissionController.SMOOTHING);
+                break;
+            case STATIC:
+            default:
+                return;
+        }
+        limit = Math.min(maxLimit, Math.max(minLimit, limit));
+    }
+
+    /**
+     * The right to execute one query.
+     * 
+     * @author Dimo Vanchev
+     */
+    public static final class Permit {
+        /** When the query was admitted. */
+        private final long admittedAt = System.nanoTime();
+        /** Whether released. */
+        private boolean released;
+
+        /**
+         * Constructor.
+         */
+        Permit() {
+            // created within the package only
+        }
+    }
+
+    /**
+     * A waiting query.
+     * 
+     * @author Dimo Vanchev
+     */
+    private static final class Waiter {
+        /** Signalled when admitted. */
+        private final Condition condition;
+        /** Whether admitted. */
+        private boolean granted;
+
+        /**
+         * Constructor.
+         * 
+         * @param condition Signalled when admitted.
+         */
+        Waiter(final Condition condition) {
+            this.condition = condition;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package yarar.tietokanta;
+
+/**
+ * How the {@link AdmissionController} sets its concurrency limit.
+ * 
+ * @author Dimo Vanchev
+ */
+public enum AdmissionLimit {
+    /** The limit is fixed. */
+    STATIC,
+    /**
+     * Additive increase, multiplicative decrease: the limit grows by one per limit's worth of
+     * fast queries while it is fully used, and drops by a tenth when a query takes more than
+     * twice the shortest latency seen.
+     */
+    AIMD,
+    /**
+     * The limit follows the ratio of the shortest latency seen to the current one, plus a small
+     * allowance for queueing, so it shrinks smoothly as the database slows down.
+     */
+    GRADIENT
+}
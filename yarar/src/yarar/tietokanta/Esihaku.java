@@ -0,0 +1,256 @@
+package yarar.tietokanta;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import yarar.rikai.Logger;
+
+/**
+ * Reads the rows of a result set ahead, on a background thread, for a {@link Kysely} in prefetch
+ * mode (see {@link Kysely#setPrefetch(int)}).<br>
+ * <b>Esihaku</b> is a <a href="http://en.wikipedia.org/wiki/Finnish_language"
+ * target="_blank">Finnish</a> word for <i>prefetch</i>.
+ * <p>
+ * There are two buffers of a fixed number of rows. While the reader works through the rows of one,
+ * the background thread fetches and decodes the next rows into the other, so waiting for the
+ * network overlaps with processing. The buffers, rows included, are reused, so memory stays bounded
+ * by the two chunks. Only the background thread touches the result set until
+ * {@link #cancel()} returns.
+ * </p>
+ * 
+ * @author Dimo Vanchev
+ */
+final class Esihaku implements Runnable {
+
+    /** Runs the background reads of all prefetching <code>Kysely</code> objects. */
+    private static final ExecutorService EXECUTOR =
+            Executors.newCachedThreadPool(new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable r) {
+                    final Thread t = new Thread(r, "Esihaku");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+
+    /** The result set. */
+    private final ResultSet rs;
+    /** The column index of each upper case label. */
+    private final Map<String, Integer> columns = new HashMap<String, Integer>();
+    /** The two buffers of rows. */
+    private final Object[][][] buffers;
+    /**
+     * The {@link ResultSet#getString(int)} form of the values of the rows, where it may differ
+     * from {@link Object#toString()}, e.g. for <code>bytea</code> and <code>boolean</code> columns;
+     * <code>null</code> elsewhere.
+     */
+    private final String[][][] texts;
+    /** The number of rows in each buffer. */
+    private final int[] sizes = new int[2];
+    /** Whether each buffer holds rows the reader has not taken yet. Guarded by the lock. */
+    private final boolean[] filled = new boolean[2];
+    /** Guards the state shared with the background thread. */
+    private final ReentrantLock lock = new ReentrantLock();
+    /** Signalled whenever the shared state changes. */
+    private final Condition changed = lock.newCondition();
+    /** Whether the background thread has stopped. Guarded by the lock. */
+    private boolean done;
+    /** Set by {@link #cancel()}. */
+    private volatile boolean cancelled;
+    /** The buffer of the reader, or -1 before the first row. */
+    private int current = -1;
+    /** The row of the reader in its buffer. */
+    private int position;
+
+    /**
+     * Starts reading ahead.
+     * 
+     * @param rs The result set, positioned before the first row.
+     * @param chunkRows Number of rows of each buffer.
+     * @throws SQLException if the metadata of the result set cannot be read.
+     */
+    Esihaku(final ResultSet rs, final int chunkRows) throws SQLException {
+        this.rs = rs;
+        final ResultSetMetaData md = rs.getMetaData();
+        final int count = md.getColumnCount();
+        for (int i = count; i >= 1; i--) {
+            // the first of equal labels wins, as in ResultSet#findColumn
+            columns.put(md.getColumnLabel(i).toUpperCase(Locale.ROOT), i);
+        }
+        buffers = new Object[2][Math.max(1, chunkRows)][count];
+        texts = new String[2][Math.max(1, chunkRows)][count];
+        Esihaku.EXECUTOR.execute(this);
+    }
+
+    /**
+     * Moves to the next row, waiting for the background thread if it has not read it yet.
+     * 
+     * @return <code>true</code> if there is a row; <code>false</code> after the last row or if
+     *         reading failed.
+     */
+    boolean next() {
+        if ((current >= 0) && (++position < sizes[current])) {
+            return true;
+        }
+        final int next = (current < 0) ? 0 : (current ^ 1);
+        lock.lock();
+        try {
+            if (current >= 0) {
+                // hand the used buffer back for refilling
+                filled[current] = false;
+                changed.signalAll();
+            }
+            while (!filled[next] && !done) {
+                changed.awaitUninterruptibly();
+            }
+            if (!filled[next]) {
+                current = -1;
+                return false;
+            }
+        } finally {
+            lock.unlock();
+        }
+        current = next;
+        position = 0;
+        return sizes[current] > 0;
+    }
+
+    /**
+     * Gets a value of the current row.
+     * 
+     * @param column The column index, starting from 1.
+     * @return the value, as returned by {@link ResultSet#getObject(int)}
+     */
+    Object getValue(final int column) {
+        return buffers[current][position][column - 1];
+    }
+
+    /**
+     * Gets a value of the current row as a string.
+     * 
+     * @param column The column index, starting from 1.
+     * @return the value, as returned by {@link ResultSet#getString(int)}
+     */
+    String getText(final int column) {
+        final String text = texts[current][position][column - 1];
+        if (text != null) {
+            return text;
+        }
+        final Object value = buffers[current][position][column - 1];
+        return (value != null) ? value.toString() : null;
+    }
+
+    /**
+     * Tells if the string form of a value, as given by the driver, is its {@link Object#toString()}.
+     * 
+     * @param value The value, as returned by {@link ResultSet#getObject(int)}.
+     * @return <code>true</code> if the string form need not be read
+     */
+    private static boolean isPlain(final Object value) {
+        return (value == null) || (value instanceof String) || (value instanceof Integer)
+                || (value instanceof Long) || (value instanceof Short);
+    }
+
+    /**
+     * Finds a column by its label, ignoring case.
+     * 
+     * @param label The label.
+     * @return the column index, starting from 1, or -1 if there is no such column
+     */
+    int findColumn(final String label) {
+        final Integer column = columns.get(label.toUpperCase(Locale.ROOT));
+        return (column != null) ? column : -1;
+    }
+
+    /**
+     * Reads the remaining rows into a list.
+     * 
+     * @return copies of the rows
+     */
+    List<Object[]> readRemaining() {
+        final List<Object[]> rows = new ArrayList<Object[]>();
+        while (next()) {
+            rows.add(buffers[current][position].clone());
+        }
+        return rows;
+    }
+
+    /**
+     * Stops the background thread and waits until it no longer uses the result set.
+     */
+    void cancel() {
+        cancelled = true;
+        lock.lock();
+        try {
+            changed.signalAll();
+            while (!done) {
+                changed.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            for (int b = 0; !cancelled; b ^= 1) {
+                lock.lock();
+                try {
+                    while (filled[b] && !cancelled) {
+                        changed.awaitUninterruptibly();
+                    }
+                } finally {
+                    lock.unlock();
+                }
+                if (cancelled) {
+                    return;
+                }
+                final Object[][] rows = buffers[b];
+                int n = 0;
+                while ((n < rows.length) && !cancelled && rs.next()) {
+                    final Object[] row = rows[n];
+                    final String[] text = texts[b][n++];
+                    for (int i = 0; i < row.length; i++) {
+                        row[i] = rs.getObject(i + 1);
+                        text[i] = Esihaku.isPlain(row[i]) ? null : rs.getString(i + 1);
+                    }
+                }
+                sizes[b] = n;
+                lock.lock();
+                try {
+                    filled[b] = true;
+                    changed.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+                if (n < rows.length) {
+                    return;
+                }
+            }
+        } catch (final SQLException e) {
+            if (!cancelled) {
+                Logger.print(e);
+            }
+        } finally {
+            lock.lock();
+            try {
+                done = true;
+                changed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,439 @@
+package yarar.tietokanta;
+
+import java.nio.charset.Charset;
+import java.sql.SQLException;
+
+import org.postgresql.copy.CopyIn;
+
+import yarar.rikai.Logger;
+
+/**
+ * Streams rows into a PostgreSQL table by the <code>COPY ... FROM STDIN</code> protocol, which is
+ * much faster than inserting them by statements. Open it by
+ * {@link Tietokanta#openCopy(String, String[], KopioMuoto)}.<br>
+ * <b>Kopio</b> is a <a href="http://en.wikipedia.org/wiki/Finnish_language"
+ * target="_blank">Finnish</a> word for <i>copy</i>.
+ * <p>
+ * Each row is written field by field, by the <code>add...</code> methods in the order of the
+ * columns, and ended by {@link #endRow()}. The rows are encoded into a buffer which is sent to the
+ * server whenever it holds {@value #FLUSH_SIZE} bytes. Sending blocks while the server is not
+ * reading, so a producer cannot run ahead of the database and the memory used stays bounded.
+ * </p>
+ * <p>
+ * {@link #finish()} completes the copy. Closing a Kopio which is not finished cancels it, so none
+ * of its rows are stored; <code>try</code>-with-resources thus aborts the copy on errors.
+ * </p>
+ * 
+ * @author Dimo Vanchev
+ */
+public final class Kopio implements AutoCloseable {
+
+    /** Number of buffered bytes at which they are sent to the server. */
+    private static final int FLUSH_SIZE = 65536;
+    /** The header of the binary format: signature, flags and header extension length. */
+    private static final byte[] BINARY_HEADER = { 'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xff,
+            '\r', '\n', 0, 0, 0, 0, 0, 0, 0, 0, 0 };
+    /** The encoding of text; the driver always talks UTF-8 to the server. */
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /** The copy operation. */
+    private final CopyIn copyIn;
+    /** The format. */
+    private final KopioMuoto format;
+    /** Number of columns of each row. */
+    private final int columnCount;
+    /** The buffer. */
+    private byte[] buffer = new byte[Kopio.FLUSH_SIZE + 1024];
+    /** Number of bytes in the buffer. */
+    private int position;
+    /** Number of fields added to the current row. */
+    private int fields;
+    /** Number of ended rows. */
+    private long rows;
+    /** Whether the copy is finished or cancelled. */
+    private boolean done;
+
+    /**
+     * Creates a new Kopio.
+     * 
+     * @param copyIn The copy operation, already started.
+     * @param format The format.
+     * @param columnCount Number of columns of each row.
+     */
+    Kopio(final CopyIn copyIn, final KopioMuoto format, final int columnCount) {
+        this.copyIn = copyIn;
+        this.format = format;
+        this.columnCount = columnCount;
+        if (format == KopioMuoto.BINARY) {
+            System.arraycopy(Kopio.BINARY_HEADER, 0, buffer, 0, Kopio.BINARY_HEADER.length);
+            position = Kopio.BINARY_HEADER.length;
+        }
+    }
+
+    /**
+     * Adds an SQL <code>NULL</code>.
+     */
+    public void addNull() {
+        startField();
+        if (format == KopioMuoto.BINARY) {
+            putInt(-1);
+        }
+    }
+
+    /**
+     * Adds an <code>integer</code> (<code>int4</code>).
+     * 
+     * @param value The value.
+     */
+    public void addInt(final int value) {
+        startField();
+        if (format == KopioMuoto.BINARY) {
+            putInt(4);
+            putInt(value);
+        } else {
+            putASCII(Integer.toString(value));
+        }
+    }
+
+    /**
+     * Adds a <code>bigint</code> (<code>int8</code>).
+     * 
+     * @param value The value.
+     */
+    public void addLong(final long value) {
+        startField();
+        if (format == KopioMuoto.BINARY) {
+            putInt(8);
+            putLong(value);
+        } else {
+            putASCII(Long.toString(value));
+        }
+    }
+
+    /**
+     * Adds a <code>double precision</code> (<code>float8</code>).
+     * 
+     * @param value The value.
+     */
+    public void addDouble(final double value) {
+        startField();
+        if (format == KopioMuoto.BINARY) {
+            putInt(8);
+            putLong(Double.doubleToLongBits(value));
+        } else {
+            putASCII(Double.isNaN(value) ? "NaN" : Double.isInfinite(value) ? ((value > 0)
+                    ? "Infinity" : "-Infinity") : Double.toString(value));
+        }
+    }
+
+    /**
+     * Adds a <code>boolean</code>.
+     * 
+     * @param value The value.
+     */
+    public void addBoolean(final boolean value) {
+        startField();
+        if (format == KopioMuoto.BINARY) {
+            putInt(1);
+            ensureCapacity(1);
+            buffer[position++] = (byte) (value ? 1 : 0);
+        } else {
+            putASCII(value ? "t" : "f");
+        }
+    }
+
+    /**
+     * Adds a text value (<code>text</code>, <code>varchar</code>). In CSV format, the text may be
+     * of any column type the server can parse it as.
+     * 
+     * @param value The value, <code>null</code> for SQL <code>NULL</code>.
+     */
+    public void addString(final String value) {
+        if (value == null) {
+            addNull();
+            return;
+        }
+        startField();
+        final byte[] bytes = value.getBytes(Kopio.UTF8);
+        if (format == KopioMuoto.BINARY) {
+            putInt(bytes.length);
+            putBytes(bytes);
+        } else if (Kopio.needsQuotes(value)) {
+            putCSVQuoted(bytes);
+        } else {
+            putBytes(bytes);
+        }
+    }
+
+    /**
+     * Adds a value by its Java type: {@link Integer}, {@link Long}, {@link Short} (as
+     * <code>integer</code>), {@link Double}, {@link Float} (as <code>double precision</code>),
+     * {@link Boolean} and <code>null</code> are added by the typed methods, anything else as the
+     * text of its <code>toString()</code>.
+     * 
+     * @param value The value.
+     */
+    public void addObject(final Object value) {
+        if (value == null) {
+            addNull();
+        } else if ((value instanceof Integer) || (value instanceof Short)) {
+            addInt(((Number) value).intValue());
+        } else if (value instanceof Long) {
+            addLong(((Long) value).longValue());
+        } else if ((value instanceof Double) || (value instanceof Float)) {
+            addDouble(((Number) value).doubleValue());
+        } else if (value instanceof Boolean) {
+            addBoolean(((Boolean) value).booleanValue());
+        } else {
+            addString(value.toString());
+        }
+    }
+
+    /**
+     * Adds a whole row and ends it.
+     * 
+     * @param values The values of all columns, in order.
+     * @throws SQLException if sending the buffer fails.
+     */
+    public void addRow(final TypeValuePair[] values) throws SQLException {
+        for (final TypeValuePair tvp : values) {
+            final Object x = tvp.getValue();
+            if (x == null) {
+                addNull();
+                continue;
+            }
+            switch (tvp.getType()) {
+                case INTEGER:
+                    addInt((Integer) x);
+                    break;
+                case BOOLEAN:
+                    addBoolean((Boolean) x);
+                    break;
+                case STRING:
+                    addString((String) x);
+                    break;
+                case OBJECT:
+                default:
+                    addObject(x);
+                    break;
+            }
+        }
+        endRow();
+    }
+
+    /**
+     * Adds a record as a whole row and ends it.
+     * 
+     * @param record The record.
+     * @throws SQLException if sending the buffer fails.
+     */
+    public void addRow(final KopioRivi record) throws SQLException {
+        record.writeTo(this);
+        endRow();
+    }
+
+    /**
+     * Ends the current row. Blocks if the buffer is full and the server is not reading.
+     * 
+     * @throws SQLException if sending the buffer fails.
+     * @throws IllegalStateException if the row does not have a field for each column.
+     */
+    public void endRow() throws SQLException {
+        if (fields != columnCount) {
+            throw new IllegalStateException("Row " + rows + " has " + fields + " fields instead of "
+                    + columnCount);
+        }
+        if (format == KopioMuoto.CSV) {
+            ensureCapacity(1);
+            buffer[position++] = '\n';
+        }
+        fields = 0;
+        rows++;
+        if (position >= Kopio.FLUSH_SIZE) {
+            flush();
+        }
+    }
+
+    /**
+     * Gets the number of ended rows.
+     * 
+     * @return the number of rows
+     */
+    public long getRowCount() {
+        return rows;
+    }
+
+    /**
+     * Sends the remaining rows and completes the copy.
+     * 
+     * @return the number of rows stored, as reported by the server.
+     * @throws SQLException if the server rejects the data.
+     */
+    public long finish() throws SQLException {
+        if (format == KopioMuoto.BINARY) {
+            ensureCapacity(2);
+            putShort(-1);
+        }
+        flush();
+        done = true;
+        return copyIn.endCopy();
+    }
+
+    /**
+     * Cancels the copy unless it is finished; none of the rows are stored then.
+     */
+    @Override
+    public void close() {
+        if (done) {
+            return;
+        }
+        done = true;
+        try {
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        } catch (final SQLException e) {
+            Logger.print(e);
+        }
+    }
+
+    /**
+     * Sends the buffer to the server.
+     * 
+     * @throws SQLException if sending fails.
+     */
+    private void flush() throws SQLException {
+        if (position > 0) {
+            copyIn.writeToCopy(buffer, 0, position);
+            position = 0;
+        }
+    }
+
+    /**
+     * Starts a new field: writes the field count at the start of a binary row, or the separator
+     * between CSV fields.
+     */
+    private void startField() {
+        if (fields == columnCount) {
+            throw new IllegalStateException("Row " + rows + " has more than " + columnCount
+                    + " fields");
+        }
+        if (format == KopioMuoto.BINARY) {
+            if (fields == 0) {
+                putShort(columnCount);
+            }
+        } else if (fields > 0) {
+            ensureCapacity(1);
+            buffer[position++] = ',';
+        }
+        fields++;
+    }
+
+    /**
+     * Checks if a CSV value must be quoted: if it holds a separator, quote or line break, is empty
+     * (an unquoted empty value means <code>NULL</code>) or is the end-of-data marker.
+     * 
+     * @param value The value.
+     * @return <code>true</code> if it needs quotes
+     */
+    private static boolean needsQuotes(final String value) {
+        if (value.isEmpty() || "\\.".equals(value)) {
+            return true;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if ((c == ',') || (c == '"') || (c == '\n') || (c == '\r')) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Writes a quoted CSV value, doubling its quotes.
+     * 
+     * @param bytes The UTF-8 bytes of the value.
+     */
+    private void putCSVQuoted(final byte[] bytes) {
+        ensureCapacity((bytes.length * 2) + 2);
+        buffer[position++] = '"';
+        for (final byte b : bytes) {
+            if (b == '"') {
+                buffer[position++] = '"';
+            }
+            buffer[position++] = b;
+        }
+        buffer[position++] = '"';
+    }
+
+    /**
+     * Writes a string of ASCII characters.
+     * 
+     * @param s The string.
+     */
+    private void putASCII(final String s) {
+        ensureCapacity(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            buffer[position++] = (byte) s.charAt(i);
+        }
+    }
+
+    /**
+     * Writes bytes.
+     * 
+     * @param bytes The bytes.
+     */
+    private void putBytes(final byte[] bytes) {
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+    }
+
+    /**
+     * Writes a 16 bit integer in network byte order.
+     * 
+     * @param value The value.
+     */
+    private void putShort(final int value) {
+        ensureCapacity(2);
+        buffer[position++] = (byte) (value >>> 8);
+        buffer[position++] = (byte) value;
+    }
+
+    /**
+     * Writes a 32 bit integer in network byte order.
+     * 
+     * @param value The value.
+     */
+    private void putInt(final int value) {
+        ensureCapacity(4);
+        buffer[position++] = (byte) (value >>> 24);
+        buffer[position++] = (byte) (value >>> 16);
+        buffer[position++] = (byte) (value >>> 8);
+        buffer[position++] = (byte) value;
+    }
+
+    /**
+     * Writes a 64 bit integer in network byte order.
+     * 
+     * @param value The value.
+     */
+    private void putLong(final long value) {
+        putInt((int) (value >>> 32));
+        putInt((int) value);
+    }
+
+    /**
+     * Grows the buffer, if needed, so that it can take more bytes. Only rows larger than the flush
+     * size make it grow.
+     * 
+     * @param count The number of bytes to be written.
+     */
+    private void ensureCapacity(final int count) {
+        if ((position + count) > buffer.length) {
+            final byte[] grown = new byte[Math.max(buffer.length * 2, position + count)];
+            System.arraycopy(buffer, 0, grown, 0, position);
+            buffer = grown;
+        }
+    }
+}
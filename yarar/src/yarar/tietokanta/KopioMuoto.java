@@ -0,0 +1,43 @@
+package yarar.tietokanta;
+
+/**
+ * Data formats of the PostgreSQL <code>COPY</code> protocol, see {@link Kopio}.<br>
+ * <b>Muoto</b> is a <a href="http://en.wikipedia.org/wiki/Finnish_language"
+ * target="_blank">Finnish</a> word for <i>format</i>.
+ * 
+ * @author Dimo Vanchev
+ */
+public enum KopioMuoto {
+    /**
+     * Comma separated values. Slower to parse, but any value is sent as text, so the Java types
+     * need not match the column types.
+     */
+    CSV("csv"),
+    /**
+     * PostgreSQL's binary format. The fastest one, but each value must be sent in the exact binary
+     * representation of its column's type, e.g. an <code>int</code> for an <code>integer</code>
+     * column and a <code>long</code> for a <code>bigint</code> one.
+     */
+    BINARY("binary");
+
+    /** The name of the format in the <code>COPY</code> statement. */
+    private final String name;
+
+    /**
+     * Constructor.
+     * 
+     * @param name The name of the format in the <code>COPY</code> statement.
+     */
+    private KopioMuoto(final String name) {
+        this.name = name;
+    }
+
+    /**
+     * Gets the <code>WITH</code> clause of a <code>COPY</code> statement using this format.
+     * 
+     * @return the clause
+     */
+    String getOptions() {
+        return " WITH (FORMAT " + name + ")";
+    }
+}
@@ -0,0 +1,22 @@
+package yarar.tietokanta;
+
+import java.sql.SQLException;
+
+/**
+ * A record which writes itself as a row of a {@link Kopio}.<br>
+ * <b>Rivi</b> is a <a href="http://en.wikipedia.org/wiki/Finnish_language"
+ * target="_blank">Finnish</a> word for <i>row</i>.
+ * 
+ * @author Dimo Vanchev
+ */
+public interface KopioRivi {
+
+    /**
+     * Adds the fields of this record to a <code>Kopio</code>, in the order of its columns. The row
+     * is ended by the caller.
+     * 
+     * @param kopio The <code>Kopio</code>.
+     * @throws SQLException if writing fails.
+     */
+    void writeTo(Kopio kopio) throws SQLException;
+}
@@ -0,0 +1,32 @@
+package yarar.tietokanta;
+
+/**
+ * Tells the writer of a row buffered by a {@link KyselyPuskuri} what became of it.<br>
+ * <b>Kuittaus</b> is a <a href="http://en.wikipedia.org/wiki/Finnish_language"
+ * target="_blank">Finnish</a> word for <i>acknowledgement, receipt</i>.
+ * <p>
+ * The methods are called by the flushing thread, so they should return quickly. If the row was
+ * merged with later writes of the same key, the values are the merged ones.
+ * </p>
+ * 
+ * @author Dimo Vanchev
+ */
+public interface Kuittaus {
+
+    /**
+     * Called when the batch holding the row was executed. With auto-commit, the row is then
+     * durable.
+     * 
+     * @param kysely The <code>Kysely</code>.
+     * @param values The values written.
+     */
+    void written(Kysely kysely, TypeValuePair[] values);
+
+    /**
+     * Called when the batch holding the row failed; the failure has been logged.
+     * 
+     * @param kysely The <code>Kysely</code>.
+     * @param values The values which were not written.
+     */
+    void failed(Kysely kysely, TypeValuePair[] values);
+}
@@ -1,276 +1,719 @@
-package yarar.tietokanta;
-
-import java.sql.Array;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.ResultSetMetaData;
-import java.sql.SQLException;
-import java.sql.Statement;
-
-import yarar.rikai.Logger;
-
-/**
- * This class wraps SQL calls and provides basic manipulations with the {@link ResultSet}.<br>
- * <b>Kysely</b> is a <a href="http://en.wikipedia.org/wiki/Finnish_language"
- * target="_blank">Finnish</a> word for <i>query</i>.
- * 
- * @author Dimo Vanchev
- */
-public class Kysely {
-
-    /** The stored SQL-query. */
-    private final String sql;
-    /** A {@link PreparedStatement} returned by preparation of Kysely's SQL. */
-    private PreparedStatement preparedStatement;
-    /** {@link ResultSet} returned by the last execution of Kysely's SQL. */
-    private ResultSet result;
-    /** The {@link ResultSetMetaData} object associated with the last <code>result</code>. */
-    private ResultSetMetaData resultSetMetaData;
-    /** The column count of the last <code>result</code>. */
-    private int columnCount = -1;
-
-    /**
-     * This constructor takes the SQL-query as its only parameter. And throws
-     * {@link NullPointerException} in case the SQL is <code>null</code>.
-     * 
-     * @param sql
-     *            The SQL query that will be executed. Should not be <code>null</code>.
-     */
-    public Kysely(final String sql) {
-	if (sql == null) {
-	    throw new NullPointerException("Empty SQL when creating Kysely");
-	}
-
-	this.sql = sql;
-    }
-
-    /**
-     * Retrieves the stored SQL-query.
-     * 
-     * @return The SQL-query
-     */
-    public String getQuery() {
-	return sql;
-    }
-
-    /**
-     * Checks if the {@link ResultSet} returned by the last execution of Kysely's SQL is set or not.
-     * It is a good approach to call this method before iterating over the results, as ResultSet
-     * objects are automatically closed when the {@link Statement} object that generated it is
-     * closed, re-executed, or used to retrieve the next result from a sequence of multiple results.
-     * 
-     * @return <code>true</code> if set, or <br>
-     *         <code>false</code> otherwise
-     */
-    public boolean hasResult() {
-	return (result != null);
-    }
-
-    /**
-     * Checks if there is a {@link PreparedStatement} set.
-     * 
-     * @return true/false depending on if {@link #preparedStatement} is <code>null</code>;
-     */
-    public boolean hasPreparedStatement() {
-	return (preparedStatement != null);
-    }
-
-    /**
-     * Forces closing of related {@link ResultSet} and/or {@link Statement} objects. This method
-     * will be called upon destroying the Kysely's object.
-     * 
-     * @param closeResult
-     *            Set it <code>true</code> to call {@link ResultSet #close()} method.
-     * @param closeStatement
-     *            Set it <code>true</code> to call {@link Statement #close()} method.
-     */
-    public void close(final boolean closeResult, final boolean closeStatement) {
-	try {
-	    if (hasResult()) {
-		if (closeStatement) {
-		    result.getStatement().close();
-		}
-		if (closeResult) {
-		    result.close();
-		}
-	    }
-	} catch (final Exception e) {
-	    Logger.print(e);
-	}
-    }
-
-    /**
-     * Moves the cursor forward one row from its current position. A Kysely's <code>ResultSet</code>
-     * cursor is initially positioned before the first row; the first call to the method
-     * <code>goNext</code> makes the first row the current row; the second call makes the second row
-     * the current row, and so on.
-     * <p>
-     * When a call to the <code>next</code> method returns <code>false</code>, the cursor is
-     * positioned after the last row.
-     * </p>
-     * For more info, see {@link ResultSet #next()} method.
-     * 
-     * @return <code>true</code> if the new current row is valid; <code>false</code> if there are no
-     *         more rows, or if {@link SQLException} is caught.
-     */
-    public boolean goNext() {
-	boolean success = false;
-	try {
-	    success = result.next();
-	} catch (final SQLException e) {
-	    // do nothing
-	    // Logger.print(e);
-	}
-	return success;
-    }
-
-    /**
-     * Gets the value of the designated column in the current row of the <code>ResultSet</code>
-     * object as the Java type specified in <code>returnType</code> parameter.<br>
-     * This method will throw {@link IndexOutOfBoundsException}, in case the specified
-     * <code>fieldId</code> is not found.
-     * 
-     * @param fieldID
-     *            This is the identifier of the column. Though it's an {@link Object}, the method
-     *            expects this parameter to be one of the following:
-     *            <ul>
-     *            <li>{@link String} - searches the column by its label, example:<br>
-     *            <code>myKysely.getFieldAs(<b>"label"</b>, Kysely.F_STRING)</code></li>
-     *            <li>{@link Integer}, or primitive <code>int</code> - searches the column by its
-     *            index, example:<br>
-     *            <code>myKysely.getFieldAs(<b>new Integer(1)</b>, Kysely.F_STRING)</code>, or<br>
-     *            <code>myKysely.getFieldAs(<b>1</b>, Kysely.F_STRING)</code></li>
-     *            </ul>
-     * @param returnType
-     *            This parameter specifies the expected return type. It should be one of the
-     *            following:
-     *            <ul>
-     *            <li><code>Feldtyp.OBJECT</code> returns the value of the given column as an
-     *            {@link Object}. The type of the Java object will be the default Java object type
-     *            corresponding to the column's SQL type, following the mapping for built-in types
-     *            specified in the JDBC specification. If the value is an SQL <code>NULL</code>, the
-     *            driver returns a Java <code>null</code>.</li>
-     *            <li><code>Feldtyp.STRING</code> returns the value of the given column as a
-     *            {@link String}.</li>
-     *            <li><code>Feldtyp.INTEGER</code> returns the value of the given column as a
-     *            {@link Integer}.</li>
-     *            <li><code>Feldtyp.ARRAY</code> returns the value of the given column as an an
-     *            {@link Array} object representing the SQL <code>ARRAY</code> value in the
-     *            specified column.</li>
-     *            <li><code>Feldtyp.BOOLEAN</code> returns the value of the given column as a
-     *            <code>boolean</code>. If the designated column has a datatype of CHAR or VARCHAR
-     *            and contains a "0" or has a datatype of BIT, TINYINT, SMALLINT, INTEGER or BIGINT
-     *            and contains a 0, a value of <code>false</code> is returned. If the designated
-     *            column has a datatype of CHAR or VARCHAR and contains a "1" or has a datatype of
-     *            BIT, TINYINT, SMALLINT, INTEGER or BIGINT and contains a 1, a value of
-     *            <code>true</code> is returned.</li>
-     *            </ul>
-     * @return Returns the <code>fieldID</code> value in the specified <code>returnType</code>, or
-     *         <code>null</code>, in case of caught {@link SQLException}.
-     * @see ResultSet
-     */
-    public Object getFieldAs(final Object fieldID, final Feldtyp returnType) {
-	// determines whether int-based index will be used
-	final boolean useIndex = (fieldID instanceof Integer);
-	int ix = 0;
-
-	try {
-	    if (useIndex) {
-		ix = ((Integer) fieldID).intValue();
-	    } else {
-		ix = result.findColumn((String) fieldID);
-	    }
-	} catch (final ClassCastException e) {
-	    // set ix to some negative value for easier recognition
-	    ix = -3;
-	} catch (final SQLException e) {
-	    // set ix to some negative value for easier recognition
-	    ix = -2;
-	} catch (final Exception e) {
-	    // set ix to some negative value for easier recognition
-	    ix = -1;
-	}
-
-	if ((ix < 1) || (ix > columnCount)) {
-	    throw new IndexOutOfBoundsException("The provided index [" + ix
-		    + "] is less than 1 or greater than " + columnCount
-		    + " (the column count).");
-	}
-
-	Object o = null;
-	try {
-	    switch (returnType) {
-	    case STRING:
-		o = result.getString(ix);
-		break;
-	    case ARRAY:
-		o = result.getArray(ix);
-		break;
-	    case BOOLEAN:
-		o = result.getBoolean(ix);
-		break;
-	    case INTEGER:
-		o = result.getInt(ix);
-		break;
-	    case OBJECT:
-	    default:
-		o = result.getObject(ix);
-		break;
-	    }
-	} catch (final SQLException e) {
-	    Logger.print(e);
-	}
-	return o;
-    }
-
-    /**
-     * Retrieves the {@link ResultSet} returned by the last execution of Kysely's SQL.
-     * 
-     * @return the {@link ResultSet} returned by the last execution of Kysely's SQL.
-     */
-    protected ResultSet getResult() {
-	return result;
-    }
-
-    /**
-     * Retrieves the {@link PreparedStatement} returned by preparation of Kysely's SQL.
-     * 
-     * @return the {@link PreparedStatement} returned by preparation of Kysely's SQL.
-     */
-    protected PreparedStatement getPreparedStatement() {
-	return preparedStatement;
-    }
-
-    /**
-     * Sets the {@link ResultSet} returned by the last execution of Kysely's SQL
-     * 
-     * @param result
-     *            The {@link ResultSet} returned by the last execution of Kysely's SQL
-     */
-    protected void setResult(final ResultSet result) {
-	this.result = result;
-	columnCount = -1;
-	try {
-	    resultSetMetaData = result.getMetaData();
-	    columnCount = resultSetMetaData.getColumnCount();
-	} catch (final SQLException e) {
-	    Logger.print(e);
-	}
-    }
-
-    /**
-     * Sets the {@link PreparedStatement} returned by preparation of Kysely's SQL.
-     * 
-     * @param preparedStatement
-     *            The {@link PreparedStatement} returned by preparation of Kysely's SQL.
-     */
-    protected void setPreparedStatement(final PreparedStatement preparedStatement) {
-	this.preparedStatement = preparedStatement;
-    }
-
-    @Override
-    protected void finalize() {
-	Logger.print("Garbage collector reached Kysely: " + toString());
-	close(true, true);
-    }
-}
+package yarar.tietokanta;
+
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+
+import yarar.rikai.Logger;
+
+/**
+ * This class wraps SQL calls and provides basic manipulations with the {@link ResultSet}.<br>
+ * <b>Kysely</b> is a <a href="http://en.wikipedia.org/wiki/Finnish_language"
+ * target="_blank">Finnish</a> word for <i>query</i>.
+ * <p>
+ * A Kysely holds JDBC resources (a prepared statement and the result set of the last execution)
+ * and should be closed when done with, preferably by <code>try</code>-with-resources. Resources of
+ * Kysely objects which get garbage collected while still open are closed by the
+ * {@link KyselyCleaner}, which also counts them as leaks.
+ * </p>
+ * 
+ * @author Dimo Vanchev
+ */
+public class Kysely implements AutoCloseable {
+
+    /** The stored SQL-query, with named parameters replaced by <code>?</code>. */
+    private final String sql;
+    /** The compiled named parameters, or <code>null</code> if the SQL has none. */
+    private final KyselyPohja template;
+    /** The SQL the current prepared statement was prepared from. */
+    private String preparedSQL;
+    /**
+     * The {@link PreparedStatement} returned by preparation of Kysely's SQL and the
+     * {@link ResultSet} returned by its last execution.
+     */
+    private final KyselyCleaner.Handles handles = new KyselyCleaner.Handles();
+    /** The {@link ResultSetMetaData} object associated with the last <code>result</code>. */
+    private ResultSetMetaData resultSetMetaData;
+    /** The column count of the last <code>result</code>. */
+    private int columnCount = -1;
+    /** Whether the SQL only reads, so it may be executed on a read replica. */
+    private boolean readOnly;
+    /** The priority class used by admission control. */
+    private KyselyPriority priority = KyselyPriority.NORMAL;
+    /** Number of rows per prefetched chunk; 0 if results are not prefetched. */
+    private int prefetchRows;
+
+    /**
+     * This constructor takes the SQL-query as its only parameter. And throws
+     * {@link NullPointerException} in case the SQL is <code>null</code>. Named parameters like
+     * <code>:userId</code> are compiled into a {@link KyselyPohja}; execute such a Kysely by
+     * {@link Tietokanta#doPreparedQuery(Kysely, Parametrit)}.
+     * 
+     * @param sql
+     *            The SQL query that will be executed. Should not be <code>null</code>.
+     * @throws IllegalArgumentException if a named parameter is used both as an <code>IN</code>
+     *            list and as a single value.
+     */
+    public Kysely(final String sql) {
+        if (sql == null) {
+            throw new NullPointerException("Empty SQL when creating Kysely");
+        }
+
+        template = KyselyPohja.compile(sql);
+        this.sql = (template != null) ? template.getDefaultSQL() : sql;
+        readOnly = Kysely.isSelect(sql);
+    }
+
+    /**
+     * Checks if an SQL is a plain <code>SELECT</code>, i.e. one without <code>FOR UPDATE</code> or
+     * <code>FOR SHARE</code>. Other statements, <code>WITH</code> included (it may modify data in
+     * PostgreSQL), are not considered read-only.
+     * 
+     * @param sql The SQL.
+     * @return <code>true</code> for a plain <code>SELECT</code>.
+     */
+    static boolean isSelect(final String sql) {
+        final String s = sql.trim();
+        if (!s.regionMatches(true, 0, "SELECT", 0, 6)) {
+            return false;
+        }
+        final String upper = s.toUpperCase();
+        return !upper.contains("FOR UPDATE") && !upper.contains("FOR SHARE");
+    }
+
+    /**
+     * Retrieves the stored SQL-query.
+     * 
+     * @return The SQL-query
+     */
+    public String getQuery() {
+        return sql;
+    }
+
+    /**
+     * Gets the compiled named parameters.
+     * 
+     * @return the template, or <code>null</code> if the SQL has no named parameters.
+     */
+    public KyselyPohja getTemplate() {
+        return template;
+    }
+
+    /**
+     * Checks if the SQL only reads data, so that it may be executed on a read replica. By default,
+     * plain <code>SELECT</code>s are read-only; see also {@link #setReadOnly(boolean)}.
+     * 
+     * @return <code>true</code> if read-only.
+     */
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    /**
+     * Overrides the read-only detection, e.g. for a <code>SELECT</code> calling a function which
+     * modifies data.
+     * 
+     * @param readOnly <code>true</code> if the SQL only reads data.
+     */
+    public void setReadOnly(final boolean readOnly) {
+        this.readOnly = readOnly;
+    }
+
+    /**
+     * Gets the priority class, by which the {@link AdmissionController} orders waiting queries.
+     * 
+     * @return the priority, {@link KyselyPriority#NORMAL} by default.
+     */
+    public KyselyPriority getPriority() {
+        return priority;
+    }
+
+    /**
+     * Sets the priority class.
+     * 
+     * @param priority The priority; must not be <code>null</code>.
+     */
+    public void setPriority(final KyselyPriority priority) {
+        if (priority == null) {
+            throw new NullPointerException("Empty priority of Kysely");
+        }
+        this.priority = priority;
+    }
+
+    /**
+     * Gets the number of rows per prefetched chunk.
+     * 
+     * @return the number, or 0 if results are not prefetched.
+     */
+    public int getPrefetch() {
+        return prefetchRows;
+    }
+
+    /**
+     * Switches prefetching of results on or off, from the next execution on. With prefetching, a
+     * background thread reads the rows of a result ahead, in chunks of <code>rows</code> rows,
+     * while the caller processes the previous chunk (see {@link Esihaku}); {@link #goNext()} then
+     * waits only if the next chunk has not arrived yet. It pays off for large results read by
+     * {@link #goNext()}, best with a streaming statement (see
+     * {@link Tietokanta#prepareStreamingQuery(Kysely, int)}) fetching as many rows as a chunk.
+     * <p>
+     * Values are decoded by {@link ResultSet#getObject(int)} when fetched, and
+     * {@link #getFieldAs(Object, Feldtyp)} converts them to the requested type.
+     * </p>
+     * 
+     * @param rows Number of rows per chunk; 0 to switch prefetching off.
+     */
+    public void setPrefetch(final int rows) {
+        prefetchRows = Math.max(0, rows);
+    }
+
+    /**
+     * Checks if the {@link ResultSet} returned by the last execution of Kysely's SQL is set or not.
+     * It is a good approach to call this method before iterating over the results, as ResultSet
+     * objects are automatically closed when the {@link Statement} object that generated it is
+     * closed, re-executed, or used to retrieve the next result from a sequence of multiple results.
+     * 
+     * @return <code>true</code> if set, or <br>
+     *         <code>false</code> otherwise
+     */
+    public boolean hasResult() {
+        return (handles.getResult() != null);
+    }
+
+    /**
+     * Checks if there is a {@link PreparedStatement} set.
+     * 
+     * @return true/false depending on if {@link #preparedStatement} is <code>null</code>;
+     */
+    public boolean hasPreparedStatement() {
+        return (handles.getPreparedStatement() != null);
+    }
+
+    /**
+     * Forces closing of related {@link ResultSet} and/or {@link Statement} objects.
+     * 
+     * @param closeResult
+     *            Set it <code>true</code> to call {@link ResultSet #close()} method.
+     * @param closeStatement
+     *            Set it <code>true</code> to call {@link Statement #close()} method of the
+     *            statement which produced the result (which closes the result too).
+     */
+    public void close(final boolean closeResult, final boolean closeStatement) {
+        if (closeResult || closeStatement) {
+            handles.closeResult(closeStatement);
+        }
+    }
+
+    /**
+     * Closes the result set and all statements of this Kysely. It may be prepared and executed
+     * again afterwards.
+     */
+    @Override
+    public void close() {
+        handles.closeAll();
+    }
+
+    /**
+     * Moves the cursor forward one row from its current position. A Kysely's <code>ResultSet</code>
+     * cursor is initially positioned before the first row; the first call to the method
+     * <code>goNext</code> makes the first row the current row; the second call makes the second row
+     * the current row, and so on.
+     * <p>
+     * When a call to the <code>next</code> method returns <code>false</code>, the cursor is
+     * positioned after the last row.
+     * </p>
+     * For more info, see {@link ResultSet #next()} method.
+     * 
+     * @return <code>true</code> if the new current row is valid; <code>false</code> if there are no
+     *         more rows, if there is no result or if {@link SQLException} is caught.
+     */
+    public boolean goNext() {
+        final Esihaku prefetch = handles.getPrefetch();
+        if (prefetch != null) {
+            return prefetch.next();
+        }
+        final ResultSet result = handles.getResult();
+        if (result == null) {
+            // not executed, failed or not admitted
+            return false;
+        }
+        boolean success = false;
+        try {
+            success = result.next();
+        } catch (final SQLException e) {
+            // do nothing
+            // Logger.print(e);
+        }
+        return success;
+    }
+
+    /**
+     * Gets the value of the designated column in the current row of the <code>ResultSet</code>
+     * object as the Java type specified in <code>returnType</code> parameter.<br>
+     * This method will throw {@link IndexOutOfBoundsException}, in case the specified
+     * <code>fieldId</code> is not found.
+     * 
+     * @param fieldID
+     *            This is the identifier of the column. Though it's an {@link Object}, the method
+     *            expects this parameter to be one of the following:
+     *            <ul>
+     *            <li>{@link String} - searches the column by its label, example:<br>
+     *            <code>myKysely.getFieldAs(<b>"label"</b>, Kysely.F_STRING)</code></li>
+     *            <li>{@link Integer}, or primitive <code>int</code> - searches the column by its
+     *            index, example:<br>
+     *            <code>myKysely.getFieldAs(<b>new Integer(1)</b>, Kysely.F_STRING)</code>, or<br>
+     *            <code>myKysely.getFieldAs(<b>1</b>, Kysely.F_STRING)</code></li>
+     *            </ul>
+     * @param returnType
+     *            This parameter specifies the expected return type. It should be one of the
+     *            following:
+     *            <ul>
+     *            <li><code>Feldtyp.OBJECT</code> returns the value of the given column as an
+     *            {@link Object}. The type of the Java object will be the default Java object type
+     *            corresponding to the column's SQL type, following the mapping for built-in types
+     *            specified in the JDBC specification. If the value is an SQL <code>NULL</code>, the
+     *            driver returns a Java <code>null</code>.</li>
+     *            <li><code>Feldtyp.STRING</code> returns the value of the given column as a
+     *            {@link String}.</li>
+     *            <li><code>Feldtyp.INTEGER</code> returns the value of the given column as a
+     *            {@link Integer}, or <code>null</code> if the value is an SQL
+     *            <code>NULL</code>.</li>
+     *            <li><code>Feldtyp.ARRAY</code> returns the value of the given column as an an
+     *            {@link Array} object representing the SQL <code>ARRAY</code> value in the
+     *            specified column. The typed accessors such as {@link #getIntArray(Object)}
+     *            return its elements without boxing.</li>
+     *            <li><code>Feldtyp.BOOLEAN</code> returns the value of the given column as a
+     *            <code>boolean</code>. If the designated column has a datatype of CHAR or VARCHAR
+     *            and contains a "0" or has a datatype of BIT, TINYINT, SMALLINT, INTEGER or BIGINT
+     *            and contains a 0, a value of <code>false</code> is returned. If the designated
+     *            column has a datatype of CHAR or VARCHAR and contains a "1" or has a datatype of
+     *            BIT, TINYINT, SMALLINT, INTEGER or BIGINT and contains a 1, a value of
+     *            <code>true</code> is returned.</li>
+     *            </ul>
+     * @return Returns the <code>fieldID</code> value in the specified <code>returnType</code>, or
+     *         <code>null</code>, in case of caught {@link SQLException}.
+     * @see ResultSet
+     */
+    public Object getFieldAs(final Object fieldID, final Feldtyp returnType) {
+        final Esihaku prefetch = handles.getPrefetch();
+        if (prefetch != null) {
+            return getPrefetchedFieldAs(prefetch, fieldID, returnType);
+        }
+        final ResultSet result = handles.getResult();
+        // determines whether int-based index will be used
+        final boolean useIndex = (fieldID instanceof Integer);
+        int ix = 0;
+
+        try {
+            if (useIndex) {
+                ix = ((Integer) fieldID).intValue();
+            } else {
+                ix = result.findColumn((String) fieldID);
+            }
+        } catch (final ClassCastException e) {
+            // set ix to some negative value for easier recognition
+            ix = -3;
+        } catch (final SQLException e) {
+            // set ix to some negative value for easier recognition
+            ix = -2;
+        } catch (final Exception e) {
+            // set ix to some negative value for easier recognition
+            ix = -1;
+        }
+
+        if ((ix < 1) || (ix > columnCount)) {
+            throw new IndexOutOfBoundsException("The provided index [" + ix
+                    + "] is less than 1 or greater than " + columnCount
+                    + " (the column count).");
+        }
+
+        Object o = null;
+        try {
+            switch (returnType) {
+            case STRING:
+                o = result.getString(ix);
+                break;
+            case ARRAY:
+                o = result.getArray(ix);
+                break;
+            case BOOLEAN:
+                o = result.getBoolean(ix);
+                break;
+            case INTEGER:
+                o = result.getInt(ix);
+                if (result.wasNull()) {
+                    o = null;
+                }
+                break;
+            case OBJECT:
+            default:
+                o = result.getObject(ix);
+                break;
+            }
+        } catch (final SQLException e) {
+            Logger.print(e);
+        }
+        return o;
+    }
+
+    /**
+     * Gets a value of the current prefetched row, converted the way {@link ResultSet} would.
+     * 
+     * @param prefetch The prefetcher.
+     * @param fieldID The column label or index.
+     * @param returnType The expected return type.
+     * @return the value
+     */
+    private Object getPrefetchedFieldAs(final Esihaku prefetch, final Object fieldID,
+            final Feldtyp returnType) {
+        final int ix = (fieldID instanceof Integer) ? ((Integer) fieldID).intValue()
+                : (fieldID instanceof String) ? prefetch.findColumn((String) fieldID) : -3;
+        if ((ix < 1) || (ix > columnCount)) {
+            throw new IndexOutOfBoundsException("The provided index [" + ix
+                    + "] is less than 1 or greater than " + columnCount
+                    + " (the column count).");
+        }
+
+        if (returnType == Feldtyp.STRING) {
+            return prefetch.getText(ix);
+        }
+        final Object o = prefetch.getValue(ix);
+        switch (returnType) {
+        case BOOLEAN:
+            if (o instanceof Boolean) {
+                return o;
+            }
+            if (o instanceof Number) {
+                return ((Number) o).intValue() != 0;
+            }
+            final String v = (o != null) ? o.toString().trim() : null;
+            return "1".equals(v) || "true".equalsIgnoreCase(v);
+        case INTEGER:
+            if (o instanceof Number) {
+                return ((Number) o).intValue();
+            }
+            return (o != null) ? Integer.valueOf(o.toString().trim()) : null;
+        case ARRAY:
+        case OBJECT:
+        default:
+            return o;
+        }
+    }
+
+    /**
+     * Gets the value of an SQL <code>ARRAY</code> column of the current row as an
+     * <code>int</code> array. Elements are parsed from the driver's text form where it has one (as
+     * the PostgreSQL driver does), without boxing; <code>NULL</code> elements become 0. An element
+     * which is not an <code>int</code>, e.g. a fraction of a <code>numeric[]</code> column or a
+     * value out of range, is an error, logged like an {@link SQLException}.
+     * 
+     * @param fieldID The column label or index, as for {@link #getFieldAs(Object, Feldtyp)}.
+     * @return the elements, or <code>null</code> if the value is SQL <code>NULL</code> or cannot
+     *         be read.
+     */
+    public int[] getIntArray(final Object fieldID) {
+        final Taulukko array = getArrayField(fieldID);
+        if (array == null) {
+            return null;
+        }
+        try {
+            final int[] values = new int[array.capacity()];
+            final int n = array.readInts(values);
+            return (n == values.length) ? values : Arrays.copyOf(values, n);
+        } catch (final NumberFormatException e) {
+            Logger.print(e);
+            return null;
+        }
+    }
+
+    /**
+     * Reads the value of an SQL <code>ARRAY</code> column of the current row into a caller-supplied
+     * buffer, which can be reused from row to row. See {@link #getIntArray(Object)}.
+     * 
+     * @param fieldID The column label or index, as for {@link #getFieldAs(Object, Feldtyp)}.
+     * @param buffer The buffer. Filled up to its length.
+     * @return the number of elements, which is more than the length of <code>buffer</code> if it
+     *         was too short; -1 if the value is SQL <code>NULL</code> or cannot be read.
+     */
+    public int getIntArray(final Object fieldID, final int[] buffer) {
+        final Taulukko array = getArrayField(fieldID);
+        if (array == null) {
+            return -1;
+        }
+        try {
+            return array.readInts(buffer);
+        } catch (final NumberFormatException e) {
+            Logger.print(e);
+            return -1;
+        }
+    }
+
+    /**
+     * Gets the value of an SQL <code>ARRAY</code> column of the current row as a
+     * <code>long</code> array. See {@link #getIntArray(Object)}.
+     * 
+     * @param fieldID The column label or index, as for {@link #getFieldAs(Object, Feldtyp)}.
+     * @return the elements, or <code>null</code> if the value is SQL <code>NULL</code> or cannot
+     *         be read.
+     */
+    public long[] getLongArray(final Object fieldID) {
+        final Taulukko array = getArrayField(fieldID);
+        if (array == null) {
+            return null;
+        }
+        try {
+            final long[] values = new long[array.capacity()];
+            final int n = array.readLongs(values);
+            return (n == values.length) ? values : Arrays.copyOf(values, n);
+        } catch (final NumberFormatException e) {
+            Logger.print(e);
+            return null;
+        }
+    }
+
+    /**
+     * Reads the value of an SQL <code>ARRAY</code> column of the current row into a caller-supplied
+     * buffer. See {@link #getIntArray(Object, int[])}.
+     * 
+     * @param fieldID The column label or index, as for {@link #getFieldAs(Object, Feldtyp)}.
+     * @param buffer The buffer. Filled up to its length.
+     * @return the number of elements, or -1 if the value is SQL <code>NULL</code> or cannot be
+     *         read.
+     */
+    public int getLongArray(final Object fieldID, final long[] buffer) {
+        final Taulukko array = getArrayField(fieldID);
+        if (array == null) {
+            return -1;
+        }
+        try {
+            return array.readLongs(buffer);
+        } catch (final NumberFormatException e) {
+            Logger.print(e);
+            return -1;
+        }
+    }
+
+    /**
+     * Gets the value of an SQL <code>ARRAY</code> column of the current row as a
+     * <code>double</code> array. See {@link #getIntArray(Object)}.
+     * 
+     * @param fieldID The column label or index, as for {@link #getFieldAs(Object, Feldtyp)}.
+     * @return the elements, or <code>null</code> if the value is SQL <code>NULL</code> or cannot
+     *         be read.
+     */
+    public double[] getDoubleArray(final Object fieldID) {
+        final Taulukko array = getArrayField(fieldID);
+        if (array == null) {
+            return null;
+        }
+        try {
+            final double[] values = new double[array.capacity()];
+            final int n = array.readDoubles(values);
+            return (n == values.length) ? values : Arrays.copyOf(values, n);
+        } catch (final NumberFormatException e) {
+            Logger.print(e);
+            return null;
+        }
+    }
+
+    /**
+     * Reads the value of an SQL <code>ARRAY</code> column of the current row into a caller-supplied
+     * buffer. See {@link #getIntArray(Object, int[])}.
+     * 
+     * @param fieldID The column label or index, as for {@link #getFieldAs(Object, Feldtyp)}.
+     * @param buffer The buffer. Filled up to its length.
+     * @return the number of elements, or -1 if the value is SQL <code>NULL</code> or cannot be
+     *         read.
+     */
+    public int getDoubleArray(final Object fieldID, final double[] buffer) {
+        final Taulukko array = getArrayField(fieldID);
+        if (array == null) {
+            return -1;
+        }
+        try {
+            return array.readDoubles(buffer);
+        } catch (final NumberFormatException e) {
+            Logger.print(e);
+            return -1;
+        }
+    }
+
+    /**
+     * Gets the value of an SQL <code>ARRAY</code> column of the current row as a string array.
+     * <code>NULL</code> elements stay <code>null</code>. See {@link #getIntArray(Object)}.
+     * 
+     * @param fieldID The column label or index, as for {@link #getFieldAs(Object, Feldtyp)}.
+     * @return the elements, or <code>null</code> if the value is SQL <code>NULL</code> or cannot
+     *         be read.
+     */
+    public String[] getStringArray(final Object fieldID) {
+        final Taulukko array = getArrayField(fieldID);
+        if (array == null) {
+            return null;
+        }
+        final String[] values = new String[array.capacity()];
+        final int n = array.readStrings(values);
+        return (n == values.length) ? values : Arrays.copyOf(values, n);
+    }
+
+    /**
+     * Reads the value of an SQL <code>ARRAY</code> column of the current row into a caller-supplied
+     * buffer. See {@link #getIntArray(Object, int[])}.
+     * 
+     * @param fieldID The column label or index, as for {@link #getFieldAs(Object, Feldtyp)}.
+     * @param buffer The buffer. Filled up to its length.
+     * @return the number of elements, or -1 if the value is SQL <code>NULL</code> or an
+     *         {@link SQLException} is caught.
+     */
+    public int getStringArray(final Object fieldID, final String[] buffer) {
+        final Taulukko array = getArrayField(fieldID);
+        return (array != null) ? array.readStrings(buffer) : -1;
+    }
+
+    /**
+     * Gets the value of an SQL <code>ARRAY</code> column of the current row for decoding.
+     * 
+     * @param fieldID The column label or index.
+     * @return the decoder, or <code>null</code> if the value is SQL <code>NULL</code> or an
+     *         {@link SQLException} is caught.
+     */
+    private Taulukko getArrayField(final Object fieldID) {
+        final Object o = getFieldAs(fieldID, Feldtyp.ARRAY);
+        if (!(o instanceof Array)) {
+            return null;
+        }
+        try {
+            return new Taulukko((Array) o);
+        } catch (final SQLException e) {
+            Logger.print(e);
+            return null;
+        }
+    }
+
+    /**
+     * Reads the remaining rows of the {@link ResultSet} returned by the last execution into memory,
+     * e.g. to keep or share them after the result set is closed.
+     * 
+     * @return the rows, or <code>null</code> if there is no result or an {@link SQLException} is
+     *         caught.
+     */
+    public Tulos materialize() {
+        final ResultSet result = handles.getResult();
+        if (result == null) {
+            return null;
+        }
+        try {
+            final Esihaku prefetch = handles.getPrefetch();
+            if (prefetch != null) {
+                return Tulos.of(resultSetMetaData, prefetch.readRemaining());
+            }
+            return Tulos.read(result);
+        } catch (final SQLException e) {
+            Logger.print(e);
+            return null;
+        }
+    }
+
+    /**
+     * Reads the next rows of the {@link ResultSet} returned by the last execution into columns of
+     * primitive arrays, for scans and aggregates without an object per row. Call it repeatedly to
+     * stream a large result in batches; see {@link Sarakkeet}.
+     * 
+     * @param maxRows The maximal number of rows of the batch; {@link Integer#MAX_VALUE} to read all
+     *        remaining rows.
+     * @return the batch, or <code>null</code> if there are no more rows, there is no result or an
+     *         {@link SQLException} is caught.
+     */
+    public Sarakkeet readColumns(final int maxRows) {
+        final ResultSet result = handles.getResult();
+        if (result == null) {
+            return null;
+        }
+        try {
+            final Esihaku prefetch = handles.getPrefetch();
+            if (prefetch != null) {
+                return Sarakkeet.read(resultSetMetaData, prefetch, maxRows);
+            }
+            return Sarakkeet.read(result, maxRows);
+        } catch (final SQLException e) {
+            Logger.print(e);
+            return null;
+        }
+    }
+
+    /**
+     * Retrieves the {@link ResultSet} returned by the last execution of Kysely's SQL.
+     * 
+     * @return the {@link ResultSet} returned by the last execution of Kysely's SQL.
+     */
+    protected ResultSet getResult() {
+        return handles.getResult();
+    }
+
+    /**
+     * Retrieves the {@link PreparedStatement} returned by preparation of Kysely's SQL.
+     * 
+     * @return the {@link PreparedStatement} returned by preparation of Kysely's SQL.
+     */
+    protected PreparedStatement getPreparedStatement() {
+        return handles.getPreparedStatement();
+    }
+
+    /**
+     * Sets the {@link ResultSet} returned by the last execution of Kysely's SQL
+     * 
+     * @param result
+     *            The {@link ResultSet} returned by the last execution of Kysely's SQL
+     */
+    protected void setResult(final ResultSet result) {
+        handles.setResult(this, result);
+        columnCount = -1;
+        if (result == null) {
+            return;
+        }
+        try {
+            resultSetMetaData = result.getMetaData();
+            columnCount = resultSetMetaData.getColumnCount();
+            if (prefetchRows > 0) {
+                handles.setPrefetch(new Esihaku(result, prefetchRows));
+            }
+        } catch (final SQLException e) {
+            Logger.print(e);
+        }
+    }
+
+    /**
+     * Sets the {@link PreparedStatement} returned by preparation of Kysely's SQL.
+     * 
+     * @param preparedStatement
+     *            The {@link PreparedStatement} returned by preparation of Kysely's SQL.
+     */
+    protected void setPreparedStatement(final PreparedStatement preparedStatement) {
+        setPreparedStatement(preparedStatement, sql);
+    }
+
+    /**
+     * Sets the {@link PreparedStatement} prepared from one shape of Kysely's SQL, see
+     * {@link KyselyPohja#getSQL(Parametrit)}.
+     * 
+     * @param preparedStatement The statement.
+     * @param preparedSQL The SQL it was prepared from.
+     */
+    void setPreparedStatement(final PreparedStatement preparedStatement, final String preparedSQL) {
+        handles.setPreparedStatement(this, preparedStatement);
+        this.preparedSQL = preparedSQL;
+    }
+
+    /**
+     * Gets the SQL the current {@link PreparedStatement} was prepared from.
+     * 
+     * @return the SQL, or <code>null</code> if never prepared.
+     */
+    String getPreparedSQL() {
+        return preparedSQL;
+    }
+}
@@ -0,0 +1,357 @@
+package yarar.tietokanta;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import yarar.rikai.ClassLogger;
+import yarar.rikai.Logger;
+
+/**
+ * Keeps track of the JDBC resources held by {@link Kysely} objects and closes the ones that were
+ * not closed explicitly.
+ * <p>
+ * A <code>Kysely</code> keeps its statements and result set in a {@link Handles} object. While the
+ * handles hold open resources, they are registered here with a phantom reference to their
+ * <code>Kysely</code>. If the <code>Kysely</code> becomes unreachable before it was closed, a
+ * background thread closes the resources and counts a leak. Closed <code>Kysely</code> objects are
+ * unregistered, so they cost the garbage collector nothing.
+ * </p>
+ * <p>
+ * With leak detection enabled (<code>leakdetection=true</code> in
+ * <code>tietokanta.properties</code>, or {@link #setLeakDetection(boolean)}), the stack trace of
+ * the place where a leaked result set was opened is logged as a warning. It is disabled by default,
+ * because it costs a stack trace per executed query.
+ * </p>
+ * 
+ * @author Dimo Vanchev
+ */
+public final class KyselyCleaner {
+
+    /** Leveled logger of this class. */
+    private static final ClassLogger LOG = Logger.getLogger(KyselyCleaner.class);
+
+    /** Number of open statements. */
+    private static final AtomicInteger OPEN_STATEMENTS = new AtomicInteger();
+    /** Number of open result sets, i.e. server-side cursors. */
+    private static final AtomicInteger OPEN_CURSORS = new AtomicInteger();
+    /** Number of <code>Kysely</code> objects which were garbage collected without being closed. */
+    private static final AtomicLong LEAKS = new AtomicLong();
+    /** Whether to record where result sets are opened. */
+    private static volatile boolean leakDetection = false;
+
+    /** Receives the references of unreachable <code>Kysely</code> objects. */
+    private static final ReferenceQueue<Kysely> QUEUE = new ReferenceQueue<Kysely>();
+    /** Keeps the registered references reachable until they are enqueued. */
+    private static final Set<Tracker> TRACKERS =
+            Collections.newSetFromMap(new ConcurrentHashMap<Tracker, Boolean>());
+
+    static {
+        final Thread reaper = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (true) {
+                    try {
+                        ((Tracker) KyselyCleaner.QUEUE.remove()).reap();
+                    } catch (final InterruptedException e) {
+                        return;
+                    } catch (final RuntimeException e) {
+                        Logger.print(e);
+                    }
+                }
+            }
+        }, "KyselyCleaner");
+        reaper.setDaemon(true);
+        reaper.start();
+    }
+
+    /** Utility class - no instances. */
+    private KyselyCleaner() {
+    }
+
+    /**
+     * Gets the number of open statements, prepared or not.
+     * 
+     * @return the count
+     */
+    public static int getOpenStatementCount() {
+        return KyselyCleaner.OPEN_STATEMENTS.get();
+    }
+
+    /**
+     * Gets the number of open result sets, i.e. of server-side cursors.
+     * 
+     * @return the count
+     */
+    public static int getOpenCursorCount() {
+        return KyselyCleaner.OPEN_CURSORS.get();
+    }
+
+    /**
+     * Gets the number of <code>Kysely</code> objects which were garbage collected without being
+     * closed.
+     * 
+     * @return the count
+     */
+    public static long getLeakCount() {
+        return KyselyCleaner.LEAKS.get();
+    }
+
+    /**
+     * Enables or disables recording of the places where result sets are opened.
+     * 
+     * @param enabled <code>true</code> to enable.
+     */
+    public static void setLeakDetection(final boolean enabled) {
+        KyselyCleaner.leakDetection = enabled;
+    }
+
+    /**
+     * Closes a JDBC resource, logging any failure.
+     * 
+     * @param resource A statement or result set.
+     */
+    private static void closeQuietly(final Object resource) {
+        try {
+            if (resource instanceof ResultSet) {
+                ((ResultSet) resource).close();
+            } else {
+                ((Statement) resource).close();
+            }
+        } catch (final SQLException e) {
+            Logger.print(e);
+        }
+    }
+
+    /**
+     * The JDBC resources of a {@link Kysely}. Must not refer to the <code>Kysely</code> itself,
+     * otherwise it would never become unreachable.
+     * 
+     * @author Dimo Vanchev
+     */
+    static final class Handles {
+        /**
+         * The prepared statement, or <code>null</code>. Changed under the lock, but read without
+         * it, as reads happen for every fetched row.
+         */
+        private volatile PreparedStatement preparedStatement;
+        /** The result set of the last execution, or <code>null</code>. Read without the lock. */
+        private volatile ResultSet result;
+        /**
+         * The statement which produced {@link #result}, if it is not {@link #preparedStatement};
+         * otherwise <code>null</code>.
+         */
+        private Statement resultStatement;
+        /** Reads {@link #result} ahead, or <code>null</code>. Read without the lock. */
+        private volatile Esihaku prefetch;
+        /** Where {@link #result} was opened; recorded only with leak detection. */
+        private Throwable openedAt;
+        /** The registered reference, or <code>null</code> while nothing is open. */
+        private Tracker tracker;
+
+        /**
+         * @return the prepared statement, or <code>null</code>.
+         */
+        PreparedStatement getPreparedStatement() {
+            return preparedStatement;
+        }
+
+        /**
+         * @return the result set, or <code>null</code>.
+         */
+        ResultSet getResult() {
+            return result;
+        }
+
+        /**
+         * @return the prefetcher of the result set, or <code>null</code>.
+         */
+        Esihaku getPrefetch() {
+            return prefetch;
+        }
+
+        /**
+         * Sets the prefetcher of the current result set; it is cancelled before the result set is
+         * closed.
+         * 
+         * @param e The prefetcher.
+         */
+        synchronized void setPrefetch(final Esihaku e) {
+            prefetch = e;
+        }
+
+        /**
+         * Sets the prepared statement. A different, previous one is closed.
+         * 
+         * @param owner The <code>Kysely</code> owning these handles.
+         * @param ps The prepared statement.
+         */
+        synchronized void setPreparedStatement(final Kysely owner, final PreparedStatement ps) {
+            if (ps == preparedStatement) {
+                return;
+            }
+            closePreparedStatement();
+            if (ps != null) {
+                preparedStatement = ps;
+                KyselyCleaner.OPEN_STATEMENTS.incrementAndGet();
+                register(owner);
+            }
+        }
+
+        /**
+         * Sets the result set of an execution. The previous result set is closed, together with
+         * its statement unless it is the prepared one.
+         * 
+         * @param owner The <code>Kysely</code> owning these handles.
+         * @param rs The result set.
+         */
+        synchronized void setResult(final Kysely owner, final ResultSet rs) {
+            if (rs == result) {
+                return;
+            }
+            closeResult(false);
+            if (rs == null) {
+                return;
+            }
+            result = rs;
+            KyselyCleaner.OPEN_CURSORS.incrementAndGet();
+            try {
+                final Statement st = rs.getStatement();
+                if ((st != null) && (st != preparedStatement)) {
+                    resultStatement = st;
+                    KyselyCleaner.OPEN_STATEMENTS.incrementAndGet();
+                }
+            } catch (final SQLException e) {
+                Logger.print(e);
+            }
+            if (KyselyCleaner.leakDetection) {
+                openedAt = new Throwable("Kysely result opened here");
+            }
+            register(owner);
+        }
+
+        /**
+         * Closes the result set and, if requested, the statement which produced it - which may be
+         * the prepared statement.
+         * 
+         * @param closeStatement Whether to close the statement too.
+         */
+        synchronized void closeResult(final boolean closeStatement) {
+            if (result == null) {
+                return;
+            }
+            final boolean fromPrepared = (resultStatement == null);
+            if (prefetch != null) {
+                prefetch.cancel();
+                prefetch = null;
+            }
+            KyselyCleaner.closeQuietly(result);
+            result = null;
+            openedAt = null;
+            KyselyCleaner.OPEN_CURSORS.decrementAndGet();
+            if (resultStatement != null) {
+                // a plain statement serves a single result, so it is always closed with it
+                KyselyCleaner.closeQuietly(resultStatement);
+                resultStatement = null;
+                KyselyCleaner.OPEN_STATEMENTS.decrementAndGet();
+            } else if (closeStatement && fromPrepared) {
+                closePreparedStatement();
+            }
+            unregisterIfIdle();
+        }
+
+        /**
+         * Closes everything.
+         */
+        synchronized void closeAll() {
+            closeResult(false);
+            closePreparedStatement();
+        }
+
+        /**
+         * Closes the prepared statement, if any.
+         */
+        private void closePreparedStatement() {
+            if (preparedStatement != null) {
+                KyselyCleaner.closeQuietly(preparedStatement);
+                preparedStatement = null;
+                KyselyCleaner.OPEN_STATEMENTS.decrementAndGet();
+            }
+            unregisterIfIdle();
+        }
+
+        /**
+         * Registers the owner for cleaning, unless it is already registered.
+         * 
+         * @param owner The <code>Kysely</code> owning these handles.
+         */
+        private void register(final Kysely owner) {
+            if (tracker == null) {
+                tracker = new Tracker(owner, this);
+                KyselyCleaner.TRACKERS.add(tracker);
+            }
+        }
+
+        /**
+         * Unregisters the owner once nothing is open any more.
+         */
+        private void unregisterIfIdle() {
+            if ((tracker != null) && (result == null) && (preparedStatement == null)) {
+                KyselyCleaner.TRACKERS.remove(tracker);
+                tracker.clear();
+                tracker = null;
+            }
+        }
+    }
+
+    /**
+     * Phantom reference to a registered <code>Kysely</code>, holding its handles.
+     * 
+     * @author Dimo Vanchev
+     */
+    private static final class Tracker extends PhantomReference<Kysely> {
+        /** The handles of the <code>Kysely</code>. */
+        private final Handles handles;
+
+        /**
+         * Constructor.
+         * 
+         * @param owner The <code>Kysely</code>.
+         * @param handles Its handles.
+         */
+        private Tracker(final Kysely owner, final Handles handles) {
+            super(owner, KyselyCleaner.QUEUE);
+            this.handles = handles;
+        }
+
+        /**
+         * Closes the resources of a <code>Kysely</code> which became unreachable while still open.
+         */
+        private void reap() {
+            if (!KyselyCleaner.TRACKERS.remove(this)) {
+                // closed in the meantime
+                return;
+            }
+            final Throwable openedAt;
+            synchronized (handles) {
+                openedAt = handles.openedAt;
+                handles.tracker = null;
+                handles.closeAll();
+            }
+            KyselyCleaner.LEAKS.incrementAndGet();
+            if (openedAt != null) {
+                KyselyCleaner.LOG.warn("Kysely was garbage collected without being closed", openedAt);
+            } else {
+                KyselyCleaner.LOG.debug("Kysely was garbage collected without being closed");
+            }
+        }
+    }
+}
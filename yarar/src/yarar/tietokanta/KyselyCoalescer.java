@@ -0,0 +1,177 @@
+package yarar.tietokanta;
+
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import yarar.rikai.Logger;
+
+/**
+ * Coalesces identical concurrent queries (<i>single flight</i>): while a {@link Kysely} is being
+ * executed with some parameter values, other threads asking for the same <code>Kysely</code> with
+ * equal values do not execute it again, but wait for the running execution and get its result.
+ * This keeps a burst of identical lookups, e.g. when a popular cached entry expires, from hitting
+ * the database once per thread.
+ * <p>
+ * Results are read into {@link Tulos} objects, which are immutable and shared by all waiting
+ * threads. Only executions which overlap in time are coalesced; nothing is cached afterwards.
+ * As the connection of a {@link Tietokanta} is not meant to be shared by threads, each execution
+ * runs on a connection borrowed from it, and the <code>Kysely</code> only names the query: its
+ * statement and result are not used. Using a coalescer is opt-in: queries executed directly by {@link Tietokanta} are
+ * not affected.
+ * </p>
+ * <p>
+ * A failed or rejected execution yields <code>null</code> for the thread which ran it and for
+ * all threads which waited for it. The failure is logged once, by the thread which ran it.
+ * </p>
+ * 
+ * @author Dimo Vanchev
+ */
+public final class KyselyCoalescer {
+
+    /** The database. */
+    private final Tietokanta db;
+    /** The running executions. */
+    private final ConcurrentHashMap<Flight, FutureTask<Tulos>> flights =
+            new ConcurrentHashMap<Flight, FutureTask<Tulos>>();
+    /** Number of queries executed. */
+    private final AtomicLong executed = new AtomicLong();
+    /** Number of queries which got the result of another thread's execution. */
+    private final AtomicLong coalesced = new AtomicLong();
+
+    /**
+     * Creates a new coalescer.
+     * 
+     * @param db The database.
+     */
+    public KyselyCoalescer(final Tietokanta db) {
+        this.db = db;
+    }
+
+    /**
+     * Executes a <code>Kysely</code>, or waits for a running execution of it with equal
+     * values.
+     * 
+     * @param kysely The <code>Kysely</code>.
+     * @param values Array of field type and value pairs, as for
+     *        {@link Tietokanta#doPreparedQuery(Kysely, TypeValuePair[])}.
+     * @return the rows, or <code>null</code> if the execution failed or was not admitted; the
+     *         failure is logged once, not by every waiting thread.
+     */
+    public Tulos query(final Kysely kysely, final TypeValuePair[] values) {
+        final Flight flight = new Flight(kysely, values);
+        FutureTask<Tulos> task = flights.get(flight);
+        boolean leader = false;
+        if (task == null) {
+            final FutureTask<Tulos> created = new FutureTask<Tulos>(new Callable<Tulos>() {
+                @Override
+                public Tulos call() {
+                    try {
+                        return db.queryApart(kysely, values);
+                    } catch (final RuntimeException e) {
+                        // logged here, so that the waiting threads do not log it again
+                        Logger.print(e);
+                        return null;
+                    }
+                }
+            });
+            task = flights.putIfAbsent(flight, created);
+            if (task == null) {
+                task = created;
+                leader = true;
+            }
+        }
+
+        if (leader) {
+            executed.incrementAndGet();
+            try {
+                task.run();
+            } finally {
+                flights.remove(flight, task);
+            }
+        } else {
+            coalesced.incrementAndGet();
+        }
+
+        try {
+            return task.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (final ExecutionException e) {
+            Logger.print(e);
+        }
+        return null;
+    }
+
+    /**
+     * Gets the number of queries executed.
+     * 
+     * @return the count
+     */
+    public long getExecutedCount() {
+        return executed.get();
+    }
+
+    /**
+     * Gets the number of queries which were not executed, but got the result of a concurrent
+     * execution.
+     * 
+     * @return the count
+     */
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    /**
+     * Identifies an execution: the <code>Kysely</code> (by identity) and the parameter types and
+     * values.
+     * 
+     * @author Dimo Vanchev
+     */
+    private static final class Flight {
+        /** The <code>Kysely</code>. */
+        private final Kysely kysely;
+        /** The parameter types. */
+        private final Feldtyp[] types;
+        /** The parameter values. */
+        private final Object[] values;
+        /** The hash code. */
+        private final int hash;
+
+        /**
+         * Constructor.
+         * 
+         * @param kysely The <code>Kysely</code>.
+         * @param pairs The parameters.
+         */
+        Flight(final Kysely kysely, final TypeValuePair[] pairs) {
+            this.kysely = kysely;
+            types = new Feldtyp[pairs.length];
+            values = new Object[pairs.length];
+            for (int i = 0; i < pairs.length; i++) {
+                types[i] = pairs[i].getType();
+                values[i] = pairs[i].getValue();
+            }
+            hash = (31 * ((31 * System.identityHashCode(kysely)) + Arrays.hashCode(types)))
+                    + Arrays.deepHashCode(values);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (!(o instanceof Flight)) {
+                return false;
+            }
+            final Flight f = (Flight) o;
+            return (kysely == f.kysely) && (hash == f.hash) && Arrays.equals(types, f.types)
+                    && Arrays.deepEquals(values, f.values);
+        }
+    }
+}
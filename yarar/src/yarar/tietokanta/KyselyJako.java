@@ -0,0 +1,119 @@
+package yarar.tietokanta;
+
+/**
+ * How a query is split into partitions which are executed in parallel, see
+ * {@link Tietokanta#doPartitionedQuery(Kysely, Parametrit, KyselyJako, java.util.Comparator)}.<br>
+ * <b>Jako</b> is a <a href="http://en.wikipedia.org/wiki/Finnish_language"
+ * target="_blank">Finnish</a> word for <i>division, split</i>.
+ * <p>
+ * The SQL of the partitioned <code>Kysely</code> restricts its rows by named parameters (see
+ * {@link KyselyPohja}), which are set for each partition:
+ * </p>
+ * <ul>
+ * <li>a range split sets <code>:partitionStart</code> (inclusive) and <code>:partitionEnd</code>
+ * (exclusive), e.g. <code>WHERE id &gt;= :partitionStart AND id &lt; :partitionEnd</code>; the
+ * first and the last partitions are open-ended, so no row outside the given range is lost;</li>
+ * <li>a hash split sets <code>:partitionCount</code> and <code>:partitionIndex</code>, e.g.
+ * <code>WHERE abs(hashtext(code)) % :partitionCount = :partitionIndex</code>.</li>
+ * </ul>
+ * 
+ * @author Dimo Vanchev
+ */
+public final class KyselyJako {
+
+    /** Parameter holding the start of a range partition. */
+    public static final String START = "partitionStart";
+    /** Parameter holding the end of a range partition. */
+    public static final String END = "partitionEnd";
+    /** Parameter holding the number of hash partitions. */
+    public static final String COUNT = "partitionCount";
+    /** Parameter holding the index of a hash partition. */
+    public static final String INDEX = "partitionIndex";
+
+    /** Number of partitions. */
+    private final int parts;
+    /** Whether this is a range split. */
+    private final boolean range;
+    /** The start of the range. */
+    private final long start;
+    /** The end of the range. */
+    private final long end;
+
+    /**
+     * Constructor.
+     * 
+     * @param parts Number of partitions.
+     * @param range Whether this is a range split.
+     * @param start The start of the range.
+     * @param end The end of the range.
+     */
+    private KyselyJako(final int parts, final boolean range, final long start, final long end) {
+        if (parts < 1) {
+            throw new IllegalArgumentException("Number of partitions must be positive: " + parts);
+        }
+        this.parts = parts;
+        this.range = range;
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * Creates a range split into partitions of equal width.
+     * 
+     * @param start The expected smallest key, e.g. <code>MIN(id)</code>.
+     * @param end The expected largest key plus one.
+     * @param parts Number of partitions.
+     * @return the split
+     */
+    public static KyselyJako range(final long start, final long end, final int parts) {
+        return new KyselyJako(parts, true, start, end);
+    }
+
+    /**
+     * Creates a hash split.
+     * 
+     * @param parts Number of partitions.
+     * @return the split
+     */
+    public static KyselyJako hash(final int parts) {
+        return new KyselyJako(parts, false, 0L, 0L);
+    }
+
+    /**
+     * Gets the number of partitions.
+     * 
+     * @return the count
+     */
+    public int getPartCount() {
+        return parts;
+    }
+
+    /**
+     * Checks that a template has the parameters of this split.
+     * 
+     * @param template The template.
+     * @throws IllegalArgumentException if a parameter is missing.
+     */
+    void check(final KyselyPohja template) {
+        template.getSlot(range ? KyselyJako.START : KyselyJako.COUNT);
+        template.getSlot(range ? KyselyJako.END : KyselyJako.INDEX);
+    }
+
+    /**
+     * Sets the parameters of a partition.
+     * 
+     * @param p The parameters.
+     * @param part The index of the partition.
+     */
+    void bind(final Parametrit p, final int part) {
+        if (!range) {
+            p.setInt(KyselyJako.COUNT, parts);
+            p.setInt(KyselyJako.INDEX, part);
+            return;
+        }
+        final long width = Math.max(1L, (end - start + parts - 1) / parts);
+        p.setLong(KyselyJako.START, (part == 0) ? Long.MIN_VALUE : start + (part * width));
+        p.setLong(KyselyJako.END, (part == (parts - 1)) ? Long.MAX_VALUE
+                : start + ((part + 1) * width));
+    }
+}
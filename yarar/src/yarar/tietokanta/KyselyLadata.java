@@ -1,139 +1,389 @@
-package yarar.tietokanta;
-
-import java.io.InputStream;
-import java.util.Enumeration;
-import java.util.HashMap;
-import java.util.Set;
-
-import yarar.rikai.ConfigParser;
-import yarar.rikai.Logger;
-
-/**
- * This is a class that loads all SQL calls of the application.<br>
- * <b>Kysely</b> is a <a href="http://en.wikipedia.org/wiki/Finnish_language"
- * target="_blank">Finnish</a> word for <i>query</i>. <br>
- * <b>Ladata</b> is a <a href="http://en.wikipedia.org/wiki/Finnish_language"
- * target="_blank">Finnish</a> verb with meaning <i>load, charge</i>.
- * 
- * @author Dimo Vanchev
- * 
- */
-public final class KyselyLadata {
-
-    /**
-     * Parser of configuration with SQLs.
-     */
-    private final ConfigParser configParser;
-
-    /**
-     * {@link Enumeration} containing all keys from the relevant configuration file.
-     */
-    private final Set<Object> keys;
-
-    /**
-     * The single instance of this class.
-     */
-    private static KyselyLadata selfInstance;
-
-    /**
-     * This {@link HashMap} contains all SQLs needed for application's operations, wrapped in
-     * {@link Kysely} objects.
-     */
-    private HashMap<String, Kysely> sqls;
-
-    /** Singleton private constructor. */
-    private KyselyLadata() {
-	KyselyLadata.selfInstance = this;
-
-	// loading properties from the the relevant properties file.
-	configParser = new ConfigParser("kyselyladata.properties");
-	keys = configParser.getAllKeys();
-	loadSQLs();
-    }
-
-    /**
-     * Singleton instance getter.
-     * 
-     * @return The single instance of this class.
-     */
-    public static KyselyLadata getInstance() {
-	if (KyselyLadata.selfInstance == null) {
-	    new KyselyLadata();
-	}
-
-	return KyselyLadata.selfInstance;
-    }
-
-    /**
-     * Returns the {@link Kysely} object assigned to the relevant key.
-     * 
-     * @param key
-     *            To search in the sql's <code>HashMap</code>
-     * @return the found <code>Kysely</code> object.
-     */
-    public Kysely getKysely(final String key) {
-	final Kysely kysely = sqls.get(key);
-	if (kysely == null) {
-	    throw new KyselyNotFoundException(key);
-	}
-	return kysely;
-    }
-
-    /**
-     * Loads all SQLs and wraps them in {@link Kysely} objects.
-     */
-    private void loadSQLs() {
-	// initiating the HashMap
-	sqls = new HashMap<String, Kysely>(keys.size());
-	// taking current thread as a loader
-	final ClassLoader loader = Thread.currentThread()
-		.getContextClassLoader();
-
-	// start iterating over all keys
-	for (final Object key : keys) {
-	    final String fileName = configParser.getValue((String) key);
-	    final String sql = readFile(fileName, loader);
-	    sqls.put((String) key, new Kysely(sql));
-	}
-    }
-
-    /**
-     * Performs the reading from the specified file and returns the content as {@link String}.
-     * 
-     * @param fileName
-     *            The name of the file. It should be located in the classpath.
-     * @param loader
-     *            Preferably use <code>Thread.currentThread().getContextClassLoader()</code>
-     * @return File's content
-     */
-    private String readFile(final String fileName, ClassLoader loader) {
-	InputStream inputStream = null;
-	String result = null;
-	try {
-	    if (loader == null) {
-		loader = ClassLoader.getSystemClassLoader();
-	    }
-
-	    // Returns null on lookup failures:
-	    inputStream = loader.getResourceAsStream(fileName);
-	    if (inputStream != null) {
-		result = ConfigParser.convertStreamToString(inputStream);
-	    } else {
-		throw new Exception("InputStream is <null> when trying to read: " + fileName);
-	    }
-
-	} catch (final Exception e) {
-	    Logger.print(e);
-	} finally {
-	    if (inputStream != null) {
-		try {
-		    inputStream.close();
-		} catch (final Throwable ignore) {
-		    // do nothing
-		}
-	    }
-	}
-	// Logger.print("The SQL loaded from [" + fileName + "] is:\n" + result);
-	return result;
-    }
-}
+package yarar.tietokanta;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import yarar.rikai.ClassLogger;
+import yarar.rikai.ConfigParser;
+import yarar.rikai.Logger;
+
+/**
+ * This is a class that loads all SQL calls of the application.<br>
+ * <b>Kysely</b> is a <a href="http://en.wikipedia.org/wiki/Finnish_language"
+ * target="_blank">Finnish</a> word for <i>query</i>. <br>
+ * <b>Ladata</b> is a <a href="http://en.wikipedia.org/wiki/Finnish_language"
+ * target="_blank">Finnish</a> verb with meaning <i>load, charge</i>.
+ * <p>
+ * Each key of <code>kyselyladata.properties</code> maps to the name of a file holding an SQL. A key
+ * ending with {@value #READ_ONLY_SUFFIX} instead marks the query with the rest of the key as
+ * read-only (<code>true</code>) or not (<code>false</code>), overriding the detection of
+ * {@link Kysely#isReadOnly()}. Read-only queries may be executed on read replicas. A key ending
+ * with {@value #PRIORITY_SUFFIX} sets the {@link KyselyPriority} of the query, as
+ * <code>high</code>, <code>normal</code> or <code>low</code>. A key ending with
+ * {@value #REFERENCE_SUFFIX} declares the query as a reference table, see
+ * {@link #getViitetaulu(Tietokanta, String)}.
+ * </p>
+ * <p>
+ * Keys starting with {@value #SETTING_PREFIX} are settings:
+ * </p>
+ * <ul>
+ * <li><code>kyselyladata.loading</code> - <code>eager</code> (the default) reads all SQL files when
+ * the instance is created, by <code>kyselyladata.threads</code> threads in parallel (the number of
+ * processors by default); <code>lazy</code> reads each file on the first
+ * {@link #getKysely(String)} of its key.</li>
+ * <li><code>kyselyladata.hot</code> - comma separated keys of the queries prepared by
+ * {@link #warmUp(Tietokanta)}.</li>
+ * </ul>
+ * <p>
+ * The instance is thread-safe.
+ * </p>
+ * 
+ * @author Dimo Vanchev
+ * 
+ */
+public final class KyselyLadata {
+
+    /** Leveled logger of this class. */
+    private static final ClassLogger LOG = Logger.getLogger(KyselyLadata.class);
+    /** Suffix of the keys marking queries as read-only. */
+    private static final String READ_ONLY_SUFFIX = ".readonly";
+    /** Suffix of the keys setting the priority of queries. */
+    private static final String PRIORITY_SUFFIX = ".priority";
+    /** Suffix of the keys declaring queries as reference tables. */
+    private static final String REFERENCE_SUFFIX = ".reference";
+    /** Default interval of polling a reference table, in milliseconds. */
+    private static final long REFERENCE_POLL_MILLIS = 60000L;
+    /** Default interval of checking for notifications of a reference table, in milliseconds. */
+    private static final long REFERENCE_LISTEN_MILLIS = 1000L;
+    /** Prefix of the keys holding settings. */
+    private static final String SETTING_PREFIX = "kyselyladata.";
+
+    /**
+     * Parser of configuration with SQLs.
+     */
+    private final ConfigParser configParser;
+
+    /**
+     * {@link Enumeration} containing all keys from the relevant configuration file.
+     */
+    private final Set<Object> keys;
+
+    /**
+     * This map contains the SQLs loaded so far, wrapped in {@link Kysely} objects.
+     */
+    private final ConcurrentHashMap<String, Kysely> sqls;
+
+    /** The reference tables created so far. */
+    private final ConcurrentHashMap<String, Viitetaulu> references =
+            new ConcurrentHashMap<String, Viitetaulu>();
+
+    /** The class loader the SQL files are read by: the context one of the creating thread. */
+    private final ClassLoader loader;
+
+    /**
+     * Holds the single instance of this class, which is created on first use. The class loader
+     * guarantees that it is created once, with no locking afterwards.
+     */
+    private static final class Holder {
+        /** The single instance. */
+        private static final KyselyLadata INSTANCE = new KyselyLadata();
+    }
+
+    /** Singleton private constructor. */
+    private KyselyLadata() {
+        // loading properties from the the relevant properties file.
+        configParser = new ConfigParser("kyselyladata.properties");
+        keys = configParser.getAllKeys();
+        sqls = new ConcurrentHashMap<String, Kysely>(keys.size());
+        loader = Thread.currentThread().getContextClassLoader();
+        if (!"lazy".equalsIgnoreCase(getSetting("loading"))) {
+            loadSQLs();
+        }
+    }
+
+    /**
+     * Singleton instance getter.
+     * 
+     * @return The single instance of this class.
+     */
+    public static KyselyLadata getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Returns the {@link Kysely} object assigned to the relevant key. With lazy loading, the SQL
+     * file is read by the first call for the key.
+     * 
+     * @param key
+     *            To search in the sql's map
+     * @return the found <code>Kysely</code> object.
+     */
+    public Kysely getKysely(final String key) {
+        Kysely kysely = sqls.get(key);
+        if (kysely == null) {
+            kysely = load(key);
+            if (kysely == null) {
+                throw new KyselyNotFoundException(key);
+            }
+        }
+        return kysely;
+    }
+
+    /**
+     * Prepares the queries listed by the <code>kyselyladata.hot</code> setting, so that their first
+     * executions do not pay for parsing and planning. Each one is prepared where
+     * {@link Tietokanta#prepareQuery(Kysely)} puts it, i.e. a read-only query on a replica.
+     * 
+     * @param db The database.
+     * @return the number of prepared queries
+     */
+    public int warmUp(final Tietokanta db) {
+        final String hot = getSetting("hot");
+        if (hot == null) {
+            return 0;
+        }
+        int prepared = 0;
+        for (final String k : hot.split(",")) {
+            final String key = k.trim();
+            if (key.isEmpty()) {
+                continue;
+            }
+            try {
+                final Kysely kysely = getKysely(key);
+                db.prepareQuery(kysely);
+                if (kysely.hasPreparedStatement()) {
+                    prepared++;
+                }
+            } catch (final KyselyNotFoundException e) {
+                Logger.print(e);
+            }
+        }
+        KyselyLadata.LOG.info("KyselyLadata:: {} hot queries prepared.", prepared);
+        return prepared;
+    }
+
+    /**
+     * Returns the reference table of a query declared by the following keys, where
+     * <code>countries</code> stands for the key of the query:
+     * <ul>
+     * <li><code>countries.reference</code> - the label of the primary key column;</li>
+     * <li><code>countries.reference.index</code> - comma separated labels of the columns with a
+     * secondary index (optional);</li>
+     * <li><code>countries.reference.version</code> - the label of the version column, making
+     * refreshes incremental (optional);</li>
+     * <li><code>countries.reference.listen</code> - the PostgreSQL notification channel; without
+     * it, the table is polled (optional);</li>
+     * <li><code>countries.reference.refresh</code> - the interval of polling, or of checking for
+     * notifications, in milliseconds; 60000 and 1000 by default.</li>
+     * <li><code>countries.reference.fullreload</code> - the interval of the full reloads of a table
+     * with a version column, in milliseconds; 600000 by default.</li>
+     * </ul>
+     * The table is created, loaded and scheduled for refreshing by the first call for the key,
+     * with the database of that call; later calls return the same table. The first scheduled
+     * refresh runs one interval after the load.
+     * 
+     * @param db The database.
+     * @param key The key of the query.
+     * @return the reference table
+     * @throws KyselyNotFoundException if there is no such query or it is not declared as a
+     *         reference table.
+     */
+    public Viitetaulu getViitetaulu(final Tietokanta db, final String key) {
+        Viitetaulu table = references.get(key);
+        if (table != null) {
+            return table;
+        }
+        synchronized (references) {
+            table = references.get(key);
+            if (table != null) {
+                return table;
+            }
+            final String prefix = key + KyselyLadata.REFERENCE_SUFFIX;
+            final String keyColumn = configParser.getValue(prefix);
+            if (keyColumn == null) {
+                throw new KyselyNotFoundException(prefix);
+            }
+            final String index = configParser.getValue(prefix + ".index");
+            final List<String> indexColumns = new ArrayList<String>();
+            for (final String c : (index != null) ? index.split(",") : new String[0]) {
+                if (!c.trim().isEmpty()) {
+                    indexColumns.add(c.trim());
+                }
+            }
+            table = new Viitetaulu(db, getKysely(key), keyColumn.trim(),
+                    indexColumns.toArray(new String[indexColumns.size()]));
+            final String version = configParser.getValue(prefix + ".version");
+            if (version != null) {
+                table.setVersionColumn(version.trim());
+            }
+            final String fullReload = configParser.getValue(prefix + ".fullreload");
+            if (fullReload != null) {
+                table.setFullReloadInterval(Long.parseLong(fullReload.trim()));
+            }
+            final String channel = configParser.getValue(prefix + ".listen");
+            final String refresh = configParser.getValue(prefix + ".refresh");
+            long millis = (channel != null) ? KyselyLadata.REFERENCE_LISTEN_MILLIS
+                    : KyselyLadata.REFERENCE_POLL_MILLIS;
+            if (refresh != null) {
+                millis = Long.parseLong(refresh.trim());
+            }
+            table.reload();
+            if (channel != null) {
+                table.listen(channel.trim(), millis);
+            } else {
+                table.poll(millis);
+            }
+            KyselyLadata.LOG.info("KyselyLadata:: Reference table {} loaded, {} rows.", key,
+                    table.size());
+            references.put(key, table);
+            return table;
+        }
+    }
+
+    /**
+     * Gets a setting.
+     * 
+     * @param name The name of the setting, without {@link #SETTING_PREFIX}.
+     * @return the value, or <code>null</code> if not set.
+     */
+    private String getSetting(final String name) {
+        final String value = configParser.getValue(KyselyLadata.SETTING_PREFIX + name);
+        return (value != null) ? value.trim() : null;
+    }
+
+    /**
+     * Checks if a key names a query, i.e. it is neither a read-only, priority or reference mark
+     * nor a setting.
+     * 
+     * @param key The key.
+     * @return <code>true</code> for a query key
+     */
+    private static boolean isQueryKey(final String key) {
+        return !key.endsWith(KyselyLadata.READ_ONLY_SUFFIX)
+                && !key.endsWith(KyselyLadata.PRIORITY_SUFFIX)
+                && !key.endsWith(KyselyLadata.REFERENCE_SUFFIX)
+                && !key.contains(KyselyLadata.REFERENCE_SUFFIX + ".")
+                && !key.startsWith(KyselyLadata.SETTING_PREFIX);
+    }
+
+    /**
+     * Loads all SQLs in parallel and wraps them in {@link Kysely} objects.
+     */
+    private void loadSQLs() {
+        int threads = Runtime.getRuntime().availableProcessors();
+        final String setting = getSetting("threads");
+        if (setting != null) {
+            threads = Integer.parseInt(setting);
+        }
+        final List<Callable<Kysely>> tasks = new ArrayList<Callable<Kysely>>(keys.size());
+        for (final Object key : keys) {
+            if (KyselyLadata.isQueryKey((String) key)) {
+                tasks.add(new Callable<Kysely>() {
+                    @Override
+                    public Kysely call() {
+                        return load((String) key);
+                    }
+                });
+            }
+        }
+        final ExecutorService executor =
+                Executors.newFixedThreadPool(Math.max(1, Math.min(threads, tasks.size())));
+        try {
+            executor.invokeAll(tasks);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Reads the SQL of a key and wraps it in a {@link Kysely}, applying its marks. If
+     * another thread has loaded the key meanwhile, its <code>Kysely</code> is kept.
+     * 
+     * @param key The key.
+     * @return the <code>Kysely</code>, or <code>null</code> if the key is not a query or its file
+     *         cannot be read.
+     */
+    private Kysely load(final String key) {
+        if (!KyselyLadata.isQueryKey(key)) {
+            return null;
+        }
+        final String fileName = configParser.getValue(key);
+        if (fileName == null) {
+            return null;
+        }
+        final String sql = readFile(fileName, loader);
+        if (sql == null) {
+            return null;
+        }
+        final Kysely kysely;
+        try {
+            kysely = new Kysely(sql);
+        } catch (final IllegalArgumentException e) {
+            Logger.print(e);
+            return null;
+        }
+        final String readOnly = configParser.getValue(key + KyselyLadata.READ_ONLY_SUFFIX);
+        if (readOnly != null) {
+            kysely.setReadOnly(Boolean.parseBoolean(readOnly.trim()));
+        }
+        final String priority = configParser.getValue(key + KyselyLadata.PRIORITY_SUFFIX);
+        if (priority != null) {
+            try {
+                kysely.setPriority(KyselyPriority.valueOf(priority.trim().toUpperCase()));
+            } catch (final IllegalArgumentException e) {
+                KyselyLadata.LOG.warn("Unknown priority {} of {}", priority, key);
+            }
+        }
+        final Kysely loaded = sqls.putIfAbsent(key, kysely);
+        return (loaded != null) ? loaded : kysely;
+    }
+
+    /**
+     * Performs the reading from the specified file and returns the content as {@link String}.
+     * 
+     * @param fileName
+     *            The name of the file. It should be located in the classpath.
+     * @param loader
+     *            Preferably use <code>Thread.currentThread().getContextClassLoader()</code>
+     * @return File's content
+     */
+    private String readFile(final String fileName, ClassLoader loader) {
+        InputStream inputStream = null;
+        String result = null;
+        try {
+            if (loader == null) {
+                loader = ClassLoader.getSystemClassLoader();
+            }
+
+            // Returns null on lookup failures:
+            inputStream = loader.getResourceAsStream(fileName);
+            if (inputStream != null) {
+                result = ConfigParser.convertStreamToString(inputStream);
+            } else {
+                throw new Exception("InputStream is <null> when trying to read: " + fileName);
+            }
+
+        } catch (final Exception e) {
+            Logger.print(e);
+        } finally {
+            if (inputStream != null) {
+                try {
+                    inputStream.close();
+                } catch (final Throwable ignore) {
+                    // do nothing
+                }
+            }
+        }
+        // Logger.print("The SQL loaded from [" + fileName + "] is:\n" + result);
+        return result;
+    }
+}
@@ -0,0 +1,349 @@
+package yarar.tietokanta;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An SQL with named parameters, like <code>:userId</code>, compiled into a plan for binding them.
+ * <br>
+ * <b>Pohja</b> is a <a href="http://en.wikipedia.org/wiki/Finnish_language"
+ * target="_blank">Finnish</a> word for <i>template, base</i>.
+ * <p>
+ * The SQL is parsed once, when its {@link Kysely} is created, into the text between the parameters
+ * and the slot of each parameter; a name may be used several times. Names inside quotes and
+ * comments, and PostgreSQL casts like <code>::int</code>, are left alone. The plan is immutable and
+ * shared by all threads; the values are held by {@link Parametrit}.
+ * </p>
+ * <p>
+ * A parameter written as <code>IN (:name)</code> is a list. Its <code>?</code> markers are expanded
+ * to the next bucket size of 1, 4, 16, 64, ... (powers of 4), padded by repeating the last value,
+ * so that lists of any length use only a few distinct statements. The SQL of each shape is built
+ * once and cached.
+ * </p>
+ * 
+ * @author Dimo Vanchev
+ */
+public final class KyselyPohja {
+
+    /** Growth factor of the list buckets. */
+    private static final int BUCKET_FACTOR = 4;
+    /** Bits of a shape key per list; a bucket exponent of up to 15 fits. */
+    private static final int BUCKET_BITS = 4;
+
+    /** The name of each slot. */
+    private final String[] names;
+    /** The slot of each name. */
+    private final Map<String, Integer> slots;
+    /** Whether each slot is an <code>IN</code> list. */
+    private final boolean[] lists;
+    /** The SQL text before each parameter, and after the last one. */
+    private final String[] fragments;
+    /** The slot of each parameter, in SQL order. */
+    private final int[] occurrences;
+    /** The SQL of each shape, by shape key. */
+    private final ConcurrentHashMap<Long, String> shapes = new ConcurrentHashMap<Long, String>();
+    /** The SQL with lists of one value, and the only SQL if there are no lists. */
+    private final String defaultSQL;
+
+    /**
+     * Constructor.
+     * 
+     * @param names The name of each slot.
+     * @param lists Whether each slot is a list.
+     * @param fragments The SQL text around the parameters.
+     * @param occurrences The slot of each parameter.
+     */
+    private KyselyPohja(final List<String> names, final boolean[] lists,
+            final List<String> fragments, final int[] occurrences) {
+        this.names = names.toArray(new String[names.size()]);
+        final Map<String, Integer> m = new HashMap<String, Integer>();
+        for (int i = 0; i < this.names.length; i++) {
+            m.put(this.names[i], i);
+        }
+        slots = Collections.unmodifiableMap(m);
+        this.lists = lists;
+        this.fragments = fragments.toArray(new String[fragments.size()]);
+        this.occurrences = occurrences;
+        defaultSQL = getShapeSQL(0L);
+    }
+
+    /**
+     * Compiles an SQL with named parameters.
+     * 
+     * @param sql The SQL.
+     * @return the template, or <code>null</code> if the SQL has no named parameters.
+     * @throws IllegalArgumentException if a name is used both as a list and as a single value.
+     */
+    public static KyselyPohja compile(final String sql) {
+        final List<String> names = new ArrayList<String>();
+        final List<Boolean> listFlags = new ArrayList<Boolean>();
+        final List<String> fragments = new ArrayList<String>();
+        final List<Integer> occurrences = new ArrayList<Integer>();
+        final int n = sql.length();
+        int from = 0;
+        int i = 0;
+        while (i < n) {
+            final char c = sql.charAt(i);
+            if ((c == '\'') || (c == '"')) {
+                // skip the quoted text; a doubled quote is part of it
+                i = sql.indexOf(c, i + 1);
+                i = (i < 0) ? n : i + 1;
+            } else if ((c == '-') && sql.startsWith("--", i)) {
+                i = sql.indexOf('\n', i);
+                i = (i < 0) ? n : i + 1;
+            } else if ((c == '/') && sql.startsWith("/*", i)) {
+                i = sql.indexOf("*/", i + 2);
+                i = (i < 0) ? n : i + 2;
+            } else if ((c == ':') && ((i + 1) < n) && (sql.charAt(i + 1) == ':')) {
+                i += 2;
+            } else if ((c == ':') && ((i + 1) < n)
+                    && Character.isJavaIdentifierStart(sql.charAt(i + 1))) {
+                int end = i + 2;
+                while ((end < n) && Character.isJavaIdentifierPart(sql.charAt(end))) {
+                    end++;
+                }
+                final String before = sql.substring(from, i);
+                final String name = sql.substring(i + 1, end);
+                final boolean list = KyselyPohja.isInList(before, sql.substring(end));
+                int slot = names.indexOf(name);
+                if (slot < 0) {
+                    slot = names.size();
+                    names.add(name);
+                    listFlags.add(list);
+                } else if (listFlags.get(slot) != list) {
+                    throw new IllegalArgumentException("Parameter :" + name
+                            + " is used both as an IN list and as a single value");
+                }
+                fragments.add(before);
+                occurrences.add(slot);
+                from = end;
+                i = end;
+            } else {
+                i++;
+            }
+        }
+        if (names.isEmpty()) {
+            return null;
+        }
+        fragments.add(sql.substring(from));
+
+        final boolean[] lists = new boolean[names.size()];
+        for (int s = 0; s < lists.length; s++) {
+            lists[s] = listFlags.get(s);
+        }
+        final int[] occ = new int[occurrences.size()];
+        for (int o = 0; o < occ.length; o++) {
+            occ[o] = occurrences.get(o);
+        }
+        return new KyselyPohja(names, lists, fragments, occ);
+    }
+
+    /**
+     * Creates an object holding values of the parameters.
+     * 
+     * @return the parameters, all unset
+     */
+    public Parametrit newParameters() {
+        return new Parametrit(this, names.length);
+    }
+
+    /**
+     * Gets the slot of a parameter, for the fast setters of {@link Parametrit}.
+     * 
+     * @param name The name, without the colon.
+     * @return the slot
+     * @throws IllegalArgumentException if there is no such parameter.
+     */
+    public int getSlot(final String name) {
+        final Integer slot = slots.get(name);
+        if (slot == null) {
+            throw new IllegalArgumentException("No parameter :" + name);
+        }
+        return slot;
+    }
+
+    /**
+     * Gets the name of a slot.
+     * 
+     * @param slot The slot.
+     * @return the name
+     */
+    public String getName(final int slot) {
+        return names[slot];
+    }
+
+    /**
+     * Checks if a slot is an <code>IN</code> list.
+     * 
+     * @param slot The slot.
+     * @return <code>true</code> for a list
+     */
+    public boolean isList(final int slot) {
+        return lists[slot];
+    }
+
+    /**
+     * Gets the SQL with lists of a single value; if there are no lists, the only SQL.
+     * 
+     * @return the SQL with <code>?</code> markers
+     */
+    public String getDefaultSQL() {
+        return defaultSQL;
+    }
+
+    /**
+     * Rebuilds the SQL the template was compiled from, named parameters included, e.g. to embed it
+     * into another query.
+     * 
+     * @return the SQL with <code>:name</code> parameters
+     */
+    String getSource() {
+        final StringBuilder sb = new StringBuilder(defaultSQL.length() + 16 * occurrences.length);
+        for (int o = 0; o < occurrences.length; o++) {
+            sb.append(fragments[o]).append(':').append(names[occurrences[o]]);
+        }
+        sb.append(fragments[occurrences.length]);
+        return sb.toString();
+    }
+
+    /**
+     * Gets the SQL for the list lengths of some parameters. The same shape always gives the same
+     * {@link String} instance.
+     * 
+     * @param p The parameters.
+     * @return the SQL with <code>?</code> markers
+     */
+    public String getSQL(final Parametrit p) {
+        final long key = getShapeKey(p);
+        if (key == 0L) {
+            return defaultSQL;
+        }
+        String sql = shapes.get(key);
+        if (sql == null) {
+            sql = getShapeSQL(key);
+            final String cached = shapes.putIfAbsent(key, sql);
+            if (cached != null) {
+                sql = cached;
+            }
+        }
+        return sql;
+    }
+
+    /**
+     * Binds parameters to a statement prepared from {@link #getSQL(Parametrit)}.
+     * 
+     * @param ps The statement.
+     * @param p The parameters.
+     * @throws SQLException if a database access error occurs.
+     * @throws IllegalStateException if a parameter is not set.
+     */
+    public void bind(final PreparedStatement ps, final Parametrit p) throws SQLException {
+        int index = 1;
+        for (final int slot : occurrences) {
+            final int count = lists[slot] ? KyselyPohja.getBucket(p.getLength(slot)) : 1;
+            p.bind(ps, index, slot, count);
+            index += count;
+        }
+    }
+
+    /**
+     * Computes the shape key: the bucket exponent of each list, {@link #BUCKET_BITS} bits per
+     * list slot.
+     * 
+     * @param p The parameters.
+     * @return the key; 0 if all lists have one value or less
+     */
+    private long getShapeKey(final Parametrit p) {
+        long key = 0L;
+        int shift = 0;
+        for (int slot = 0; slot < lists.length; slot++) {
+            if (lists[slot]) {
+                key |= ((long) KyselyPohja.getExponent(p.getLength(slot))) << shift;
+                shift += KyselyPohja.BUCKET_BITS;
+            }
+        }
+        return key;
+    }
+
+    /**
+     * Builds the SQL of a shape.
+     * 
+     * @param key The shape key.
+     * @return the SQL
+     */
+    private String getShapeSQL(final long key) {
+        final int[] buckets = new int[names.length];
+        int shift = 0;
+        for (int slot = 0; slot < lists.length; slot++) {
+            buckets[slot] = 1;
+            if (lists[slot]) {
+                final int exponent = (int) ((key >>> shift) & ((1 << KyselyPohja.BUCKET_BITS) - 1));
+                for (int e = 0; e < exponent; e++) {
+                    buckets[slot] *= KyselyPohja.BUCKET_FACTOR;
+                }
+                shift += KyselyPohja.BUCKET_BITS;
+            }
+        }
+        final StringBuilder sb = new StringBuilder(fragments[0].length() * 2);
+        for (int o = 0; o < occurrences.length; o++) {
+            sb.append(fragments[o]);
+            Murre.appendParameters(sb, buckets[occurrences[o]]);
+        }
+        sb.append(fragments[occurrences.length]);
+        return sb.toString();
+    }
+
+    /**
+     * Gets the bucket exponent of a list length: the smallest <i>e</i> with
+     * {@value #BUCKET_FACTOR}<sup><i>e</i></sup> &gt;= length.
+     * 
+     * @param length The list length.
+     * @return the exponent
+     */
+    private static int getExponent(final int length) {
+        int exponent = 0;
+        for (long bucket = 1; bucket < length; bucket *= KyselyPohja.BUCKET_FACTOR) {
+            exponent++;
+        }
+        return exponent;
+    }
+
+    /**
+     * Gets the bucket size of a list length.
+     * 
+     * @param length The list length.
+     * @return the number of <code>?</code> markers, at least 1
+     */
+    private static int getBucket(final int length) {
+        int bucket = 1;
+        while (bucket < length) {
+            bucket *= KyselyPohja.BUCKET_FACTOR;
+        }
+        return bucket;
+    }
+
+    /**
+     * Checks if a parameter stands alone inside <code>IN ( )</code>.
+     * 
+     * @param before The SQL before the parameter.
+     * @param after The SQL after the parameter.
+     * @return <code>true</code> for a list
+     */
+    private static boolean isInList(final String before, final String after) {
+        final String b = before.trim();
+        if (!b.endsWith("(") || !after.trim().startsWith(")")) {
+            return false;
+        }
+        final String in = b.substring(0, b.length() - 1).trim();
+        return (in.length() >= 2)
+                && in.regionMatches(true, in.length() - 2, "IN", 0, 2)
+                && ((in.length() == 2) || !Character.isJavaIdentifierPart(in.charAt(in.length()
+                        - 3)));
+    }
+}
@@ -0,0 +1,17 @@
+package yarar.tietokanta;
+
+/**
+ * Priority classes of queries, used by the {@link AdmissionController} when the database is busy.
+ * A query's class is set by {@link Kysely#setPriority(KyselyPriority)}, or by the
+ * <code>&lt;key&gt;.priority</code> marks of <code>kyselyladata.properties</code>.
+ * 
+ * @author Dimo Vanchev
+ */
+public enum KyselyPriority {
+    /** Latency sensitive queries, e.g. serving user requests; admitted first. */
+    HIGH,
+    /** The default. */
+    NORMAL,
+    /** Batch and background work; admitted only when nothing else waits. */
+    LOW
+}
@@ -0,0 +1,532 @@
+package yarar.tietokanta;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import yarar.rikai.Logger;
+
+/**
+ * A write-behind buffer: collects the parameter rows of small writes, like single row
+ * <code>INSERT</code>s and <code>UPDATE</code>s, and executes them in the background as one batch
+ * per {@link Kysely} and flush, instead of one round trip per row.<br>
+ * <b>Puskuri</b> is a <a href="http://en.wikipedia.org/wiki/Finnish_language"
+ * target="_blank">Finnish</a> word for <i>buffer</i>.
+ * <p>
+ * A flush starts when the buffer holds the maximal number of rows, when its oldest row has waited
+ * the maximal delay, or on {@link #sync()}. Writers are blocked only while the buffer holds
+ * {@value #BACKLOG} flushes' worth of rows. For a <code>Kysely</code> with a merge key (see
+ * {@link #setMergeKey(Kysely, int...)}), a row replaces a buffered row with equal key values, so
+ * that repeated updates of a record are written once. Each row may carry a {@link Kuittaus},
+ * called when its batch was executed or failed.
+ * </p>
+ * <p>
+ * The rows of a <code>Kysely</code> are written in order; different <code>Kysely</code> objects
+ * are flushed in the order of their first buffered rows, so dependent writes, e.g. an
+ * <code>INSERT</code> and an <code>UPDATE</code> of the same record, should go through the same
+ * <code>Kysely</code> or be separated by {@link #sync()}. Each batch is executed in a transaction
+ * of its own, on a connection borrowed from the {@link Tietokanta}, so it neither joins nor is
+ * rolled back with a transaction the application has open on the primary.
+ * </p>
+ * 
+ * @author Dimo Vanchev
+ */
+public final class KyselyPuskuri implements AutoCloseable {
+
+    /** Number of flushes' worth of rows from which writers are blocked. */
+    private static final int BACKLOG = 4;
+    /** How long {@link #close()} waits for the last flush. */
+    private static final long CLOSE_TIMEOUT = 30000L;
+
+    /** The database. */
+    private final Tietokanta db;
+    /** Number of rows which starts a flush. */
+    private final int maxRows;
+    /** The longest time a row waits for a flush, in nanoseconds. */
+    private final long maxDelay;
+    /** Guards all state below. */
+    private final ReentrantLock lock = new ReentrantLock();
+    /** Signalled when the flushing thread has work. */
+    private final Condition work = lock.newCondition();
+    /** Signalled when a flush is done. */
+    private final Condition flushed = lock.newCondition();
+    /** The buffered rows, by <code>Kysely</code>, in the order of their first rows. */
+    private Map<Kysely, Batch> pending = new LinkedHashMap<Kysely, Batch>();
+    /** The key parameters of the <code>Kysely</code> objects whose rows are merged. */
+    private final Map<Kysely, int[]> mergeKeys = new IdentityHashMap<Kysely, int[]>();
+    /** Number of buffered rows. */
+    private int pendingRows;
+    /** When the oldest buffered row was written. */
+    private long oldest;
+    /** Number of flushes started. */
+    private long started;
+    /** Number of flushes done. */
+    private long done;
+    /** Whether {@link #sync()} waits for a flush. */
+    private boolean syncRequested;
+    /** Cleared by {@link #close()}. */
+    private boolean running = true;
+    /** The flushing thread. */
+    private final Thread thread;
+    /** Number of flushes. */
+    private final AtomicLong flushes = new AtomicLong();
+    /** Number of written rows. */
+    private final AtomicLong writtenRows = new AtomicLong();
+    /** Number of rows merged into a buffered row. */
+    private final AtomicLong mergedRows = new AtomicLong();
+    /** Number of rows whose batch failed. */
+    private final AtomicLong failedRows = new AtomicLong();
+    /** Time from the write of the oldest row of the last flush to its end, in nanoseconds. */
+    private final AtomicLong lastLag = new AtomicLong();
+    /** The longest time from the write of a row to the end of its flush, in nanoseconds. */
+    private final AtomicLong maxLag = new AtomicLong();
+
+    /**
+     * Creates a buffer and starts its flushing thread.
+     * 
+     * @param db The database.
+     * @param maxRows Number of rows which starts a flush.
+     * @param maxDelay The longest time a row waits for a flush, in milliseconds.
+     */
+    public KyselyPuskuri(final Tietokanta db, final int maxRows, final long maxDelay) {
+        this.db = db;
+        this.maxRows = Math.max(1, maxRows);
+        this.maxDelay = TimeUnit.MILLISECONDS.toNanos(maxDelay);
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                flushLoop();
+            }
+        }, "KyselyPuskuri");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Makes the rows of a <code>Kysely</code> merge: a row replaces the buffered row with equal
+     * values of the key parameters, keeping its place. Use it only where the last write of a key
+     * wins, e.g. for an <code>UPDATE</code> by primary key or an upsert.
+     * 
+     * @param kysely The <code>Kysely</code>.
+     * @param keyParameters The indexes of the key values in the parameter rows, starting at 0;
+     *        none to stop merging.
+     */
+    public void setMergeKey(final Kysely kysely, final int... keyParameters) {
+        lock.lock();
+        try {
+            if (keyParameters.length == 0) {
+                mergeKeys.remove(kysely);
+            } else {
+                mergeKeys.put(kysely, keyParameters.clone());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Buffers a row.
+     * 
+     * @param kysely The <code>Kysely</code> to execute.
+     * @param values Array of field type and value pairs, as for
+     *        {@link Tietokanta#doPreparedQuery(Kysely, TypeValuePair[])}.
+     */
+    public void write(final Kysely kysely, final TypeValuePair[] values) {
+        write(kysely, values, null);
+    }
+
+    /**
+     * Buffers a row.
+     * 
+     * @param kysely The <code>Kysely</code> to execute.
+     * @param values Array of field type and value pairs, as for
+     *        {@link Tietokanta#doPreparedQuery(Kysely, TypeValuePair[])}.
+     * @param kuittaus Told what became of the row, or <code>null</code>.
+     * @throws IllegalStateException if the buffer is closed.
+     */
+    public void write(final Kysely kysely, final TypeValuePair[] values, final Kuittaus kuittaus) {
+        lock.lock();
+        try {
+            while (running && (pendingRows >= (maxRows * KyselyPuskuri.BACKLOG))) {
+                flushed.awaitUninterruptibly();
+            }
+            if (!running) {
+                throw new IllegalStateException("KyselyPuskuri is closed");
+            }
+            Batch batch = pending.get(kysely);
+            if (batch == null) {
+                batch = new Batch(mergeKeys.get(kysely));
+                pending.put(kysely, batch);
+            }
+            if (batch.add(values, kuittaus)) {
+                mergedRows.incrementAndGet();
+                return;
+            }
+            if (pendingRows++ == 0) {
+                oldest = System.nanoTime();
+                work.signal();
+            } else if (pendingRows == maxRows) {
+                work.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Flushes the buffered rows and waits until they are written.
+     */
+    public void sync() {
+        lock.lock();
+        try {
+            final long target = (pendingRows > 0) ? started + 1 : started;
+            if (pendingRows > 0) {
+                syncRequested = true;
+                work.signal();
+            }
+            while ((done < target) && thread.isAlive()) {
+                flushed.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes out the buffered rows and stops the flushing thread. Later writes are rejected.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (!running) {
+                return;
+            }
+            running = false;
+            work.signal();
+            flushed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            thread.join(KyselyPuskuri.CLOSE_TIMEOUT);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Gets the number of buffered rows.
+     * 
+     * @return the count
+     */
+    public int getPendingCount() {
+        lock.lock();
+        try {
+            return pendingRows;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of flushes.
+     * 
+     * @return the count
+     */
+    public long getFlushCount() {
+        return flushes.get();
+    }
+
+    /**
+     * Gets the number of rows written.
+     * 
+     * @return the count
+     */
+    public long getWrittenCount() {
+        return writtenRows.get();
+    }
+
+    /**
+     * Gets the number of rows which replaced a buffered row with the same key.
+     * 
+     * @return the count
+     */
+    public long getMergedCount() {
+        return mergedRows.get();
+    }
+
+    /**
+     * Gets the number of rows whose batch failed.
+     * 
+     * @return the count
+     */
+    public long getFailedCount() {
+        return failedRows.get();
+    }
+
+    /**
+     * Gets the flush lag of the last flush: the time from the write of its oldest row to the end
+     * of the flush.
+     * 
+     * @return the lag in milliseconds
+     */
+    public double getLastLagMillis() {
+        return lastLag.get() / 1e6;
+    }
+
+    /**
+     * Gets the longest flush lag so far.
+     * 
+     * @return the lag in milliseconds
+     */
+    public double getMaxLagMillis() {
+        return maxLag.get() / 1e6;
+    }
+
+    /**
+     * The loop of the flushing thread: waits for a flush to be due, then writes the buffered rows.
+     */
+    private void flushLoop() {
+        while (true) {
+            final Map<Kysely, Batch> batches;
+            lock.lock();
+            try {
+                while (running && !isDue()) {
+                    if (pendingRows == 0) {
+                        work.awaitUninterruptibly();
+                    } else {
+                        try {
+                            work.awaitNanos((oldest + maxDelay) - System.nanoTime());
+                        } catch (final InterruptedException e) {
+                            // only close() stops the thread
+                        }
+                    }
+                }
+                if (pendingRows == 0) {
+                    // closed with nothing left
+                    flushed.signalAll();
+                    return;
+                }
+                batches = pending;
+                pending = new LinkedHashMap<Kysely, Batch>();
+                pendingRows = 0;
+                syncRequested = false;
+                started++;
+                // wake writers blocked by a full buffer
+                flushed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                flush(batches);
+            } finally {
+                lock.lock();
+                try {
+                    done++;
+                    flushed.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks if a flush is due. Called with the lock held.
+     * 
+     * @return <code>true</code> if one is
+     */
+    private boolean isDue() {
+        return (pendingRows > 0)
+                && (syncRequested || (pendingRows >= maxRows)
+                        || ((System.nanoTime() - oldest) >= maxDelay));
+    }
+
+    /**
+     * Executes the batches of a flush and reports the outcome.
+     * 
+     * @param batches The batches, by <code>Kysely</code>.
+     */
+    private void flush(final Map<Kysely, Batch> batches) {
+        long first = Long.MAX_VALUE;
+        for (final Map.Entry<Kysely, Batch> e : batches.entrySet()) {
+            final Kysely kysely = e.getKey();
+            final Batch batch = e.getValue();
+            final List<TypeValuePair[]> rows = new ArrayList<TypeValuePair[]>(batch.rows.size());
+            for (final Row row : batch.rows) {
+                rows.add(row.values);
+                first = Math.min(first, row.writtenAt);
+            }
+            int result;
+            try {
+                result = db.executeBatchApart(kysely, rows);
+            } catch (final RuntimeException ex) {
+                Logger.print(ex);
+                result = -1;
+            }
+            if (result < 0) {
+                failedRows.addAndGet(rows.size());
+            } else {
+                writtenRows.addAndGet(rows.size());
+            }
+            for (final Row row : batch.rows) {
+                row.acknowledge(kysely, result >= 0);
+            }
+        }
+        flushes.incrementAndGet();
+        final long lag = System.nanoTime() - first;
+        lastLag.set(lag);
+        long max;
+        do {
+            max = maxLag.get();
+        } while ((lag > max) && !maxLag.compareAndSet(max, lag));
+    }
+
+    /**
+     * The buffered rows of one <code>Kysely</code>.
+     * 
+     * @author Dimo Vanchev
+     */
+    private static final class Batch {
+        /** The key parameters, or <code>null</code> if rows are not merged. */
+        private final int[] keyParameters;
+        /** The rows, in order. */
+        private final List<Row> rows = new ArrayList<Row>();
+        /** The row of each key, if rows are merged. */
+        private final Map<List<Object>, Row> byKey;
+
+        /**
+         * Constructor.
+         * 
+         * @param keyParameters The key parameters, or <code>null</code>.
+         */
+        Batch(final int[] keyParameters) {
+            this.keyParameters = keyParameters;
+            byKey = (keyParameters != null) ? new HashMap<List<Object>, Row>() : null;
+        }
+
+        /**
+         * Adds a row, or merges it into the row with the same key.
+         * 
+         * @param values The values.
+         * @param kuittaus The acknowledgement, or <code>null</code>.
+         * @return <code>true</code> if merged
+         */
+        boolean add(final TypeValuePair[] values, final Kuittaus kuittaus) {
+            if (byKey != null) {
+                final Object[] key = new Object[keyParameters.length];
+                for (int i = 0; i < key.length; i++) {
+                    key[i] = values[keyParameters[i]].getValue();
+                }
+                final List<Object> k = Arrays.asList(key);
+                final Row row = byKey.get(k);
+                if (row != null) {
+                    row.values = values;
+                    row.addKuittaus(kuittaus);
+                    return true;
+                }
+                final Row created = new Row(values, kuittaus);
+                byKey.put(k, created);
+                rows.add(created);
+                return false;
+            }
+            rows.add(new Row(values, kuittaus));
+            return false;
+        }
+    }
+
+    /**
+     * A buffered row.
+     * 
+     * @author Dimo Vanchev
+     */
+    private static final class Row {
+        /** When first written. */
+        private final long writtenAt = System.nanoTime();
+        /** The values; the latest ones if merged. */
+        private TypeValuePair[] values;
+        /** The acknowledgement, or <code>null</code>. */
+        private Kuittaus kuittaus;
+        /** Further acknowledgements of merged rows, or <code>null</code>. */
+        private List<Kuittaus> merged;
+
+        /**
+         * Constructor.
+         * 
+         * @param values The values.
+         * @param kuittaus The acknowledgement, or <code>null</code>.
+         */
+        Row(final TypeValuePair[] values, final Kuittaus kuittaus) {
+            this.values = values;
+            this.kuittaus = kuittaus;
+        }
+
+        /**
+         * Adds the acknowledgement of a merged row.
+         * 
+         * @param k The acknowledgement, or <code>null</code>.
+         */
+        void addKuittaus(final Kuittaus k) {
+            if (k == null) {
+                return;
+            }
+            if (kuittaus == null) {
+                kuittaus = k;
+                return;
+            }
+            if (merged == null) {
+                merged = new ArrayList<Kuittaus>(2);
+            }
+            merged.add(k);
+        }
+
+        /**
+         * Calls the acknowledgements.
+         * 
+         * @param kysely The <code>Kysely</code>.
+         * @param written Whether the row was written.
+         */
+        void acknowledge(final Kysely kysely, final boolean written) {
+            if (kuittaus == null) {
+                return;
+            }
+            Row.call(kuittaus, kysely, values, written);
+            if (merged != null) {
+                for (final Kuittaus k : merged) {
+                    Row.call(k, kysely, values, written);
+                }
+            }
+        }
+
+        /**
+         * Calls an acknowledgement; a failing one must not stop the flush.
+         * 
+         * @param k The acknowledgement.
+         * @param kysely The <code>Kysely</code>.
+         * @param values The values.
+         * @param written Whether the row was written.
+         */
+        private static void call(final Kuittaus k, final Kysely kysely,
+                final TypeValuePair[] values, final boolean written) {
+            try {
+                if (written) {
+                    k.written(kysely, values);
+                } else {
+                    k.failed(kysely, values);
+                }
+            } catch (final RuntimeException e) {
+                Logger.print(e);
+            }
+        }
+    }
+}
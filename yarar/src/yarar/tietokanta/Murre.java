@@ -0,0 +1,254 @@
+package yarar.tietokanta;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Knowledge about a particular database engine: which driver to load, how to build the connection
+ * URL, how to stream large results, how to insert in batches and how to write upsert and paging
+ * SQL.<br>
+ * <b>Murre</b> is a <a href="http://en.wikipedia.org/wiki/Finnish_language"
+ * target="_blank">Finnish</a> word for <i>dialect</i>.
+ * <p>
+ * The dialect used by {@link Tietokanta} is selected by the <code>dialect</code> key of
+ * <code>tietokanta.properties</code>: <code>postgresql</code> (the default), <code>mysql</code>,
+ * <code>oracle</code>, or the fully qualified name of a <code>Murre</code> subclass with a public
+ * no-argument constructor.
+ * </p>
+ * 
+ * @author Dimo Vanchev
+ */
+public abstract class Murre {
+
+    /**
+     * Creates the dialect with the specified name.
+     * 
+     * @param name <code>postgresql</code>, <code>mysql</code>, <code>oracle</code> (case
+     *        insensitive), or the name of a <code>Murre</code> subclass. <code>null</code> means
+     *        <code>postgresql</code>.
+     * @return the dialect
+     * @throws IllegalArgumentException if there is no such dialect.
+     */
+    public static Murre forName(final String name) {
+        if ((name == null) || "postgresql".equalsIgnoreCase(name.trim())) {
+            return new PostgreSQLMurre();
+        }
+        if ("mysql".equalsIgnoreCase(name.trim())) {
+            return new MySQLMurre();
+        }
+        if ("oracle".equalsIgnoreCase(name.trim())) {
+            return new OracleMurre();
+        }
+        try {
+            return Class.forName(name.trim()).asSubclass(Murre.class).getConstructor()
+                    .newInstance();
+        } catch (final ReflectiveOperationException | ClassCastException e) {
+            throw new IllegalArgumentException("Unknown dialect: " + name, e);
+        }
+    }
+
+    /**
+     * Gets the class name of the JDBC driver.
+     * 
+     * @return the driver class name
+     */
+    public abstract String getDriverClass();
+
+    /**
+     * Builds the connection URL.
+     * 
+     * @param database The <code>database</code> setting, in the form the driver expects after its
+     *        URL prefix - e.g. <code>//host:port/name</code>.
+     * @return the JDBC URL
+     */
+    public abstract String getURL(String database);
+
+    /**
+     * Prepares a query whose result is read as a stream, i.e. fetched from the server in chunks
+     * instead of being loaded into memory at once.
+     * 
+     * @param db The connection.
+     * @param sql The query.
+     * @param fetchSize The number of rows per chunk.
+     * @return the prepared statement
+     * @throws SQLException if a database access error occurs.
+     */
+    public PreparedStatement prepareStreaming(final Connection db, final String sql,
+            final int fetchSize) throws SQLException {
+        final PreparedStatement ps =
+                db.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        ps.setFetchSize(fetchSize);
+        return ps;
+    }
+
+    /**
+     * Gets the maximal number of rows inserted by a single statement or batch.
+     * 
+     * @param columns The number of inserted columns.
+     * @return the row count
+     */
+    public int getMaxBatchRows(final int columns) {
+        return 1000;
+    }
+
+    /**
+     * Tells how batches are inserted. If <code>true</code>, {@link #getInsertSQL(String, String[],
+     * int)} builds a single statement inserting several rows; otherwise it inserts one row and the
+     * rows are sent as a JDBC batch.
+     * 
+     * @return <code>true</code> for multi-row statements.
+     */
+    public boolean isMultiRowInsert() {
+        return true;
+    }
+
+    /**
+     * Builds an insert statement with <code>?</code> parameters for the values, row after row.
+     * 
+     * @param table The table.
+     * @param columns The columns.
+     * @param rows The number of rows; always 1 unless {@link #isMultiRowInsert()}.
+     * @return the SQL
+     */
+    public String getInsertSQL(final String table, final String[] columns, final int rows) {
+        final StringBuilder sb = new StringBuilder(64 + (rows * columns.length * 3));
+        sb.append("INSERT INTO ").append(table).append(" (");
+        Murre.appendList(sb, columns, "", "");
+        sb.append(") VALUES ");
+        for (int r = 0; r < rows; r++) {
+            if (r > 0) {
+                sb.append(", ");
+            }
+            sb.append('(');
+            Murre.appendParameters(sb, columns.length);
+            sb.append(')');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Builds a statement inserting a row, or updating it if a row with the same key exists. The
+     * parameters are the values of <code>columns</code>, in order.
+     * 
+     * @param table The table.
+     * @param columns All columns, key columns included.
+     * @param keyColumns The columns of the unique key.
+     * @return the SQL
+     */
+    public abstract String getUpsertSQL(String table, String[] columns, String[] keyColumns);
+
+    /**
+     * Wraps a query so that it returns a single page of its rows. The page is given by two
+     * parameters appended after the query's own ones, see
+     * {@link #setPageParameters(PreparedStatement, int, long, int)}.
+     * 
+     * @param sql The query. Should have an <code>ORDER BY</code>, or the pages are arbitrary.
+     * @return the paged query
+     */
+    public abstract String getPagedSQL(String sql);
+
+    /**
+     * Sets the parameters of a query built by {@link #getPagedSQL(String)}.
+     * 
+     * @param ps The prepared statement.
+     * @param index Index of the first paging parameter, i.e. the number of query's own parameters
+     *        plus one.
+     * @param offset Number of skipped rows.
+     * @param limit Maximal number of returned rows.
+     * @throws SQLException if a database access error occurs.
+     */
+    public void setPageParameters(final PreparedStatement ps, final int index, final long offset,
+            final int limit) throws SQLException {
+        ps.setInt(index, limit);
+        ps.setLong(index + 1, offset);
+    }
+
+    /**
+     * Limits the number of rows returned by a query.
+     * 
+     * @param sql The query.
+     * @param limit The maximal number of rows.
+     * @return the limited query
+     */
+    public String getLimitedSQL(final String sql, final int limit) {
+        return sql + " LIMIT " + limit;
+    }
+
+    /**
+     * Gets the keywords starting a recursive common table expression.
+     * 
+     * @return <code>WITH RECURSIVE </code>, or what the engine uses instead.
+     */
+    public String getRecursiveWith() {
+        return "WITH RECURSIVE ";
+    }
+
+    /**
+     * Tells if the engine compares row values by their order, as in
+     * <code>(a, b) &gt; (?, ?)</code>. Such a condition can be answered by a single range scan of an
+     * index on the columns.
+     * 
+     * @return <code>true</code> if it does.
+     */
+    public boolean isRowValueComparison() {
+        return true;
+    }
+
+    /**
+     * Tells if the engine supports the PostgreSQL <code>COPY</code> protocol, see
+     * {@link Tietokanta#openCopy(String, String[], KopioMuoto)}.
+     * 
+     * @return <code>true</code> if it does.
+     */
+    public boolean isCopySupported() {
+        return false;
+    }
+
+    /**
+     * Appends a comma separated list.
+     * 
+     * @param sb Where the list goes.
+     * @param items The items.
+     * @param prefix Put before each item.
+     * @param suffix Put after each item.
+     */
+    static void appendList(final StringBuilder sb, final String[] items, final String prefix,
+            final String suffix) {
+        for (int i = 0; i < items.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(prefix).append(items[i]).append(suffix);
+        }
+    }
+
+    /**
+     * Appends a comma separated list of <code>?</code>.
+     * 
+     * @param sb Where the list goes.
+     * @param count Number of parameters.
+     */
+    static void appendParameters(final StringBuilder sb, final int count) {
+        for (int i = 0; i < count; i++) {
+            sb.append((i > 0) ? ", ?" : "?");
+        }
+    }
+
+    /**
+     * Checks if a column is one of the key columns.
+     * 
+     * @param column The column.
+     * @param keyColumns The key columns.
+     * @return <code>true</code> if it is a key column.
+     */
+    static boolean isKey(final String column, final String[] keyColumns) {
+        for (final String k : keyColumns) {
+            if (k.equalsIgnoreCase(column)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,66 @@
+package yarar.tietokanta;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * The MySQL dialect.
+ * <p>
+ * Connector/J streams results row by row only when the fetch size is
+ * <code>Integer.MIN_VALUE</code>; any other value loads the whole result. Batches are sent as JDBC
+ * batches: the URL enables <code>rewriteBatchedStatements</code>, so the driver itself turns them
+ * into multi-row inserts sized to fit <code>max_allowed_packet</code>. Upserts use
+ * <code>ON DUPLICATE KEY UPDATE</code>.
+ * </p>
+ * 
+ * @author Dimo Vanchev
+ */
+final class MySQLMurre extends Murre {
+
+    @Override
+    public String getDriverClass() {
+        return "com.mysql.jdbc.Driver";
+    }
+
+    @Override
+    public String getURL(final String database) {
+        return "jdbc:mysql:" + database + ((database.indexOf('?') < 0) ? "?" : "&")
+                + "rewriteBatchedStatements=true";
+    }
+
+    @Override
+    public PreparedStatement prepareStreaming(final Connection db, final String sql,
+            final int fetchSize) throws SQLException {
+        return super.prepareStreaming(db, sql, Integer.MIN_VALUE);
+    }
+
+    @Override
+    public boolean isMultiRowInsert() {
+        return false;
+    }
+
+    @Override
+    public String getUpsertSQL(final String table, final String[] columns,
+            final String[] keyColumns) {
+        final StringBuilder sb = new StringBuilder(getInsertSQL(table, columns, 1));
+        sb.append(" ON DUPLICATE KEY UPDATE ");
+        boolean first = true;
+        for (final String c : columns) {
+            if (!Murre.isKey(c, keyColumns)) {
+                sb.append(first ? "" : ", ").append(c).append(" = VALUES(").append(c).append(')');
+                first = false;
+            }
+        }
+        if (first) {
+            // nothing to update - a no-op assignment keeps the statement valid
+            sb.append(keyColumns[0]).append(" = ").append(keyColumns[0]);
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String getPagedSQL(final String sql) {
+        return sql + " LIMIT ? OFFSET ?";
+    }
+}
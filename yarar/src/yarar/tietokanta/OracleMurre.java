@@ -0,0 +1,91 @@
+package yarar.tietokanta;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * The Oracle dialect, for the thin driver.
+ * <p>
+ * The driver always fetches in chunks, but the default chunk of 10 rows makes large reads slow, so
+ * streaming just raises the fetch size. Oracle has no multi-row <code>VALUES</code>, so batches are
+ * sent as JDBC batches of single-row inserts. Upserts use <code>MERGE</code> and paging uses
+ * <code>ROWNUM</code>, which also works on versions older than 12c.
+ * </p>
+ * 
+ * @author Dimo Vanchev
+ */
+final class OracleMurre extends Murre {
+
+    @Override
+    public String getDriverClass() {
+        return "oracle.jdbc.OracleDriver";
+    }
+
+    @Override
+    public String getURL(final String database) {
+        return "jdbc:oracle:thin:@" + database;
+    }
+
+    @Override
+    public boolean isMultiRowInsert() {
+        return false;
+    }
+
+    @Override
+    public String getRecursiveWith() {
+        return "WITH ";
+    }
+
+    @Override
+    public boolean isRowValueComparison() {
+        return false;
+    }
+
+    @Override
+    public String getUpsertSQL(final String table, final String[] columns,
+            final String[] keyColumns) {
+        final StringBuilder sb = new StringBuilder(128);
+        sb.append("MERGE INTO ").append(table).append(" t USING (SELECT ");
+        for (int i = 0; i < columns.length; i++) {
+            sb.append((i > 0) ? ", ? " : "? ").append(columns[i]);
+        }
+        sb.append(" FROM dual) s ON (");
+        for (int i = 0; i < keyColumns.length; i++) {
+            sb.append((i > 0) ? " AND t." : "t.").append(keyColumns[i]).append(" = s.")
+                    .append(keyColumns[i]);
+        }
+        sb.append(')');
+        boolean first = true;
+        for (final String c : columns) {
+            if (!Murre.isKey(c, keyColumns)) {
+                sb.append(first ? " WHEN MATCHED THEN UPDATE SET " : ", ").append("t.").append(c)
+                        .append(" = s.").append(c);
+                first = false;
+            }
+        }
+        sb.append(" WHEN NOT MATCHED THEN INSERT (");
+        Murre.appendList(sb, columns, "", "");
+        sb.append(") VALUES (");
+        Murre.appendList(sb, columns, "s.", "");
+        sb.append(')');
+        return sb.toString();
+    }
+
+    @Override
+    public String getPagedSQL(final String sql) {
+        return "SELECT * FROM (SELECT q__.*, ROWNUM rn__ FROM (" + sql
+                + ") q__ WHERE ROWNUM <= ?) WHERE rn__ > ?";
+    }
+
+    @Override
+    public String getLimitedSQL(final String sql, final int limit) {
+        return "SELECT * FROM (" + sql + ") WHERE ROWNUM <= " + limit;
+    }
+
+    @Override
+    public void setPageParameters(final PreparedStatement ps, final int index, final long offset,
+            final int limit) throws SQLException {
+        ps.setLong(index, offset + limit);
+        ps.setLong(index + 1, offset);
+    }
+}
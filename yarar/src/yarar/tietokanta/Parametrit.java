@@ -0,0 +1,465 @@
+package yarar.tietokanta;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * The values of the named parameters of a {@link KyselyPohja}, created by
+ * {@link KyselyPohja#newParameters()}.<br>
+ * <b>Parametrit</b> is a <a href="http://en.wikipedia.org/wiki/Finnish_language"
+ * target="_blank">Finnish</a> word for <i>parameters</i>.
+ * <p>
+ * A parameter is set by name, or faster by the slot returned by
+ * {@link KyselyPohja#getSlot(String)}. Primitive values are kept in primitive arrays, and each
+ * typed setter also picks the binder which later passes the value to the statement, so binding
+ * needs no boxing and no switch on types. Parameters used in <code>IN (:name)</code> lists are set
+ * by the array setters. An instance may be reused for any number of executions, but not by several
+ * threads at once.
+ * </p>
+ * 
+ * @author Dimo Vanchev
+ */
+public final class Parametrit {
+
+    /** The template. */
+    private final KyselyPohja template;
+    /** The binder of each slot; <code>null</code> while the slot is not set. */
+    private final Binder[] binders;
+    /** The <code>int</code> values, by slot. */
+    private final int[] ints;
+    /** The <code>long</code> values, by slot. */
+    private final long[] longs;
+    /** The <code>double</code> values, by slot. */
+    private final double[] doubles;
+    /** The object values and the lists, by slot. */
+    private final Object[] objects;
+    /** The list lengths, by slot. */
+    private final int[] lengths;
+
+    /**
+     * Constructor.
+     * 
+     * @param template The template.
+     * @param slots The number of slots.
+     */
+    Parametrit(final KyselyPohja template, final int slots) {
+        this.template = template;
+        binders = new Binder[slots];
+        ints = new int[slots];
+        longs = new long[slots];
+        doubles = new double[slots];
+        objects = new Object[slots];
+        lengths = new int[slots];
+    }
+
+    /**
+     * Sets an <code>int</code> parameter.
+     * 
+     * @param slot The slot.
+     * @param value The value.
+     * @return this object
+     */
+    public Parametrit setInt(final int slot, final int value) {
+        ints[slot] = value;
+        binders[slot] = Binder.INT;
+        return this;
+    }
+
+    /**
+     * Sets an <code>int</code> parameter.
+     * 
+     * @param name The name.
+     * @param value The value.
+     * @return this object
+     */
+    public Parametrit setInt(final String name, final int value) {
+        return setInt(template.getSlot(name), value);
+    }
+
+    /**
+     * Sets a <code>long</code> parameter.
+     * 
+     * @param slot The slot.
+     * @param value The value.
+     * @return this object
+     */
+    public Parametrit setLong(final int slot, final long value) {
+        longs[slot] = value;
+        binders[slot] = Binder.LONG;
+        return this;
+    }
+
+    /**
+     * Sets a <code>long</code> parameter.
+     * 
+     * @param name The name.
+     * @param value The value.
+     * @return this object
+     */
+    public Parametrit setLong(final String name, final long value) {
+        return setLong(template.getSlot(name), value);
+    }
+
+    /**
+     * Sets a <code>double</code> parameter.
+     * 
+     * @param slot The slot.
+     * @param value The value.
+     * @return this object
+     */
+    public Parametrit setDouble(final int slot, final double value) {
+        doubles[slot] = value;
+        binders[slot] = Binder.DOUBLE;
+        return this;
+    }
+
+    /**
+     * Sets a <code>double</code> parameter.
+     * 
+     * @param name The name.
+     * @param value The value.
+     * @return this object
+     */
+    public Parametrit setDouble(final String name, final double value) {
+        return setDouble(template.getSlot(name), value);
+    }
+
+    /**
+     * Sets a {@link String} parameter.
+     * 
+     * @param slot The slot.
+     * @param value The value, <code>null</code> for SQL <code>NULL</code>.
+     * @return this object
+     */
+    public Parametrit setString(final int slot, final String value) {
+        objects[slot] = value;
+        binders[slot] = Binder.STRING;
+        return this;
+    }
+
+    /**
+     * Sets a {@link String} parameter.
+     * 
+     * @param name The name.
+     * @param value The value, <code>null</code> for SQL <code>NULL</code>.
+     * @return this object
+     */
+    public Parametrit setString(final String name, final String value) {
+        return setString(template.getSlot(name), value);
+    }
+
+    /**
+     * Sets a parameter of any type the driver knows.
+     * 
+     * @param slot The slot.
+     * @param value The value, <code>null</code> for SQL <code>NULL</code>.
+     * @return this object
+     */
+    public Parametrit setObject(final int slot, final Object value) {
+        objects[slot] = value;
+        binders[slot] = Binder.OBJECT;
+        return this;
+    }
+
+    /**
+     * Sets a parameter of any type the driver knows.
+     * 
+     * @param name The name.
+     * @param value The value, <code>null</code> for SQL <code>NULL</code>.
+     * @return this object
+     */
+    public Parametrit setObject(final String name, final Object value) {
+        return setObject(template.getSlot(name), value);
+    }
+
+    /**
+     * Sets an <code>IN</code> list of <code>int</code>s.
+     * 
+     * @param slot The slot.
+     * @param values The values; only the first <code>length</code> ones are used.
+     * @param length The length of the list.
+     * @return this object
+     */
+    public Parametrit setInts(final int slot, final int[] values, final int length) {
+        return setList(slot, values, length, Binder.INT_LIST);
+    }
+
+    /**
+     * Sets an <code>IN</code> list of <code>int</code>s.
+     * 
+     * @param name The name.
+     * @param values The values.
+     * @return this object
+     */
+    public Parametrit setInts(final String name, final int[] values) {
+        return setInts(template.getSlot(name), values, values.length);
+    }
+
+    /**
+     * Sets an <code>IN</code> list of <code>long</code>s.
+     * 
+     * @param slot The slot.
+     * @param values The values; only the first <code>length</code> ones are used.
+     * @param length The length of the list.
+     * @return this object
+     */
+    public Parametrit setLongs(final int slot, final long[] values, final int length) {
+        return setList(slot, values, length, Binder.LONG_LIST);
+    }
+
+    /**
+     * Sets an <code>IN</code> list of <code>long</code>s.
+     * 
+     * @param name The name.
+     * @param values The values.
+     * @return this object
+     */
+    public Parametrit setLongs(final String name, final long[] values) {
+        return setLongs(template.getSlot(name), values, values.length);
+    }
+
+    /**
+     * Sets an <code>IN</code> list of objects, e.g. {@link String}s.
+     * 
+     * @param slot The slot.
+     * @param values The values; only the first <code>length</code> ones are used.
+     * @param length The length of the list.
+     * @return this object
+     */
+    public Parametrit setObjects(final int slot, final Object[] values, final int length) {
+        return setList(slot, values, length, Binder.OBJECT_LIST);
+    }
+
+    /**
+     * Sets an <code>IN</code> list of objects, e.g. {@link String}s.
+     * 
+     * @param name The name.
+     * @param values The values.
+     * @return this object
+     */
+    public Parametrit setObjects(final String name, final Object[] values) {
+        return setObjects(template.getSlot(name), values, values.length);
+    }
+
+    /**
+     * Copies the values set so far, e.g. to execute the same query from several threads. Lists
+     * are shared, not copied.
+     * 
+     * @return a new object with the same values
+     */
+    public Parametrit copy() {
+        final Parametrit p = new Parametrit(template, binders.length);
+        System.arraycopy(binders, 0, p.binders, 0, binders.length);
+        System.arraycopy(ints, 0, p.ints, 0, ints.length);
+        System.arraycopy(longs, 0, p.longs, 0, longs.length);
+        System.arraycopy(doubles, 0, p.doubles, 0, doubles.length);
+        System.arraycopy(objects, 0, p.objects, 0, objects.length);
+        System.arraycopy(lengths, 0, p.lengths, 0, lengths.length);
+        return p;
+    }
+
+    /**
+     * Copies the values set so far to the parameters of another template which has the same
+     * names, e.g. of a query wrapping this one. Lists are shared, not copied.
+     * 
+     * @param target The other parameters.
+     * @throws IllegalArgumentException if the other template lacks a name.
+     */
+    void copyTo(final Parametrit target) {
+        for (int slot = 0; slot < binders.length; slot++) {
+            final int t = target.template.getSlot(template.getName(slot));
+            target.binders[t] = binders[slot];
+            target.ints[t] = ints[slot];
+            target.longs[t] = longs[slot];
+            target.doubles[t] = doubles[slot];
+            target.objects[t] = objects[slot];
+            target.lengths[t] = lengths[slot];
+        }
+    }
+
+    /**
+     * Gets the template.
+     * 
+     * @return the template
+     */
+    public KyselyPohja getTemplate() {
+        return template;
+    }
+
+    /**
+     * Gets the length of a list parameter.
+     * 
+     * @param slot The slot.
+     * @return the length set, 0 if not set
+     */
+    int getLength(final int slot) {
+        return lengths[slot];
+    }
+
+    /**
+     * Binds a slot's value to statement parameters.
+     * 
+     * @param ps The statement.
+     * @param index The index of the first statement parameter.
+     * @param slot The slot.
+     * @param count The number of statement parameters; more than one for a padded list.
+     * @throws SQLException if a database access error occurs.
+     * @throws IllegalStateException if the slot is not set.
+     */
+    void bind(final PreparedStatement ps, final int index, final int slot, final int count)
+            throws SQLException {
+        final Binder binder = binders[slot];
+        if (binder == null) {
+            throw new IllegalStateException("Parameter :" + template.getName(slot) + " is not set");
+        }
+        binder.bind(this, ps, index, slot, count);
+    }
+
+    /**
+     * Sets a list.
+     * 
+     * @param slot The slot.
+     * @param values The array of values.
+     * @param length The length of the list.
+     * @param binder The binder for the array type.
+     * @return this object
+     */
+    private Parametrit setList(final int slot, final Object values, final int length,
+            final Binder binder) {
+        if (!template.isList(slot)) {
+            throw new IllegalArgumentException("Parameter :" + template.getName(slot)
+                    + " is not an IN list");
+        }
+        objects[slot] = values;
+        lengths[slot] = length;
+        binders[slot] = binder;
+        return this;
+    }
+
+    /**
+     * Passes a slot's value to a statement. There is one instance per value type; the typed setters
+     * select it.
+     * 
+     * @author Dimo Vanchev
+     */
+    private abstract static class Binder {
+
+        /** Binds an <code>int</code>. */
+        static final Binder INT = new Binder() {
+            @Override
+            void bind(final Parametrit p, final PreparedStatement ps, final int index,
+                    final int slot, final int count) throws SQLException {
+                ps.setInt(index, p.ints[slot]);
+            }
+        };
+        /** Binds a <code>long</code>. */
+        static final Binder LONG = new Binder() {
+            @Override
+            void bind(final Parametrit p, final PreparedStatement ps, final int index,
+                    final int slot, final int count) throws SQLException {
+                ps.setLong(index, p.longs[slot]);
+            }
+        };
+        /** Binds a <code>double</code>. */
+        static final Binder DOUBLE = new Binder() {
+            @Override
+            void bind(final Parametrit p, final PreparedStatement ps, final int index,
+                    final int slot, final int count) throws SQLException {
+                ps.setDouble(index, p.doubles[slot]);
+            }
+        };
+        /** Binds a {@link String}. */
+        static final Binder STRING = new Binder() {
+            @Override
+            void bind(final Parametrit p, final PreparedStatement ps, final int index,
+                    final int slot, final int count) throws SQLException {
+                ps.setString(index, (String) p.objects[slot]);
+            }
+        };
+        /** Binds an object. */
+        static final Binder OBJECT = new Binder() {
+            @Override
+            void bind(final Parametrit p, final PreparedStatement ps, final int index,
+                    final int slot, final int count) throws SQLException {
+                ps.setObject(index, p.objects[slot]);
+            }
+        };
+        /** Binds a list of <code>int</code>s, repeating the last one as padding. */
+        static final Binder INT_LIST = new Binder() {
+            @Override
+            void bind(final Parametrit p, final PreparedStatement ps, final int index,
+                    final int slot, final int count) throws SQLException {
+                final int[] values = (int[]) p.objects[slot];
+                final int length = p.lengths[slot];
+                if (length == 0) {
+                    Binder.bindNulls(ps, index, count);
+                    return;
+                }
+                for (int i = 0; i < count; i++) {
+                    ps.setInt(index + i, values[Math.min(i, length - 1)]);
+                }
+            }
+        };
+        /** Binds a list of <code>long</code>s, repeating the last one as padding. */
+        static final Binder LONG_LIST = new Binder() {
+            @Override
+            void bind(final Parametrit p, final PreparedStatement ps, final int index,
+                    final int slot, final int count) throws SQLException {
+                final long[] values = (long[]) p.objects[slot];
+                final int length = p.lengths[slot];
+                if (length == 0) {
+                    Binder.bindNulls(ps, index, count);
+                    return;
+                }
+                for (int i = 0; i < count; i++) {
+                    ps.setLong(index + i, values[Math.min(i, length - 1)]);
+                }
+            }
+        };
+        /** Binds a list of objects, repeating the last one as padding. */
+        static final Binder OBJECT_LIST = new Binder() {
+            @Override
+            void bind(final Parametrit p, final PreparedStatement ps, final int index,
+                    final int slot, final int count) throws SQLException {
+                final Object[] values = (Object[]) p.objects[slot];
+                final int length = p.lengths[slot];
+                if (length == 0) {
+                    Binder.bindNulls(ps, index, count);
+                    return;
+                }
+                for (int i = 0; i < count; i++) {
+                    ps.setObject(index + i, values[Math.min(i, length - 1)]);
+                }
+            }
+        };
+
+        /**
+         * Binds the value of a slot.
+         * 
+         * @param p The parameters.
+         * @param ps The statement.
+         * @param index The index of the first statement parameter.
+         * @param slot The slot.
+         * @param count The number of statement parameters.
+         * @throws SQLException if a database access error occurs.
+         */
+        abstract void bind(Parametrit p, PreparedStatement ps, int index, int slot, int count)
+                throws SQLException;
+
+        /**
+         * Binds <code>NULL</code>s, for an empty list: <code>IN (NULL)</code> matches nothing.
+         * 
+         * @param ps The statement.
+         * @param index The index of the first statement parameter.
+         * @param count The number of statement parameters.
+         * @throws SQLException if a database access error occurs.
+         */
+        static void bindNulls(final PreparedStatement ps, final int index, final int count)
+                throws SQLException {
+            for (int i = 0; i < count; i++) {
+                ps.setNull(index + i, Types.NULL);
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package yarar.tietokanta;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * The PostgreSQL dialect.
+ * <p>
+ * The driver streams results only inside a transaction, so {@link #prepareStreaming} switches the
+ * connection's auto-commit off; the caller commits when done. Batches are inserted by multi-row
+ * <code>VALUES</code>, which is much faster than JDBC batches with this driver. Upserts use
+ * <code>INSERT ... ON CONFLICT</code>, i.e. need PostgreSQL 9.5 or newer.
+ * </p>
+ * 
+ * @author Dimo Vanchev
+ */
+final class PostgreSQLMurre extends Murre {
+
+    /** The server accepts at most this many parameters per statement. */
+    private static final int MAX_PARAMETERS = 32767;
+
+    @Override
+    public String getDriverClass() {
+        return "org.postgresql.Driver";
+    }
+
+    @Override
+    public String getURL(final String database) {
+        return "jdbc:postgresql:" + database;
+    }
+
+    @Override
+    public PreparedStatement prepareStreaming(final Connection db, final String sql,
+            final int fetchSize) throws SQLException {
+        if (db.getAutoCommit()) {
+            db.setAutoCommit(false);
+        }
+        return super.prepareStreaming(db, sql, fetchSize);
+    }
+
+    @Override
+    public int getMaxBatchRows(final int columns) {
+        if (columns < 1) {
+            return super.getMaxBatchRows(columns);
+        }
+        return Math.min(super.getMaxBatchRows(columns), PostgreSQLMurre.MAX_PARAMETERS / columns);
+    }
+
+    @Override
+    public boolean isCopySupported() {
+        return true;
+    }
+
+    @Override
+    public String getUpsertSQL(final String table, final String[] columns,
+            final String[] keyColumns) {
+        final StringBuilder sb = new StringBuilder(getInsertSQL(table, columns, 1));
+        sb.append(" ON CONFLICT (");
+        Murre.appendList(sb, keyColumns, "", "");
+        sb.append(") DO ");
+        boolean first = true;
+        for (final String c : columns) {
+            if (!Murre.isKey(c, keyColumns)) {
+                sb.append(first ? "UPDATE SET " : ", ").append(c).append(" = EXCLUDED.").append(c);
+                first = false;
+            }
+        }
+        if (first) {
+            sb.append("NOTHING");
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String getPagedSQL(final String sql) {
+        return sql + " LIMIT ? OFFSET ?";
+    }
+}
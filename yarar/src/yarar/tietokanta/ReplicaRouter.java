@@ -0,0 +1,195 @@
+package yarar.tietokanta;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Spreads read-only queries over the read replicas of the database.
+ * <p>
+ * Each replica has a weight and a count of outstanding requests, i.e. of queries being executed on
+ * it. A query goes to the replica with the lowest ratio of outstanding requests to weight, so a
+ * slow replica, whose requests pile up, gets less work. Among equally loaded replicas, e.g. idle
+ * ones when queries are executed one at a time, the replica on which the query is already
+ * prepared wins, to avoid preparing it again; otherwise the replica is picked by smooth weighted
+ * round-robin, so that a replica of weight 2 gets twice as many of these choices as one of weight
+ * 1, evenly interleaved. Prepared queries are thus spread over the replicas by statement, and
+ * plain ones by execution.
+ * </p>
+ * 
+ * @author Dimo Vanchev
+ */
+final class ReplicaRouter {
+
+    /** The replicas; never changed after construction. */
+    private final List<Replica> replicas;
+
+    /**
+     * Creates a new router.
+     * 
+     * @param replicas The replicas. May be empty, then all queries go to the primary.
+     */
+    ReplicaRouter(final List<Replica> replicas) {
+        this.replicas = Collections.unmodifiableList(new ArrayList<Replica>(replicas));
+    }
+
+    /**
+     * Checks if there are any replicas.
+     * 
+     * @return <code>true</code> if there is at least one replica.
+     */
+    boolean hasReplicas() {
+        return !replicas.isEmpty();
+    }
+
+    /**
+     * Chooses the least loaded replica, without counting a request on it.
+     * 
+     * @param current The statement the query is prepared as, or <code>null</code>.
+     * @return the replica, or <code>null</code> if there are none.
+     */
+    Replica choose(final PreparedStatement current) {
+        if (replicas.isEmpty()) {
+            return null;
+        }
+        Connection preferred = null;
+        if (current != null) {
+            try {
+                preferred = current.getConnection();
+            } catch (final SQLException e) {
+                // the statement is unusable, so there is nothing to prefer
+            }
+        }
+        // the loads are read once, as other threads change them
+        final long[] loads = new long[replicas.size()];
+        int least = 0;
+        for (int i = 0; i < loads.length; i++) {
+            loads[i] = replicas.get(i).outstanding.get();
+            if (ReplicaRouter.compare(loads[i], replicas.get(i), loads[least],
+                    replicas.get(least)) < 0) {
+                least = i;
+            }
+        }
+        final boolean[] candidates = new boolean[loads.length];
+        for (int i = 0; i < loads.length; i++) {
+            final Replica r = replicas.get(i);
+            candidates[i] = ReplicaRouter.compare(loads[i], r, loads[least],
+                    replicas.get(least)) == 0;
+            if (candidates[i] && (r.connection == preferred)) {
+                return r;
+            }
+        }
+        synchronized (this) {
+            Replica best = null;
+            int total = 0;
+            for (int i = 0; i < loads.length; i++) {
+                if (candidates[i]) {
+                    final Replica r = replicas.get(i);
+                    r.currentWeight += r.weight;
+                    total += r.weight;
+                    if ((best == null) || (r.currentWeight > best.currentWeight)) {
+                        best = r;
+                    }
+                }
+            }
+            best.currentWeight -= total;
+            return best;
+        }
+    }
+
+    /**
+     * Compares the loads of two replicas relative to their weights.
+     * 
+     * @param load The outstanding requests of a replica.
+     * @param r The replica.
+     * @param otherLoad The outstanding requests of another replica.
+     * @param other The other replica.
+     * @return a negative number, zero or a positive number as <code>r</code> is less, equally or
+     *         more loaded
+     */
+    private static int compare(final long load, final Replica r, final long otherLoad,
+            final Replica other) {
+        // compares load / weight without division
+        return Long.compare(load * other.weight, otherLoad * r.weight);
+    }
+
+    /**
+     * Chooses the least loaded replica and counts a request on it. Every call must be followed by
+     * {@link #release(Replica)}.
+     * 
+     * @param current The statement the query is prepared as, or <code>null</code>.
+     * @return the replica, or <code>null</code> if there are none.
+     */
+    Replica acquire(final PreparedStatement current) {
+        final Replica r = choose(current);
+        if (r != null) {
+            r.outstanding.incrementAndGet();
+        }
+        return r;
+    }
+
+    /**
+     * Ends a request counted by {@link #acquire(PreparedStatement)}.
+     * 
+     * @param r The replica, may be <code>null</code>.
+     */
+    void release(final Replica r) {
+        if (r != null) {
+            r.outstanding.decrementAndGet();
+        }
+    }
+
+    /**
+     * A read replica.
+     * 
+     * @author Dimo Vanchev
+     */
+    static final class Replica {
+        /** The name, as in <code>tietokanta.properties</code>. */
+        private final String name;
+        /** The connection. */
+        private final Connection connection;
+        /** The weight, at least 1. */
+        private final int weight;
+        /** Number of queries being executed. */
+        private final AtomicInteger outstanding = new AtomicInteger();
+        /** The credit of the smooth weighted round-robin. Guarded by the router. */
+        private int currentWeight;
+
+        /**
+         * Constructor.
+         * 
+         * @param name The name.
+         * @param connection The connection.
+         * @param weight The weight.
+         */
+        Replica(final String name, final Connection connection, final int weight) {
+            this.name = name;
+            this.connection = connection;
+            this.weight = Math.max(1, weight);
+        }
+
+        /**
+         * @return the connection.
+         */
+        Connection getConnection() {
+            return connection;
+        }
+
+        /**
+         * @return the number of queries being executed.
+         */
+        int getOutstanding() {
+            return outstanding.get();
+        }
+
+        @Override
+        public String toString() {
+            return name + " (weight " + weight + ", " + outstanding.get() + " outstanding)";
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package yarar.tietokanta;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import yarar.rikai.Logger;
+
+/**
+ * The rows of a partitioned query, see
+ * {@link Tietokanta#doPartitionedQuery(Kysely, Parametrit, KyselyJako, Comparator)}, merged into
+ * one stream.<br>
+ * <b>Rivivirta</b> is a <a href="http://en.wikipedia.org/wiki/Finnish_language"
+ * target="_blank">Finnish</a> word for <i>stream of rows</i>.
+ * <p>
+ * Each partition is executed by its own thread on its own connection, streaming its rows into a
+ * bounded queue, so a slow reader holds the partitions back instead of running out of memory.
+ * Without an order, rows are returned as they arrive. With an order, each partition's SQL must
+ * sort its rows by it, and the streams are merged so that the rows come out sorted.
+ * </p>
+ * <p>
+ * A row is an array of the column values, as returned by {@link ResultSet#getObject(int)}. A failed
+ * partition is logged and ends early; {@link #isFailed()} tells whether the rows are complete. The
+ * stream must be closed, which stops the partitions which are still running.
+ * </p>
+ * 
+ * @author Dimo Vanchev
+ */
+public final class Rivivirta implements Iterator<Object[]>, AutoCloseable {
+
+    /** Marks the end of a partition in its queue. */
+    private static final Object[] END = new Object[0];
+    /** Capacity of each queue. */
+    private static final int QUEUE_CAPACITY = 1024;
+    /** Number of rows fetched from the server at once. */
+    private static final int FETCH_SIZE = 1000;
+    /** How often a blocked partition checks whether the stream was closed. */
+    private static final long OFFER_MILLIS = 100L;
+
+    /** The database. */
+    private final Tietokanta db;
+    /** The template of the partitioned query. */
+    private final KyselyPohja template;
+    /** The order of the rows, or <code>null</code>. */
+    private final Comparator<Object[]> order;
+    /** The queue of each partition if ordered; otherwise one shared queue. */
+    private final ArrayBlockingQueue<Object[]>[] queues;
+    /** Number of partitions. */
+    private final int parts;
+    /** Runs the partitions. */
+    private final ExecutorService executor;
+    /** The first row of each partition not returned yet, if ordered. */
+    private PriorityQueue<Head> heads;
+    /** Number of ended partitions, if unordered. */
+    private int ended;
+    /** The row returned by the next {@link #next()}, or <code>null</code>. */
+    private Object[] next;
+    /** Set by {@link #close()}. */
+    private volatile boolean closed;
+    /** Set when a partition fails. */
+    private volatile boolean failed;
+
+    /**
+     * Starts executing the partitions.
+     * 
+     * @param db The database.
+     * @param template The template of the partitioned query.
+     * @param parameters The parameters of each partition.
+     * @param order The order of the rows, or <code>null</code>.
+     */
+    Rivivirta(final Tietokanta db, final KyselyPohja template, final Parametrit[] parameters,
+            final Comparator<Object[]> order) {
+        this.db = db;
+        this.template = template;
+        this.order = order;
+        parts = parameters.length;
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        final ArrayBlockingQueue<Object[]>[] q =
+                new ArrayBlockingQueue[(order != null) ? parts : 1];
+        queues = q;
+        for (int i = 0; i < queues.length; i++) {
+            queues[i] = new ArrayBlockingQueue<Object[]>(Rivivirta.QUEUE_CAPACITY);
+        }
+        executor = Executors.newFixedThreadPool(parts, new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable r) {
+                final Thread t = new Thread(r, "Rivivirta");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        for (int part = 0; part < parts; part++) {
+            final int p = part;
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    produce(queues[(Rivivirta.this.order != null) ? p : 0], parameters[p]);
+                }
+            });
+        }
+        // the threads end with their partitions
+        executor.shutdown();
+    }
+
+    @Override
+    public boolean hasNext() {
+        if ((next == null) && !closed) {
+            next = (order != null) ? nextOrdered() : nextUnordered();
+        }
+        return next != null;
+    }
+
+    @Override
+    public Object[] next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final Object[] row = next;
+        next = null;
+        return row;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("Rivivirta is read-only");
+    }
+
+    /**
+     * Checks if a partition failed, so that rows are missing.
+     * 
+     * @return <code>true</code> if one did
+     */
+    public boolean isFailed() {
+        return failed;
+    }
+
+    /**
+     * Stops the partitions which are still running and drops the queued rows.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        next = null;
+        for (final ArrayBlockingQueue<Object[]> queue : queues) {
+            queue.clear();
+        }
+    }
+
+    /**
+     * Takes the next row as it arrives from any partition.
+     * 
+     * @return the row, or <code>null</code> after the last one
+     */
+    private Object[] nextUnordered() {
+        while (ended < parts) {
+            final Object[] row = take(queues[0]);
+            if (row != Rivivirta.END) {
+                return row;
+            }
+            ended++;
+        }
+        return null;
+    }
+
+    /**
+     * Takes the smallest of the first rows of the partitions.
+     * 
+     * @return the row, or <code>null</code> after the last one
+     */
+    private Object[] nextOrdered() {
+        if (heads == null) {
+            heads = new PriorityQueue<Head>(parts, new Comparator<Head>() {
+                @Override
+                public int compare(final Head a, final Head b) {
+                    final int c = order.compare(a.row, b.row);
+                    return (c != 0) ? c : (a.part - b.part);
+                }
+            });
+            for (int part = 0; part < parts; part++) {
+                final Object[] row = take(queues[part]);
+                if (row != Rivivirta.END) {
+                    heads.add(new Head(part, row));
+                }
+            }
+        }
+        final Head head = heads.poll();
+        if (head == null) {
+            return null;
+        }
+        final Object[] row = head.row;
+        head.row = take(queues[head.part]);
+        if (head.row != Rivivirta.END) {
+            heads.add(head);
+        }
+        return row;
+    }
+
+    /**
+     * Waits for the next row of a queue.
+     * 
+     * @param queue The queue.
+     * @return the row, or {@link #END} if the thread was interrupted.
+     */
+    private Object[] take(final ArrayBlockingQueue<Object[]> queue) {
+        try {
+            return queue.take();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Rivivirta.END;
+        }
+    }
+
+    /**
+     * Executes a partition and queues its rows, followed by {@link #END}.
+     * 
+     * @param queue The queue.
+     * @param p The parameters of the partition.
+     */
+    private void produce(final ArrayBlockingQueue<Object[]> queue, final Parametrit p) {
+        Connection c = null;
+        try {
+            c = db.borrowConnection();
+            final PreparedStatement ps =
+                    db.getMurre().prepareStreaming(c, template.getSQL(p), Rivivirta.FETCH_SIZE);
+            try {
+                template.bind(ps, p);
+                final ResultSet rs = ps.executeQuery();
+                final int columns = rs.getMetaData().getColumnCount();
+                while (!closed && rs.next()) {
+                    final Object[] row = new Object[columns];
+                    for (int i = 0; i < columns; i++) {
+                        row[i] = rs.getObject(i + 1);
+                    }
+                    put(queue, row);
+                }
+                rs.close();
+            } finally {
+                ps.close();
+            }
+        } catch (final SQLException e) {
+            failed = true;
+            Logger.print(e);
+        } catch (final RuntimeException e) {
+            failed = true;
+            Logger.print(e);
+        } finally {
+            if (c != null) {
+                db.returnConnection(c);
+            }
+            put(queue, Rivivirta.END);
+        }
+    }
+
+    /**
+     * Queues a row, waiting while the queue is full, unless the stream is closed.
+     * 
+     * @param queue The queue.
+     * @param row The row.
+     */
+    private void put(final ArrayBlockingQueue<Object[]> queue, final Object[] row) {
+        try {
+            while (!closed) {
+                if (queue.offer(row, Rivivirta.OFFER_MILLIS, TimeUnit.MILLISECONDS)) {
+                    return;
+                }
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The first row of a partition which has not been returned yet.
+     * 
+     * @author Dimo Vanchev
+     */
+    private static final class Head {
+        /** The partition. */
+        private final int part;
+        /** The row. */
+        private Object[] row;
+
+        /**
+         * Constructor.
+         * 
+         * @param part The partition.
+         * @param row The row.
+         */
+        Head(final int part, final Object[] row) {
+            this.part = part;
+            this.row = row;
+        }
+    }
+}
@@ -0,0 +1,730 @@
+package yarar.tietokanta;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * One column of a {@link Sarakkeet} batch, stored in a primitive array.<br>
+ * <b>Sarake</b> is a <a href="http://en.wikipedia.org/wiki/Finnish_language"
+ * target="_blank">Finnish</a> word for <i>column</i>.
+ * <p>
+ * Numbers are kept in <code>int</code>, <code>long</code> or <code>double</code> arrays, exact
+ * decimals in a {@link BigDecimal} array (see {@link SarakeTyyppi}), strings as codes into a
+ * dictionary of their distinct values, and SQL <code>NULL</code>s in a bitmap; the slot of a
+ * <code>NULL</code> holds 0, or <code>null</code> in a <code>DECIMAL</code> column. Filters return
+ * <i>selections</i>, i.e. ascending arrays of row indexes, which other filters and the aggregates
+ * accept to work on the selected rows only; <code>null</code> selects all rows. Aggregates skip
+ * <code>NULL</code>s.
+ * </p>
+ * 
+ * @author Dimo Vanchev
+ */
+public final class Sarake {
+
+    /** Initial capacity of the arrays, when the batch size is not bounded. */
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /** The label. */
+    private final String label;
+    /** The type. */
+    private final SarakeTyyppi type;
+    /** Whether the column is boolean, stored as 1 or 0 in an <code>INT</code> column. */
+    private final boolean bool;
+    /** Number of rows. */
+    private int size;
+    /** The values of an <code>INT</code> column, or the codes of a <code>STRING</code> one. */
+    private int[] ints;
+    /** The values of a <code>LONG</code> column. */
+    private long[] longs;
+    /** The values of a <code>DOUBLE</code> column. */
+    private double[] doubles;
+    /** The values of a <code>DECIMAL</code> column. */
+    private BigDecimal[] decimals;
+    /** The values of an <code>OBJECT</code> column. */
+    private Object[] objects;
+    /** The bitmap of <code>NULL</code>s, or <code>null</code> if there are none. */
+    private long[] nulls;
+    /** Number of <code>NULL</code>s. */
+    private int nullCount;
+    /** The dictionary of a <code>STRING</code> column, by code. */
+    private String[] dictionary;
+    /** Number of values in {@link #dictionary}. */
+    private int dictionarySize;
+    /** The code of each string, while the column is built. */
+    private Map<String, Integer> codes;
+
+    /**
+     * Constructor.
+     * 
+     * @param label The label.
+     * @param sqlType The SQL type, see {@link Types}.
+     * @param capacity The expected number of rows.
+     */
+    Sarake(final String label, final int sqlType, final int capacity) {
+        this.label = label;
+        type = Sarake.getType(sqlType);
+        bool = (sqlType == Types.BOOLEAN) || (sqlType == Types.BIT);
+        final int c = Math.max(1, Math.min(capacity, Sarake.INITIAL_CAPACITY));
+        switch (type) {
+            case INT:
+                ints = new int[c];
+                break;
+            case LONG:
+                longs = new long[c];
+                break;
+            case DOUBLE:
+                doubles = new double[c];
+                break;
+            case DECIMAL:
+                decimals = new BigDecimal[c];
+                break;
+            case STRING:
+                ints = new int[c];
+                dictionary = new String[16];
+                codes = new HashMap<String, Integer>();
+                break;
+            case OBJECT:
+            default:
+                objects = new Object[c];
+                break;
+        }
+    }
+
+    /**
+     * Gets the type of a column of a result set.
+     * 
+     * @param sqlType The SQL type, see {@link Types}.
+     * @return the type
+     */
+    static SarakeTyyppi getType(final int sqlType) {
+        switch (sqlType) {
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BOOLEAN:
+            case Types.BIT:
+                return SarakeTyyppi.INT;
+            case Types.BIGINT:
+                return SarakeTyyppi.LONG;
+            case Types.REAL:
+            case Types.FLOAT:
+            case Types.DOUBLE:
+                return SarakeTyyppi.DOUBLE;
+            case Types.NUMERIC:
+            case Types.DECIMAL:
+                return SarakeTyyppi.DECIMAL;
+            case Types.CHAR:
+            case Types.VARCHAR:
+            case Types.LONGVARCHAR:
+            case Types.NCHAR:
+            case Types.NVARCHAR:
+            case Types.LONGNVARCHAR:
+                return SarakeTyyppi.STRING;
+            default:
+                return SarakeTyyppi.OBJECT;
+        }
+    }
+
+    /**
+     * Appends the value of a column of the current row of a result set, read by the getter of
+     * this column's type.
+     * 
+     * @param rs The result set.
+     * @param column The column index, starting from 1.
+     * @throws SQLException if a database access error occurs.
+     */
+    void read(final ResultSet rs, final int column) throws SQLException {
+        ensureCapacity();
+        final int row = size++;
+        switch (type) {
+            case INT:
+                // some drivers, e.g. PostgreSQL's, cannot read a boolean as a number
+                ints[row] = bool ? (rs.getBoolean(column) ? 1 : 0) : rs.getInt(column);
+                break;
+            case LONG:
+                longs[row] = rs.getLong(column);
+                break;
+            case DOUBLE:
+                doubles[row] = rs.getDouble(column);
+                break;
+            case DECIMAL:
+                decimals[row] = rs.getBigDecimal(column);
+                break;
+            case STRING:
+                final String s = rs.getString(column);
+                ints[row] = (s != null) ? encode(s) : 0;
+                break;
+            case OBJECT:
+            default:
+                objects[row] = rs.getObject(column);
+                break;
+        }
+        if (rs.wasNull()) {
+            setNull(row);
+        }
+    }
+
+    /**
+     * Appends a value decoded by {@link ResultSet#getObject(int)}.
+     * 
+     * @param value The value, <code>null</code> for SQL <code>NULL</code>.
+     */
+    void add(final Object value) {
+        ensureCapacity();
+        final int row = size++;
+        if (value == null) {
+            if (type == SarakeTyyppi.OBJECT) {
+                objects[row] = null;
+            } else if (type == SarakeTyyppi.DECIMAL) {
+                decimals[row] = null;
+            }
+            setNull(row);
+            return;
+        }
+        switch (type) {
+            case INT:
+                ints[row] = (value instanceof Boolean) ? (((Boolean) value) ? 1 : 0)
+                        : ((Number) value).intValue();
+                break;
+            case LONG:
+                longs[row] = ((Number) value).longValue();
+                break;
+            case DOUBLE:
+                doubles[row] = ((Number) value).doubleValue();
+                break;
+            case DECIMAL:
+                decimals[row] = (value instanceof BigDecimal) ? (BigDecimal) value
+                        : new BigDecimal(value.toString());
+                break;
+            case STRING:
+                ints[row] = encode(value.toString());
+                break;
+            case OBJECT:
+            default:
+                objects[row] = value;
+                break;
+        }
+    }
+
+    /**
+     * Ends the building of the column.
+     */
+    void finish() {
+        codes = null;
+    }
+
+    /**
+     * Gets the label.
+     * 
+     * @return the label
+     */
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * Gets the type.
+     * 
+     * @return the type
+     */
+    public SarakeTyyppi getType() {
+        return type;
+    }
+
+    /**
+     * Gets the number of rows.
+     * 
+     * @return the row count
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks if a value is SQL <code>NULL</code>.
+     * 
+     * @param row The row index, starting from 0.
+     * @return <code>true</code> for <code>NULL</code>
+     */
+    public boolean isNull(final int row) {
+        final int word = row >>> 6;
+        return (nulls != null) && (word < nulls.length) && ((nulls[word] & (1L << row)) != 0);
+    }
+
+    /**
+     * Gets the number of <code>NULL</code>s.
+     * 
+     * @return the count
+     */
+    public int getNullCount() {
+        return nullCount;
+    }
+
+    /**
+     * Gets a value of an <code>INT</code> column.
+     * 
+     * @param row The row index, starting from 0.
+     * @return the value; 0 for <code>NULL</code>
+     */
+    public int getInt(final int row) {
+        return ints[row];
+    }
+
+    /**
+     * Gets a value of an <code>INT</code> or <code>LONG</code> column.
+     * 
+     * @param row The row index, starting from 0.
+     * @return the value; 0 for <code>NULL</code>
+     */
+    public long getLong(final int row) {
+        return (type == SarakeTyyppi.LONG) ? longs[row] : ints[row];
+    }
+
+    /**
+     * Gets a value of a numeric column. A <code>DECIMAL</code> value is rounded to the nearest
+     * <code>double</code>.
+     * 
+     * @param row The row index, starting from 0.
+     * @return the value; 0 for <code>NULL</code>
+     */
+    public double getDouble(final int row) {
+        switch (type) {
+            case DOUBLE:
+                return doubles[row];
+            case DECIMAL:
+                return (decimals[row] != null) ? decimals[row].doubleValue() : 0;
+            case LONG:
+                return longs[row];
+            default:
+                return ints[row];
+        }
+    }
+
+    /**
+     * Gets a value of a <code>DECIMAL</code> column.
+     * 
+     * @param row The row index, starting from 0.
+     * @return the value, or <code>null</code> for <code>NULL</code>
+     */
+    public BigDecimal getDecimal(final int row) {
+        return decimals[row];
+    }
+
+    /**
+     * Gets a value of a <code>STRING</code> column.
+     * 
+     * @param row The row index, starting from 0.
+     * @return the value, or <code>null</code> for <code>NULL</code>
+     */
+    public String getString(final int row) {
+        return isNull(row) ? null : dictionary[ints[row]];
+    }
+
+    /**
+     * Gets the dictionary code of a value of a <code>STRING</code> column.
+     * 
+     * @param row The row index, starting from 0.
+     * @return the index of the value in {@link #getDictionary()}
+     */
+    public int getCode(final int row) {
+        return ints[row];
+    }
+
+    /**
+     * Gets the distinct values of a <code>STRING</code> column.
+     * 
+     * @return a copy of the dictionary, by code
+     */
+    public String[] getDictionary() {
+        return Arrays.copyOf(dictionary, dictionarySize);
+    }
+
+    /**
+     * Gets the number of distinct values of a <code>STRING</code> column.
+     * 
+     * @return the count
+     */
+    public int getDictionarySize() {
+        return dictionarySize;
+    }
+
+    /**
+     * Gets a value as an object, of any column type.
+     * 
+     * @param row The row index, starting from 0.
+     * @return the value, or <code>null</code> for <code>NULL</code>
+     */
+    public Object getObject(final int row) {
+        if (isNull(row)) {
+            return null;
+        }
+        switch (type) {
+            case INT:
+                return ints[row];
+            case LONG:
+                return longs[row];
+            case DOUBLE:
+                return doubles[row];
+            case DECIMAL:
+                return decimals[row];
+            case STRING:
+                return dictionary[ints[row]];
+            case OBJECT:
+            default:
+                return objects[row];
+        }
+    }
+
+    /**
+     * Selects the rows whose numeric value lies in a range.
+     * 
+     * @param rows The rows to consider, or <code>null</code> for all.
+     * @param min The smallest value selected.
+     * @param max The largest value selected.
+     * @return the selection
+     */
+    public int[] selectBetween(final int[] rows, final double min, final double max) {
+        final int n = (rows != null) ? rows.length : size;
+        final int[] selected = new int[n];
+        int count = 0;
+        switch (type) {
+            case INT:
+                for (int i = 0; i < n; i++) {
+                    final int row = (rows != null) ? rows[i] : i;
+                    final int v = ints[row];
+                    if ((v >= min) && (v <= max) && !isNull(row)) {
+                        selected[count++] = row;
+                    }
+                }
+                break;
+            case LONG:
+                for (int i = 0; i < n; i++) {
+                    final int row = (rows != null) ? rows[i] : i;
+                    final long v = longs[row];
+                    if ((v >= min) && (v <= max) && !isNull(row)) {
+                        selected[count++] = row;
+                    }
+                }
+                break;
+            case DOUBLE:
+                for (int i = 0; i < n; i++) {
+                    final int row = (rows != null) ? rows[i] : i;
+                    final double v = doubles[row];
+                    if ((v >= min) && (v <= max) && !isNull(row)) {
+                        selected[count++] = row;
+                    }
+                }
+                break;
+            case DECIMAL:
+                for (int i = 0; i < n; i++) {
+                    final int row = (rows != null) ? rows[i] : i;
+                    if (decimals[row] != null) {
+                        final double v = decimals[row].doubleValue();
+                        if ((v >= min) && (v <= max)) {
+                            selected[count++] = row;
+                        }
+                    }
+                }
+                break;
+            default:
+                throw new IllegalStateException("Column " + label + " is not numeric");
+        }
+        return Arrays.copyOf(selected, count);
+    }
+
+    /**
+     * Selects the rows of a <code>STRING</code> column equal to one of some values. The values are
+     * looked up in the dictionary once, after which only codes are compared.
+     * 
+     * @param rows The rows to consider, or <code>null</code> for all.
+     * @param values The values.
+     * @return the selection
+     */
+    public int[] selectEquals(final int[] rows, final String... values) {
+        if (type != SarakeTyyppi.STRING) {
+            throw new IllegalStateException("Column " + label + " is not a string column");
+        }
+        final boolean[] wanted = new boolean[dictionarySize];
+        for (int code = 0; code < wanted.length; code++) {
+            for (final String v : values) {
+                wanted[code] |= dictionary[code].equals(v);
+            }
+        }
+        final int n = (rows != null) ? rows.length : size;
+        final int[] selected = new int[n];
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            final int row = (rows != null) ? rows[i] : i;
+            if (!isNull(row) && wanted[ints[row]]) {
+                selected[count++] = row;
+            }
+        }
+        return Arrays.copyOf(selected, count);
+    }
+
+    /**
+     * Selects the rows which are not <code>NULL</code>.
+     * 
+     * @param rows The rows to consider, or <code>null</code> for all.
+     * @return the selection
+     */
+    public int[] selectNotNull(final int[] rows) {
+        final int n = (rows != null) ? rows.length : size;
+        final int[] selected = new int[n];
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            final int row = (rows != null) ? rows[i] : i;
+            if (!isNull(row)) {
+                selected[count++] = row;
+            }
+        }
+        return Arrays.copyOf(selected, count);
+    }
+
+    /**
+     * Counts the values which are not <code>NULL</code>.
+     * 
+     * @param rows The rows to consider, or <code>null</code> for all.
+     * @return the count
+     */
+    public int count(final int[] rows) {
+        if (nulls == null) {
+            return (rows != null) ? rows.length : size;
+        }
+        return selectNotNull(rows).length;
+    }
+
+    /**
+     * Sums a numeric column, exactly unless the column is <code>DOUBLE</code>.
+     * 
+     * @param rows The rows to consider, or <code>null</code> for all.
+     * @return the sum; 0 if there are no values. A {@link Long} for an <code>INT</code> or
+     *         <code>LONG</code> column, a {@link BigDecimal} for a <code>DECIMAL</code> one and a
+     *         {@link Double} for a <code>DOUBLE</code> one.
+     */
+    public Number sum(final int[] rows) {
+        final int n = (rows != null) ? rows.length : size;
+        switch (type) {
+            case INT:
+                long intSum = 0;
+                for (int i = 0; i < n; i++) {
+                    // NULL slots hold 0
+                    intSum += ints[(rows != null) ? rows[i] : i];
+                }
+                return intSum;
+            case LONG:
+                long longSum = 0;
+                for (int i = 0; i < n; i++) {
+                    longSum += longs[(rows != null) ? rows[i] : i];
+                }
+                return longSum;
+            case DOUBLE:
+                double doubleSum = 0;
+                for (int i = 0; i < n; i++) {
+                    doubleSum += doubles[(rows != null) ? rows[i] : i];
+                }
+                return doubleSum;
+            case DECIMAL:
+                BigDecimal decimalSum = BigDecimal.ZERO;
+                for (int i = 0; i < n; i++) {
+                    final BigDecimal v = decimals[(rows != null) ? rows[i] : i];
+                    if (v != null) {
+                        decimalSum = decimalSum.add(v);
+                    }
+                }
+                return decimalSum;
+            default:
+                throw new IllegalStateException("Column " + label + " is not numeric");
+        }
+    }
+
+    /**
+     * Averages a numeric column.
+     * 
+     * @param rows The rows to consider, or <code>null</code> for all.
+     * @return the average, or {@link Double#NaN} if there are no values
+     */
+    public double average(final int[] rows) {
+        final int count = count(rows);
+        return (count == 0) ? Double.NaN : sum(rows).doubleValue() / count;
+    }
+
+    /**
+     * Finds the smallest value of a numeric column.
+     * 
+     * @param rows The rows to consider, or <code>null</code> for all.
+     * @return the minimum, or {@link Double#NaN} if there are no values
+     */
+    public double min(final int[] rows) {
+        return extreme(rows, true);
+    }
+
+    /**
+     * Finds the largest value of a numeric column.
+     * 
+     * @param rows The rows to consider, or <code>null</code> for all.
+     * @return the maximum, or {@link Double#NaN} if there are no values
+     */
+    public double max(final int[] rows) {
+        return extreme(rows, false);
+    }
+
+    /**
+     * Sums a numeric column by the values of a <code>STRING</code> column of the same batch, like
+     * <code>GROUP BY</code>.
+     * 
+     * @param keys The <code>STRING</code> column.
+     * @param rows The rows to consider, or <code>null</code> for all.
+     * @return the sum of each group, by the dictionary code of <code>keys</code>; rows with a
+     *         <code>NULL</code> key are left out
+     */
+    public double[] sumBy(final Sarake keys, final int[] rows) {
+        if (keys.type != SarakeTyyppi.STRING) {
+            throw new IllegalStateException("Column " + keys.label + " is not a string column");
+        }
+        final double[] sums = new double[keys.dictionarySize];
+        final int n = (rows != null) ? rows.length : size;
+        for (int i = 0; i < n; i++) {
+            final int row = (rows != null) ? rows[i] : i;
+            if (!keys.isNull(row)) {
+                sums[keys.ints[row]] += getDouble(row);
+            }
+        }
+        return sums;
+    }
+
+    /**
+     * Counts the rows of each value of a <code>STRING</code> column.
+     * 
+     * @param rows The rows to consider, or <code>null</code> for all.
+     * @return the count of each value, by dictionary code
+     */
+    public int[] countBy(final int[] rows) {
+        if (type != SarakeTyyppi.STRING) {
+            throw new IllegalStateException("Column " + label + " is not a string column");
+        }
+        final int[] counts = new int[dictionarySize];
+        final int n = (rows != null) ? rows.length : size;
+        for (int i = 0; i < n; i++) {
+            final int row = (rows != null) ? rows[i] : i;
+            if (!isNull(row)) {
+                counts[ints[row]]++;
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Finds the smallest or largest value of a numeric column.
+     * 
+     * @param rows The rows to consider, or <code>null</code> for all.
+     * @param min <code>true</code> for the smallest.
+     * @return the value, or {@link Double#NaN} if there are no values
+     */
+    private double extreme(final int[] rows, final boolean min) {
+        if ((type == SarakeTyyppi.STRING) || (type == SarakeTyyppi.OBJECT)) {
+            throw new IllegalStateException("Column " + label + " is not numeric");
+        }
+        final int n = (rows != null) ? rows.length : size;
+        double result = Double.NaN;
+        for (int i = 0; i < n; i++) {
+            final int row = (rows != null) ? rows[i] : i;
+            if (isNull(row)) {
+                continue;
+            }
+            final double v = getDouble(row);
+            if (Double.isNaN(result) || (min ? (v < result) : (v > result))) {
+                result = v;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Gets the code of a string, adding it to the dictionary if new.
+     * 
+     * @param s The string.
+     * @return the code
+     */
+    private int encode(final String s) {
+        final Integer code = codes.get(s);
+        if (code != null) {
+            return code;
+        }
+        final int c = dictionarySize++;
+        if (c == dictionary.length) {
+            dictionary = Arrays.copyOf(dictionary, c * 2);
+        }
+        dictionary[c] = s;
+        codes.put(s, c);
+        return c;
+    }
+
+    /**
+     * Marks a row as <code>NULL</code>.
+     * 
+     * @param row The row index.
+     */
+    private void setNull(final int row) {
+        final int words = (capacity() + 63) >>> 6;
+        if (nulls == null) {
+            nulls = new long[words];
+        } else if (nulls.length < words) {
+            nulls = Arrays.copyOf(nulls, words);
+        }
+        nulls[row >>> 6] |= 1L << row;
+        nullCount++;
+    }
+
+    /**
+     * Gets the capacity of the value array.
+     * 
+     * @return the capacity
+     */
+    private int capacity() {
+        switch (type) {
+            case LONG:
+                return longs.length;
+            case DOUBLE:
+                return doubles.length;
+            case DECIMAL:
+                return decimals.length;
+            case OBJECT:
+                return objects.length;
+            default:
+                return ints.length;
+        }
+    }
+
+    /**
+     * Makes room for one more row, doubling the value array if it is full.
+     */
+    private void ensureCapacity() {
+        if (size < capacity()) {
+            return;
+        }
+        final int c = size * 2;
+        switch (type) {
+            case LONG:
+                longs = Arrays.copyOf(longs, c);
+                break;
+            case DOUBLE:
+                doubles = Arrays.copyOf(doubles, c);
+                break;
+            case DECIMAL:
+                decimals = Arrays.copyOf(decimals, c);
+                break;
+            case OBJECT:
+                objects = Arrays.copyOf(objects, c);
+                break;
+            default:
+                ints = Arrays.copyOf(ints, c);
+                break;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package yarar.tietokanta;
+
+/**
+ * How the values of a {@link Sarake} are stored.<br>
+ * <b>Sarakkeen tyyppi</b> is <a href="http://en.wikipedia.org/wiki/Finnish_language"
+ * target="_blank">Finnish</a> for <i>column type</i>.
+ * 
+ * @author Dimo Vanchev
+ */
+public enum SarakeTyyppi {
+    /**
+     * <code>int</code> array; SQL <code>TINYINT</code>, <code>SMALLINT</code>,
+     * <code>INTEGER</code>, and <code>BOOLEAN</code> as 0 or 1.
+     */
+    INT,
+    /** <code>long</code> array; SQL <code>BIGINT</code>. */
+    LONG,
+    /** <code>double</code> array; SQL floating point types. */
+    DOUBLE,
+    /**
+     * {@link java.math.BigDecimal} array; SQL <code>NUMERIC</code> and <code>DECIMAL</code>, kept
+     * exact.
+     */
+    DECIMAL,
+    /** Dictionary codes in an <code>int</code> array; SQL character types. */
+    STRING,
+    /** Object array; all other types. */
+    OBJECT
+}
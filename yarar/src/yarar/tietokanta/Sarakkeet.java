@@ -0,0 +1,155 @@
+package yarar.tietokanta;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+/**
+ * A batch of rows of a query in columnar form, read by {@link Kysely#readColumns(int)}.<br>
+ * <b>Sarakkeet</b> is a <a href="http://en.wikipedia.org/wiki/Finnish_language"
+ * target="_blank">Finnish</a> word for <i>columns</i>.
+ * <p>
+ * Each column is a {@link Sarake}, holding its values in a primitive array, so scanning a million
+ * rows touches a few contiguous arrays instead of a million row objects. A batch is immutable once
+ * read; large results are best read in batches of bounded size, one after the other.
+ * </p>
+ * 
+ * @author Dimo Vanchev
+ */
+public final class Sarakkeet {
+
+    /** The columns. */
+    private final Sarake[] columns;
+    /** Number of rows. */
+    private final int rowCount;
+
+    /**
+     * Constructor.
+     * 
+     * @param columns The columns.
+     * @param rowCount Number of rows.
+     */
+    private Sarakkeet(final Sarake[] columns, final int rowCount) {
+        this.columns = columns;
+        this.rowCount = rowCount;
+    }
+
+    /**
+     * Creates the empty columns of a result set.
+     * 
+     * @param md The metadata of the result set.
+     * @param capacity The expected number of rows.
+     * @return the columns
+     * @throws SQLException if a database access error occurs.
+     */
+    private static Sarake[] create(final ResultSetMetaData md, final int capacity)
+            throws SQLException {
+        final Sarake[] columns = new Sarake[md.getColumnCount()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = new Sarake(md.getColumnLabel(i + 1), md.getColumnType(i + 1), capacity);
+        }
+        return columns;
+    }
+
+    /**
+     * Reads the next rows of a result set.
+     * 
+     * @param rs The result set.
+     * @param maxRows The maximal number of rows.
+     * @return the batch, or <code>null</code> if there are no more rows
+     * @throws SQLException if a database access error occurs.
+     */
+    static Sarakkeet read(final ResultSet rs, final int maxRows) throws SQLException {
+        final Sarake[] columns = Sarakkeet.create(rs.getMetaData(), maxRows);
+        int rows = 0;
+        while ((rows < maxRows) && rs.next()) {
+            for (int i = 0; i < columns.length; i++) {
+                columns[i].read(rs, i + 1);
+            }
+            rows++;
+        }
+        return Sarakkeet.finish(columns, rows);
+    }
+
+    /**
+     * Reads the next rows of a prefetched result set.
+     * 
+     * @param md The metadata of the result set.
+     * @param prefetch The prefetcher.
+     * @param maxRows The maximal number of rows.
+     * @return the batch, or <code>null</code> if there are no more rows
+     * @throws SQLException if a database access error occurs.
+     */
+    static Sarakkeet read(final ResultSetMetaData md, final Esihaku prefetch, final int maxRows)
+            throws SQLException {
+        final Sarake[] columns = Sarakkeet.create(md, maxRows);
+        int rows = 0;
+        while ((rows < maxRows) && prefetch.next()) {
+            for (int i = 0; i < columns.length; i++) {
+                columns[i].add(prefetch.getValue(i + 1));
+            }
+            rows++;
+        }
+        return Sarakkeet.finish(columns, rows);
+    }
+
+    /**
+     * Ends the building of a batch.
+     * 
+     * @param columns The columns.
+     * @param rows Number of rows read.
+     * @return the batch, or <code>null</code> if no rows were read
+     */
+    private static Sarakkeet finish(final Sarake[] columns, final int rows) {
+        if (rows == 0) {
+            return null;
+        }
+        for (final Sarake c : columns) {
+            c.finish();
+        }
+        return new Sarakkeet(columns, rows);
+    }
+
+    /**
+     * Gets the number of rows.
+     * 
+     * @return the row count
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Gets the number of columns.
+     * 
+     * @return the column count
+     */
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    /**
+     * Gets a column.
+     * 
+     * @param column The column index, starting from 1 as in JDBC.
+     * @return the column
+     */
+    public Sarake getColumn(final int column) {
+        return columns[column - 1];
+    }
+
+    /**
+     * Finds a column by its label, ignoring case.
+     * 
+     * @param label The label.
+     * @return the column, or <code>null</code> if there is no such column
+     */
+    public Sarake getColumn(final String label) {
+        for (final Sarake c : columns) {
+            if (c.getLabel().equalsIgnoreCase(label)) {
+                return c;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,55 @@
+package yarar.tietokanta;
+
+/**
+ * A page of rows returned by {@link Sivutus}.<br>
+ * <b>Sivu</b> is a <a href="http://en.wikipedia.org/wiki/Finnish_language"
+ * target="_blank">Finnish</a> word for <i>page</i>.
+ * 
+ * @author Dimo Vanchev
+ */
+public final class Sivu {
+
+    /** The rows. */
+    private final Tulos rows;
+    /** The continuation token of the next page, or <code>null</code>. */
+    private final String nextToken;
+
+    /**
+     * Constructor.
+     * 
+     * @param rows The rows.
+     * @param nextToken The continuation token of the next page, or <code>null</code>.
+     */
+    Sivu(final Tulos rows, final String nextToken) {
+        this.rows = rows;
+        this.nextToken = nextToken;
+    }
+
+    /**
+     * Gets the rows.
+     * 
+     * @return the rows
+     */
+    public Tulos getRows() {
+        return rows;
+    }
+
+    /**
+     * Gets the continuation token of the next page, for {@link Sivutus#getPage(String)}. The token
+     * is opaque, but a plain string, so it can be handed to a client and back.
+     * 
+     * @return the token, or <code>null</code> if this is the last page
+     */
+    public String getNextToken() {
+        return nextToken;
+    }
+
+    /**
+     * Tells whether there is a next page.
+     * 
+     * @return <code>true</code> unless this is the last page.
+     */
+    public boolean hasNext() {
+        return nextToken != null;
+    }
+}
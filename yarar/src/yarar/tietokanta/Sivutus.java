@@ -0,0 +1,541 @@
+package yarar.tietokanta;
+
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import yarar.rikai.Logger;
+
+/**
+ * Pages through the rows of a query by keyset (seek) pagination.<br>
+ * <b>Sivutus</b> is a <a href="http://en.wikipedia.org/wiki/Finnish_language"
+ * target="_blank">Finnish</a> word for <i>pagination</i>.
+ * <p>
+ * Instead of skipping rows by <code>OFFSET</code>, which the server must read and throw away, each
+ * page continues after the ordering key of the last row of the previous one:
+ * </p>
+ * 
+ * <pre>
+ * SELECT * FROM (<i>query</i>) p__ WHERE (created, id) &lt; (:seekKey1, :seekKey2)
+ *     ORDER BY created DESC, id DESC
+ * </pre>
+ * <p>
+ * The row value comparison is used when all keys are sorted in the same direction and the engine
+ * supports it (see {@link Murre#isRowValueComparison()}), since it maps to a single index range
+ * scan. Otherwise the condition is spelled out key by key:
+ * </p>
+ * 
+ * <pre>
+ * SELECT * FROM (<i>query</i>) p__ WHERE (created &lt; :seekKey1)
+ *     OR (created = :seekKey1 AND id &gt; :seekKey2) ORDER BY created DESC, id
+ * </pre>
+ * <p>
+ * With an index on the key columns, page <i>n</i> costs the same as page 1. The key columns are
+ * labels of the query's result, each optionally followed by <code>DESC</code>; together they must
+ * be unique and never <code>NULL</code>, e.g. a timestamp followed by the primary key. The query,
+ * typically from {@link KyselyLadata}, should have no <code>ORDER BY</code> or limit of its own;
+ * its named parameters (see {@link KyselyPohja}) are set once, when the pagination is created.
+ * </p>
+ * <p>
+ * A page carries an opaque continuation token of the next page (see {@link Sivu#getNextToken()}),
+ * which encodes the last key and can be handed to a client and back. While the caller works on a
+ * page, the next one is fetched in the background; recent pages may also be cached. Pages are read
+ * on connections borrowed from the {@link Tietokanta}, see
+ * {@link Tietokanta#doPartitionedQuery(Kysely, Parametrit, KyselyJako, java.util.Comparator)}.
+ * </p>
+ * 
+ * @author Dimo Vanchev
+ */
+public final class Sivutus implements AutoCloseable {
+
+    /** Prefix of the names of the parameters holding the last key. */
+    public static final String SEEK_KEY = "seekKey";
+
+    /** Fetches the next pages of all paginations. */
+    private static final ExecutorService EXECUTOR =
+            Executors.newCachedThreadPool(new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable r) {
+                    final Thread t = new Thread(r, "Sivutus");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+    /** Encoding of the tokens. */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    /** Digits of the tokens. */
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    /** Cache key of the first page. */
+    private static final String FIRST = "";
+
+    /** The database. */
+    private final Tietokanta db;
+    /** The values of the query's parameters, or <code>null</code>. */
+    private final Parametrit parameters;
+    /** Number of rows per page. */
+    private final int pageSize;
+    /** The labels of the key columns. */
+    private final String[] keys;
+    /** The SQL of the first page. */
+    private final String firstSQL;
+    /** The template of the first page, or <code>null</code> if it has no parameters. */
+    private final KyselyPohja firstTemplate;
+    /** The template of the next pages. */
+    private final KyselyPohja nextTemplate;
+    /** Identifies the tokens of this pagination. */
+    private final String signature;
+    /** Recently read pages, by token. Guarded by this object. */
+    private final Map<String, Sivu> cache = new LinkedHashMap<String, Sivu>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, Sivu> eldest) {
+            return size() > cacheSize;
+        }
+    };
+    /** Maximal number of cached pages. Guarded by this object. */
+    private int cacheSize;
+    /** Whether the next page is fetched in the background. */
+    private volatile boolean prefetching = true;
+    /** The token of the page being fetched in the background. Guarded by this object. */
+    private String prefetchKey;
+    /** The page being fetched in the background. Guarded by this object. */
+    private Future<Sivu> prefetchPage;
+    /** Set by {@link #close()}. */
+    private volatile boolean closed;
+    /** Number of pages read from the database. */
+    private final AtomicLong loads = new AtomicLong();
+    /** Number of pages found in the cache. */
+    private final AtomicLong cacheHits = new AtomicLong();
+    /** Number of pages fetched in the background before they were asked for. */
+    private final AtomicLong prefetchHits = new AtomicLong();
+
+    /**
+     * Constructor.
+     * 
+     * @param db The database.
+     * @param kysely The paged query.
+     * @param parameters The values of its named parameters, or <code>null</code> if it has none.
+     *        They are copied, so later changes do not affect the pagination.
+     * @param pageSize Number of rows per page.
+     * @param keys The labels of the key columns, each optionally followed by <code>DESC</code> or
+     *        <code>ASC</code>.
+     * @throws IllegalArgumentException if there are no keys or the page size is not positive.
+     */
+    public Sivutus(final Tietokanta db, final Kysely kysely, final Parametrit parameters,
+            final int pageSize, final String... keys) {
+        if (keys.length == 0) {
+            throw new IllegalArgumentException("Keyset pagination needs key columns");
+        }
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Page size must be positive: " + pageSize);
+        }
+        this.db = db;
+        this.parameters = (parameters != null) ? parameters.copy() : null;
+        this.pageSize = pageSize;
+        this.keys = new String[keys.length];
+        final boolean[] descending = new boolean[keys.length];
+        final StringBuilder order = new StringBuilder(" ORDER BY ");
+        for (int i = 0; i < keys.length; i++) {
+            final String[] words = keys[i].trim().split("\\s+");
+            this.keys[i] = words[0];
+            descending[i] = (words.length > 1) && "DESC".equalsIgnoreCase(words[1]);
+            order.append((i > 0) ? ", " : "").append(words[0]).append(descending[i] ? " DESC" : "");
+        }
+        final String query = "SELECT * FROM (" + ((kysely.getTemplate() != null)
+                ? kysely.getTemplate().getSource() : kysely.getQuery()) + ") p__";
+        final Murre murre = db.getMurre();
+        firstSQL = murre.getLimitedSQL(query + order, pageSize + 1);
+        firstTemplate = KyselyPohja.compile(firstSQL);
+        final String nextSQL = murre.getLimitedSQL(query + " WHERE "
+                + Sivutus.getSeekCondition(this.keys, descending, murre.isRowValueComparison())
+                + order, pageSize + 1);
+        nextTemplate = KyselyPohja.compile(nextSQL);
+        signature = Integer.toHexString(nextSQL.hashCode()) + '.';
+    }
+
+    /**
+     * Builds the condition selecting the rows after the last key.
+     * 
+     * @param keys The key columns.
+     * @param descending Whether each key is sorted in descending order.
+     * @param rowValues Whether the engine compares row values.
+     * @return the condition
+     */
+    private static String getSeekCondition(final String[] keys, final boolean[] descending,
+            final boolean rowValues) {
+        final StringBuilder sb = new StringBuilder();
+        boolean uniform = rowValues && (keys.length > 1);
+        for (int i = 1; uniform && (i < keys.length); i++) {
+            uniform = descending[i] == descending[0];
+        }
+        if (uniform) {
+            final StringBuilder values = new StringBuilder();
+            for (int i = 0; i < keys.length; i++) {
+                sb.append((i > 0) ? ", " : "(").append(keys[i]);
+                values.append((i > 0) ? ", :" : "(:").append(Sivutus.SEEK_KEY).append(i + 1);
+            }
+            return sb.append(descending[0] ? ") < " : ") > ").append(values).append(')')
+                    .toString();
+        }
+        for (int i = 0; i < keys.length; i++) {
+            sb.append((i > 0) ? " OR (" : "(");
+            for (int j = 0; j < i; j++) {
+                sb.append(keys[j]).append(" = :").append(Sivutus.SEEK_KEY).append(j + 1)
+                        .append(" AND ");
+            }
+            sb.append(keys[i]).append(descending[i] ? " < :" : " > :").append(Sivutus.SEEK_KEY)
+                    .append(i + 1).append(')');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Switches fetching the next page in the background on or off. It is on by default.
+     * 
+     * @param prefetch Whether to prefetch.
+     */
+    public void setPrefetch(final boolean prefetch) {
+        prefetching = prefetch;
+    }
+
+    /**
+     * Sets how many recently read pages are cached, e.g. for paging back and forth. No pages are
+     * cached by default.
+     * 
+     * @param pages The number of pages, 0 for none.
+     */
+    public synchronized void setCacheSize(final int pages) {
+        cacheSize = Math.max(0, pages);
+        if (cache.size() > cacheSize) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * Gets a page.
+     * 
+     * @param token The continuation token from the previous page, or <code>null</code> for the
+     *        first page.
+     * @return the page, or <code>null</code> if an {@link SQLException} was caught.
+     * @throws IllegalArgumentException if the token does not belong to this pagination.
+     * @throws IllegalStateException if the pagination is closed.
+     */
+    public Sivu getPage(final String token) {
+        if (closed) {
+            throw new IllegalStateException("Sivutus is closed");
+        }
+        final String key = (token != null) ? token : Sivutus.FIRST;
+        Sivu page;
+        Future<Sivu> pending = null;
+        synchronized (this) {
+            page = cache.get(key);
+            if ((page == null) && key.equals(prefetchKey)) {
+                pending = prefetchPage;
+                prefetchKey = null;
+                prefetchPage = null;
+            }
+        }
+        if (page != null) {
+            cacheHits.incrementAndGet();
+        } else if (pending != null) {
+            page = Sivutus.await(pending);
+            if (page != null) {
+                prefetchHits.incrementAndGet();
+            }
+        }
+        if (page == null) {
+            page = load(key);
+        }
+        if (page != null) {
+            remember(key, page);
+        }
+        if ((page != null) && page.hasNext() && prefetching) {
+            prefetch(page.getNextToken());
+        }
+        return page;
+    }
+
+    /**
+     * Caches a page, if caching is on.
+     * 
+     * @param key The continuation token of the page, or {@link #FIRST}.
+     * @param page The page.
+     */
+    private synchronized void remember(final String key, final Sivu page) {
+        if ((cacheSize > 0) && !closed) {
+            cache.put(key, page);
+        }
+    }
+
+    /**
+     * Starts fetching a page in the background, unless it is cached or being fetched.
+     * 
+     * @param token The continuation token of the page.
+     */
+    private synchronized void prefetch(final String token) {
+        if (closed || token.equals(prefetchKey) || cache.containsKey(token)) {
+            return;
+        }
+        prefetchKey = token;
+        prefetchPage = Sivutus.EXECUTOR.submit(new Callable<Sivu>() {
+            @Override
+            public Sivu call() {
+                return load(token);
+            }
+        });
+    }
+
+    /**
+     * Waits for a page fetched in the background.
+     * 
+     * @param page The pending page.
+     * @return the page, or <code>null</code> if fetching it failed.
+     */
+    private static Sivu await(final Future<Sivu> page) {
+        try {
+            return page.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (final ExecutionException e) {
+            Logger.print(e);
+        }
+        return null;
+    }
+
+    /**
+     * Reads a page from the database.
+     * 
+     * @param key The continuation token, or {@link #FIRST}.
+     * @return the page, or <code>null</code> if an {@link SQLException} was caught.
+     */
+    private Sivu load(final String key) {
+        final Object[] after = !key.isEmpty() ? decode(key) : null;
+        final KyselyPohja template = (after != null) ? nextTemplate : firstTemplate;
+        Parametrit p = null;
+        if (template != null) {
+            p = template.newParameters();
+            if (parameters != null) {
+                parameters.copyTo(p);
+            }
+            for (int i = 0; (after != null) && (i < after.length); i++) {
+                Sivutus.setKey(p, Sivutus.SEEK_KEY + (i + 1), after[i]);
+            }
+        }
+        Connection c = null;
+        try {
+            c = db.borrowConnection();
+            try (PreparedStatement ps =
+                    c.prepareStatement((p != null) ? template.getSQL(p) : firstSQL)) {
+                if (p != null) {
+                    template.bind(ps, p);
+                }
+                try (ResultSet rs = ps.executeQuery()) {
+                    final Tulos rows = Tulos.read(rs, pageSize);
+                    final Sivu page = new Sivu(rows, rs.next() ? encode(rows) : null);
+                    loads.incrementAndGet();
+                    return page;
+                }
+            }
+        } catch (final SQLException e) {
+            Logger.print(e);
+            return null;
+        } finally {
+            if (c != null) {
+                db.returnConnection(c);
+            }
+        }
+    }
+
+    /**
+     * Sets a parameter to a key value, by the value's type.
+     * 
+     * @param p The parameters.
+     * @param name The name of the parameter.
+     * @param value The value.
+     */
+    private static void setKey(final Parametrit p, final String name, final Object value) {
+        if (value instanceof Long) {
+            p.setLong(name, (Long) value);
+        } else if (value instanceof Double) {
+            p.setDouble(name, (Double) value);
+        } else if (value instanceof String) {
+            p.setString(name, (String) value);
+        } else {
+            p.setObject(name, value);
+        }
+    }
+
+    /**
+     * Builds the continuation token after the last row of a page: the signature, then the type,
+     * the length and the text of each key value, hex encoded.
+     * 
+     * @param rows The rows of the page.
+     * @return the token
+     * @throws IllegalStateException if a key is missing, <code>NULL</code> or of an unsupported
+     *         type.
+     */
+    private String encode(final Tulos rows) {
+        final StringBuilder sb = new StringBuilder(signature);
+        for (final String label : keys) {
+            final int column = rows.findColumn(label);
+            if (column < 1) {
+                throw new IllegalStateException("No key column " + label + " in the result");
+            }
+            final Object v = rows.getValue(rows.getRowCount() - 1, column);
+            final char type;
+            final String text;
+            if ((v instanceof Long) || (v instanceof Integer) || (v instanceof Short)
+                    || (v instanceof Byte)) {
+                type = 'L';
+                text = v.toString();
+            } else if ((v instanceof Double) || (v instanceof Float)) {
+                type = 'D';
+                text = Double.toString(((Number) v).doubleValue());
+            } else if (v instanceof BigDecimal) {
+                type = 'N';
+                text = v.toString();
+            } else if (v instanceof String) {
+                type = 'S';
+                text = (String) v;
+            } else if (v instanceof Timestamp) {
+                type = 'T';
+                text = ((Timestamp) v).getTime() + "." + ((Timestamp) v).getNanos();
+            } else if (v instanceof Date) {
+                type = 'd';
+                text = Long.toString(((Date) v).getTime());
+            } else {
+                throw new IllegalStateException("Key column " + label + " is NULL or of an "
+                        + "unsupported type: " + ((v != null) ? v.getClass().getName() : null));
+            }
+            sb.append(type).append(text.length()).append(':').append(text);
+        }
+        final byte[] bytes = sb.toString().getBytes(Sivutus.UTF_8);
+        final char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[2 * i] = Sivutus.HEX[(bytes[i] >> 4) & 0xf];
+            hex[(2 * i) + 1] = Sivutus.HEX[bytes[i] & 0xf];
+        }
+        return new String(hex);
+    }
+
+    /**
+     * Decodes the key values of a continuation token.
+     * 
+     * @param token The token.
+     * @return the key values
+     * @throws IllegalArgumentException if the token does not belong to this pagination.
+     */
+    private Object[] decode(final String token) {
+        try {
+            final byte[] bytes = new byte[token.length() / 2];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = (byte) Integer.parseInt(token.substring(2 * i, (2 * i) + 2), 16);
+            }
+            final String s = new String(bytes, Sivutus.UTF_8);
+            if (((token.length() % 2) != 0) || !s.startsWith(signature)) {
+                throw new IllegalArgumentException("Invalid continuation token");
+            }
+            final Object[] values = new Object[keys.length];
+            int pos = signature.length();
+            for (int i = 0; i < values.length; i++) {
+                final char type = s.charAt(pos);
+                final int colon = s.indexOf(':', pos);
+                final int end = colon + 1 + Integer.parseInt(s.substring(pos + 1, colon));
+                final String text = s.substring(colon + 1, end);
+                pos = end;
+                switch (type) {
+                    case 'L':
+                        values[i] = Long.valueOf(text);
+                        break;
+                    case 'D':
+                        values[i] = Double.valueOf(text);
+                        break;
+                    case 'N':
+                        values[i] = new BigDecimal(text);
+                        break;
+                    case 'S':
+                        values[i] = text;
+                        break;
+                    case 'T':
+                        final int dot = text.indexOf('.');
+                        final Timestamp t = new Timestamp(Long.parseLong(text.substring(0, dot)));
+                        t.setNanos(Integer.parseInt(text.substring(dot + 1)));
+                        values[i] = t;
+                        break;
+                    case 'd':
+                        values[i] = new Date(Long.parseLong(text));
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Invalid continuation token");
+                }
+            }
+            if (pos != s.length()) {
+                throw new IllegalArgumentException("Invalid continuation token");
+            }
+            return values;
+        } catch (final IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Invalid continuation token", e);
+        }
+    }
+
+    /**
+     * Gets the number of pages read from the database, in the background included.
+     * 
+     * @return the count
+     */
+    public long getLoadCount() {
+        return loads.get();
+    }
+
+    /**
+     * Gets the number of pages served from the cache.
+     * 
+     * @return the count
+     */
+    public long getCacheHitCount() {
+        return cacheHits.get();
+    }
+
+    /**
+     * Gets the number of pages which were fetched in the background when asked for.
+     * 
+     * @return the count
+     */
+    public long getPrefetchHitCount() {
+        return prefetchHits.get();
+    }
+
+    /**
+     * Drops the cached pages. A page being fetched in the background is left to finish, so that
+     * its connection is returned in a usable state.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        cache.clear();
+        prefetchKey = null;
+        prefetchPage = null;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "Sivutus[pageSize=%d, loads=%d, cacheHits=%d, "
+                + "prefetchHits=%d]", pageSize, loads.get(), cacheHits.get(), prefetchHits.get());
+    }
+}
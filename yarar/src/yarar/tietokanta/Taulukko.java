@@ -0,0 +1,385 @@
+package yarar.tietokanta;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Array;
+import java.sql.SQLException;
+
+/**
+ * Decodes an SQL <code>ARRAY</code> value into primitive or string arrays, for the typed array
+ * accessors of {@link Kysely}.<br>
+ * <b>Taulukko</b> is a <a href="http://en.wikipedia.org/wiki/Finnish_language"
+ * target="_blank">Finnish</a> word for <i>array</i>.
+ * <p>
+ * The PostgreSQL driver keeps an array as its text literal, e.g. <code>{1,2,NULL,"a b"}</code>,
+ * and boxes every element on {@link Array#getArray()}. When the literal is available, the elements
+ * are parsed from it straight into the target array instead; other drivers go through
+ * {@link Array#getArray()}. Nested arrays of a literal are flattened in row-major order.
+ * <code>NULL</code> elements become 0 in primitive arrays and <code>null</code> in string arrays.
+ * </p>
+ * 
+ * @author Dimo Vanchev
+ */
+final class Taulukko {
+
+    /** The text literal, or <code>null</code> if the driver gave none. */
+    private final String literal;
+    /** The values from {@link Array#getArray()}, if there is no literal. */
+    private final Object values;
+    /** The parse position in the literal. */
+    private int pos;
+    /** Where the current element starts in the literal. */
+    private int start;
+    /** Where the current element ends in the literal. */
+    private int end;
+    /** Whether the current element is quoted. */
+    private boolean quoted;
+    /** Whether the current element contains backslash escapes. */
+    private boolean escaped;
+
+    /**
+     * Constructor.
+     * 
+     * @param array The array.
+     * @throws SQLException if the elements cannot be read.
+     */
+    Taulukko(final Array array) throws SQLException {
+        literal = Taulukko.getLiteral(array.toString());
+        values = (literal == null) ? array.getArray() : null;
+    }
+
+    /**
+     * Gets the braced part of a PostgreSQL array literal.
+     * 
+     * @param s The string form of an array.
+     * @return the literal, without a leading dimension decoration such as <code>[0:2]=</code>, or
+     *         <code>null</code> if <code>s</code> is not an array literal
+     */
+    private static String getLiteral(final String s) {
+        if ((s == null) || s.isEmpty()) {
+            return null;
+        }
+        if (s.charAt(0) == '{') {
+            return s;
+        }
+        if (s.charAt(0) == '[') {
+            final int brace = s.indexOf("={");
+            return (brace > 0) ? s.substring(brace + 1) : null;
+        }
+        return null;
+    }
+
+    /**
+     * Gets an upper bound of the number of elements, to size a target array.
+     * 
+     * @return the capacity
+     */
+    int capacity() {
+        if (literal == null) {
+            return java.lang.reflect.Array.getLength(values);
+        }
+        int n = 1;
+        for (int i = literal.indexOf(','); i >= 0; i = literal.indexOf(',', i + 1)) {
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * Reads the elements as <code>int</code> values.
+     * 
+     * @param buffer The target. Filled up to its length.
+     * @return the number of elements, which is more than the length of <code>buffer</code> if it
+     *         was too short
+     * @throws NumberFormatException if an element is not an <code>int</code>.
+     */
+    int readInts(final int[] buffer) {
+        int n = 0;
+        if (literal != null) {
+            for (pos = 0; next(); n++) {
+                if (n < buffer.length) {
+                    buffer[n] = Taulukko.toInt(longValue());
+                }
+            }
+            return n;
+        }
+        final int count = capacity();
+        for (; (n < count) && (n < buffer.length); n++) {
+            buffer[n] = (values instanceof int[]) ? ((int[]) values)[n] : Taulukko.toInt(longAt(n));
+        }
+        return count;
+    }
+
+    /**
+     * Reads the elements as <code>long</code> values.
+     * 
+     * @param buffer The target. Filled up to its length.
+     * @return the number of elements, which is more than the length of <code>buffer</code> if it
+     *         was too short
+     * @throws NumberFormatException if an element is not a <code>long</code>.
+     */
+    int readLongs(final long[] buffer) {
+        int n = 0;
+        if (literal != null) {
+            for (pos = 0; next(); n++) {
+                if (n < buffer.length) {
+                    buffer[n] = longValue();
+                }
+            }
+            return n;
+        }
+        final int count = capacity();
+        for (; (n < count) && (n < buffer.length); n++) {
+            buffer[n] = longAt(n);
+        }
+        return count;
+    }
+
+    /**
+     * Reads the elements as <code>double</code> values.
+     * 
+     * @param buffer The target. Filled up to its length.
+     * @return the number of elements, which is more than the length of <code>buffer</code> if it
+     *         was too short
+     * @throws NumberFormatException if an element is not a number.
+     */
+    int readDoubles(final double[] buffer) {
+        int n = 0;
+        if (literal != null) {
+            for (pos = 0; next(); n++) {
+                if (n < buffer.length) {
+                    buffer[n] = isNull() ? 0 : Double.parseDouble(literal.substring(start, end));
+                }
+            }
+            return n;
+        }
+        final int count = capacity();
+        for (; (n < count) && (n < buffer.length); n++) {
+            if (values instanceof double[]) {
+                buffer[n] = ((double[]) values)[n];
+            } else if (values instanceof Object[]) {
+                final Object o = ((Object[]) values)[n];
+                buffer[n] = (o != null) ? ((Number) o).doubleValue() : 0;
+            } else {
+                buffer[n] = longAt(n);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Reads the elements as strings.
+     * 
+     * @param buffer The target. Filled up to its length.
+     * @return the number of elements, which is more than the length of <code>buffer</code> if it
+     *         was too short
+     */
+    int readStrings(final String[] buffer) {
+        int n = 0;
+        if (literal != null) {
+            for (pos = 0; next(); n++) {
+                if (n < buffer.length) {
+                    buffer[n] = stringValue();
+                }
+            }
+            return n;
+        }
+        final int count = capacity();
+        for (; (n < count) && (n < buffer.length); n++) {
+            final Object o = java.lang.reflect.Array.get(values, n);
+            buffer[n] = (o != null) ? o.toString() : null;
+        }
+        return count;
+    }
+
+    /**
+     * Narrows a value to an <code>int</code>.
+     * 
+     * @param v The value.
+     * @return the value
+     * @throws NumberFormatException if it is out of the range of <code>int</code>.
+     */
+    private static int toInt(final long v) {
+        if ((v < Integer.MIN_VALUE) || (v > Integer.MAX_VALUE)) {
+            throw new NumberFormatException("Out of int range: " + v);
+        }
+        return (int) v;
+    }
+
+    /**
+     * Gets an element of the values from {@link Array#getArray()} as a <code>long</code>.
+     * 
+     * @param i The index.
+     * @return the value, 0 for <code>NULL</code>
+     * @throws NumberFormatException if the element is not an integer or out of the range of
+     *         <code>long</code>.
+     */
+    private long longAt(final int i) {
+        if (values instanceof long[]) {
+            return ((long[]) values)[i];
+        }
+        if (values instanceof int[]) {
+            return ((int[]) values)[i];
+        }
+        if (values instanceof short[]) {
+            return ((short[]) values)[i];
+        }
+        if (values instanceof double[]) {
+            return Taulukko.toLong(((double[]) values)[i]);
+        }
+        final Object o = ((Object[]) values)[i];
+        if ((o == null) || (o instanceof Long) || (o instanceof Integer) || (o instanceof Short)
+                || (o instanceof Byte)) {
+            return (o != null) ? ((Number) o).longValue() : 0;
+        }
+        if (o instanceof BigDecimal) {
+            try {
+                return ((BigDecimal) o).longValueExact();
+            } catch (final ArithmeticException e) {
+                throw new NumberFormatException(o.toString());
+            }
+        }
+        if (o instanceof BigInteger) {
+            if (((BigInteger) o).bitLength() > 63) {
+                throw new NumberFormatException(o.toString());
+            }
+            return ((BigInteger) o).longValue();
+        }
+        return Taulukko.toLong(((Number) o).doubleValue());
+    }
+
+    /**
+     * Narrows a floating point value to a <code>long</code>.
+     * 
+     * @param d The value.
+     * @return the value
+     * @throws NumberFormatException if it is not an integer or out of the range of
+     *         <code>long</code>.
+     */
+    private static long toLong(final double d) {
+        // 2^63 itself is out of range, -2^63 is not
+        if ((d != Math.rint(d)) || (d >= 0x1p63) || (d < -0x1p63)) {
+            throw new NumberFormatException(Double.toString(d));
+        }
+        return (long) d;
+    }
+
+    /**
+     * Moves to the next element of the literal.
+     * 
+     * @return <code>true</code> if there is one
+     */
+    private boolean next() {
+        final int length = literal.length();
+        while ((pos < length) && Taulukko.isSeparator(literal.charAt(pos))) {
+            pos++;
+        }
+        if (pos >= length) {
+            return false;
+        }
+        escaped = false;
+        quoted = literal.charAt(pos) == '"';
+        if (quoted) {
+            start = ++pos;
+            while ((pos < length) && (literal.charAt(pos) != '"')) {
+                if (literal.charAt(pos) == '\\') {
+                    escaped = true;
+                    pos++;
+                }
+                pos++;
+            }
+            end = Math.min(pos++, length);
+            return true;
+        }
+        start = pos;
+        while ((pos < length) && (literal.charAt(pos) != ',') && (literal.charAt(pos) != '}')) {
+            if (literal.charAt(pos) == '\\') {
+                escaped = true;
+                pos++;
+            }
+            pos++;
+        }
+        end = Math.min(pos, length);
+        while ((end > start) && Character.isWhitespace(literal.charAt(end - 1))) {
+            end--;
+        }
+        return true;
+    }
+
+    /**
+     * Tells whether a character separates the elements of a literal.
+     * 
+     * @param c The character.
+     * @return <code>true</code> for braces, commas and white space.
+     */
+    private static boolean isSeparator(final char c) {
+        return (c == '{') || (c == '}') || (c == ',') || Character.isWhitespace(c);
+    }
+
+    /**
+     * Tells whether the current element is <code>NULL</code>.
+     * 
+     * @return <code>true</code> for an unquoted <code>NULL</code>.
+     */
+    private boolean isNull() {
+        return !quoted && ((end - start) == 4) && literal.regionMatches(true, start, "NULL", 0, 4);
+    }
+
+    /**
+     * Parses the current element as a <code>long</code>, without creating a string.
+     * 
+     * @return the value, 0 for <code>NULL</code>
+     * @throws NumberFormatException if the element is not an integer or out of the range of
+     *         <code>long</code>.
+     */
+    private long longValue() {
+        if (isNull()) {
+            return 0;
+        }
+        int i = start;
+        final boolean negative = (i < end) && (literal.charAt(i) == '-');
+        if (negative || ((i < end) && (literal.charAt(i) == '+'))) {
+            i++;
+        }
+        if (i >= end) {
+            throw new NumberFormatException(literal.substring(start, end));
+        }
+        long v = 0;
+        for (; i < end; i++) {
+            final int digit = literal.charAt(i) - '0';
+            // accumulated negatively, as the negative range is the larger one
+            if ((digit < 0) || (digit > 9) || (v < ((Long.MIN_VALUE + digit) / 10))) {
+                throw new NumberFormatException(literal.substring(start, end));
+            }
+            v = (v * 10) - digit;
+        }
+        if (!negative && (v == Long.MIN_VALUE)) {
+            throw new NumberFormatException(literal.substring(start, end));
+        }
+        return negative ? v : -v;
+    }
+
+    /**
+     * Gets the current element as a string, with escapes resolved.
+     * 
+     * @return the value, <code>null</code> for <code>NULL</code>
+     */
+    private String stringValue() {
+        if (isNull()) {
+            return null;
+        }
+        if (!escaped) {
+            return literal.substring(start, end);
+        }
+        final StringBuilder sb = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            final char c = literal.charAt(i);
+            if ((c == '\\') && ((i + 1) < end)) {
+                sb.append(literal.charAt(++i));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
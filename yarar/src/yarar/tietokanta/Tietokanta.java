@@ -1,222 +1,1289 @@
-package yarar.tietokanta;
-
-import java.sql.Connection;
-import java.sql.DatabaseMetaData;
-import java.sql.DriverManager;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.SQLException;
-import java.sql.Statement;
-
-import yarar.rikai.ConfigParser;
-import yarar.rikai.Logger;
-
-/**
- * <b>Tietokanta</b> is a <a href="http://en.wikipedia.org/wiki/Finnish_language"
- * target="_blank">Finnish</a> word for <i>database</i>. <br>
- * This is a general class that manages DB-related operations.
- * <p>
- * Typical mechanism to load, prepare and execute a SQL query is as follows: <br>
- * <code>
- * 	Kysely kysely = KyselyLadata.getInstance().getKysely(<i>"key.name.of.the.sql"</i>);<br>
- * 	Kendra.getDB().prepareQuery(kysely);<br>
- * 	Kendra.getDB().doPreparedQuery(kysely, <i>values</i>);<br>
- * </code>
- * 
- * @author Dimo Vanchev
- */
-public final class Tietokanta {
-
-    /**
-     * Parser of DB configurations.
-     */
-    private final ConfigParser configParser;
-
-    /**
-     * A connection to the database
-     */
-    private Connection db;
-    /**
-     * This is basically info the driver delivers about the DB it just connected to. I use it to get
-     * the DB version to confirm the connection in this example.
-     */
-    private DatabaseMetaData dbMetaData;
-
-    /**
-     * Default constructor. Creates new Tietokanta object and connects to the database.
-     */
-    public Tietokanta() {
-	// loading properties from the the relevant properties file.
-	configParser = new ConfigParser("tietokanta.properties");
-
-	try {
-	    connect();
-	} catch (final Exception e) {
-	    Logger.print(e);
-	}
-    }
-
-    /**
-     * Create a {@link Statement} - an object used for executing a static SQL statement and
-     * returning the results it produces. By default, only one <code>ResultSet</code> object per
-     * <code>Statement</code> object can be open at the same time. Therefore, if the reading of one
-     * <code>ResultSet</code> object is interleaved with the reading of another, each must have been
-     * generated by different <code>Statement</code> objects. All execution methods in the
-     * <code>Statement</code> interface implicitly close a statment's current <code>ResultSet</code>
-     * object if an open one exists.
-     * 
-     * @return a new default <code>Statement</code> object
-     * @exception SQLException if a database access error occurs or this method is called on a
-     *            closed connection
-     */
-    protected Statement getNewStatement() throws SQLException {
-	return db.createStatement();
-    }
-
-    /**
-     * Prepares a <code>Kysely</code>'s SQL. To execute the prepared query, use
-     * {@link #doPreparedQuery(Kysely, TypeValuePair[])}. There is a special check to prevent
-     * preparing a statement for the same Kysely more than once. If such calls are made, these get
-     * silently ignored.
-     * 
-     * @param kysely The <code>Kysely</code> object whose SQL needs to be prepared.
-     * @see Kysely
-     */
-    public void prepareQuery(final Kysely kysely) {
-	if (kysely.hasPreparedStatement()) {
-	    /* Prevents preparing the same statement twice. */
-	    return;
-	}
-	try {
-	    final PreparedStatement preparedStatement = db.prepareStatement(kysely.getQuery());
-	    kysely.setPreparedStatement(preparedStatement);
-	} catch (final SQLException e) {
-	    Logger.print(e);
-	}
-    }
-
-    /**
-     * Executes a <code>Kysely</code>'s prepared query SQL. To do manipulations with the result, use
-     * <code>Kysely</code>'s built-in methods.
-     * 
-     * @param kysely The <code>Kysely</code> object whose prepared query needs to be executed.
-     * @param values Array of field type and value pairs, needed for substitution of the relevant
-     *        <code>?</code> from the SQL query.
-     * @see #prepareQuery(Kysely)
-     */
-    public void doPreparedQuery(final Kysely kysely, final TypeValuePair[] values) {
-	final PreparedStatement ps = kysely.getPreparedStatement();
-	try {
-	    int parameterIndex = 0;
-	    for (final TypeValuePair tvp : values) {
-		parameterIndex++;
-		final Object x = tvp.getValue();
-		switch (tvp.getType()) {
-		    case INTEGER:
-			ps.setInt(parameterIndex, (Integer) x);
-			break;
-		    case STRING:
-			ps.setString(parameterIndex, (String) x);
-			break;
-		    case OBJECT:
-		    default:
-			ps.setObject(parameterIndex, x);
-			break;
-		}
-	    }
-	    ps.execute();
-	    kysely.setResult(ps.getResultSet());
-	} catch (final SQLException e) {
-	    Logger.print(e);
-	}
-    }
-
-    /**
-     * Executes a <code>Kysely</code>'s SQL. To do manipulations with the result, use
-     * <code>Kysely</code>'s built-in methods.
-     * 
-     * @param kysely The <code>Kysely</code> object whose SQL needs to be executed.
-     * @see Kysely
-     */
-    public void doQuery(final Kysely kysely) {
-	final ResultSet result = doQuery(kysely.getQuery());
-	kysely.setResult(result);
-    }
-
-    /**
-     * Calls {@link #executeStatement(String)} with the specified parameter and logs any
-     * {@link SQLException}.
-     * 
-     * @param sql A {@link String}, containing the SQL query.
-     * @return The {@link ResultSet} of statement's execution, or <code>null</code> if an
-     *         {@link SQLException} was caught.
-     */
-    private ResultSet doQuery(final String sql) {
-	ResultSet rs = null;
-	try {
-	    rs = executeStatement(sql);
-	} catch (final SQLException e) {
-	    Logger.print(e);
-	}
-
-	return rs;
-    }
-
-    /**
-     * Calls {@link #executeStatement(String, Statement)} with the passed <code>sql</code> parameter
-     * and newly created {@link Statement} object.
-     * 
-     * @param sql The SQL that needs to be executed.
-     * @return The {@link ResultSet} of sql's execution.
-     * @throws SQLException thrown by query's execution.
-     */
-    protected ResultSet executeStatement(final String sql) throws SQLException {
-	return executeStatement(sql, getNewStatement());
-    }
-
-    /**
-     * Executes the passed sql query by the passed {@link Statement} object.
-     * 
-     * @param sql The SQL statement to be sent to the database, typically a static SQL
-     *        <code>SELECT</code> statement
-     * @param statement The object used for executing the static SQL statement and returning the
-     *        results it produces.
-     * @return a <code>ResultSet</code> object that contains the data produced by the given query;
-     *         never <code>null</code>
-     * @exception SQLException if a database access error occurs, this method is called on a closed
-     *            <code>Statement</code>, the given SQL statement produces anything other than a
-     *            single <code>ResultSet</code> object, the method is called on a
-     *            <code>PreparedStatement</code> or <code>CallableStatement</code>
-     */
-    protected ResultSet executeStatement(final String sql,
-	    final Statement statement) throws SQLException {
-	return statement.executeQuery(sql);
-    }
-
-    /**
-     * Connects to the database, using configuration read from "kyselyladata.properties"
-     * 
-     * @throws ClassNotFoundException if the class for the relevant DB driver cannot be located
-     * @throws SQLException if a database access error occurs
-     */
-    private void connect() throws ClassNotFoundException, SQLException {
-	final String database = configParser.getValue("database");
-	final String username = configParser.getValue("username");
-	final String password = configParser.getValue("password");
-
-	// load the driver
-	Class.forName("org.postgresql.Driver");
-
-	// connect to the db
-	db = DriverManager.getConnection("jdbc:postgresql:" + database,
-		username, password);
-
-	// get MetaData to confirm connection
-	dbMetaData = db.getMetaData();
-
-	Logger.print("Tietokanta:: Connection to "
-		+ dbMetaData.getDatabaseProductName() + " "
-		+ dbMetaData.getDatabaseProductVersion() + " successful.\n");
-    }
-
-}
+package yarar.tietokanta;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+
+import yarar.rikai.ClassLogger;
+import yarar.rikai.ConfigParser;
+import yarar.rikai.Logger;
+
+/**
+ * <b>Tietokanta</b> is a <a href="http://en.wikipedia.org/wiki/Finnish_language"
+ * target="_blank">Finnish</a> word for <i>database</i>. <br>
+ * This is a general class that manages DB-related operations.
+ * <p>
+ * Typical mechanism to load, prepare and execute a SQL query is as follows: <br>
+ * <code>
+ * 	Kysely kysely = KyselyLadata.getInstance().getKysely(<i>"key.name.of.the.sql"</i>);<br>
+ * 	Kendra.getDB().prepareQuery(kysely);<br>
+ * 	Kendra.getDB().doPreparedQuery(kysely, <i>values</i>);<br>
+ * </code>
+ * <p>
+ * The database engine is described by a {@link Murre} (dialect), selected by the
+ * <code>dialect</code> key of <code>tietokanta.properties</code>. Besides <code>database</code>,
+ * <code>username</code> and <code>password</code>, the optional keys <code>driver</code> and
+ * <code>url</code> override the dialect's driver class and connection URL.
+ * </p>
+ * <p>
+ * Read-only queries (see {@link Kysely#isReadOnly()}) may be spread over read replicas, listed by
+ * the <code>replicas</code> key as comma separated names. For each name <i>n</i>, the keys
+ * <code>replica.<i>n</i>.url</code> (or <code>replica.<i>n</i>.database</code>),
+ * <code>replica.<i>n</i>.driver</code>, <code>replica.<i>n</i>.username</code>,
+ * <code>replica.<i>n</i>.password</code> and <code>replica.<i>n</i>.weight</code> (default 1)
+ * describe the replica; missing values are taken from the primary. As the URL and driver may be
+ * anything, in-process databases (e.g. H2 or HSQLDB in memory) can stand in for the replicas when
+ * testing. Writes always go to the primary, and within a transaction (see
+ * {@link #beginTransaction()}) all queries following a write go to the primary too, so that they
+ * read what the transaction wrote.
+ * </p>
+ * <p>
+ * The key <code>admission</code> enables admission control of executed queries (see
+ * {@link AdmissionController}), with a limit which is <code>static</code>, <code>aimd</code> or
+ * <code>gradient</code> (see {@link AdmissionLimit}). The keys <code>admission.limit</code>
+ * (default {@value #ADMISSION_LIMIT}), <code>admission.limit.min</code>,
+ * <code>admission.limit.max</code> (default {@value #ADMISSION_LIMIT_MAX}),
+ * <code>admission.queue</code> (default {@value #ADMISSION_QUEUE}, per priority) and
+ * <code>admission.timeout</code> (default {@value #ADMISSION_TIMEOUT} ms) tune it. The limit holds
+ * for all <code>Tietokanta</code> objects connected to the same URL together. A query which
+ * is not admitted is not executed and the <code>Kysely</code> has no result; such queries are
+ * counted (see {@link AdmissionController#getShedCount()}), and a warning is logged at most every
+ * few seconds.
+ * </p>
+ * 
+ * @author Dimo Vanchev
+ */
+public final class Tietokanta {
+
+    /** Leveled logger of this class. */
+    private static final ClassLogger LOG = Logger.getLogger(Tietokanta.class);
+    /** Default initial concurrency limit of admission control. */
+    private static final int ADMISSION_LIMIT = 16;
+    /** Default highest concurrency limit of admission control. */
+    private static final int ADMISSION_LIMIT_MAX = 256;
+    /** Default capacity of each admission queue. */
+    private static final int ADMISSION_QUEUE = 64;
+    /** Default admission deadline, in milliseconds. */
+    private static final int ADMISSION_TIMEOUT = 1000;
+    /** Number of idle connections of partitioned queries kept for reuse. */
+    private static final int MAX_SPARE_CONNECTIONS = 16;
+    /** Minimal time between two warnings about queries not admitted, in nanoseconds. */
+    private static final long SHED_WARNING_INTERVAL = TimeUnit.SECONDS.toNanos(10);
+    /** When a query not admitted was last logged, by {@link System#nanoTime()}. */
+    private static final AtomicLong LAST_SHED_WARNING =
+            new AtomicLong(System.nanoTime() - Tietokanta.SHED_WARNING_INTERVAL);
+    /** The admission control of each database, by URL, shared by all its connections. */
+    private static final Map<String, AdmissionController> ADMISSION_CONTROLLERS =
+            new HashMap<String, AdmissionController>();
+    /** Stands for the permit of queries executed without admission control. */
+    private static final AdmissionController.Permit UNLIMITED = new AdmissionController.Permit();
+
+    /**
+     * Parser of DB configurations.
+     */
+    private final ConfigParser configParser;
+    /** The dialect of the database engine. */
+    private final Murre murre;
+
+    /**
+     * A connection to the database
+     */
+    private Connection db;
+    /**
+     * This is basically info the driver delivers about the DB it just connected to. I use it to get
+     * the DB version to confirm the connection in this example.
+     */
+    private DatabaseMetaData dbMetaData;
+    /** Chooses the read replica of each read-only query. */
+    private ReplicaRouter router =
+            new ReplicaRouter(Collections.<ReplicaRouter.Replica> emptyList());
+    /** Whether a transaction started by {@link #beginTransaction()} is open. */
+    private boolean inTransaction;
+    /** Whether the open transaction has executed anything which is not read-only. */
+    private boolean written;
+    /** Admission control, or <code>null</code> if disabled. */
+    private final AdmissionController admission;
+    /** The URL of the primary. */
+    private String url;
+    /** The user name of the primary. */
+    private String username;
+    /** The password of the primary. */
+    private String password;
+    /** Idle connections to the primary, used by partitioned queries. */
+    private final ArrayDeque<Connection> spareConnections = new ArrayDeque<Connection>();
+
+    /**
+     * Default constructor. Creates new Tietokanta object and connects to the database.
+     */
+    public Tietokanta() {
+        // loading properties from the the relevant properties file.
+        configParser = new ConfigParser("tietokanta.properties");
+        KyselyCleaner.setLeakDetection("true".equals(configParser.getValue("leakdetection")));
+        murre = Murre.forName(configParser.getValue("dialect"));
+        admission = createAdmissionController();
+
+        try {
+            connect();
+        } catch (final Exception e) {
+            Logger.print(e);
+        }
+    }
+
+    /**
+     * Create a {@link Statement} - an object used for executing a static SQL statement and
+     * returning the results it produces. By default, only one <code>ResultSet</code> object per
+     * <code>Statement</code> object can be open at the same time. Therefore, if the reading of one
+     * <code>ResultSet</code> object is interleaved with the reading of another, each must have been
+     * generated by different <code>Statement</code> objects. All execution methods in the
+     * <code>Statement</code> interface implicitly close a statment's current <code>ResultSet</code>
+     * object if an open one exists.
+     * 
+     * @return a new default <code>Statement</code> object
+     * @exception SQLException if a database access error occurs or this method is called on a
+     *            closed connection
+     */
+    protected Statement getNewStatement() throws SQLException {
+        return db.createStatement();
+    }
+
+    /**
+     * Prepares a <code>Kysely</code>'s SQL. To execute the prepared query, use
+     * {@link #doPreparedQuery(Kysely, TypeValuePair[])}. There is a special check to prevent
+     * preparing a statement for the same Kysely more than once. If such calls are made, these get
+     * silently ignored.
+     * 
+     * @param kysely The <code>Kysely</code> object whose SQL needs to be prepared.
+     * @see Kysely
+     */
+    public void prepareQuery(final Kysely kysely) {
+        if (kysely.hasPreparedStatement()) {
+            /* Prevents preparing the same statement twice. */
+            return;
+        }
+        try {
+            final PreparedStatement preparedStatement =
+                    getPreparingConnection(kysely).prepareStatement(kysely.getQuery());
+            kysely.setPreparedStatement(preparedStatement);
+        } catch (final SQLException e) {
+            Logger.print(e);
+        }
+    }
+
+    /**
+     * Executes a <code>Kysely</code>'s prepared query SQL. To do manipulations with the result, use
+     * <code>Kysely</code>'s built-in methods.
+     * 
+     * @param kysely The <code>Kysely</code> object whose prepared query needs to be executed.
+     * @param values Array of field type and value pairs, needed for substitution of the relevant
+     *        <code>?</code> from the SQL query.
+     * @see #prepareQuery(Kysely)
+     */
+    public void doPreparedQuery(final Kysely kysely, final TypeValuePair[] values) {
+        final AdmissionController.Permit permit = admit(kysely);
+        if (permit == null) {
+            return;
+        }
+        // stop the prefetch of the previous result before its statement is executed again
+        kysely.close(true, false);
+        ReplicaRouter.Replica replica = null;
+        try {
+            replica = route(kysely, kysely.getQuery());
+            final PreparedStatement ps = kysely.getPreparedStatement();
+            Tietokanta.setParameters(ps, values);
+            ps.execute();
+            kysely.setResult(ps.getResultSet());
+        } catch (final SQLException e) {
+            Logger.print(e);
+        } finally {
+            router.release(replica);
+            release(permit);
+        }
+    }
+
+    /**
+     * Executes a <code>Kysely</code> with named parameters, see {@link KyselyPohja}. The
+     * <code>Kysely</code> is prepared on demand, and prepared again when the shape of its
+     * <code>IN</code> lists changes.
+     * 
+     * @param kysely The <code>Kysely</code>.
+     * @param parameters The values of its parameters, created by its template.
+     * @see Kysely#getTemplate()
+     */
+    public void doPreparedQuery(final Kysely kysely, final Parametrit parameters) {
+        final AdmissionController.Permit permit = admit(kysely);
+        if (permit == null) {
+            return;
+        }
+        final KyselyPohja template = parameters.getTemplate();
+        kysely.close(true, false);
+        ReplicaRouter.Replica replica = null;
+        try {
+            replica = route(kysely, template.getSQL(parameters));
+            final PreparedStatement ps = kysely.getPreparedStatement();
+            template.bind(ps, parameters);
+            ps.execute();
+            kysely.setResult(ps.getResultSet());
+        } catch (final SQLException e) {
+            Logger.print(e);
+        } finally {
+            router.release(replica);
+            release(permit);
+        }
+    }
+
+    /**
+     * Decides where a <code>Kysely</code> is executed and makes sure it is prepared there from the
+     * specified SQL. A read-only <code>Kysely</code> goes to the least loaded replica, unless the
+     * open transaction has written something; everything else goes to the primary.
+     * 
+     * @param kysely The <code>Kysely</code> to be executed.
+     * @param sql The SQL it must be prepared from: its query, or a shape of its template.
+     * @return the replica, on which a request is counted until it is released, or
+     *         <code>null</code> for the primary.
+     * @throws SQLException if preparing fails.
+     */
+    private ReplicaRouter.Replica route(final Kysely kysely, final String sql)
+            throws SQLException {
+        final PreparedStatement ps = kysely.getPreparedStatement();
+        if (!router.hasReplicas()) {
+            if ((ps == null) || (sql != kysely.getPreparedSQL())) {
+                reprepare(kysely, sql, ps, (ps != null) ? ps.getConnection() : db);
+            }
+            return null;
+        }
+        if (!isReplicaRead(kysely)) {
+            if (!kysely.isReadOnly()) {
+                markWritten();
+            }
+            reprepare(kysely, sql, ps, db);
+            return null;
+        }
+        final ReplicaRouter.Replica replica = router.acquire(ps);
+        try {
+            reprepare(kysely, sql, ps, replica.getConnection());
+        } catch (final SQLException e) {
+            router.release(replica);
+            throw e;
+        }
+        return replica;
+    }
+
+    /**
+     * Prepares a <code>Kysely</code> again if its statement belongs to another connection or was
+     * prepared from another SQL. A statement with a fetch size is prepared for streaming with the
+     * same fetch size.
+     * 
+     * @param kysely The <code>Kysely</code>.
+     * @param sql The SQL it must be prepared from.
+     * @param ps Its current statement, may be <code>null</code>.
+     * @param connection The connection it must be prepared on.
+     * @throws SQLException if a database access error occurs.
+     */
+    private void reprepare(final Kysely kysely, final String sql, final PreparedStatement ps,
+            final Connection connection) throws SQLException {
+        if ((ps != null) && (ps.getConnection() == connection)
+                && (sql == kysely.getPreparedSQL())) {
+            return;
+        }
+        final int fetchSize = (ps != null) ? ps.getFetchSize() : 0;
+        kysely.setPreparedStatement((fetchSize != 0) ? prepareStreaming(connection, sql,
+                fetchSize) : connection.prepareStatement(sql), sql);
+    }
+
+    /**
+     * Prepares a query for streaming on a shared connection. A dialect may switch the auto-commit
+     * off to stream; it is switched back on unless the connection is the primary within a
+     * transaction started by {@link #beginTransaction()}, as nobody would commit the transaction
+     * the dialect opened. The rows of such a statement are then loaded at once.
+     * 
+     * @param connection The connection, the primary's or a replica's.
+     * @param sql The query.
+     * @param fetchSize The number of rows per chunk.
+     * @return the prepared statement
+     * @throws SQLException if a database access error occurs.
+     */
+    private PreparedStatement prepareStreaming(final Connection connection, final String sql,
+            final int fetchSize) throws SQLException {
+        final boolean autoCommit = connection.getAutoCommit();
+        final PreparedStatement ps = murre.prepareStreaming(connection, sql, fetchSize);
+        if (autoCommit && !connection.getAutoCommit()) {
+            connection.setAutoCommit(true);
+            Tietokanta.LOG.warn("Tietokanta:: Streaming needs a transaction, see "
+                    + "beginTransaction(); the rows are loaded at once: {}", sql);
+        }
+        return ps;
+    }
+
+    /**
+     * Checks if a <code>Kysely</code> may be executed on a replica.
+     * 
+     * @param kysely The <code>Kysely</code>.
+     * @return <code>true</code> if it is read-only, there are replicas and the open transaction, if
+     *         any, has not written anything.
+     */
+    private boolean isReplicaRead(final Kysely kysely) {
+        return kysely.isReadOnly() && router.hasReplicas() && !written;
+    }
+
+    /**
+     * Remembers that the open transaction, if any, has written something.
+     */
+    private void markWritten() {
+        if (inTransaction) {
+            written = true;
+        }
+    }
+
+    /**
+     * Gets the connection a <code>Kysely</code> is best prepared on.
+     * 
+     * @param kysely The <code>Kysely</code>.
+     * @return the least loaded replica's connection for a read-only <code>Kysely</code>, or the
+     *         primary's.
+     */
+    private Connection getPreparingConnection(final Kysely kysely) {
+        return isReplicaRead(kysely) ? router.choose(null).getConnection() : db;
+    }
+
+    /**
+     * Starts a transaction: switches the auto-commit of the primary off until {@link #commit()} or
+     * {@link #rollback()}. Read-only queries keep going to the replicas only until the transaction
+     * writes something.
+     */
+    public void beginTransaction() {
+        try {
+            db.setAutoCommit(false);
+            inTransaction = true;
+            written = false;
+        } catch (final SQLException e) {
+            Logger.print(e);
+        }
+    }
+
+    /**
+     * Commits the transaction started by {@link #beginTransaction()}.
+     */
+    public void commit() {
+        try {
+            db.commit();
+        } catch (final SQLException e) {
+            Logger.print(e);
+        } finally {
+            endTransaction();
+        }
+    }
+
+    /**
+     * Rolls back the transaction started by {@link #beginTransaction()}.
+     */
+    public void rollback() {
+        try {
+            db.rollback();
+        } catch (final SQLException e) {
+            Logger.print(e);
+        } finally {
+            endTransaction();
+        }
+    }
+
+    /**
+     * Switches the auto-commit of the primary back on.
+     */
+    private void endTransaction() {
+        inTransaction = false;
+        written = false;
+        try {
+            db.setAutoCommit(true);
+        } catch (final SQLException e) {
+            Logger.print(e);
+        }
+    }
+
+    /**
+     * Sets the parameters of a prepared statement.
+     * 
+     * @param ps The prepared statement.
+     * @param values Array of field type and value pairs, for the <code>?</code> in order.
+     * @return the index of the next parameter
+     * @throws SQLException if a database access error occurs.
+     */
+    private static int setParameters(final PreparedStatement ps, final TypeValuePair[] values)
+            throws SQLException {
+        int parameterIndex = 0;
+        for (final TypeValuePair tvp : values) {
+            parameterIndex++;
+            final Object x = tvp.getValue();
+            switch (tvp.getType()) {
+                case INTEGER:
+                    ps.setInt(parameterIndex, (Integer) x);
+                    break;
+                case STRING:
+                    ps.setString(parameterIndex, (String) x);
+                    break;
+                case OBJECT:
+                default:
+                    ps.setObject(parameterIndex, x);
+                    break;
+            }
+        }
+        return parameterIndex + 1;
+    }
+
+    /**
+     * Gets the dialect of the database engine.
+     * 
+     * @return the dialect
+     */
+    public Murre getMurre() {
+        return murre;
+    }
+
+    /**
+     * Prepares a <code>Kysely</code>'s SQL for streaming, i.e. so that its result is fetched from
+     * the server in chunks of <code>fetchSize</code> rows instead of being loaded into memory at
+     * once. Execute it by {@link #doPreparedQuery(Kysely, TypeValuePair[])}. Depending on the
+     * dialect, streaming may need a transaction: PostgreSQL streams only within
+     * {@link #beginTransaction()}, and loads the rows at once otherwise.
+     * 
+     * @param kysely The <code>Kysely</code> object whose SQL needs to be prepared.
+     * @param fetchSize The number of rows per chunk.
+     */
+    public void prepareStreamingQuery(final Kysely kysely, final int fetchSize) {
+        if (kysely.hasPreparedStatement()) {
+            return;
+        }
+        try {
+            kysely.setPreparedStatement(prepareStreaming(getPreparingConnection(kysely),
+                    kysely.getQuery(), fetchSize));
+        } catch (final SQLException e) {
+            Logger.print(e);
+        }
+    }
+
+    /**
+     * Creates a <code>Kysely</code> returning single pages of another one's rows. Prepare it as
+     * usual and execute it by {@link #doPagedQuery(Kysely, TypeValuePair[], long, int)}.
+     * 
+     * @param kysely The <code>Kysely</code> whose rows are paged; its SQL should have an
+     *        <code>ORDER BY</code>.
+     * @return the paged <code>Kysely</code>
+     */
+    public Kysely getPagedKysely(final Kysely kysely) {
+        return new Kysely(murre.getPagedSQL(kysely.getQuery()));
+    }
+
+    /**
+     * Executes a prepared paged <code>Kysely</code>, see {@link #getPagedKysely(Kysely)}.
+     * 
+     * @param kysely The paged <code>Kysely</code>.
+     * @param values The values of the original query's parameters.
+     * @param offset Number of skipped rows.
+     * @param limit Maximal number of returned rows.
+     */
+    public void doPagedQuery(final Kysely kysely, final TypeValuePair[] values, final long offset,
+            final int limit) {
+        final AdmissionController.Permit permit = admit(kysely);
+        if (permit == null) {
+            return;
+        }
+        // stop the prefetch of the previous result before its statement is executed again
+        kysely.close(true, false);
+        ReplicaRouter.Replica replica = null;
+        try {
+            replica = route(kysely, kysely.getQuery());
+            final PreparedStatement ps = kysely.getPreparedStatement();
+            murre.setPageParameters(ps, Tietokanta.setParameters(ps, values), offset, limit);
+            ps.execute();
+            kysely.setResult(ps.getResultSet());
+        } catch (final SQLException e) {
+            Logger.print(e);
+        } finally {
+            router.release(replica);
+            release(permit);
+        }
+    }
+
+    /**
+     * Inserts rows in batches, the way the dialect does it best (see
+     * {@link Murre#isMultiRowInsert()}).
+     * 
+     * @param table The table.
+     * @param columns The columns.
+     * @param rows The rows; each holds the values of <code>columns</code> in order.
+     * @return the number of inserted rows, or -1 if an {@link SQLException} was caught.
+     */
+    public int insertBatch(final String table, final String[] columns, final List<Object[]> rows) {
+        markWritten();
+        final int maxRows = Math.max(1, murre.getMaxBatchRows(columns.length));
+        int inserted = 0;
+        try {
+            if (murre.isMultiRowInsert()) {
+                PreparedStatement full = null;
+                try {
+                    for (int from = 0; from < rows.size(); from += maxRows) {
+                        final int count = Math.min(maxRows, rows.size() - from);
+                        PreparedStatement ps;
+                        if (count == maxRows) {
+                            // full chunks share one statement
+                            if (full == null) {
+                                full = db.prepareStatement(murre.getInsertSQL(table, columns,
+                                        maxRows));
+                            }
+                            ps = full;
+                        } else {
+                            ps = db.prepareStatement(murre.getInsertSQL(table, columns, count));
+                        }
+                        try {
+                            int index = 1;
+                            for (final Object[] row : rows.subList(from, from + count)) {
+                                for (final Object value : row) {
+                                    ps.setObject(index++, value);
+                                }
+                            }
+                            inserted += ps.executeUpdate();
+                        } finally {
+                            if (ps != full) {
+                                ps.close();
+                            }
+                        }
+                    }
+                } finally {
+                    if (full != null) {
+                        full.close();
+                    }
+                }
+            } else {
+                inserted = executeBatch(murre.getInsertSQL(table, columns, 1), rows, maxRows);
+            }
+        } catch (final SQLException e) {
+            Logger.print(e);
+            return -1;
+        }
+        return inserted;
+    }
+
+    /**
+     * Executes a statement once for each row of parameters, sending the rows as JDBC batches.
+     * 
+     * @param sql The statement, e.g. an <code>UPDATE</code> or <code>DELETE</code>.
+     * @param rows The rows; each holds the values of the statement's parameters in order.
+     * @return the number of updated rows, or -1 if an {@link SQLException} was caught.
+     */
+    public int executeBatch(final String sql, final List<Object[]> rows) {
+        markWritten();
+        try {
+            return executeBatch(sql, rows,
+                    Math.max(1, murre.getMaxBatchRows(rows.isEmpty() ? 1 : rows.get(0).length)));
+        } catch (final SQLException e) {
+            Logger.print(e);
+            return -1;
+        }
+    }
+
+    /**
+     * Executes a <code>Kysely</code>'s SQL once for each row of parameters, sending the rows as
+     * JDBC batches. The SQL is prepared on the primary for this call only.
+     * 
+     * @param kysely The <code>Kysely</code>, e.g. an <code>INSERT</code> or <code>UPDATE</code>.
+     * @param rows The rows; each holds field type and value pairs, as for
+     *        {@link #doPreparedQuery(Kysely, TypeValuePair[])}.
+     * @return the number of updated rows, or -1 if an {@link SQLException} was caught.
+     */
+    public int executeBatch(final Kysely kysely, final List<TypeValuePair[]> rows) {
+        markWritten();
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        try {
+            return executeBatch(db, kysely.getQuery(), rows);
+        } catch (final SQLException e) {
+            Logger.print(e);
+            return -1;
+        }
+    }
+
+    /**
+     * Executes a <code>Kysely</code>'s SQL once for each row of parameters, as
+     * {@link #executeBatch(Kysely, List)} does, but in a transaction of its own on a borrowed
+     * connection, committed before returning. A transaction open on the primary neither sees nor
+     * rolls back these writes.
+     * 
+     * @param kysely The <code>Kysely</code>.
+     * @param rows The rows of field type and value pairs.
+     * @return the number of updated rows, or -1 if an {@link SQLException} was caught, in which
+     *         case nothing was written.
+     */
+    int executeBatchApart(final Kysely kysely, final List<TypeValuePair[]> rows) {
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        Connection c = null;
+        try {
+            c = borrowConnection();
+            c.setAutoCommit(false);
+            final int updated = executeBatch(c, kysely.getQuery(), rows);
+            c.commit();
+            return updated;
+        } catch (final SQLException e) {
+            Logger.print(e);
+            return -1;
+        } finally {
+            if (c != null) {
+                // rolls back what was not committed
+                returnConnection(c);
+            }
+        }
+    }
+
+    /**
+     * Executes a <code>Kysely</code>'s query on a borrowed connection and reads its rows, leaving
+     * the <code>Kysely</code> itself untouched: its SQL is prepared on the connection for this
+     * call only. Several threads may therefore call it at once with the same
+     * <code>Kysely</code>.
+     * 
+     * @param kysely The <code>Kysely</code>.
+     * @param values Array of field type and value pairs, as for
+     *        {@link #doPreparedQuery(Kysely, TypeValuePair[])}.
+     * @return the rows, or <code>null</code> if the query was not admitted or an
+     *         {@link SQLException} was caught.
+     */
+    Tulos queryApart(final Kysely kysely, final TypeValuePair[] values) {
+        final AdmissionController.Permit permit = admit(kysely, false);
+        if (permit == null) {
+            return null;
+        }
+        Connection c = null;
+        try {
+            c = borrowConnection();
+            try (PreparedStatement ps = c.prepareStatement(kysely.getQuery())) {
+                Tietokanta.setParameters(ps, values);
+                try (ResultSet rs = ps.executeQuery()) {
+                    return Tulos.read(rs);
+                }
+            }
+        } catch (final SQLException e) {
+            Logger.print(e);
+            return null;
+        } finally {
+            if (c != null) {
+                returnConnection(c);
+            }
+            release(permit);
+        }
+    }
+
+    /**
+     * Executes a statement once for each row of field type and value pairs, in batches of the
+     * dialect's size.
+     * 
+     * @param connection The connection.
+     * @param sql The statement.
+     * @param rows The rows, at least one.
+     * @return the number of updated rows
+     * @throws SQLException if a database access error occurs.
+     */
+    private int executeBatch(final Connection connection, final String sql,
+            final List<TypeValuePair[]> rows) throws SQLException {
+        final int maxRows = Math.max(1, murre.getMaxBatchRows(rows.get(0).length));
+        int updated = 0;
+        final PreparedStatement ps = connection.prepareStatement(sql);
+        try {
+            int pending = 0;
+            for (final TypeValuePair[] row : rows) {
+                Tietokanta.setParameters(ps, row);
+                ps.addBatch();
+                if (++pending == maxRows) {
+                    updated += Tietokanta.countUpdates(ps.executeBatch());
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                updated += Tietokanta.countUpdates(ps.executeBatch());
+            }
+        } finally {
+            ps.close();
+        }
+        return updated;
+    }
+
+    /**
+     * Executes a statement once for each row of parameters, in batches of at most
+     * <code>maxRows</code> rows.
+     * 
+     * @param sql The statement.
+     * @param rows The rows.
+     * @param maxRows The maximal number of rows per batch.
+     * @return the number of updated rows
+     * @throws SQLException if a database access error occurs.
+     */
+    private int executeBatch(final String sql, final List<Object[]> rows, final int maxRows)
+            throws SQLException {
+        int updated = 0;
+        final PreparedStatement ps = db.prepareStatement(sql);
+        try {
+            int pending = 0;
+            for (final Object[] row : rows) {
+                for (int i = 0; i < row.length; i++) {
+                    ps.setObject(i + 1, row[i]);
+                }
+                ps.addBatch();
+                if (++pending == maxRows) {
+                    updated += Tietokanta.countUpdates(ps.executeBatch());
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                updated += Tietokanta.countUpdates(ps.executeBatch());
+            }
+        } finally {
+            ps.close();
+        }
+        return updated;
+    }
+
+    /**
+     * Sums the update counts of a batch. Drivers which do not know the count of a statement
+     * report {@link Statement#SUCCESS_NO_INFO}, counted as one row.
+     * 
+     * @param counts The update counts.
+     * @return the number of updated rows
+     */
+    private static int countUpdates(final int[] counts) {
+        int sum = 0;
+        for (final int c : counts) {
+            sum += (c == Statement.SUCCESS_NO_INFO) ? 1 : Math.max(0, c);
+        }
+        return sum;
+    }
+
+    /**
+     * Inserts a row, or updates it if a row with the same key exists.
+     * 
+     * @param table The table.
+     * @param columns All columns, key columns included.
+     * @param keyColumns The columns of the unique key.
+     * @param values The values of <code>columns</code>, in order.
+     * @return the update count reported by the driver, or -1 if an {@link SQLException} was
+     *         caught.
+     */
+    public int upsert(final String table, final String[] columns, final String[] keyColumns,
+            final Object[] values) {
+        markWritten();
+        try {
+            final PreparedStatement ps = db.prepareStatement(murre.getUpsertSQL(table, columns,
+                    keyColumns));
+            try {
+                for (int i = 0; i < values.length; i++) {
+                    ps.setObject(i + 1, values[i]);
+                }
+                return ps.executeUpdate();
+            } finally {
+                ps.close();
+            }
+        } catch (final SQLException e) {
+            Logger.print(e);
+            return -1;
+        }
+    }
+
+    /**
+     * Opens a PostgreSQL <code>COPY</code> of rows into a table, to be written by the returned
+     * {@link Kopio} and completed by {@link Kopio#finish()}. The connection is busy until then.
+     * 
+     * @param table The table.
+     * @param columns The columns, in the order their values are added to each row.
+     * @param format The data format.
+     * @return the <code>Kopio</code>, or <code>null</code> if an {@link SQLException} was caught,
+     *         e.g. if the database is not PostgreSQL.
+     */
+    public Kopio openCopy(final String table, final String[] columns, final KopioMuoto format) {
+        markWritten();
+        final StringBuilder sb = new StringBuilder("COPY ").append(table).append(" (");
+        Murre.appendList(sb, columns, "", "");
+        sb.append(") FROM STDIN").append(format.getOptions());
+        try {
+            return new Kopio(Tietokanta.getCopyManager(db).copyIn(sb.toString()), format,
+                    columns.length);
+        } catch (final SQLException e) {
+            Logger.print(e);
+            return null;
+        }
+    }
+
+    /**
+     * Copies rows into a table by {@link #openCopy(String, String[], KopioMuoto)}. The rows are
+     * pulled from the iterator only as fast as the database takes them, so they may be produced
+     * lazily, e.g. while reading a file.
+     * 
+     * @param table The table.
+     * @param columns The columns.
+     * @param format The data format.
+     * @param rows The rows; each holds the values of <code>columns</code> in order.
+     * @return the number of copied rows, or -1 if an {@link SQLException} was caught, in which case
+     *         no row is stored.
+     */
+    public long copyIn(final String table, final String[] columns, final KopioMuoto format,
+            final Iterator<TypeValuePair[]> rows) {
+        try (final Kopio kopio = openCopy(table, columns, format)) {
+            if (kopio == null) {
+                return -1;
+            }
+            while (rows.hasNext()) {
+                kopio.addRow(rows.next());
+            }
+            return kopio.finish();
+        } catch (final SQLException e) {
+            Logger.print(e);
+            return -1;
+        }
+    }
+
+    /**
+     * Copies records into a table by {@link #openCopy(String, String[], KopioMuoto)}; see
+     * {@link #copyIn(String, String[], KopioMuoto, Iterator)}.
+     * 
+     * @param table The table.
+     * @param columns The columns.
+     * @param format The data format.
+     * @param records The records; each writes the values of <code>columns</code> in order.
+     * @return the number of copied rows, or -1 if an {@link SQLException} was caught, in which case
+     *         no row is stored.
+     */
+    public long copyInRecords(final String table, final String[] columns,
+            final KopioMuoto format, final Iterator<? extends KopioRivi> records) {
+        try (final Kopio kopio = openCopy(table, columns, format)) {
+            if (kopio == null) {
+                return -1;
+            }
+            while (records.hasNext()) {
+                kopio.addRow(records.next());
+            }
+            return kopio.finish();
+        } catch (final SQLException e) {
+            Logger.print(e);
+            return -1;
+        }
+    }
+
+    /**
+     * Exports the rows of a query by the PostgreSQL <code>COPY ... TO STDOUT</code> protocol. The
+     * rows are streamed to <code>out</code> as they arrive, so exports of any size take little
+     * memory. A read-only <code>Kysely</code> is exported from a read replica, if there is one.
+     * 
+     * @param kysely The <code>Kysely</code>; its SQL must not have parameters.
+     * @param format The data format.
+     * @param out The stream the data is written to; it is not closed.
+     * @return the number of exported rows, or -1 if an {@link SQLException} or
+     *         {@link IOException} was caught.
+     */
+    public long copyOut(final Kysely kysely, final KopioMuoto format, final OutputStream out) {
+        ReplicaRouter.Replica replica = null;
+        try {
+            Connection c = db;
+            if (isReplicaRead(kysely)) {
+                replica = router.acquire(null);
+                c = replica.getConnection();
+            }
+            return Tietokanta.getCopyManager(c).copyOut(
+                    "COPY (" + kysely.getQuery() + ") TO STDOUT" + format.getOptions(), out);
+        } catch (final SQLException e) {
+            Logger.print(e);
+        } catch (final IOException e) {
+            Logger.print(e);
+        } finally {
+            router.release(replica);
+        }
+        return -1;
+    }
+
+    /**
+     * Gets the <code>COPY</code> API of a PostgreSQL connection.
+     * 
+     * @param c The connection.
+     * @return the <code>COPY</code> API
+     * @throws SQLException if the connection is not a PostgreSQL one.
+     */
+    private static CopyManager getCopyManager(final Connection c) throws SQLException {
+        if (!c.isWrapperFor(PGConnection.class)) {
+            throw new SQLException("COPY needs a PostgreSQL connection");
+        }
+        return c.unwrap(PGConnection.class).getCopyAPI();
+    }
+
+    /**
+     * Executes a <code>Kysely</code>'s SQL. To do manipulations with the result, use
+     * <code>Kysely</code>'s built-in methods.
+     * 
+     * @param kysely The <code>Kysely</code> object whose SQL needs to be executed.
+     * @see Kysely
+     */
+    public void doQuery(final Kysely kysely) {
+        final AdmissionController.Permit permit = admit(kysely);
+        if (permit == null) {
+            return;
+        }
+        kysely.close(true, false);
+        try {
+            if (!isReplicaRead(kysely)) {
+                if (!kysely.isReadOnly()) {
+                    markWritten();
+                }
+                kysely.setResult(doQuery(kysely.getQuery()));
+                return;
+            }
+            final ReplicaRouter.Replica replica = router.acquire(null);
+            ResultSet result = null;
+            try {
+                result = executeStatement(kysely.getQuery(),
+                        replica.getConnection().createStatement());
+            } catch (final SQLException e) {
+                Logger.print(e);
+            } finally {
+                router.release(replica);
+            }
+            kysely.setResult(result);
+        } finally {
+            release(permit);
+        }
+    }
+
+    /**
+     * Executes a query in partitions, in parallel, each on its own connection to the primary, and
+     * merges their rows into one stream. See {@link KyselyJako} for how the SQL restricts the rows
+     * of a partition.
+     * 
+     * @param kysely The <code>Kysely</code>, with the named parameters of the split.
+     * @param parameters The values of its other parameters, or <code>null</code> if it has none;
+     *        they are copied for each partition.
+     * @param jako The split.
+     * @param order The order of the rows, by which the SQL sorts them; <code>null</code> to return
+     *        the rows as they arrive.
+     * @return the rows, to be closed after reading
+     * @throws IllegalArgumentException if the SQL lacks the parameters of the split.
+     */
+    public Rivivirta doPartitionedQuery(final Kysely kysely, final Parametrit parameters,
+            final KyselyJako jako, final Comparator<Object[]> order) {
+        final KyselyPohja template = kysely.getTemplate();
+        if (template == null) {
+            throw new IllegalArgumentException("Kysely has no partition parameters");
+        }
+        jako.check(template);
+        final Parametrit[] parts = new Parametrit[jako.getPartCount()];
+        for (int part = 0; part < parts.length; part++) {
+            parts[part] = (parameters != null) ? parameters.copy() : template.newParameters();
+            jako.bind(parts[part], part);
+        }
+        return new Rivivirta(this, template, parts, order);
+    }
+
+    /**
+     * Takes an idle connection to the primary, or opens a new one.
+     * 
+     * @return the connection, to be given back by {@link #returnConnection(Connection)}
+     * @throws SQLException if connecting fails.
+     */
+    Connection borrowConnection() throws SQLException {
+        synchronized (spareConnections) {
+            final Connection c = spareConnections.poll();
+            if (c != null) {
+                return c;
+            }
+        }
+        return DriverManager.getConnection(url, username, password);
+    }
+
+    /**
+     * Gives back a connection taken by {@link #borrowConnection()}. An open transaction is rolled
+     * back and the auto-commit switched on again, so that the next borrower starts clean. It is
+     * kept for reuse unless enough connections are idle or it is broken.
+     * 
+     * @param c The connection.
+     */
+    void returnConnection(final Connection c) {
+        try {
+            if (!c.getAutoCommit()) {
+                c.rollback();
+                c.setAutoCommit(true);
+            }
+            synchronized (spareConnections) {
+                if (spareConnections.size() < Tietokanta.MAX_SPARE_CONNECTIONS) {
+                    spareConnections.push(c);
+                    return;
+                }
+            }
+            c.close();
+        } catch (final SQLException e) {
+            Logger.print(e);
+            try {
+                c.close();
+            } catch (final SQLException ex) {
+                // the connection is broken anyway
+            }
+        }
+    }
+
+    /**
+     * Gets the admission control of executed queries.
+     * 
+     * @return the controller, shared by all <code>Tietokanta</code> objects of the same database,
+     *         e.g. for its metrics, or <code>null</code> if admission control is disabled.
+     */
+    public AdmissionController getAdmissionController() {
+        return admission;
+    }
+
+    /**
+     * Admits a <code>Kysely</code> for execution. If it is rejected, its previous result is
+     * dropped; a warning is logged at most once per {@link #SHED_WARNING_INTERVAL}, as under
+     * overload every query may be rejected.
+     * 
+     * @param kysely The <code>Kysely</code>.
+     * @return the permit, to be released after the execution, or <code>null</code> if rejected.
+     */
+    private AdmissionController.Permit admit(final Kysely kysely) {
+        return admit(kysely, true);
+    }
+
+    /**
+     * Admits a <code>Kysely</code> for execution, see {@link #admit(Kysely)}.
+     * 
+     * @param kysely The <code>Kysely</code>.
+     * @param dropResult Whether to drop its previous result if it is rejected.
+     * @return the permit, to be released after the execution, or <code>null</code> if rejected.
+     */
+    private AdmissionController.Permit admit(final Kysely kysely, final boolean dropResult) {
+        if (admission == null) {
+            return Tietokanta.UNLIMITED;
+        }
+        final AdmissionController.Permit permit = admission.acquire(kysely.getPriority());
+        if (permit == null) {
+            if (dropResult) {
+                kysely.setResult(null);
+            }
+            final long now = System.nanoTime();
+            final long last = Tietokanta.LAST_SHED_WARNING.get();
+            if (((now - last) >= Tietokanta.SHED_WARNING_INTERVAL)
+                    && Tietokanta.LAST_SHED_WARNING.compareAndSet(last, now)) {
+                Tietokanta.LOG.warn("Tietokanta:: {} queries not admitted so far, the latest: {}",
+                        admission.getShedCount(), kysely.getQuery());
+            }
+        }
+        return permit;
+    }
+
+    /**
+     * Releases a permit returned by {@link #admit(Kysely)}.
+     * 
+     * @param permit The permit.
+     */
+    private void release(final AdmissionController.Permit permit) {
+        if (admission != null) {
+            admission.release(permit);
+        }
+    }
+
+    /**
+     * Calls {@link #executeStatement(String)} with the specified parameter and logs any
+     * {@link SQLException}.
+     * 
+     * @param sql A {@link String}, containing the SQL query.
+     * @return The {@link ResultSet} of statement's execution, or <code>null</code> if an
+     *         {@link SQLException} was caught.
+     */
+    private ResultSet doQuery(final String sql) {
+        ResultSet rs = null;
+        try {
+            rs = executeStatement(sql);
+        } catch (final SQLException e) {
+            Logger.print(e);
+        }
+
+        return rs;
+    }
+
+    /**
+     * Calls {@link #executeStatement(String, Statement)} with the passed <code>sql</code> parameter
+     * and newly created {@link Statement} object.
+     * 
+     * @param sql The SQL that needs to be executed.
+     * @return The {@link ResultSet} of sql's execution.
+     * @throws SQLException thrown by query's execution.
+     */
+    protected ResultSet executeStatement(final String sql) throws SQLException {
+        return executeStatement(sql, getNewStatement());
+    }
+
+    /**
+     * Executes the passed sql query by the passed {@link Statement} object.
+     * 
+     * @param sql The SQL statement to be sent to the database, typically a static SQL
+     *        <code>SELECT</code> statement
+     * @param statement The object used for executing the static SQL statement and returning the
+     *        results it produces.
+     * @return a <code>ResultSet</code> object that contains the data produced by the given query;
+     *         never <code>null</code>
+     * @exception SQLException if a database access error occurs, this method is called on a closed
+     *            <code>Statement</code>, the given SQL statement produces anything other than a
+     *            single <code>ResultSet</code> object, the method is called on a
+     *            <code>PreparedStatement</code> or <code>CallableStatement</code>
+     */
+    protected ResultSet executeStatement(final String sql,
+            final Statement statement) throws SQLException {
+        return statement.executeQuery(sql);
+    }
+
+    /**
+     * Gets the admission control configured by the <code>admission</code> keys. Each
+     * <code>Tietokanta</code> has a connection of its own, so one controller is shared by all
+     * those of the same database URL, to limit the load of the database as a whole; the first one
+     * created sets it up.
+     * 
+     * @return the controller, or <code>null</code> if admission control is disabled.
+     */
+    private AdmissionController createAdmissionController() {
+        final String mode = configParser.getValue("admission");
+        if (mode == null) {
+            return null;
+        }
+        final String configuredURL = configParser.getValue("url");
+        final String key = (configuredURL != null) ? configuredURL
+                : murre.getURL(configParser.getValue("database"));
+        synchronized (Tietokanta.ADMISSION_CONTROLLERS) {
+            AdmissionController controller = Tietokanta.ADMISSION_CONTROLLERS.get(key);
+            if (controller == null) {
+                controller = createAdmissionController(mode);
+                if (controller != null) {
+                    Tietokanta.ADMISSION_CONTROLLERS.put(key, controller);
+                }
+            }
+            return controller;
+        }
+    }
+
+    /**
+     * Creates an admission control configured by the <code>admission</code> keys.
+     * 
+     * @param mode The value of the <code>admission</code> key.
+     * @return the controller, or <code>null</code> if the mode is unknown.
+     */
+    private AdmissionController createAdmissionController(final String mode) {
+        final AdmissionLimit limit;
+        try {
+            limit = AdmissionLimit.valueOf(mode.trim().toUpperCase());
+        } catch (final IllegalArgumentException e) {
+            Tietokanta.LOG.warn("Tietokanta:: Unknown admission limit {}", mode);
+            return null;
+        }
+        return new AdmissionController(limit,
+                getIntValue("admission.limit", Tietokanta.ADMISSION_LIMIT),
+                getIntValue("admission.limit.min", 1),
+                getIntValue("admission.limit.max", Tietokanta.ADMISSION_LIMIT_MAX),
+                getIntValue("admission.queue", Tietokanta.ADMISSION_QUEUE),
+                getIntValue("admission.timeout", Tietokanta.ADMISSION_TIMEOUT));
+    }
+
+    /**
+     * Reads an integer configuration value.
+     * 
+     * @param key The key.
+     * @param defaultValue The value if the key is missing.
+     * @return the value
+     */
+    private int getIntValue(final String key, final int defaultValue) {
+        final String value = configParser.getValue(key);
+        return (value != null) ? Integer.parseInt(value.trim()) : defaultValue;
+    }
+
+    /**
+     * Connects to the database, using configuration read from "kyselyladata.properties"
+     * 
+     * @throws ClassNotFoundException if the class for the relevant DB driver cannot be located
+     * @throws SQLException if a database access error occurs
+     */
+    private void connect() throws ClassNotFoundException, SQLException {
+        final String database = configParser.getValue("database");
+        username = configParser.getValue("username");
+        password = configParser.getValue("password");
+
+        final String driver = configParser.getValue("driver");
+        url = configParser.getValue("url");
+        if (url == null) {
+            url = murre.getURL(database);
+        }
+
+        // load the driver
+        Class.forName((driver != null) ? driver : murre.getDriverClass());
+
+        // connect to the db
+        db = DriverManager.getConnection(url, username, password);
+
+        // get MetaData to confirm connection
+        dbMetaData = db.getMetaData();
+
+        Tietokanta.LOG.info("Tietokanta:: Connection to {} {} successful.\n",
+                dbMetaData.getDatabaseProductName(), dbMetaData.getDatabaseProductVersion());
+
+        connectReplicas(username, password);
+    }
+
+    /**
+     * Connects to the read replicas listed by the <code>replicas</code> key. A replica which cannot
+     * be connected to is left out.
+     * 
+     * @param username The user name of the primary, the default for the replicas.
+     * @param password The password of the primary, the default for the replicas.
+     */
+    private void connectReplicas(final String username, final String password) {
+        final String names = configParser.getValue("replicas");
+        if (names == null) {
+            return;
+        }
+        final List<ReplicaRouter.Replica> replicas = new ArrayList<ReplicaRouter.Replica>();
+        for (final String n : names.split(",")) {
+            final String name = n.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            final String prefix = "replica." + name + ".";
+            try {
+                final String driver = configParser.getValue(prefix + "driver");
+                if (driver != null) {
+                    Class.forName(driver);
+                }
+                final String url = configParser.getValue(prefix + "url");
+                final String user = configParser.getValue(prefix + "username");
+                final String pass = configParser.getValue(prefix + "password");
+                final String weight = configParser.getValue(prefix + "weight");
+                final Connection c = DriverManager.getConnection((url != null) ? url
+                        : murre.getURL(configParser.getValue(prefix + "database")),
+                        (user != null) ? user : username, (pass != null) ? pass : password);
+                replicas.add(new ReplicaRouter.Replica(name, c,
+                        (weight != null) ? Integer.parseInt(weight.trim()) : 1));
+                Tietokanta.LOG.info("Tietokanta:: Connection to replica {} successful.", name);
+            } catch (final Exception e) {
+                Logger.print(e);
+            }
+        }
+        router = new ReplicaRouter(replicas);
+    }
+
+}
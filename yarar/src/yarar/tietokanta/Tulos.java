@@ -0,0 +1,148 @@
+package yarar.tietokanta;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The rows of a query, read into memory. Unlike a {@link ResultSet}, a Tulos holds no database
+ * resources and is immutable, so it may be kept and shared by any number of threads.<br>
+ * <b>Tulos</b> is a <a href="http://en.wikipedia.org/wiki/Finnish_language"
+ * target="_blank">Finnish</a> word for <i>result</i>.
+ * 
+ * @author Dimo Vanchev
+ */
+public final class Tulos {
+
+    /** The column labels. */
+    private final String[] labels;
+    /** The rows. */
+    private final List<Object[]> rows;
+
+    /**
+     * Constructor.
+     * 
+     * @param labels The column labels.
+     * @param rows The rows.
+     */
+    private Tulos(final String[] labels, final List<Object[]> rows) {
+        this.labels = labels;
+        this.rows = rows;
+    }
+
+    /**
+     * Creates a Tulos of rows read by other means, e.g. by an {@link Esihaku}.
+     * 
+     * @param md The metadata of the result set.
+     * @param rows The rows.
+     * @return the rows
+     * @throws SQLException if a database access error occurs.
+     */
+    static Tulos of(final ResultSetMetaData md, final List<Object[]> rows) throws SQLException {
+        return new Tulos(Tulos.getLabels(md), Collections.unmodifiableList(rows));
+    }
+
+    /**
+     * Reads the remaining rows of a result set. The result set is not closed.
+     * 
+     * @param rs The result set.
+     * @return the rows
+     * @throws SQLException if a database access error occurs.
+     */
+    static Tulos read(final ResultSet rs) throws SQLException {
+        return Tulos.read(rs, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Reads the next rows of a result set. The result set is not closed.
+     * 
+     * @param rs The result set.
+     * @param maxRows The maximal number of rows.
+     * @return the rows
+     * @throws SQLException if a database access error occurs.
+     */
+    static Tulos read(final ResultSet rs, final int maxRows) throws SQLException {
+        final String[] labels = Tulos.getLabels(rs.getMetaData());
+        final List<Object[]> rows = new ArrayList<Object[]>();
+        while ((rows.size() < maxRows) && rs.next()) {
+            final Object[] row = new Object[labels.length];
+            for (int i = 0; i < row.length; i++) {
+                row[i] = rs.getObject(i + 1);
+            }
+            rows.add(row);
+        }
+        return new Tulos(labels, Collections.unmodifiableList(rows));
+    }
+
+    /**
+     * Gets the column labels of a result set.
+     * 
+     * @param md The metadata of the result set.
+     * @return the labels
+     * @throws SQLException if a database access error occurs.
+     */
+    private static String[] getLabels(final ResultSetMetaData md) throws SQLException {
+        final String[] labels = new String[md.getColumnCount()];
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = md.getColumnLabel(i + 1);
+        }
+        return labels;
+    }
+
+    /**
+     * Gets the number of rows.
+     * 
+     * @return the row count
+     */
+    public int getRowCount() {
+        return rows.size();
+    }
+
+    /**
+     * Gets the number of columns.
+     * 
+     * @return the column count
+     */
+    public int getColumnCount() {
+        return labels.length;
+    }
+
+    /**
+     * Gets the label of a column.
+     * 
+     * @param column The column index, starting from 1 as in JDBC.
+     * @return the label
+     */
+    public String getLabel(final int column) {
+        return labels[column - 1];
+    }
+
+    /**
+     * Finds a column by its label, ignoring case.
+     * 
+     * @param label The label.
+     * @return the column index, starting from 1, or -1 if there is no such column.
+     */
+    public int findColumn(final String label) {
+        for (int i = 0; i < labels.length; i++) {
+            if (labels[i].equalsIgnoreCase(label)) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Gets a value.
+     * 
+     * @param row The row index, starting from 0.
+     * @param column The column index, starting from 1 as in JDBC.
+     * @return the value, <code>null</code> for SQL <code>NULL</code>.
+     */
+    public Object getValue(final int row, final int column) {
+        return rows.get(row)[column - 1];
+    }
+}
@@ -0,0 +1,633 @@
+package yarar.tietokanta;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+import yarar.rikai.ClassLogger;
+import yarar.rikai.Logger;
+
+/**
+ * An in-memory replica of a small reference table, indexed by its primary key and by any number of
+ * secondary columns.<br>
+ * <b>Viitetaulu</b> is a <a href="http://en.wikipedia.org/wiki/Finnish_language"
+ * target="_blank">Finnish</a> word for <i>reference table</i>.
+ * <p>
+ * The rows of a query are loaded into an immutable snapshot of hash maps, which is replaced as a
+ * whole when the table changes. Lookups only read the current snapshot, so they take no locks and
+ * never touch the network. A row is an array of the column values, as returned by
+ * {@link ResultSet#getObject(int)}, and must not be modified. Integral keys are compared as
+ * <code>long</code> values, so <code>get(5)</code> finds the key whether the driver returns it as
+ * {@link Integer}, {@link Long} or {@link BigDecimal}.
+ * </p>
+ * <p>
+ * The replica is refreshed in the background, either by polling or on a PostgreSQL
+ * <code>NOTIFY</code> (see {@link #listen(String, long)}). With a version column, e.g. a
+ * modification timestamp or a sequence number set by a trigger, a refresh reads only the rows with
+ * a version above a bound, using the named parameter {@value #SINCE_VERSION}:
+ * </p>
+ * 
+ * <pre>
+ * SELECT * FROM (<i>query</i>) v__ WHERE version &gt; :sinceVersion
+ * </pre>
+ * <p>
+ * The bound is the largest version seen before the previous refresh, not the largest one seen, so
+ * each refresh reads the rows of the previous one again. A row whose version was taken before the
+ * commit of another row with a larger version is therefore still found, as long as its own
+ * transaction commits within one refresh interval. Rows committed later than that, and deleted
+ * rows, are caught by the full reload which replaces an incremental refresh every
+ * {@link #setFullReloadInterval(long)} milliseconds, 10 minutes by default, or by an explicit
+ * {@link #reload()}, which a notification with the payload <code>reload</code> also triggers.
+ * Without a version column, each refresh reloads the table. Reference tables can be declared in
+ * <code>kyselyladata.properties</code>, see {@link KyselyLadata#getViitetaulu(Tietokanta, String)}.
+ * </p>
+ * 
+ * @author Dimo Vanchev
+ */
+public final class Viitetaulu implements AutoCloseable {
+
+    /** Name of the parameter holding the largest version seen. */
+    public static final String SINCE_VERSION = "sinceVersion";
+    /** Payload of a notification asking for a full reload. */
+    public static final String RELOAD = "reload";
+    /** Default interval of the full reloads of a table with a version column, in milliseconds. */
+    public static final long FULL_RELOAD_MILLIS = 600000L;
+
+    /** Leveled logger of this class. */
+    private static final ClassLogger LOG = Logger.getLogger(Viitetaulu.class);
+    /** Runs the refreshes of all reference tables. */
+    private static final ScheduledExecutorService SCHEDULER =
+            Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable r) {
+                    final Thread t = new Thread(r, "Viitetaulu");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+    /** The snapshot before the first load. */
+    private static final Tila EMPTY = new Tila(new String[0], new HashMap<Object, Object[]>(),
+            new ArrayList<Map<Object, List<Object[]>>>(), null, null, 0L);
+
+    /** The database. */
+    private final Tietokanta db;
+    /** The SQL loading the whole table. */
+    private final String sql;
+    /** The label of the primary key column. */
+    private final String keyColumn;
+    /** The labels of the secondary index columns. */
+    private final String[] indexColumns;
+    /** The label of the version column, or <code>null</code>. */
+    private String versionColumn;
+    /** The template loading the changed rows, or <code>null</code>. */
+    private KyselyPohja sinceTemplate;
+    /** Interval of the full reloads, in nanoseconds. Guarded by this object. */
+    private long fullReloadNanos = TimeUnit.MILLISECONDS.toNanos(Viitetaulu.FULL_RELOAD_MILLIS);
+    /** The current snapshot. */
+    private volatile Tila snapshot = Viitetaulu.EMPTY;
+    /** The scheduled refresh, or <code>null</code>. Guarded by this object. */
+    private ScheduledFuture<?> task;
+    /** The notification channel, or <code>null</code> when polling. Guarded by this object. */
+    private String channel;
+    /** The connection listening to the channel, or <code>null</code>. Guarded by this object. */
+    private Connection listener;
+    /** Set by {@link #close()}. Guarded by this object. */
+    private boolean closed;
+    /** Number of loads, full and incremental. */
+    private final AtomicLong refreshes = new AtomicLong();
+
+    /**
+     * Constructor. The table is loaded by {@link #reload()}, or by the first refresh scheduled by
+     * {@link #poll(long)} or {@link #listen(String, long)}.
+     * 
+     * @param db The database.
+     * @param kysely The query reading the table. It must have no parameters.
+     * @param keyColumn The label of the primary key column.
+     * @param indexColumns The labels of the columns with a secondary index.
+     * @throws IllegalArgumentException if the query has named parameters.
+     */
+    public Viitetaulu(final Tietokanta db, final Kysely kysely, final String keyColumn,
+            final String... indexColumns) {
+        if (kysely.getTemplate() != null) {
+            throw new IllegalArgumentException("A reference table query has no parameters");
+        }
+        this.db = db;
+        sql = kysely.getQuery();
+        this.keyColumn = keyColumn;
+        this.indexColumns = indexColumns.clone();
+    }
+
+    /**
+     * Sets the version column, making refreshes incremental. Set it before the first load.
+     * 
+     * @param column The label of the column; its values must be comparable, e.g. numbers or
+     *        timestamps, and grow with every change of a row.
+     */
+    public synchronized void setVersionColumn(final String column) {
+        versionColumn = column;
+        sinceTemplate = KyselyPohja.compile("SELECT * FROM (" + sql + ") v__ WHERE " + column
+                + " > :" + Viitetaulu.SINCE_VERSION);
+    }
+
+    /**
+     * Sets how often a refresh reloads the whole table instead of the changed rows only. Has no
+     * effect without a version column.
+     * 
+     * @param intervalMillis The interval, in milliseconds.
+     */
+    public synchronized void setFullReloadInterval(final long intervalMillis) {
+        fullReloadNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+    }
+
+    /**
+     * Refreshes the table every <code>intervalMillis</code> milliseconds, in the background.
+     * 
+     * @param intervalMillis The interval.
+     */
+    public synchronized void poll(final long intervalMillis) {
+        schedule(null, intervalMillis);
+    }
+
+    /**
+     * Refreshes the table whenever a PostgreSQL notification arrives on a channel, e.g. one sent by
+     * a trigger of the table. The driver receives notifications only with other traffic, so a
+     * borrowed connection asks for them every <code>checkMillis</code> milliseconds; this costs a
+     * trivial query instead of a reload. Falls back to polling if the database is not PostgreSQL.
+     * 
+     * @param channel The channel.
+     * @param checkMillis How often to check for notifications.
+     * @throws IllegalArgumentException if the channel is not a plain identifier.
+     */
+    public synchronized void listen(final String channel, final long checkMillis) {
+        if (!channel.matches("[A-Za-z_][A-Za-z0-9_]*")) {
+            throw new IllegalArgumentException("Invalid channel: " + channel);
+        }
+        schedule(channel, checkMillis);
+    }
+
+    /**
+     * Schedules the background refreshes, replacing the previous schedule. The first refresh runs
+     * at once if the table is not loaded yet, otherwise after the interval.
+     * 
+     * @param channel The notification channel, or <code>null</code> for polling.
+     * @param intervalMillis The interval.
+     */
+    private void schedule(final String channel, final long intervalMillis) {
+        if (closed) {
+            throw new IllegalStateException("Viitetaulu is closed");
+        }
+        if (task != null) {
+            task.cancel(false);
+        }
+        unlisten();
+        this.channel = channel;
+        task = Viitetaulu.SCHEDULER.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                check();
+            }
+        }, (snapshot == Viitetaulu.EMPTY) ? 0L : intervalMillis, intervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Runs a scheduled refresh: loads the table the first time, and later polls or checks for
+     * notifications.
+     */
+    private synchronized void check() {
+        if (closed) {
+            return;
+        }
+        try {
+            if (channel == null) {
+                load(snapshot != Viitetaulu.EMPTY);
+                return;
+            }
+            if (listener == null) {
+                if (!startListening()) {
+                    channel = null;
+                    load(snapshot != Viitetaulu.EMPTY);
+                    return;
+                }
+                // notifications may have been missed; the changed rows are enough to catch up
+                load(snapshot != Viitetaulu.EMPTY);
+                return;
+            }
+            try (Statement st = listener.createStatement()) {
+                st.executeQuery("SELECT 1").close();
+            }
+            final PGNotification[] notifications =
+                    listener.unwrap(PGConnection.class).getNotifications();
+            if ((notifications == null) || (notifications.length == 0)) {
+                return;
+            }
+            boolean full = false;
+            for (final PGNotification n : notifications) {
+                full |= Viitetaulu.RELOAD.equals(n.getParameter());
+            }
+            load(!full);
+        } catch (final SQLException e) {
+            Logger.print(e);
+            // listen again on another connection next time
+            dropListener();
+        } catch (final RuntimeException e) {
+            // keep the schedule alive
+            Logger.print(e);
+        }
+    }
+
+    /**
+     * Borrows a connection and starts listening to the channel.
+     * 
+     * @return <code>false</code> if the database does not support notifications.
+     * @throws SQLException if a database access error occurs.
+     */
+    private boolean startListening() throws SQLException {
+        final Connection c = db.borrowConnection();
+        if (!c.isWrapperFor(PGConnection.class)) {
+            db.returnConnection(c);
+            Viitetaulu.LOG.warn("Viitetaulu:: The database has no notifications, polling instead.");
+            return false;
+        }
+        listener = c;
+        // inside a transaction, neither LISTEN nor the notifications would ever be delivered
+        c.setAutoCommit(true);
+        try (Statement st = c.createStatement()) {
+            st.execute("LISTEN " + channel);
+        }
+        return true;
+    }
+
+    /**
+     * Stops listening and gives the connection back.
+     */
+    private void unlisten() {
+        if (listener == null) {
+            return;
+        }
+        try (Statement st = listener.createStatement()) {
+            st.execute("UNLISTEN *");
+            db.returnConnection(listener);
+        } catch (final SQLException e) {
+            Logger.print(e);
+            dropListener();
+            return;
+        }
+        listener = null;
+    }
+
+    /**
+     * Closes a broken listening connection instead of giving it back.
+     */
+    private void dropListener() {
+        if (listener == null) {
+            return;
+        }
+        try {
+            listener.close();
+        } catch (final SQLException e) {
+            // the connection is broken anyway
+        }
+        listener = null;
+    }
+
+    /**
+     * Loads the whole table now and swaps the snapshot.
+     * 
+     * @return <code>false</code> if an {@link SQLException} was caught; the previous snapshot
+     *         then stays in use.
+     */
+    public boolean reload() {
+        return load(false);
+    }
+
+    /**
+     * Refreshes the table now: loads the changed rows if there is a version column and a snapshot,
+     * otherwise the whole table.
+     * 
+     * @return <code>false</code> if an {@link SQLException} was caught; the previous snapshot
+     *         then stays in use.
+     */
+    public boolean refresh() {
+        return load(true);
+    }
+
+    /**
+     * Loads rows and swaps the snapshot if anything changed.
+     * 
+     * @param incremental Whether to load only the changed rows, if possible; a full reload is due
+     *        every {@link #fullReloadNanos} nanoseconds regardless.
+     * @return <code>false</code> if an {@link SQLException} was caught.
+     */
+    private synchronized boolean load(final boolean incremental) {
+        final Tila old = snapshot;
+        final boolean since = incremental && (sinceTemplate != null) && (old.since != null)
+                && ((System.nanoTime() - old.reloaded) < fullReloadNanos);
+        Parametrit p = null;
+        if (since) {
+            p = sinceTemplate.newParameters().setObject(Viitetaulu.SINCE_VERSION, old.since);
+        }
+        Connection c = null;
+        try {
+            c = db.borrowConnection();
+            try (PreparedStatement ps = c.prepareStatement(since ? sinceTemplate.getSQL(p) : sql)) {
+                if (since) {
+                    sinceTemplate.bind(ps, p);
+                }
+                try (ResultSet rs = ps.executeQuery()) {
+                    swap(old, since, rs);
+                }
+            }
+            refreshes.incrementAndGet();
+            return true;
+        } catch (final SQLException e) {
+            Logger.print(e);
+            return false;
+        } finally {
+            if (c != null) {
+                db.returnConnection(c);
+            }
+        }
+    }
+
+    /**
+     * Builds a new snapshot from the old one and the loaded rows, and publishes it.
+     * 
+     * @param old The old snapshot.
+     * @param since Whether the rows are only the changed ones.
+     * @param rs The loaded rows.
+     * @throws SQLException if a database access error occurs.
+     * @throws IllegalStateException if the key or an index column is missing.
+     */
+    private void swap(final Tila old, final boolean since, final ResultSet rs)
+            throws SQLException {
+        final ResultSetMetaData md = rs.getMetaData();
+        final String[] labels = new String[md.getColumnCount()];
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = md.getColumnLabel(i + 1);
+        }
+        final int key = Viitetaulu.indexOf(labels, keyColumn);
+        final int version =
+                (versionColumn != null) ? Viitetaulu.indexOf(labels, versionColumn) : -1;
+        final Map<Object, Object[]> rows =
+                since ? new HashMap<Object, Object[]>(old.rows) : new HashMap<Object, Object[]>();
+        Object maxVersion = since ? old.version : null;
+        int changed = 0;
+        while (rs.next()) {
+            final Object[] row = new Object[labels.length];
+            for (int i = 0; i < row.length; i++) {
+                row[i] = rs.getObject(i + 1);
+            }
+            rows.put(Viitetaulu.normalize(row[key]), row);
+            if (version >= 0) {
+                maxVersion = Viitetaulu.max(maxVersion, row[version]);
+            }
+            changed++;
+        }
+        if (since && (changed == 0)) {
+            return;
+        }
+        final List<Map<Object, List<Object[]>>> indexes =
+                new ArrayList<Map<Object, List<Object[]>>>(indexColumns.length);
+        for (final String column : indexColumns) {
+            final int ix = Viitetaulu.indexOf(labels, column);
+            final Map<Object, List<Object[]>> index = new HashMap<Object, List<Object[]>>();
+            for (final Object[] row : rows.values()) {
+                final Object value = Viitetaulu.normalize(row[ix]);
+                List<Object[]> matches = index.get(value);
+                if (matches == null) {
+                    matches = new ArrayList<Object[]>(2);
+                    index.put(value, matches);
+                }
+                matches.add(row);
+            }
+            for (final Map.Entry<Object, List<Object[]>> e : index.entrySet()) {
+                e.setValue(Collections.unmodifiableList(e.getValue()));
+            }
+            indexes.add(index);
+        }
+        // the next refresh reads the rows above the largest version seen before this one again
+        final Object next = (old.version != null) ? Viitetaulu.min(old.version, maxVersion)
+                : maxVersion;
+        snapshot = new Tila(labels, rows, indexes, maxVersion, next,
+                since ? old.reloaded : System.nanoTime());
+        Viitetaulu.LOG.debug("Viitetaulu:: {} rows loaded, {} rows in total.", changed,
+                rows.size());
+    }
+
+    /**
+     * Finds a label, ignoring case.
+     * 
+     * @param labels The labels.
+     * @param label The label.
+     * @return the index
+     * @throws IllegalStateException if there is no such label.
+     */
+    private static int indexOf(final String[] labels, final String label) {
+        for (int i = 0; i < labels.length; i++) {
+            if (labels[i].equalsIgnoreCase(label)) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("No column " + label + " in the reference table");
+    }
+
+    /**
+     * Makes integral numbers of any type equal as map keys.
+     * 
+     * @param value The value.
+     * @return a {@link Long} for an integral number, otherwise the value itself
+     */
+    private static Object normalize(final Object value) {
+        if ((value instanceof Integer) || (value instanceof Short) || (value instanceof Byte)) {
+            return ((Number) value).longValue();
+        }
+        if (value instanceof BigDecimal) {
+            final BigDecimal d = (BigDecimal) value;
+            if ((d.signum() == 0) || ((d.stripTrailingZeros().scale() <= 0)
+                    && (d.compareTo(BigDecimal.valueOf(Long.MAX_VALUE)) <= 0)
+                    && (d.compareTo(BigDecimal.valueOf(Long.MIN_VALUE)) >= 0))) {
+                return d.longValue();
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Gets the larger of two versions.
+     * 
+     * @param a A version, or <code>null</code>.
+     * @param b Another version, or <code>null</code>.
+     * @return the larger one
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static Object max(final Object a, final Object b) {
+        if ((a == null) || (b == null)) {
+            return (a != null) ? a : b;
+        }
+        return (((Comparable) a).compareTo(b) >= 0) ? a : b;
+    }
+
+    /**
+     * Gets the smaller of two versions.
+     * 
+     * @param a A version.
+     * @param b Another version, or <code>null</code>.
+     * @return the smaller one, or <code>a</code> if <code>b</code> is <code>null</code>
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static Object min(final Object a, final Object b) {
+        if (b == null) {
+            return a;
+        }
+        return (((Comparable) a).compareTo(b) <= 0) ? a : b;
+    }
+
+    /**
+     * Gets a row by its primary key.
+     * 
+     * @param key The key.
+     * @return the row, or <code>null</code> if there is no such row
+     */
+    public Object[] get(final Object key) {
+        return snapshot.rows.get(Viitetaulu.normalize(key));
+    }
+
+    /**
+     * Gets the rows with a value in a secondary index column.
+     * 
+     * @param column The label of the column, one of the index columns.
+     * @param value The value.
+     * @return the rows, in no particular order; empty if there are none
+     * @throws IllegalArgumentException if the column has no index.
+     */
+    public List<Object[]> find(final String column, final Object value) {
+        final Tila s = snapshot;
+        for (int i = 0; i < indexColumns.length; i++) {
+            if (indexColumns[i].equalsIgnoreCase(column)) {
+                if (s.indexes.isEmpty()) {
+                    return Collections.emptyList();
+                }
+                final List<Object[]> rows = s.indexes.get(i).get(Viitetaulu.normalize(value));
+                return (rows != null) ? rows : Collections.<Object[]>emptyList();
+            }
+        }
+        throw new IllegalArgumentException("No index on column " + column);
+    }
+
+    /**
+     * Finds a column of the rows by its label, ignoring case.
+     * 
+     * @param label The label.
+     * @return the index in a row, starting from 0, or -1 if there is no such column or the table is
+     *         not loaded yet.
+     */
+    public int findColumn(final String label) {
+        final String[] labels = snapshot.labels;
+        for (int i = 0; i < labels.length; i++) {
+            if (labels[i].equalsIgnoreCase(label)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Gets the number of rows.
+     * 
+     * @return the row count
+     */
+    public int size() {
+        return snapshot.rows.size();
+    }
+
+    /**
+     * Gets the number of loads which succeeded, full and incremental.
+     * 
+     * @return the count
+     */
+    public long getRefreshCount() {
+        return refreshes.get();
+    }
+
+    /**
+     * Stops the background refreshes. The last snapshot stays readable.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if (task != null) {
+            task.cancel(false);
+            task = null;
+        }
+        unlisten();
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "Viitetaulu[key=%s, rows=%d, refreshes=%d]", keyColumn,
+                size(), refreshes.get());
+    }
+
+    /**
+     * An immutable snapshot of the table.<br>
+     * <b>Tila</b> is a <a href="http://en.wikipedia.org/wiki/Finnish_language"
+     * target="_blank">Finnish</a> word for <i>state</i>.
+     * 
+     * @author Dimo Vanchev
+     */
+    private static final class Tila {
+        /** The column labels. */
+        final String[] labels;
+        /** The rows by primary key. */
+        final Map<Object, Object[]> rows;
+        /** The rows by value, for each secondary index column. */
+        final List<Map<Object, List<Object[]>>> indexes;
+        /** The largest version, or <code>null</code>. */
+        final Object version;
+        /** The bound of the next incremental load, or <code>null</code>. */
+        final Object since;
+        /** The {@link System#nanoTime()} of the last full load. */
+        final long reloaded;
+
+        /**
+         * Constructor.
+         * 
+         * @param labels The column labels.
+         * @param rows The rows by primary key.
+         * @param indexes The secondary indexes.
+         * @param version The largest version.
+         * @param since The bound of the next incremental load.
+         * @param reloaded The time of the last full load.
+         */
+        Tila(final String[] labels, final Map<Object, Object[]> rows,
+                final List<Map<Object, List<Object[]>>> indexes, final Object version,
+                final Object since, final long reloaded) {
+            this.labels = labels;
+            this.rows = rows;
+            this.indexes = indexes;
+            this.version = version;
+            this.since = since;
+            this.reloaded = reloaded;
+        }
+    }
+}
@@ -1,8 +1,8 @@
-/**
- * The package contains classes for DB connection, SQL loading, execution and manipulations.<br>
- * <b>Yarar</b> is a <a href="http://en.wikipedia.org/wiki/Turkish_language"
- * target="_blank">Turkish</a> word for <i>utility</i>.<br>
- * <b>Tietokanta</b> is a <a href="http://en.wikipedia.org/wiki/Finnish_language"
- * target="_blank">Finnish</a> word for <i>database</i>.
- */
+/**
+ * The package contains classes for DB connection, SQL loading, execution and manipulations.<br>
+ * <b>Yarar</b> is a <a href="http://en.wikipedia.org/wiki/Turkish_language"
+ * target="_blank">Turkish</a> word for <i>utility</i>.<br>
+ * <b>Tietokanta</b> is a <a href="http://en.wikipedia.org/wiki/Finnish_language"
+ * target="_blank">Finnish</a> word for <i>database</i>.
+ */
 package yarar.tietokanta;
\ No newline at end of file